@@ -57,11 +57,20 @@ public abstract class NamespaceAwareContainer<T> {
     }
 
     public void invalidateInstance(Long namespaceId) {
-        namespaceToInstance.remove(namespaceId);
+        T instance = namespaceToInstance.remove(namespaceId);
+        if (instance != null) {
+            closeInstance(instance);
+        }
     }
 
     protected abstract T initializeInstance(Namespace namespace);
 
+    /**
+     * Releases the resources of an instance which has been invalidated. Does nothing by default.
+     */
+    protected void closeInstance(T instance) {
+    }
+
     protected Service getFirstOccurenceServiceForNamespace(Namespace namespace, String serviceName) {
         Collection<Service> services = getServiceForNamespace(namespace, serviceName);
         if (services.isEmpty()) {
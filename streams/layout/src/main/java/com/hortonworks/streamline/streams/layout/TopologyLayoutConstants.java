@@ -55,6 +55,11 @@ public final class TopologyLayoutConstants {
     public final static String JSON_KEY_TABLE = "table";
     public final static String JSON_KEY_COLUMN_FAMILY = "columnFamily";
     public final static String JSON_KEY_ROW_KEY = "rowKeyField";
+    public final static String JSON_KEY_ROW_KEY_FIELDS = "rowKeyFields";
+    public final static String JSON_KEY_ROW_KEY_SALT_BUCKETS = "rowKeySaltBuckets";
+    public final static String JSON_KEY_SCHEMA_MAPPING = "schemaMapping";
+    public final static String JSON_KEY_PACKED_COLUMN = "packedColumn";
+    public final static String JSON_KEY_PACKED_FIELDS = "packedFields";
     public final static String JSON_KEY_MAPPER_IMPL =
             "hBaseMapperImplClassName";
     public final static String JSON_KEY_WRITE_TO_WAL = "writeToWAL";
@@ -79,6 +84,10 @@ public final class TopologyLayoutConstants {
     public final static String JSON_KEY_ROTATION_INTERVAL = "rotationInterval";
     public final static String JSON_KEY_ROTATION_INTERVAL_UNIT = "rotationIntervalUnit";
     public final static String JSON_KEY_ROTATION_ACTIONS = "rotationActions";
+    public final static String JSON_KEY_OUTPUT_FORMAT = "outputFormat";
+    public final static String JSON_KEY_COMPRESSION_CODEC = "compressionCodec";
+    public final static String JSON_KEY_BLOCK_SIZE = "blockSize";
+    public final static String JSON_KEY_MAX_BUFFERED_BYTES = "maxBufferedBytes";
     public final static String JSON_KEY_LINKS = "links";
     public final static String JSON_KEY_FROM = "from";
     public final static String JSON_KEY_TO = "to";
@@ -104,6 +113,13 @@ public final class TopologyLayoutConstants {
     public final static String JSON_KEY_RETRY_DELAY_MULTIPLIER = "retryDelayMultiplier";
     public final static String JSON_KEY_RETRY_DELAY_MAX_MS = "retryDelayMaxMs";
     public final static String JSON_KEY_OUTPUT_STREAM_ID = "outputStreamId";
+    public final static String JSON_KEY_PROJECTED_FIELDS = "projectedFields";
+    public final static String JSON_KEY_FILTER_CONDITIONS = "filterConditions";
+    public final static String JSON_KEY_DEAD_LETTER_ENABLED = "deadLetterEnabled";
+    public final static String JSON_KEY_DEAD_LETTER_MAX_RETRIES = "deadLetterMaxRetries";
+    public final static String JSON_KEY_DEAD_LETTER_INITIAL_BACKOFF_MS = "deadLetterInitialBackoffMs";
+    public final static String JSON_KEY_DEAD_LETTER_MAX_BACKOFF_MS = "deadLetterMaxBackoffMs";
+    public final static String JSON_KEY_DEAD_LETTER_SINK = "deadLetterSink";
     public final static String JSON_KEY_PARSED_TUPLES_STREAM = "parsedTuplesStream";
     public final static String JSON_KEY_FAILED_TUPLES_STREAM = "failedTuplesStream";
     public final static String JSON_KEY_PARSER_JAR_PATH = "parserJarPath";
@@ -131,6 +147,8 @@ public final class TopologyLayoutConstants {
     public final static String JSON_KEY_NOTIFIER_PROTOCOL = "protocol";
     public final static String JSON_KEY_NOTIFIER_AUTH = "auth";
     public final static String JSON_KEY_NOTIFICATION_STORE_CLASS = "notificationStoreClassName";
+    public final static String JSON_KEY_NOTIFICATION_BATCH_SIZE = "notificationBatchSize";
+    public final static String JSON_KEY_NOTIFICATION_FLUSH_INTERVAL_SECS = "notificationFlushIntervalSecs";
     public final static String JSON_KEY_GROUPING = "grouping";
     public final static String JSON_KEY_GROUPING_FIELDS = "groupingFields";
     public final static String JSON_KEY_CUSTOM_GROUPING_IMPL = "customGroupingImpl";
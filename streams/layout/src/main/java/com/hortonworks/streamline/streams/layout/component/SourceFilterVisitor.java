@@ -0,0 +1,105 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.layout.component;
+
+import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the sources whose events all go to a single rules processor which only emits the events matching the
+ * condition of one of its rules, and whose conditions are simple enough to be evaluated by the source itself.
+ * <p>
+ * Such conditions are comparisons between a top level field and a literal combined with AND and OR. A source can
+ * evaluate them on the few fields involved and drop the events which cannot match any rule, before building the
+ * events and sending them to the rules processor. The rules processor still evaluates the rules on the events it
+ * receives.
+ */
+public class SourceFilterVisitor extends TopologyDagVisitor {
+    // components the events of a source are sent to, keyed by the source id
+    private final Map<String, Set<Component>> sourceTargets = new HashMap<>();
+
+    @Override
+    public void visit(Edge edge) {
+        if (edge.getFrom() instanceof StreamlineSource) {
+            Set<Component> targets = sourceTargets.get(edge.getFrom().getId());
+            if (targets == null) {
+                targets = new HashSet<>();
+                sourceTargets.put(edge.getFrom().getId(), targets);
+            }
+            targets.add(edge.getTo());
+        }
+    }
+
+    /**
+     * Returns the conditions of the rules processor the events of the given source go to, an event which matches
+     * none of the conditions can be dropped by the source. Returns null if the events of the source cannot be
+     * filtered by the source.
+     */
+    public List<Condition> getFilterConditions(StreamlineSource source) {
+        Set<Component> targets = sourceTargets.get(source.getId());
+        if (targets == null || targets.size() != 1) {
+            return null;
+        }
+        Component target = targets.iterator().next();
+        if (!(target instanceof RulesProcessor)) {
+            return null;
+        }
+        List<Rule> rules = ((RulesProcessor) target).getRules();
+        if (rules == null || rules.isEmpty()) {
+            return null;
+        }
+        List<Condition> conditions = new ArrayList<>();
+        for (Rule rule : rules) {
+            // windowed rules aggregate over the events, leave them to the window bolt
+            if (rule.getWindow() != null || rule.getCondition() == null
+                    || !isSupported(rule.getCondition().getExpression())) {
+                return null;
+            }
+            conditions.add(rule.getCondition());
+        }
+        return conditions;
+    }
+
+    private boolean isSupported(Expression expression) {
+        if (!(expression instanceof BinaryExpression)) {
+            return false;
+        }
+        BinaryExpression binaryExpression = (BinaryExpression) expression;
+        Expression first = binaryExpression.getFirst();
+        Expression second = binaryExpression.getSecond();
+        if (binaryExpression.getOperator() == Operator.AND || binaryExpression.getOperator() == Operator.OR) {
+            return isSupported(first) && isSupported(second);
+        }
+        return (isField(first) && second instanceof Literal) || (first instanceof Literal && isField(second));
+    }
+
+    private boolean isField(Expression expression) {
+        return expression instanceof FieldExpression && !FieldExpression.STAR.equals(expression);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.layout.component;
+
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.action.Action;
+import com.hortonworks.streamline.streams.layout.component.rule.action.TransformAction;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.ExpressionTranslator;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the fields of each source that are actually used by the components downstream of it, so that
+ * the source can skip the other fields while deserializing.
+ * <p>
+ * The events of a source flow unchanged through rules processors whose rules do not project, and stop at rules
+ * processors where every rule projects specific fields. The fields referred by the rules (condition, projection,
+ * group by, having and the timestamp field of event time windows) and by fields groupings along the way are required. Any other component reached by the events
+ * (sinks, custom processors, normalization etc) may use any field, hence all fields of the source are required.
+ * <p>
+ * The dag has to be traversed with {@link TopologyDag#traverse(TopologyDagVisitor)} so that a component is
+ * visited after all the edges leading to it.
+ */
+public class SourceProjectionVisitor extends TopologyDagVisitor {
+    // ids of the sources whose events reach a component, keyed by the component id
+    private final Map<String, Set<String>> sourcesReaching = new HashMap<>();
+    private final Map<String, Set<String>> requiredFields = new HashMap<>();
+    private final Set<String> allFieldsRequired = new HashSet<>();
+    // components which emit only projected events, the source fields do not flow past these
+    private final Set<String> projectingComponents = new HashSet<>();
+
+    @Override
+    public void visit(StreamlineSource source) {
+        getSourcesReaching(source.getId()).add(source.getId());
+        if (!requiredFields.containsKey(source.getId())) {
+            requiredFields.put(source.getId(), new HashSet<>());
+        }
+    }
+
+    @Override
+    public void visit(StreamlineSink sink) {
+        allFieldsRequired.addAll(getSourcesReaching(sink.getId()));
+    }
+
+    @Override
+    public void visit(StreamlineProcessor processor) {
+        allFieldsRequired.addAll(getSourcesReaching(processor.getId()));
+    }
+
+    @Override
+    public void visit(RulesProcessor rulesProcessor) {
+        Set<String> sources = getSourcesReaching(rulesProcessor.getId());
+        if (sources.isEmpty()) {
+            return;
+        }
+        boolean projecting = true;
+        Set<String> fields = new HashSet<>();
+        for (Rule rule : rulesProcessor.getRules()) {
+            if (rule.getCondition() != null) {
+                addReferredFields(rule.getCondition().getExpression(), fields);
+            }
+            if (rule.getGroupBy() != null) {
+                for (Expression expression : rule.getGroupBy().getExpressions()) {
+                    addReferredFields(expression, fields);
+                }
+            }
+            if (rule.getHaving() != null) {
+                addReferredFields(rule.getHaving().getExpression(), fields);
+            }
+            if (rule.getWindow() != null && rule.getWindow().getTsField() != null) {
+                fields.add(rule.getWindow().getTsField());
+            }
+            if (rule.getProjection() == null || rule.getProjection().getExpressions().contains(FieldExpression.STAR)) {
+                // the event flows as is to the actions of this rule
+                if (hasTransforms(rule)) {
+                    allFieldsRequired.addAll(sources);
+                    return;
+                }
+                projecting = false;
+            } else {
+                for (Expression expression : rule.getProjection().getExpressions()) {
+                    addReferredFields(expression, fields);
+                }
+            }
+        }
+        for (String source : sources) {
+            requiredFields.get(source).addAll(fields);
+        }
+        if (projecting) {
+            projectingComponents.add(rulesProcessor.getId());
+        }
+    }
+
+    @Override
+    public void visit(Edge edge) {
+        String from = edge.getFrom().getId();
+        Set<String> sources = getSourcesReaching(from);
+        if (projectingComponents.contains(from) || sources.isEmpty()) {
+            return;
+        }
+        getSourcesReaching(edge.getTo().getId()).addAll(sources);
+        for (StreamGrouping streamGrouping : edge.getStreamGroupings()) {
+            if (streamGrouping.getFields() != null) {
+                for (String source : sources) {
+                    requiredFields.get(source).addAll(streamGrouping.getFields());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the fields of the given source that are used downstream, or null if all the fields are required.
+     */
+    public Set<String> getRequiredFields(Source source) {
+        if (allFieldsRequired.contains(source.getId()) || !requiredFields.containsKey(source.getId())) {
+            return null;
+        }
+        return Collections.unmodifiableSet(requiredFields.get(source.getId()));
+    }
+
+    private Set<String> getSourcesReaching(String componentId) {
+        Set<String> sources = sourcesReaching.get(componentId);
+        if (sources == null) {
+            sources = new HashSet<>();
+            sourcesReaching.put(componentId, sources);
+        }
+        return sources;
+    }
+
+    private boolean hasTransforms(Rule rule) {
+        if (rule.getActions() != null) {
+            for (Action action : rule.getActions()) {
+                if (action instanceof TransformAction && !((TransformAction) action).getTransforms().isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addReferredFields(Expression expression, Set<String> fields) {
+        FieldsCollector fieldsCollector = new FieldsCollector();
+        expression.accept(fieldsCollector);
+        for (Schema.Field field : fieldsCollector.getFields()) {
+            fields.add(field.getName());
+        }
+    }
+
+    private static class FieldsCollector extends ExpressionTranslator {
+        @Override
+        protected String getOperator(Operator operator) {
+            return operator.name();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.layout.component;
+
+import com.google.common.collect.ImmutableList;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.action.Action;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * unit tests for SourceFilterVisitor
+ */
+public class SourceFilterVisitorTest {
+    TopologyDag topology;
+    StreamlineSource source;
+    StreamlineSink sink;
+
+    @Before
+    public void setUp() {
+        topology = new TopologyDag();
+        source = new StreamlineSource(Collections.singleton(new Stream("a", "b")));
+        source.setId("source");
+        sink = new StreamlineSink();
+        sink.setId("sink");
+    }
+
+    @Test
+    public void testLeadingFilter() throws Exception {
+        Condition first = condition(new BinaryExpression(Operator.GREATER_THAN, field("a"), new Literal("1")));
+        Condition second = condition(new BinaryExpression(Operator.OR,
+                new BinaryExpression(Operator.EQUALS, field("b"), new Literal("'x'")),
+                new BinaryExpression(Operator.LESS_THAN, new Literal("0"), field("a"))));
+        RulesProcessor rulesProcessor = rulesProcessor(rule(first), rule(second));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertEquals(Arrays.asList(first, second), filterConditions());
+    }
+
+    @Test
+    public void testRuleWithoutCondition() throws Exception {
+        RulesProcessor rulesProcessor = rulesProcessor(rule(condition(new BinaryExpression(Operator.GREATER_THAN, field("a"), new Literal("1")))),
+                rule(null));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertNull(filterConditions());
+    }
+
+    @Test
+    public void testUnsupportedCondition() throws Exception {
+        Expression function = new FunctionExpression("UPPER", "UPPER", ImmutableList.<Expression>of(field("b")));
+        RulesProcessor rulesProcessor = rulesProcessor(rule(condition(new BinaryExpression(Operator.EQUALS, function, new Literal("'X'")))));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertNull(filterConditions());
+    }
+
+    @Test
+    public void testSourceWithOtherTargets() throws Exception {
+        RulesProcessor rulesProcessor = rulesProcessor(rule(condition(new BinaryExpression(Operator.GREATER_THAN, field("a"), new Literal("1")))));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(source, sink);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertNull(filterConditions());
+    }
+
+    private List<Condition> filterConditions() {
+        SourceFilterVisitor visitor = new SourceFilterVisitor();
+        topology.traverse(visitor);
+        return visitor.getFilterConditions(source);
+    }
+
+    private RulesProcessor rulesProcessor(Rule... rules) {
+        RulesProcessor rulesProcessor = new RulesProcessor();
+        rulesProcessor.setId("rules");
+        rulesProcessor.addOutputStream(new Stream("x"));
+        rulesProcessor.setRules(Arrays.asList(rules));
+        return rulesProcessor;
+    }
+
+    private Rule rule(Condition condition) {
+        Rule rule = new Rule();
+        rule.setCondition(condition);
+        rule.setActions(Collections.<Action>emptyList());
+        return rule;
+    }
+
+    private Condition condition(Expression expression) {
+        return new Condition(expression);
+    }
+
+    private FieldExpression field(String name) {
+        return new FieldExpression(Schema.Field.of(name, Schema.Type.INTEGER));
+    }
+}
@@ -0,0 +1,183 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.layout.component;
+
+import com.google.common.collect.Sets;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.streams.layout.Transform;
+import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.action.Action;
+import com.hortonworks.streamline.streams.layout.component.rule.action.TransformAction;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Projection;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * unit tests for SourceProjectionVisitor
+ */
+public class SourceProjectionVisitorTest {
+    TopologyDag topology;
+    StreamlineSource source;
+    StreamlineSink sink;
+
+    @Before
+    public void setUp() {
+        topology = new TopologyDag();
+        source = new StreamlineSource(Collections.singleton(new Stream("a", "b", "c", "d")));
+        source.setId("source");
+        sink = new StreamlineSink();
+        sink.setId("sink");
+    }
+
+    @Test
+    public void testProjectingRules() throws Exception {
+        RulesProcessor rulesProcessor = rulesProcessor("rules", rule(condition("c"), projection("a", "b")));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertEquals(Sets.newHashSet("a", "b", "c"), requiredFields());
+    }
+
+    @Test
+    public void testEventTimeWindow() throws Exception {
+        Rule rule = rule(condition("c"), projection("a"));
+        rule.setWindow(new Window("{\"windowLength\":{\"class\":\".Window$Duration\",\"durationMs\":1000},\"tsField\":\"d\",\"lagMs\":0}"));
+        RulesProcessor rulesProcessor = rulesProcessor("rules", rule);
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertEquals(Sets.newHashSet("a", "c", "d"), requiredFields());
+    }
+
+    @Test
+    public void testNonProjectingRules() throws Exception {
+        RulesProcessor rulesProcessor = rulesProcessor("rules", rule(condition("c"), null));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertNull(requiredFields());
+    }
+
+    @Test
+    public void testStarProjection() throws Exception {
+        RulesProcessor rulesProcessor = rulesProcessor("rules", rule(condition("c"), new Projection(Collections.singletonList(FieldExpression.STAR))));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge(source, rulesProcessor);
+        topology.addEdge(rulesProcessor, sink);
+
+        assertNull(requiredFields());
+    }
+
+    @Test
+    public void testChainedRules() throws Exception {
+        RulesProcessor filter = rulesProcessor("filter", rule(condition("c"), null));
+        RulesProcessor project = rulesProcessor("project", rule(null, projection("a")));
+        topology.add(source).add(filter).add(project).add(sink);
+        topology.addEdge(source, filter);
+        topology.addEdge(filter, project);
+        topology.addEdge(project, sink);
+
+        assertEquals(Sets.newHashSet("a", "c"), requiredFields());
+    }
+
+    @Test
+    public void testTransformsWithoutProjection() throws Exception {
+        Rule rule = rule(condition("c"), null);
+        TransformAction action = new TransformAction(Collections.singletonList(new Transform("transform")));
+        rule.setActions(Collections.<Action>singletonList(action));
+        RulesProcessor filter = rulesProcessor("filter", rule);
+        RulesProcessor project = rulesProcessor("project", rule(null, projection("a")));
+        topology.add(source).add(filter).add(project).add(sink);
+        topology.addEdge(source, filter);
+        topology.addEdge(filter, project);
+        topology.addEdge(project, sink);
+
+        assertNull(requiredFields());
+    }
+
+    @Test
+    public void testFieldsGrouping() throws Exception {
+        RulesProcessor rulesProcessor = rulesProcessor("rules", rule(null, projection("a")));
+        topology.add(source).add(rulesProcessor).add(sink);
+        topology.addEdge("e1", source, rulesProcessor, new StreamGrouping(source.getOutputStreams().iterator().next(),
+                Stream.Grouping.FIELDS, Collections.singletonList("d")));
+        topology.addEdge(rulesProcessor, sink);
+
+        assertEquals(Sets.newHashSet("a", "d"), requiredFields());
+    }
+
+    @Test
+    public void testCustomProcessor() throws Exception {
+        StreamlineProcessor processor = new StreamlineProcessor(Collections.singleton(new Stream("x")));
+        processor.setId("processor");
+        topology.add(source).add(processor).add(sink);
+        topology.addEdge(source, processor);
+        topology.addEdge(processor, sink);
+
+        assertNull(requiredFields());
+    }
+
+    private Set<String> requiredFields() {
+        SourceProjectionVisitor visitor = new SourceProjectionVisitor();
+        topology.traverse(visitor);
+        return visitor.getRequiredFields(source);
+    }
+
+    private RulesProcessor rulesProcessor(String id, Rule rule) {
+        RulesProcessor rulesProcessor = new RulesProcessor();
+        rulesProcessor.setId(id);
+        rulesProcessor.addOutputStream(new Stream("x"));
+        rulesProcessor.setRules(Collections.singletonList(rule));
+        return rulesProcessor;
+    }
+
+    private Rule rule(Condition condition, Projection projection) {
+        Rule rule = new Rule();
+        rule.setCondition(condition);
+        rule.setProjection(projection);
+        rule.setActions(Collections.<Action>emptyList());
+        return rule;
+    }
+
+    private Condition condition(String field) {
+        return new Condition(new BinaryExpression(Operator.GREATER_THAN,
+                new FieldExpression(Schema.Field.of(field, Schema.Type.INTEGER)), new Literal("1")));
+    }
+
+    private Projection projection(String... fields) {
+        Projection projection = new Projection();
+        for (String field : fields) {
+            projection.getExpressions().add(new FieldExpression(Schema.Field.of(field, Schema.Type.STRING)));
+        }
+        return projection;
+    }
+}
@@ -45,6 +45,11 @@ public class TopologyMetricsContainer extends NamespaceAwareContainer<TopologyMe
         this.subject = subject;
     }
 
+    @Override
+    protected void closeInstance(TopologyMetrics topologyMetrics) {
+        topologyMetrics.close();
+    }
+
     @Override
     protected TopologyMetrics initializeInstance(Namespace namespace) {
         String streamingEngine = namespace.getStreamingEngine();
@@ -0,0 +1,184 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.metrics.topology;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps in memory snapshots of the metrics of all the topologies running in a cluster, which are periodically
+ * collected in the background instead of querying the cluster on every request.
+ * <p>
+ * A snapshot is kept per user the metrics are requested as, so that impersonation is honored, and the users which
+ * did not request metrics for a while are no longer polled. A snapshot older than the staleness bound is not served:
+ * {@link #getSnapshot(String)} returns null and triggers a refresh, the caller is expected to query the cluster
+ * directly in the meantime.
+ * <p>
+ * The defaults are sized for polling every topology of a cluster: a poll every 30 seconds, and snapshots served for
+ * up to a minute. Implementations get the previous snapshot, so that the metrics which are costly to collect can be
+ * carried over and collected less often.
+ *
+ * @param <T> the type of the snapshots
+ */
+public abstract class MetricsSnapshotCollector<T> implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsSnapshotCollector.class);
+
+    public static final String POLL_INTERVAL_MS = "metrics.snapshot.poll.interval.ms";
+    public static final String MAX_STALENESS_MS = "metrics.snapshot.max.staleness.ms";
+    public static final String IDLE_TIMEOUT_MS = "metrics.snapshot.idle.timeout.ms";
+
+    private static final long DEFAULT_POLL_INTERVAL_MS = 30_000L;
+    private static final long DEFAULT_MAX_STALENESS_MS = 60_000L;
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 300_000L;
+
+    private final String name;
+    private final long pollIntervalMs;
+    private final long maxStalenessMs;
+    private final long idleTimeoutMs;
+    // keyed by the user, an empty string when the metrics are not requested on behalf of a user
+    private final ConcurrentMap<String, UserSnapshot<T>> snapshots = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    protected MetricsSnapshotCollector(String name, Map<String, Object> conf) {
+        this.name = name;
+        this.pollIntervalMs = getLong(conf, POLL_INTERVAL_MS, DEFAULT_POLL_INTERVAL_MS);
+        this.maxStalenessMs = getLong(conf, MAX_STALENESS_MS, DEFAULT_MAX_STALENESS_MS);
+        this.idleTimeoutMs = getLong(conf, IDLE_TIMEOUT_MS, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Collects the metrics of all the topologies of the cluster.
+     *
+     * @param asUser username if request needs impersonation to specific user
+     * @param previous the previous snapshot collected as the user, null if there is none
+     */
+    protected abstract T collect(String asUser, T previous);
+
+    /**
+     * Starts polling the cluster in the background.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-metrics-collector");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(this::refreshAll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the latest snapshot collected as the given user, or null if there is none within the staleness bound.
+     * In that case a refresh is triggered and the user is polled from now on.
+     *
+     * @param asUser username if request needs impersonation to specific user
+     */
+    public T getSnapshot(String asUser) {
+        UserSnapshot<T> userSnapshot = snapshots.computeIfAbsent(asUser == null ? "" : asUser, k -> new UserSnapshot<>(asUser));
+        long now = System.currentTimeMillis();
+        userSnapshot.lastAccessedMs = now;
+        Snapshot<T> snapshot = userSnapshot.snapshot;
+        if (snapshot != null && now - snapshot.collectedMs <= maxStalenessMs) {
+            return snapshot.value;
+        }
+        if (executor != null && userSnapshot.refreshing.compareAndSet(false, true)) {
+            executor.execute(() -> refresh(userSnapshot));
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        snapshots.clear();
+    }
+
+    private void refreshAll() {
+        long now = System.currentTimeMillis();
+        Iterator<UserSnapshot<T>> it = snapshots.values().iterator();
+        while (it.hasNext()) {
+            UserSnapshot<T> userSnapshot = it.next();
+            if (now - userSnapshot.lastAccessedMs > idleTimeoutMs) {
+                LOG.debug("No longer collecting metrics as user {} which has been idle", userSnapshot.asUser);
+                it.remove();
+            } else if (userSnapshot.refreshing.compareAndSet(false, true)) {
+                refresh(userSnapshot);
+            }
+        }
+    }
+
+    private void refresh(UserSnapshot<T> userSnapshot) {
+        try {
+            long start = System.currentTimeMillis();
+            Snapshot<T> previous = userSnapshot.snapshot;
+            T value = collect(userSnapshot.asUser, previous != null ? previous.value : null);
+            userSnapshot.snapshot = new Snapshot<>(value, start);
+            LOG.debug("Collected metrics as user {} in {} ms", userSnapshot.asUser, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // the previous snapshot is kept until it gets stale
+            LOG.warn("Failed to collect metrics as user {}", userSnapshot.asUser, e);
+        } finally {
+            userSnapshot.refreshing.set(false);
+        }
+    }
+
+    protected static long getLong(Map<String, Object> conf, String key, long defaultValue) {
+        Object value = conf != null ? conf.get(key) : null;
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+
+    private static final class Snapshot<T> {
+        private final T value;
+        private final long collectedMs;
+
+        Snapshot(T value, long collectedMs) {
+            this.value = value;
+            this.collectedMs = collectedMs;
+        }
+    }
+
+    private static final class UserSnapshot<T> {
+        private final String asUser;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile Snapshot<T> snapshot;
+        private volatile long lastAccessedMs;
+
+        UserSnapshot(String asUser) {
+            this.asUser = asUser;
+        }
+    }
+}
@@ -56,6 +56,11 @@ public interface TopologyMetrics extends TopologyTimeSeriesMetrics {
      */
     Map<String, ComponentMetric> getMetricsForTopology(TopologyLayout topology, String asUser);
 
+    /**
+     * Releases the resources of this instance, e.g. the threads collecting the metrics, once it is not used anymore.
+     */
+    void close();
+
     /**
      * Data structure of Metrics for each component on topology.
      * Fields are extracted from common metrics among various streaming frameworks.
@@ -17,30 +17,86 @@
 
 package com.hortonworks.streamline.streams.notification.service;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.NotificationContext;
 import com.hortonworks.streamline.streams.notification.Notifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Asynchronously delivers notifications to notifiers.
+ * <p>
+ * Each notifier has its own bounded queue and at most a given number of its notifications are delivered at
+ * the same time, so that a slow or unavailable notifier can neither take all the threads nor the whole heap.
+ * When the queue of a notifier is full the notification is either rejected or the oldest queued one is dropped,
+ * see {@link OverflowPolicy}. A dropped notification is given up on: its notifier context is told so through
+ * {@link NotificationServiceContext#dropped(String)}. Failed notifications are re-queued after an exponential
+ * backoff with jitter.
  */
 public class NotificationQueueHandler {
     private static final Logger LOG = LoggerFactory.getLogger(NotificationQueueHandler.class);
     private static final int MAX_THREADS = 10;
+
+    public static final String QUEUE_SIZE = "queuehandler.queue.size";
+    public static final String OVERFLOW_POLICY = "queuehandler.overflow.policy";
+    public static final String MAX_CONCURRENCY = "queuehandler.notifier.concurrency";
+    public static final String INITIAL_BACKOFF_MS = "queuehandler.retry.initial.backoff.ms";
+    public static final String MAX_BACKOFF_MS = "queuehandler.retry.max.backoff.ms";
+
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_MAX_CONCURRENCY = 2;
+    private static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    private static final long DEFAULT_MAX_BACKOFF_MS = 60000;
+
+    /**
+     * What to do with a notification when the queue of its notifier is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Throw a {@link NotificationServiceException} so that the caller can fail and replay it later.
+         */
+        REJECT,
+        /**
+         * Drop the oldest queued notification of the notifier to make room for the new one.
+         */
+        DROP_OLDEST
+    }
+
     /**
      * Track the tasks so that it can be re-submitted in case of retry.
      */
     private final ConcurrentHashMap<String, NotificationQueueTask> taskMap;
+    private final ConcurrentHashMap<Notifier, NotifierQueue> notifierQueues;
+    private final int queueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxConcurrency;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final MetricRegistry metrics;
+    private final Counter retries;
+    private final Counter rejected;
+    private final Counter dropped;
 
     private static class NotificationQueueTask implements Runnable {
         final Notifier notifier;
         final Notification notification;
+        final AtomicInteger attempt = new AtomicInteger();
 
         NotificationQueueTask(Notifier notifier, Notification notification) {
             this.notifier = notifier;
@@ -60,45 +116,178 @@ public class NotificationQueueHandler {
         }
     }
 
+    /**
+     * The queued tasks of a notifier and the number of them being run.
+     */
+    private class NotifierQueue {
+        final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueSize);
+        final AtomicInteger running = new AtomicInteger();
+
+        void checkCapacity() {
+            if (overflowPolicy == OverflowPolicy.REJECT && queue.remainingCapacity() == 0) {
+                rejected.inc();
+                throw new NotificationServiceException("Notification queue is full, " + queue.size() + " queued");
+            }
+        }
+
+        void offer(Runnable task) {
+            while (!queue.offer(task)) {
+                if (overflowPolicy == OverflowPolicy.REJECT) {
+                    rejected.inc();
+                    throw new NotificationServiceException("Notification queue is full, " + queue.size() + " queued");
+                }
+                Runnable oldest = queue.poll();
+                if (oldest != null) {
+                    dropped.inc();
+                    discard(oldest);
+                }
+            }
+            dispatch();
+        }
+
+        void dispatch() {
+            while (!queue.isEmpty()) {
+                int current = running.get();
+                if (current >= maxConcurrency) {
+                    return;
+                }
+                if (running.compareAndSet(current, current + 1)) {
+                    final Runnable task = queue.poll();
+                    if (task == null) {
+                        running.decrementAndGet();
+                        continue;
+                    }
+                    executorService.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                task.run();
+                            } finally {
+                                running.decrementAndGet();
+                                dispatch();
+                            }
+                        }
+                    });
+                }
+            }
+        }
+    }
+
     private final ExecutorService executorService;
+    private final ScheduledExecutorService retryExecutorService;
 
     public NotificationQueueHandler() {
         this(MAX_THREADS);
     }
 
     public NotificationQueueHandler(int nThreads) {
-        // TODO: evaluate ThreadPoolExecutor with bounded queue size
+        this(nThreads, Collections.<String, Object>emptyMap());
+    }
+
+    public NotificationQueueHandler(int nThreads, Map<String, Object> config) {
+        // the number of submitted tasks is bounded by the concurrency of the notifiers
         executorService = Executors.newFixedThreadPool(nThreads);
+        retryExecutorService = Executors.newSingleThreadScheduledExecutor();
         taskMap = new ConcurrentHashMap<>();
+        notifierQueues = new ConcurrentHashMap<>();
+        queueSize = ((Number) getOrDefault(config, QUEUE_SIZE, DEFAULT_QUEUE_SIZE)).intValue();
+        overflowPolicy = OverflowPolicy.valueOf(getOrDefault(config, OVERFLOW_POLICY, OverflowPolicy.REJECT).toString());
+        maxConcurrency = ((Number) getOrDefault(config, MAX_CONCURRENCY, DEFAULT_MAX_CONCURRENCY)).intValue();
+        initialBackoffMs = ((Number) getOrDefault(config, INITIAL_BACKOFF_MS, DEFAULT_INITIAL_BACKOFF_MS)).longValue();
+        maxBackoffMs = ((Number) getOrDefault(config, MAX_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS)).longValue();
+        metrics = new MetricRegistry();
+        metrics.register("queueDepth", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                int depth = 0;
+                for (NotifierQueue notifierQueue : notifierQueues.values()) {
+                    depth += notifierQueue.queue.size();
+                }
+                return depth;
+            }
+        });
+        retries = metrics.counter("retries");
+        rejected = metrics.counter("rejected");
+        dropped = metrics.counter("dropped");
     }
 
-
     public void enqueue(Notifier notifier, Notification notification) {
         NotificationQueueTask task = new NotificationQueueTask(notifier, notification);
         taskMap.put(notification.getId(), task);
-        executorService.submit(task);
+        try {
+            notifierQueue(notifier).offer(task);
+        } catch (NotificationServiceException ex) {
+            taskMap.remove(notification.getId());
+            throw ex;
+        }
     }
 
     /**
-     * Attempt re-delivery of a previously enqueued notification.
+     * Delivers the notifications to the notifier as a batch, a failed notification
+     * is re-delivered on its own. If the notifier throws, the notifications of the batch
+     * it did not ack or fail are failed.
+     */
+    public void enqueue(final Notifier notifier, final List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            taskMap.put(notification.getId(), new NotificationQueueTask(notifier, notification));
+        }
+        try {
+            notifierQueue(notifier).offer(new NotificationBatchTask(notifier, notifications));
+        } catch (NotificationServiceException ex) {
+            for (Notification notification : notifications) {
+                taskMap.remove(notification.getId());
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Throws a {@link NotificationServiceException} if a notification for the notifier would be rejected
+     * because its queue is full, so that the caller does not store a notification which cannot be delivered.
+     * The notification may still be rejected when enqueued if the queue fills up meanwhile.
+     */
+    public void checkCapacity(Notifier notifier) {
+        notifierQueue(notifier).checkCapacity();
+    }
+
+    /**
+     * Attempt re-delivery of a previously enqueued notification, after a backoff which
+     * doubles with each attempt.
      *
      * @param notificationId id of a previously submitted notification.
      */
     public void resubmit(String notificationId) {
-        NotificationQueueTask task = taskMap.get(notificationId);
+        final NotificationQueueTask task = taskMap.get(notificationId);
         if (task == null) {
             throw new NotificationServiceException("Could not find a previously enqueued task" +
                                                            " for notification id " + notificationId);
         }
-        executorService.submit(task);
+        retries.inc();
+        scheduleRetry(task, backoffMs(task.attempt.incrementAndGet()));
     }
 
     public void remove(String notificationId) {
         taskMap.remove(notificationId);
     }
 
+    /**
+     * Returns the number of queued notifications of the notifier.
+     */
+    public int getQueueDepth(Notifier notifier) {
+        NotifierQueue notifierQueue = notifierQueues.get(notifier);
+        return notifierQueue != null ? notifierQueue.queue.size() : 0;
+    }
+
+    /**
+     * Returns the queue depth gauge and the retries, rejected and dropped counters.
+     */
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
     public void shutdown() {
         LOG.info("Shutting down queue handler");
+        retryExecutorService.shutdownNow();
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(2, TimeUnit.SECONDS)) {
@@ -113,4 +302,107 @@ public class NotificationQueueHandler {
             Thread.currentThread().interrupt();
         }
     }
+
+    /**
+     * Returns the backoff before the given attempt, picked at random between half and
+     * the whole of the exponential backoff so that retries of many notifications are spread.
+     */
+    long backoffMs(int attempt) {
+        long backoff = initialBackoffMs << Math.min(attempt - 1, 30);
+        if (backoff <= 0 || backoff > maxBackoffMs) {
+            backoff = maxBackoffMs;
+        }
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private void scheduleRetry(final NotificationQueueTask task, final long delayMs) {
+        LOG.debug("Retrying notification {} in {} ms", task.notification.getId(), delayMs);
+        retryExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!taskMap.containsKey(task.notification.getId())) {
+                    return;
+                }
+                try {
+                    notifierQueue(task.notifier).offer(task);
+                } catch (NotificationServiceException ex) {
+                    // the notifier is still overloaded, wait for the longest backoff
+                    LOG.debug("Could not queue the retry of notification {}", task.notification.getId(), ex);
+                    scheduleRetry(task, maxBackoffMs);
+                } catch (Throwable th) {
+                    LOG.error("Could not queue the retry of notification {}", task.notification.getId(), th);
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void discard(Runnable task) {
+        if (task instanceof NotificationQueueTask) {
+            NotificationQueueTask queueTask = (NotificationQueueTask) task;
+            LOG.warn("Notification queue is full, dropping notification {}", queueTask.notification.getId());
+            dropped(queueTask.notifier, queueTask.notification);
+        } else if (task instanceof NotificationBatchTask) {
+            NotificationBatchTask batchTask = (NotificationBatchTask) task;
+            LOG.warn("Notification queue is full, dropping a batch of {} notifications", batchTask.notifications.size());
+            for (Notification notification : batchTask.notifications) {
+                dropped(batchTask.notifier, notification);
+            }
+        }
+    }
+
+    private void dropped(Notifier notifier, Notification notification) {
+        taskMap.remove(notification.getId());
+        NotificationContext context = notifier.getContext();
+        if (context instanceof NotificationServiceContext) {
+            try {
+                ((NotificationServiceContext) context).dropped(notification.getId());
+            } catch (RuntimeException ex) {
+                LOG.error("Could not report dropped notification {}", notification.getId(), ex);
+            }
+        }
+    }
+
+    private NotifierQueue notifierQueue(Notifier notifier) {
+        NotifierQueue notifierQueue = notifierQueues.get(notifier);
+        if (notifierQueue == null) {
+            NotifierQueue newQueue = new NotifierQueue();
+            notifierQueue = notifierQueues.putIfAbsent(notifier, newQueue);
+            if (notifierQueue == null) {
+                notifierQueue = newQueue;
+            }
+        }
+        return notifierQueue;
+    }
+
+    private static Object getOrDefault(Map<String, Object> config, String key, Object defaultValue) {
+        Object value = config.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private class NotificationBatchTask implements Runnable {
+        final Notifier notifier;
+        final List<Notification> notifications;
+
+        NotificationBatchTask(Notifier notifier, List<Notification> notifications) {
+            this.notifier = notifier;
+            this.notifications = notifications;
+        }
+
+        @Override
+        public void run() {
+            try {
+                notifier.notify(notifications);
+            } catch (Throwable th) {
+                LOG.error("Sending notifications failed ", th);
+                // fail the notifications which the notifier has neither acked nor failed, so that the framework can retry
+                for (Notification notification : notifications) {
+                    NotificationQueueTask task = taskMap.get(notification.getId());
+                    if (task != null && task.attempt.get() == 0) {
+                        notifier.getContext().fail(notification.getId());
+                    }
+                }
+                throw th;
+            }
+        }
+    }
 }
@@ -17,12 +17,14 @@
 
 package com.hortonworks.streamline.streams.notification.service;
 
+import com.codahale.metrics.MetricRegistry;
 import com.hortonworks.streamline.common.QueryParam;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.notification.Notification;
 import com.hortonworks.streamline.streams.notification.NotificationContext;
 import com.hortonworks.streamline.streams.notification.Notifier;
 import com.hortonworks.streamline.streams.notification.NotifierConfig;
+import com.hortonworks.streamline.streams.notification.store.Page;
 
 import java.util.List;
 
@@ -62,6 +64,15 @@ public interface NotificationService {
      */
     void notify(String notifierName, Notification notification);
 
+    /**
+     * Sends a batch of notifications to a notifier. The notifications are stored
+     * with a single call to the store, and flushed, before being handed to the notifier.
+     *
+     * @param notifierName  the notifier name
+     * @param notifications the notification objects.
+     */
+    void notify(String notifierName, List<Notification> notifications);
+
     /**
      * <p>
      * Gets notification from the store matching the given notification id.
@@ -74,12 +85,23 @@ public interface NotificationService {
      */
     List<Notification> getNotifications(List<String> notificationIds);
 
+    /**
+     * Return a list of notifications matching the given notification ids, with only the given fields.
+     */
+    List<Notification> getNotifications(List<String> notificationIds, List<String> fieldNames);
+
     /**
      * Returns a list of notifications matching the query params. This would typically use
      * secondary indexes (e.g. HBase index tables) of the underlying implementation.
      */
     List<Notification> findNotifications(List<QueryParam> queryParams);
 
+    /**
+     * Returns a page of notifications matching the query params, the "pageToken" param
+     * being the token of the previous page.
+     */
+    Page<Notification> findNotificationsPage(List<QueryParam> queryParams);
+
     /**
      * <p>
      * Gets Streamline event from the store matching the given eventId.
@@ -92,6 +114,11 @@ public interface NotificationService {
      */
     List<StreamlineEvent> getEvents(List<String> eventIds);
 
+    /**
+     * Return a list of events matching the given event ids, with only the given fields.
+     */
+    List<StreamlineEvent> getEvents(List<String> eventIds, List<String> fieldNames);
+
     /**
      * Update the notification status.
      *
@@ -100,6 +127,13 @@ public interface NotificationService {
      */
     Notification updateNotificationStatus(String notificationId, Notification.Status status);
 
+    /**
+     * Returns the metrics of the service, such as the depth of the notification queues, the number
+     * of retried, rejected and dropped notifications and the number of notifications suppressed by
+     * the throttler.
+     */
+    MetricRegistry getMetrics();
+
     /**
      * Any clean up goes here
      */
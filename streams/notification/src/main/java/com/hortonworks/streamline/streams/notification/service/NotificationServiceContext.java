@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -42,6 +43,8 @@ public class NotificationServiceContext implements NotificationContext {
     private final NotificationService notificationService;
     private final ConcurrentHashMap<String, AtomicInteger> notificationMap;
     private final int maxAttempts;
+    // notifications created by the service itself, which the wrapped context does not know about
+    private final Set<String> internalNotificationIds = ConcurrentHashMap.newKeySet();
 
     public NotificationServiceContext(NotificationContext context, NotificationQueueHandler queueHandler,
                                       NotificationService notificationService) {
@@ -68,7 +71,9 @@ public class NotificationServiceContext implements NotificationContext {
         notificationService.updateNotificationStatus(notificationId, Notification.Status.DELIVERED);
         notificationMap.remove(notificationId);
         queueHandler.remove(notificationId);
-        wrappedContext.ack(notificationId);
+        if (!internalNotificationIds.remove(notificationId)) {
+            wrappedContext.ack(notificationId);
+        }
     }
 
     @Override
@@ -80,13 +85,42 @@ public class NotificationServiceContext implements NotificationContext {
             notificationService.updateNotificationStatus(notificationId, Notification.Status.FAILED);
             notificationMap.remove(notificationId);
             queueHandler.remove(notificationId);
-            wrappedContext.fail(notificationId);
+            if (!internalNotificationIds.remove(notificationId)) {
+                wrappedContext.fail(notificationId);
+            }
         } else {
             // queue it again
             queueHandler.resubmit(notificationId);
         }
     }
 
+    /**
+     * Gives up on a notification which has been dropped from a full queue: its status is updated to FAILED
+     * and the wrapped context fails it, without any retry.
+     */
+    void dropped(String notificationId) {
+        LOG.info("Updating status to FAILED for dropped notification id {}", notificationId);
+        notificationService.updateNotificationStatus(notificationId, Notification.Status.FAILED);
+        notificationMap.remove(notificationId);
+        if (!internalNotificationIds.remove(notificationId)) {
+            wrappedContext.fail(notificationId);
+        }
+    }
+
+    /**
+     * Tracks a notification created by the service, its delivery is not reported to the wrapped context.
+     */
+    void addInternal(String notificationId) {
+        internalNotificationIds.add(notificationId);
+    }
+
+    /**
+     * Acks a notification which is not sent, without updating its status since it is not stored.
+     */
+    void suppressed(String notificationId) {
+        wrappedContext.ack(notificationId);
+    }
+
     @Override
     public String toString() {
         return "NotificationServiceContext{" +
@@ -17,6 +17,7 @@
 
 package com.hortonworks.streamline.streams.notification.service;
 
+import com.codahale.metrics.MetricRegistry;
 import com.hortonworks.streamline.common.QueryParam;
 import com.hortonworks.streamline.common.util.ProxyUtil;
 import com.hortonworks.streamline.streams.StreamlineEvent;
@@ -25,15 +26,20 @@ import com.hortonworks.streamline.streams.notification.NotificationContext;
 import com.hortonworks.streamline.streams.notification.Notifier;
 import com.hortonworks.streamline.streams.notification.store.CriteriaImpl;
 import com.hortonworks.streamline.streams.notification.store.NotificationStore;
+import com.hortonworks.streamline.streams.notification.store.Page;
 import com.hortonworks.streamline.streams.notification.store.hbase.HBaseNotificationStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Notification service implementation.
@@ -46,15 +52,25 @@ public class NotificationServiceImpl implements NotificationService {
     private static final String QUERY_PARAM_START_TS = "startTs";
     private static final String QUERY_PARAM_END_TS = "endTs";
     private static final String QUERY_PARAM_DESC = "desc";
+    private static final String QUERY_PARAM_PAGE_TOKEN = "pageToken";
 
     private static final String QUEUEHANDLER_THREADS = "queuehandler.threads";
+    private static final int DEFAULT_QUEUEHANDLER_THREADS = 10;
 
     private final ConcurrentHashMap<String, Notifier> notifiers = new ConcurrentHashMap<>();
 
+    private final ConcurrentHashMap<String, NotificationServiceContext> notifierContexts = new ConcurrentHashMap<>();
+
     private final NotificationQueueHandler queueHandler;
 
     private final ProxyUtil<Notifier> notifierProxyUtil;
 
+    private final Optional<NotificationThrottler> throttler;
+
+    private final ScheduledExecutorService digestExecutorService;
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
     /**
      * the underlying notification store.
      */
@@ -79,11 +95,23 @@ public class NotificationServiceImpl implements NotificationService {
         LOG.info("Initializing NotificationServiceImpl with config {}, notification store {}", config, store);
         this.notificationStore = Optional.ofNullable(store);
         if(config.get(QUEUEHANDLER_THREADS) != null) {
-            this.queueHandler = new NotificationQueueHandler(((Number)config.get(QUEUEHANDLER_THREADS)).intValue());
+            this.queueHandler = new NotificationQueueHandler(((Number)config.get(QUEUEHANDLER_THREADS)).intValue(), config);
         } else {
-            this.queueHandler = new NotificationQueueHandler();
+            this.queueHandler = new NotificationQueueHandler(DEFAULT_QUEUEHANDLER_THREADS, config);
         }
         this.notifierProxyUtil = new ProxyUtil<>(Notifier.class);
+        metrics.register("queue", queueHandler.getMetrics());
+        this.throttler = NotificationThrottler.isEnabled(config)
+                ? Optional.of(new NotificationThrottler(config)) : Optional.empty();
+        if (throttler.isPresent()) {
+            metrics.register("throttler", throttler.get().getMetrics());
+            // the expired windows are forgotten on each run, even without digests
+            long intervalMs = throttler.get().getDigestIntervalMs() > 0 ? throttler.get().getDigestIntervalMs() : 60000;
+            digestExecutorService = Executors.newSingleThreadScheduledExecutor();
+            digestExecutorService.scheduleWithFixedDelay(this::sendDigests, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            digestExecutorService = null;
+        }
     }
 
     @Override
@@ -94,7 +122,9 @@ public class NotificationServiceImpl implements NotificationService {
         Notifier registeredNotifier = notifiers.putIfAbsent(notifierName, notifier);
         if (registeredNotifier == null) {
             LOG.info("Initializing notifier");
-            notifier.open(new NotificationServiceContext(ctx, queueHandler, this));
+            NotificationServiceContext serviceContext = new NotificationServiceContext(ctx, queueHandler, this);
+            notifierContexts.put(notifierName, serviceContext);
+            notifier.open(serviceContext);
             registeredNotifier = notifier;
         }
         LOG.info("Notifier {} registered", notifierName);
@@ -105,6 +135,7 @@ public class NotificationServiceImpl implements NotificationService {
     public Notifier remove(String notifierName) {
         LOG.info("De-registering notifier {}", notifierName);
         Notifier notifier = notifiers.remove(notifierName);
+        notifierContexts.remove(notifierName);
         if (notifier != null) {
             LOG.info("Closing notifier {}", notifierName);
             notifier.close();
@@ -115,12 +146,111 @@ public class NotificationServiceImpl implements NotificationService {
     @Override
     public void notify(String notifierName, Notification notification) {
         LOG.debug("Notify notifierName {}, notification {}", notifierName, notification);
-        notificationStore.ifPresent(s -> s.store(notification));
         Notifier notifier = notifiers.get(notifierName);
         if (notifier == null) {
             throw new NoSuchNotifierException("Notifier not found for id " + notification.getNotifierName());
         }
-        queueHandler.enqueue(notifier, notification);
+        // a notification which would be rejected is neither throttled nor stored, so that its replay is not suppressed
+        queueHandler.checkCapacity(notifier);
+        if (throttler.isPresent() && !throttler.get().accept(notifierName, notification, System.currentTimeMillis())) {
+            suppressed(notifierName, notification);
+            return;
+        }
+        notificationStore.ifPresent(s -> s.store(notification));
+        try {
+            queueHandler.enqueue(notifier, notification);
+        } catch (NotificationServiceException ex) {
+            rejected(notifierName, Collections.singletonList(notification));
+            throw ex;
+        }
+    }
+
+    @Override
+    public void notify(String notifierName, List<Notification> notifications) {
+        LOG.debug("Notify notifierName {}, {} notifications", notifierName, notifications.size());
+        Notifier notifier = notifiers.get(notifierName);
+        if (notifier == null) {
+            throw new NoSuchNotifierException("Notifier not found for id " + notifierName);
+        }
+        queueHandler.checkCapacity(notifier);
+        List<Notification> accepted = notifications;
+        if (throttler.isPresent()) {
+            long now = System.currentTimeMillis();
+            accepted = new ArrayList<>(notifications.size());
+            for (Notification notification : notifications) {
+                if (throttler.get().accept(notifierName, notification, now)) {
+                    accepted.add(notification);
+                } else {
+                    suppressed(notifierName, notification);
+                }
+            }
+            if (accepted.isEmpty()) {
+                return;
+            }
+        }
+        // the notifications should be durable before the batch is handed to the notifier
+        final List<Notification> toStore = accepted;
+        notificationStore.ifPresent(s -> {
+            s.store(toStore);
+            s.flush();
+        });
+        try {
+            queueHandler.enqueue(notifier, accepted);
+        } catch (NotificationServiceException ex) {
+            rejected(notifierName, accepted);
+            throw ex;
+        }
+    }
+
+    // the notifications are stored but the queue filled up meanwhile, they will not be delivered
+    private void rejected(String notifierName, List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            LOG.debug("Notification {} rejected, updating its status to FAILED", notification.getId());
+            updateNotificationStatus(notification.getId(), Notification.Status.FAILED);
+            throttler.ifPresent(t -> t.release(notifierName, notification));
+        }
+    }
+
+    private void suppressed(String notifierName, Notification notification) {
+        LOG.debug("Notification {} suppressed by the throttler", notification.getId());
+        NotificationServiceContext serviceContext = notifierContexts.get(notifierName);
+        if (serviceContext != null) {
+            serviceContext.suppressed(notification.getId());
+        }
+    }
+
+    /**
+     * Stores and sends the digests of the suppressed notifications.
+     */
+    private void sendDigests() {
+        try {
+            for (Notification digest : throttler.get().drainDigests(System.currentTimeMillis())) {
+                Notifier notifier = notifiers.get(digest.getNotifierName());
+                NotificationServiceContext serviceContext = notifierContexts.get(digest.getNotifierName());
+                if (notifier == null || serviceContext == null) {
+                    LOG.warn("Notifier {} not found, dropping digest {}", digest.getNotifierName(), digest);
+                    continue;
+                }
+                LOG.debug("Sending digest {}", digest);
+                try {
+                    // do not store a digest which would be rejected
+                    queueHandler.checkCapacity(notifier);
+                } catch (NotificationServiceException ex) {
+                    LOG.warn("Notification queue of notifier {} is full, dropping digest {}", digest.getNotifierName(), digest);
+                    continue;
+                }
+                serviceContext.addInternal(digest.getId());
+                notificationStore.ifPresent(s -> s.store(digest));
+                try {
+                    queueHandler.enqueue(notifier, digest);
+                } catch (NotificationServiceException ex) {
+                    LOG.warn("Notification queue of notifier {} is full, digest {} is not sent", digest.getNotifierName(), digest);
+                    serviceContext.dropped(digest.getId());
+                }
+            }
+        } catch (Exception ex) {
+            LOG.error("Error sending notification digests", ex);
+        }
     }
 
     @Override
@@ -135,9 +265,30 @@ public class NotificationServiceImpl implements NotificationService {
         return notificationStore.map(s -> s.getNotifications(notificationIds)).orElse(Collections.emptyList());
     }
 
+    @Override
+    public List<Notification> getNotifications(List<String> notificationIds, List<String> fieldNames) {
+        LOG.debug("getNotifications with notificationIds {}, fieldNames {}", notificationIds, fieldNames);
+        return notificationStore.map(s -> s.getNotifications(notificationIds, fieldNames)).orElse(Collections.emptyList());
+    }
+
     @Override
     public List<Notification> findNotifications(List<QueryParam> queryParams) {
         LOG.debug("findNotifications with queryParams {}", queryParams);
+        CriteriaImpl<Notification> criteria = criteria(queryParams);
+        LOG.debug("Finding entities from notification store with criteria {}", criteria);
+        return notificationStore.map(s -> s.findEntities(criteria)).orElse(Collections.emptyList());
+    }
+
+    @Override
+    public Page<Notification> findNotificationsPage(List<QueryParam> queryParams) {
+        LOG.debug("findNotificationsPage with queryParams {}", queryParams);
+        CriteriaImpl<Notification> criteria = criteria(queryParams);
+        LOG.debug("Finding a page of entities from notification store with criteria {}", criteria);
+        return notificationStore.map(s -> s.findEntitiesPage(criteria))
+                .orElse(new Page<>(Collections.<Notification>emptyList(), null));
+    }
+
+    private CriteriaImpl<Notification> criteria(List<QueryParam> queryParams) {
         CriteriaImpl<Notification> criteria = new CriteriaImpl<>(Notification.class);
         for (QueryParam qp : queryParams) {
             if (qp.name.equalsIgnoreCase(QUERY_PARAM_NUM_ROWS)) {
@@ -148,12 +299,13 @@ public class NotificationServiceImpl implements NotificationService {
                 criteria.setEndTs(Long.parseLong(qp.value));
             } else if (qp.name.equals((QUERY_PARAM_DESC))) {
                 criteria.setDescending(true);
+            } else if (qp.name.equals(QUERY_PARAM_PAGE_TOKEN)) {
+                criteria.setPageToken(qp.value);
             } else {
                 criteria.addFieldRestriction(qp.name, qp.value);
             }
         }
-        LOG.debug("Finding entities from notification store with criteria {}", criteria);
-        return notificationStore.map(s -> s.findEntities(criteria)).orElse(Collections.emptyList());
+        return criteria;
     }
 
     @Override
@@ -168,14 +320,28 @@ public class NotificationServiceImpl implements NotificationService {
         return notificationStore.map(s -> s.getEvents(eventIds)).orElse(Collections.emptyList());
     }
 
+    @Override
+    public List<StreamlineEvent> getEvents(List<String> eventIds, List<String> fieldNames) {
+        LOG.debug("getEvents with eventIds {}, fieldNames {}", eventIds, fieldNames);
+        return notificationStore.map(s -> s.getEvents(eventIds, fieldNames)).orElse(Collections.emptyList());
+    }
+
     @Override
     public Notification updateNotificationStatus(String notificationId, Notification.Status status) {
         LOG.debug("updateNotificationStatus for notificationId {}, status {}", notificationId, status);
         return notificationStore.map(s -> s.updateNotificationStatus(notificationId, status)).orElse(null);
     }
 
+    @Override
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
     @Override
     public void close() {
+        if (digestExecutorService != null) {
+            digestExecutorService.shutdownNow();
+        }
         queueHandler.shutdown();
     }
 
@@ -0,0 +1,316 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Suppresses the notifications of a burst before they are stored and sent.
+ * <p>
+ * A notification is a duplicate of a previous one of the same notifier and rule if the values of the
+ * dedup fields are the same and the previous one was accepted within the dedup window. The number of
+ * notifications accepted per rule and per notifier within the rate window can be limited as well, a
+ * notification counts towards both limits only if it is accepted.
+ * When digests are enabled, the suppressed notifications of a notifier and rule are rolled into a single
+ * notification every digest interval, which carries the number of suppressed notifications.
+ */
+public class NotificationThrottler {
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationThrottler.class);
+
+    public static final String DEDUP_FIELDS = "throttle.dedup.fields";
+    public static final String DEDUP_WINDOW_MS = "throttle.dedup.window.ms";
+    public static final String MAX_PER_RULE = "throttle.rate.max.per.rule";
+    public static final String MAX_PER_NOTIFIER = "throttle.rate.max.per.notifier";
+    public static final String RATE_WINDOW_MS = "throttle.rate.window.ms";
+    public static final String DIGEST_INTERVAL_MS = "throttle.digest.interval.ms";
+
+    /**
+     * Fields added to the digest notifications.
+     */
+    public static final String FIELD_SUPPRESSED_COUNT = "suppressedCount";
+    public static final String FIELD_DIGEST_START_TS = "digestStartTs";
+    public static final String FIELD_DIGEST_END_TS = "digestEndTs";
+
+    private static final long DEFAULT_WINDOW_MS = 60000;
+    // bounds the memory used to track the notifications
+    private static final int MAX_TRACKED_KEYS = 10000;
+    private static final int MAX_DIGEST_EVENT_IDS = 100;
+
+    private final List<String> dedupFields;
+    private final long dedupWindowMs;
+    private final int maxPerRule;
+    private final int maxPerNotifier;
+    private final long rateWindowMs;
+    private final long digestIntervalMs;
+
+    // when the last notification of a dedup key was accepted
+    private final Map<String, Long> lastAccepted = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED_KEYS;
+        }
+    };
+    private final Map<String, RateWindow> ruleWindows = new HashMap<>();
+    private final Map<String, RateWindow> notifierWindows = new HashMap<>();
+    private final Map<String, Digest> digests = new LinkedHashMap<>();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Counter duplicates = metrics.counter("suppressed.duplicate");
+    private final Counter ruleRateLimited = metrics.counter("suppressed.rule");
+    private final Counter notifierRateLimited = metrics.counter("suppressed.notifier");
+    private final Counter digested = metrics.counter("digests");
+
+    private static class RateWindow {
+        long start;
+        int count;
+    }
+
+    private static class Digest {
+        final String notifierName;
+        final Notification first;
+        final List<String> eventIds = new ArrayList<>();
+        final long start;
+        long end;
+        int count;
+
+        Digest(String notifierName, Notification first, long start) {
+            this.notifierName = notifierName;
+            this.first = first;
+            this.start = start;
+        }
+    }
+
+    public NotificationThrottler(Map<String, Object> config) {
+        Object fields = config.get(DEDUP_FIELDS);
+        if (fields instanceof List) {
+            List<String> fieldNames = new ArrayList<>();
+            for (Object field : (List<?>) fields) {
+                fieldNames.add(field.toString());
+            }
+            dedupFields = fieldNames;
+        } else if (fields != null && !fields.toString().trim().isEmpty()) {
+            dedupFields = Arrays.asList(fields.toString().trim().split("\\s*,\\s*"));
+        } else {
+            dedupFields = Collections.emptyList();
+        }
+        dedupWindowMs = getLong(config, DEDUP_WINDOW_MS, DEFAULT_WINDOW_MS);
+        maxPerRule = (int) getLong(config, MAX_PER_RULE, 0);
+        maxPerNotifier = (int) getLong(config, MAX_PER_NOTIFIER, 0);
+        rateWindowMs = getLong(config, RATE_WINDOW_MS, DEFAULT_WINDOW_MS);
+        digestIntervalMs = getLong(config, DIGEST_INTERVAL_MS, 0);
+    }
+
+    /**
+     * Returns true if any of the dedup fields, the rate limits or the digests are configured.
+     */
+    public static boolean isEnabled(Map<String, Object> config) {
+        return config.get(DEDUP_FIELDS) != null || config.get(MAX_PER_RULE) != null
+                || config.get(MAX_PER_NOTIFIER) != null || config.get(DIGEST_INTERVAL_MS) != null;
+    }
+
+    /**
+     * Returns false if the notification should be suppressed, in which case it is added to the digest
+     * of its notifier and rule if digests are enabled.
+     */
+    public synchronized boolean accept(String notifierName, Notification notification, long now) {
+        String dedupKey = null;
+        if (!dedupFields.isEmpty()) {
+            dedupKey = dedupKey(notifierName, notification);
+            Long last = lastAccepted.get(dedupKey);
+            if (last != null && now - last < dedupWindowMs) {
+                duplicates.inc();
+                suppress(notifierName, notification, now);
+                return false;
+            }
+        }
+        RateWindow ruleWindow = maxPerRule > 0 && notification.getRuleId() != null
+                ? getWindow(ruleWindows, notifierName + "/" + notification.getRuleId(), now) : null;
+        if (ruleWindow != null && ruleWindow.count >= maxPerRule) {
+            ruleRateLimited.inc();
+            suppress(notifierName, notification, now);
+            return false;
+        }
+        RateWindow notifierWindow = maxPerNotifier > 0 ? getWindow(notifierWindows, notifierName, now) : null;
+        if (notifierWindow != null && notifierWindow.count >= maxPerNotifier) {
+            notifierRateLimited.inc();
+            suppress(notifierName, notification, now);
+            return false;
+        }
+        // counted only once both limits allow it, a suppressed notification doesn't use up the other limit
+        if (ruleWindow != null) {
+            ruleWindow.count++;
+        }
+        if (notifierWindow != null) {
+            notifierWindow.count++;
+        }
+        if (dedupKey != null) {
+            lastAccepted.put(dedupKey, now);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the digests whose interval has elapsed and forgets the expired windows.
+     */
+    public synchronized List<Notification> drainDigests(long now) {
+        List<Notification> result = new ArrayList<>();
+        Iterator<Digest> it = digests.values().iterator();
+        while (it.hasNext()) {
+            Digest digest = it.next();
+            if (now - digest.start >= digestIntervalMs) {
+                it.remove();
+                result.add(toNotification(digest));
+                digested.inc();
+            }
+        }
+        Iterator<Long> lastAcceptedIt = lastAccepted.values().iterator();
+        while (lastAcceptedIt.hasNext()) {
+            if (now - lastAcceptedIt.next() >= dedupWindowMs) {
+                lastAcceptedIt.remove();
+            }
+        }
+        removeExpired(ruleWindows, now);
+        removeExpired(notifierWindows, now);
+        return result;
+    }
+
+    /**
+     * Undoes the acceptance of a notification which could not be queued, so that it is not suppressed
+     * when it is sent again.
+     */
+    public synchronized void release(String notifierName, Notification notification) {
+        if (!dedupFields.isEmpty()) {
+            lastAccepted.remove(dedupKey(notifierName, notification));
+        }
+        if (maxPerRule > 0 && notification.getRuleId() != null) {
+            release(ruleWindows.get(notifierName + "/" + notification.getRuleId()));
+        }
+        if (maxPerNotifier > 0) {
+            release(notifierWindows.get(notifierName));
+        }
+    }
+
+    public long getDigestIntervalMs() {
+        return digestIntervalMs;
+    }
+
+    /**
+     * Returns the counters of the suppressed notifications and of the digests.
+     */
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
+    private void suppress(String notifierName, Notification notification, long now) {
+        LOG.debug("Suppressing notification {}", notification);
+        if (digestIntervalMs <= 0) {
+            return;
+        }
+        String key = notifierName + "/" + notification.getRuleId();
+        Digest digest = digests.get(key);
+        if (digest == null) {
+            digest = new Digest(notifierName, notification, now);
+            digests.put(key, digest);
+        }
+        digest.count++;
+        digest.end = now;
+        if (notification.getEventIds() != null) {
+            for (String eventId : notification.getEventIds()) {
+                if (digest.eventIds.size() >= MAX_DIGEST_EVENT_IDS) {
+                    break;
+                }
+                digest.eventIds.add(eventId);
+            }
+        }
+    }
+
+    private Notification toNotification(Digest digest) {
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        if (digest.first.getFieldsAndValues() != null) {
+            fieldsAndValues.putAll(digest.first.getFieldsAndValues());
+        }
+        fieldsAndValues.put(FIELD_SUPPRESSED_COUNT, digest.count);
+        fieldsAndValues.put(FIELD_DIGEST_START_TS, digest.start);
+        fieldsAndValues.put(FIELD_DIGEST_END_TS, digest.end);
+        return new NotificationImpl.Builder(fieldsAndValues)
+                .eventIds(digest.eventIds)
+                .dataSourceIds(digest.first.getDataSourceIds())
+                .ruleId(digest.first.getRuleId())
+                .notifierName(digest.notifierName)
+                .build();
+    }
+
+    private String dedupKey(String notifierName, Notification notification) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(notifierName).append('/').append(notification.getRuleId());
+        Map<String, Object> fieldsAndValues = notification.getFieldsAndValues();
+        for (String field : dedupFields) {
+            sb.append('/').append(fieldsAndValues != null ? fieldsAndValues.get(field) : null);
+        }
+        return sb.toString();
+    }
+
+    private void release(RateWindow window) {
+        if (window != null && window.count > 0) {
+            window.count--;
+        }
+    }
+
+    // the current rate window of the key, a new one if the previous has elapsed
+    private RateWindow getWindow(Map<String, RateWindow> windows, String key, long now) {
+        RateWindow window = windows.get(key);
+        if (window == null) {
+            window = new RateWindow();
+            window.start = now;
+            windows.put(key, window);
+        } else if (now - window.start >= rateWindowMs) {
+            window.start = now;
+            window.count = 0;
+        }
+        return window;
+    }
+
+    private void removeExpired(Map<String, RateWindow> windows, long now) {
+        Iterator<RateWindow> it = windows.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().start >= rateWindowMs) {
+                it.remove();
+            }
+        }
+    }
+
+    private static long getLong(Map<String, Object> config, String key, long defaultValue) {
+        Object value = config.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+}
@@ -63,4 +63,9 @@ public interface Criteria<T> {
      * If the results should be in descending order
      */
     boolean isDescending();
+
+    /**
+     * The token of the page to return, from a previous {@link Page}, or null for the first page.
+     */
+    String pageToken();
 }
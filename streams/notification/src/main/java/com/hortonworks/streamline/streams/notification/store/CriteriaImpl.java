@@ -31,6 +31,7 @@ public class CriteriaImpl<T> implements Criteria<T> {
     private long startTs;
     private long endTs;
     private boolean descending;
+    private String pageToken;
 
     public static class FieldImpl implements Criteria.Field {
         private final String name;
@@ -94,6 +95,11 @@ public class CriteriaImpl<T> implements Criteria<T> {
         return this;
     }
 
+    public CriteriaImpl<T> setPageToken(String pageToken) {
+        this.pageToken = pageToken;
+        return this;
+    }
+
     @Override
     public List<Field> fieldRestrictions() {
         return fieldRestrictions;
@@ -119,6 +125,11 @@ public class CriteriaImpl<T> implements Criteria<T> {
         return descending;
     }
 
+    @Override
+    public String pageToken() {
+        return pageToken;
+    }
+
     @Override
     public String toString() {
         return "CriteriaImpl{" +
@@ -127,6 +138,7 @@ public class CriteriaImpl<T> implements Criteria<T> {
                 ", numRows=" + numRows +
                 ", startTs=" + startTs +
                 ", endTs=" + endTs +
+                ", pageToken='" + pageToken + '\'' +
                 '}';
     }
 }
@@ -45,6 +45,35 @@ public interface NotificationStore {
      */
     void store(Notification notification);
 
+    /**
+     * Store a batch of notifications in the notification store. Implementations
+     * can override it to write the notifications with fewer calls to the data store.
+     *
+     * @param notifications the notification objects
+     */
+    default void store(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            store(notification);
+        }
+    }
+
+    /**
+     * Flush the writes buffered by the notification store, the notifications
+     * stored before the call are durable once it returns. Does nothing for
+     * stores which do not buffer writes.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Removes the notifications older than the retention period of the store along with
+     * the index entries left without a notification, and returns the number of removed rows.
+     * Does nothing for stores which retain the notifications forever.
+     */
+    default long sweep() {
+        return 0;
+    }
+
     /**
      * Look up a notification object based on notification id.
      *
@@ -59,6 +88,15 @@ public interface NotificationStore {
      */
     List<Notification> getNotifications(List<String> notificationIds);
 
+    /**
+     * Look up notification objects from store based on notification id, with only the
+     * given fields. The notifications are returned in the order of the ids, with null
+     * for the ids which are not found.
+     */
+    default List<Notification> getNotifications(List<String> notificationIds, List<String> fieldNames) {
+        return getNotifications(notificationIds);
+    }
+
     /**
      * Look up an event from the notification store by id.
      *
@@ -72,6 +110,15 @@ public interface NotificationStore {
      */
     List<StreamlineEvent> getEvents(List<String> eventIds);
 
+    /**
+     * Look up events from the notification store based on event id, with only the
+     * given fields. The events are returned in the order of the ids, with null
+     * for the ids which are not found.
+     */
+    default List<StreamlineEvent> getEvents(List<String> eventIds, List<String> fieldNames) {
+        return getEvents(eventIds);
+    }
+
 
     /**
      * <p>
@@ -83,6 +130,15 @@ public interface NotificationStore {
      */
     <T> List<T> findEntities(Criteria<T> criteria);
 
+    /**
+     * Returns a page of entities from the store based on some criteria, the number
+     * of rows of the criteria being the page size. The next page is returned for
+     * the criteria with the token of this page.
+     */
+    default <T> Page<T> findEntitiesPage(Criteria<T> criteria) {
+        return new Page<>(findEntities(criteria), null);
+    }
+
     /**
      * Close connections with the data store and clean up.
      */
@@ -0,0 +1,54 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.store;
+
+import java.util.List;
+
+/**
+ * A page of entities returned by the notification store, along with the token
+ * for getting the next page via {@link CriteriaImpl#setPageToken(String)}.
+ */
+public class Page<T> {
+    private final List<T> entities;
+    private final String nextPageToken;
+
+    public Page(List<T> entities, String nextPageToken) {
+        this.entities = entities;
+        this.nextPageToken = nextPageToken;
+    }
+
+    /**
+     * The entities of the page.
+     */
+    public List<T> getEntities() {
+        return entities;
+    }
+
+    /**
+     * The token of the next page, or null if this is the last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "entities=" + entities +
+                ", nextPageToken='" + nextPageToken + '\'' +
+                '}';
+    }
+}
@@ -19,11 +19,14 @@ package com.hortonworks.streamline.streams.notification.store.hbase;
 
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
 import com.hortonworks.streamline.streams.notification.store.Criteria;
 import com.hortonworks.streamline.streams.notification.store.NotificationStore;
 import com.hortonworks.streamline.streams.notification.store.NotificationStoreException;
+import com.hortonworks.streamline.streams.notification.store.Page;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.DatasourceNotificationMapper;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.DatasourceStatusNotificationMapper;
+import com.hortonworks.streamline.streams.notification.store.hbase.mappers.Mapper;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.StreamlineEventMapper;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.NotificationIndexMapper;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.NotificationMapper;
@@ -32,15 +35,25 @@ import com.hortonworks.streamline.streams.notification.store.hbase.mappers.Notif
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.RuleNotificationMapper;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.RuleStatusNotificationMapper;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.TableMutation;
+import com.hortonworks.streamline.streams.notification.store.hbase.mappers.TableMutationImpl;
 import com.hortonworks.streamline.streams.notification.store.hbase.mappers.TimestampNotificationMapper;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.slf4j.Logger;
@@ -49,17 +62,54 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Notification store implementation with HBase as the underlying storage.
+ * <p>
+ * With {@link #BUFFERED_WRITES} enabled, the writes to each table go through a {@link BufferedMutator}
+ * shared by all threads, which is flushed when its buffer is full, every {@link #FLUSH_INTERVAL_MS}
+ * and on {@link #flush()}. The reads flush the pending writes first so that they see them.
+ * </p>
+ * <p>
+ * With {@link #TTL_SECS} set, the cells of a notification and of its index rows expire once the notification
+ * is older than the ttl. A sweeper run every {@link #SWEEP_INTERVAL_MS} removes the notifications written before
+ * the ttl was set and the index rows left without a notification, so that the index scans only go over the retained
+ * notifications, and the column families can be given the same ttl with {@link #FAMILY_TTL}.
+ * </p>
+ * <p>
+ * The sweeper scans all the index tables and the family ttl alters the tables, so they only run in a store
+ * initialized with {@link #RETENTION_TASKS} enabled, which should be a single admin process rather than the
+ * stores of the notification bolts.
+ * </p>
  */
 public class HBaseNotificationStore implements NotificationStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(HBaseNotificationStore.class);
 
+    public static final String BUFFERED_WRITES = "notification.store.buffered.writes";
+    public static final String WRITE_BUFFER_SIZE = "notification.store.write.buffer.size";
+    public static final String FLUSH_INTERVAL_MS = "notification.store.flush.interval.ms";
+    private static final long DEFAULT_WRITE_BUFFER_SIZE = 2 * 1024 * 1024;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+    private static final int MAX_STATUS_UPDATE_ATTEMPTS = 5;
+
+    public static final String TTL_SECS = "notification.store.ttl.secs";
+    public static final String RETENTION_TASKS = "notification.store.retention.tasks";
+    public static final String FAMILY_TTL = "notification.store.ttl.families";
+    public static final String SWEEP_INTERVAL_MS = "notification.store.sweep.interval.ms";
+    private static final long DEFAULT_SWEEP_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int SWEEP_BATCH_SIZE = 1000;
+
     private Configuration configuration;
     private Connection connection;
     /**
@@ -86,6 +136,21 @@ public class HBaseNotificationStore implements NotificationStore {
 
     private HBaseScanConfigBuilder hBaseScanConfigBuilder;
 
+    /**
+     * A map of table name to the BufferedMutator used for writing, when writes are buffered.
+     * BufferedMutator instances are thread safe.
+     */
+    private final Map<String, BufferedMutator> mutators = new HashMap<>();
+
+    private ScheduledExecutorService flushExecutor;
+
+    /**
+     * The retention of the notifications in millis, 0 to retain them forever.
+     */
+    private long ttlMs;
+
+    private ScheduledExecutorService sweepExecutor;
+
     @Override
     public void init(Map<String, Object> config) {
         try {
@@ -94,10 +159,32 @@ public class HBaseNotificationStore implements NotificationStore {
             /*
              * Override with the passed config.
              */
+            boolean bufferedWrites = false;
+            long writeBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
+            long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+            boolean retentionTasks = false;
+            boolean familyTtl = false;
+            long sweepIntervalMs = DEFAULT_SWEEP_INTERVAL_MS;
             if (config != null) {
                 LOG.info("Overriding default HBase config with {}", config);
                 for (Map.Entry<String, ?> entry : config.entrySet()) {
-                    configuration.set(entry.getKey(), (String) entry.getValue());
+                    if (BUFFERED_WRITES.equals(entry.getKey())) {
+                        bufferedWrites = Boolean.parseBoolean(String.valueOf(entry.getValue()));
+                    } else if (WRITE_BUFFER_SIZE.equals(entry.getKey())) {
+                        writeBufferSize = Long.parseLong(String.valueOf(entry.getValue()));
+                    } else if (FLUSH_INTERVAL_MS.equals(entry.getKey())) {
+                        flushIntervalMs = Long.parseLong(String.valueOf(entry.getValue()));
+                    } else if (TTL_SECS.equals(entry.getKey())) {
+                        ttlMs = TimeUnit.SECONDS.toMillis(Long.parseLong(String.valueOf(entry.getValue())));
+                    } else if (RETENTION_TASKS.equals(entry.getKey())) {
+                        retentionTasks = Boolean.parseBoolean(String.valueOf(entry.getValue()));
+                    } else if (FAMILY_TTL.equals(entry.getKey())) {
+                        familyTtl = Boolean.parseBoolean(String.valueOf(entry.getValue()));
+                    } else if (SWEEP_INTERVAL_MS.equals(entry.getKey())) {
+                        sweepIntervalMs = Long.parseLong(String.valueOf(entry.getValue()));
+                    } else {
+                        configuration.set(entry.getKey(), (String) entry.getValue());
+                    }
                 }
             }
             connection = ConnectionFactory.createConnection(configuration);
@@ -119,6 +206,13 @@ public class HBaseNotificationStore implements NotificationStore {
 
             hBaseScanConfigBuilder = new HBaseScanConfigBuilder();
             hBaseScanConfigBuilder.addMappers(Notification.class, notificationIndexMappers);
+
+            if (bufferedWrites) {
+                initBufferedWrites(writeBufferSize, flushIntervalMs);
+            }
+            if (ttlMs > 0 && retentionTasks) {
+                initRetention(familyTtl, sweepIntervalMs);
+            }
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -128,16 +222,226 @@ public class HBaseNotificationStore implements NotificationStore {
     public void store(Notification notification) {
         try {
             LOG.debug("Storing notification {} in HBase", notification);
-            store(notificationMapper.tableMutations(notification));
+            write(setTtl(notificationMapper.tableMutations(notification), notification));
         } catch (IOException ex) {
             throw new NotificationStoreException("Error storing notification, id: " + notification.getId(), ex);
         }
     }
 
-    private void store(List<TableMutation> tableMutations) throws IOException {
+    @Override
+    public void store(List<Notification> notifications) {
+        try {
+            LOG.debug("Storing {} notifications in HBase", notifications.size());
+            // merge the mutations of the notifications, so that each table is written once
+            Map<String, TableMutationImpl> mutationsByTable = new LinkedHashMap<>();
+            for (Notification notification : notifications) {
+                for (TableMutation tm : setTtl(notificationMapper.tableMutations(notification), notification)) {
+                    TableMutationImpl merged = mutationsByTable.get(tm.tableName());
+                    if (merged == null) {
+                        merged = new TableMutationImpl(tm.tableName(), new ArrayList<>(), new ArrayList<>());
+                        mutationsByTable.put(tm.tableName(), merged);
+                    }
+                    merged.updates().addAll(tm.updates());
+                    merged.deletes().addAll(tm.deletes());
+                }
+            }
+            write(new ArrayList<TableMutation>(mutationsByTable.values()));
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error storing " + notifications.size() + " notifications", ex);
+        }
+    }
+
+    private void initBufferedWrites(long writeBufferSize, long flushIntervalMs) throws IOException {
+        LOG.info("Buffering writes, write buffer size {}, flush interval {} ms", writeBufferSize, flushIntervalMs);
+        for (String tableName : tables.keySet()) {
+            BufferedMutatorParams params = new BufferedMutatorParams(TableName.valueOf(tableName))
+                    .writeBufferSize(writeBufferSize);
+            mutators.put(tableName, connection.getBufferedMutator(params));
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "notification-store-flusher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flushExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (NotificationStoreException ex) {
+                    LOG.error("Error flushing the buffered writes", ex);
+                }
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void initRetention(boolean familyTtl, long sweepIntervalMs) throws IOException {
+        LOG.info("Retaining notifications for {} ms, sweep interval {} ms", ttlMs, sweepIntervalMs);
+        if (familyTtl) {
+            setFamilyTtl();
+        }
+        if (sweepIntervalMs > 0) {
+            sweepExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "notification-store-sweeper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sweepExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sweep();
+                    } catch (RuntimeException ex) {
+                        LOG.error("Error sweeping the notification store", ex);
+                    }
+                }
+            }, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sets the ttl of the column families of the tables, so that the expired cells are dropped by
+     * the compactions whatever wrote them. Failures are logged since the cells written by the store
+     * expire anyway.
+     */
+    private void setFamilyTtl() {
+        int ttlSecs = (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toSeconds(ttlMs));
+        try (Admin admin = connection.getAdmin()) {
+            for (String tableName : tables.keySet()) {
+                TableName name = TableName.valueOf(tableName);
+                for (HColumnDescriptor family : admin.getTableDescriptor(name).getColumnFamilies()) {
+                    if (family.getTimeToLive() != ttlSecs) {
+                        LOG.info("Setting ttl of column family {} of table {} to {} secs",
+                                family.getNameAsString(), tableName, ttlSecs);
+                        family.setTimeToLive(ttlSecs);
+                        admin.modifyColumn(name, family);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn("Could not set the ttl of the column families", ex);
+        }
+    }
+
+    /**
+     * Sets the ttl of the puts so that the cells expire once the notification is older than the retention.
+     */
+    private List<TableMutation> setTtl(List<TableMutation> tableMutations, Notification notification) {
+        if (ttlMs > 0) {
+            long ttl = remainingTtl(notification);
+            for (TableMutation tm : tableMutations) {
+                for (Put put : tm.updates()) {
+                    put.setTTL(ttl);
+                }
+            }
+        }
+        return tableMutations;
+    }
+
+    private long remainingTtl(Notification notification) {
+        return Math.max(1, ttlMs - (System.currentTimeMillis() - notification.getTs()));
+    }
+
+    /**
+     * Deletes the notifications older than the ttl, found through the timestamp index, then the
+     * index rows whose notification no longer exists.
+     */
+    @Override
+    public long sweep() {
+        if (ttlMs <= 0) {
+            return 0;
+        }
+        LOG.debug("Sweeping the notification store");
+        long removed = 0;
+        try {
+            flush();
+            Table notificationTable = tables.get(notificationMapper.getTableName()).get();
+            byte[] expiredBefore = String.valueOf(System.currentTimeMillis() - ttlMs).getBytes(StandardCharsets.UTF_8);
+            for (NotificationIndexMapper indexMapper : notificationIndexMappers) {
+                if (indexMapper instanceof TimestampNotificationMapper) {
+                    removed += sweepIndex(indexMapper, new Scan(HConstants.EMPTY_START_ROW, expiredBefore), notificationTable, true);
+                }
+            }
+            for (NotificationIndexMapper indexMapper : notificationIndexMappers) {
+                removed += sweepIndex(indexMapper, new Scan(), notificationTable, false);
+            }
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error sweeping the notification store", ex);
+        }
+        LOG.debug("Removed {} rows from the notification store", removed);
+        return removed;
+    }
+
+    /**
+     * Deletes the notifications the scanned index rows refer to if expired is set, otherwise the
+     * index rows whose notification does not exist.
+     */
+    private long sweepIndex(NotificationIndexMapper indexMapper, Scan scan, Table notificationTable,
+                            boolean expired) throws IOException {
+        Table indexTable = tables.get(indexMapper.getTableName()).get();
+        scan.addFamily(indexMapper.getNotificationIdFamily());
+        scan.setCaching(SWEEP_BATCH_SIZE);
+        long removed = 0;
+        try (ResultScanner scanner = indexTable.getScanner(scan)) {
+            List<Result> batch;
+            while (!(batch = Arrays.asList(scanner.next(SWEEP_BATCH_SIZE))).isEmpty()) {
+                List<Get> gets = new ArrayList<>(batch.size());
+                for (Result result : batch) {
+                    gets.add(new Get(indexMapper.getNotificationId(result).getBytes(StandardCharsets.UTF_8)));
+                }
+                List<Delete> deletes = new ArrayList<>();
+                if (expired) {
+                    for (Get get : gets) {
+                        deletes.add(new Delete(get.getRow()));
+                    }
+                    notificationTable.delete(deletes);
+                } else {
+                    boolean[] exists = notificationTable.existsAll(gets);
+                    for (int i = 0; i < exists.length; ++i) {
+                        if (!exists[i]) {
+                            deletes.add(new Delete(batch.get(i).getRow()));
+                        }
+                    }
+                    if (!deletes.isEmpty()) {
+                        LOG.debug("Deleting {} orphaned rows of table {}", deletes.size(), indexMapper.getTableName());
+                        indexTable.delete(deletes);
+                    }
+                }
+                removed += deletes.size();
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void flush() {
+        for (Map.Entry<String, BufferedMutator> entry : mutators.entrySet()) {
+            try {
+                entry.getValue().flush();
+            } catch (IOException ex) {
+                throw new NotificationStoreException("Error flushing writes to table " + entry.getKey(), ex);
+            }
+        }
+    }
+
+    private void write(List<TableMutation> tableMutations) throws IOException {
         for (TableMutation tm : tableMutations) {
             LOG.debug("Insert/Update {} row(s), Delete {} row(s) in table {}",
                       tm.updates().size(), tm.deletes().size(), tm.tableName());
+            BufferedMutator mutator = mutators.get(tm.tableName());
+            if (mutator != null) {
+                List<Mutation> mutations = new ArrayList<>(tm.updates().size() + tm.deletes().size());
+                mutations.addAll(tm.updates());
+                mutations.addAll(tm.deletes());
+                mutator.mutate(mutations);
+                continue;
+            }
             Table table = tables.get(tm.tableName()).get();
             if (!tm.updates().isEmpty()) {
                 table.put(tm.updates());
@@ -151,6 +455,7 @@ public class HBaseNotificationStore implements NotificationStore {
     @Override
     public Notification getNotification(String notificationId) {
         try {
+            flush();
             String tableName = notificationMapper.getTableName();
             LOG.debug("getting notification with notificationId {} from table {}", notificationId, tableName);
             Get get = new Get(notificationId.getBytes(StandardCharsets.UTF_8));
@@ -163,16 +468,18 @@ public class HBaseNotificationStore implements NotificationStore {
 
     @Override
     public List<Notification> getNotifications(List<String> notificationIds) {
-        List<Notification> notifications = new ArrayList<>();
-        for (String notificationId : notificationIds) {
-            notifications.add(getNotification(notificationId));
-        }
-        return notifications;
+        return getNotifications(notificationIds, null);
+    }
+
+    @Override
+    public List<Notification> getNotifications(List<String> notificationIds, List<String> fieldNames) {
+        return getEntities(notificationMapper, notificationIds, fieldNames);
     }
 
     @Override
     public StreamlineEvent getEvent(String eventId) {
         try {
+            flush();
             String tableName = eventMapper.getTableName();
             LOG.debug("getting event with eventId {} from table {}", eventId, tableName);
             Get get = new Get(eventId.getBytes(StandardCharsets.UTF_8));
@@ -185,47 +492,122 @@ public class HBaseNotificationStore implements NotificationStore {
 
     @Override
     public List<StreamlineEvent> getEvents(List<String> eventIds) {
-        List<StreamlineEvent> events = new ArrayList<>();
-        for (String eventId : eventIds) {
-            events.add(getEvent(eventId));
+        return getEvents(eventIds, null);
+    }
+
+    @Override
+    public List<StreamlineEvent> getEvents(List<String> eventIds, List<String> fieldNames) {
+        return getEntities(eventMapper, eventIds, fieldNames);
+    }
+
+    /*
+     * Reads the rows of the given keys with a single multi get, the entities are
+     * returned in the order of the keys, with null for the rows not found.
+     */
+    private <T> List<T> getEntities(Mapper<T> mapper, List<String> rowKeys, List<String> fieldNames) {
+        String tableName = mapper.getTableName();
+        try {
+            flush();
+            LOG.debug("getting rows {} with fields {} from table {}", rowKeys, fieldNames, tableName);
+            List<Get> gets = new ArrayList<>(rowKeys.size());
+            for (String rowKey : rowKeys) {
+                gets.add(mapper.get(rowKey, fieldNames));
+            }
+            Result[] results = tables.get(tableName).get().get(gets);
+            List<T> entities = new ArrayList<>(results.length);
+            for (Result result : results) {
+                entities.add(result == null || result.isEmpty() ? null : mapper.entity(result));
+            }
+            return entities;
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error getting rows " + rowKeys + " from table " + tableName, ex);
         }
-        return events;
     }
 
     @Override
     public <T> List<T> findEntities(Criteria<T> criteria) {
+        return findEntitiesPage(criteria).getEntities();
+    }
+
+    /**
+     * Scans a page of the index table matching the criteria, the non indexed fields being filtered by the
+     * region servers. The page token is the row key of the last row of the previous page, the scan starts
+     * from it and skips it.
+     */
+    @Override
+    public <T> Page<T> findEntitiesPage(Criteria<T> criteria) {
         List<T> entities = new ArrayList<>();
+        String nextPageToken = null;
         LOG.debug("Finding entities from HBaseNotificationStore, Criteria {}", criteria);
         try {
+            flush();
             HBaseScanConfig<T> scanConfig = hBaseScanConfigBuilder.getScanConfig(criteria);
             LOG.debug("HBaseScanConfig for scan {}", scanConfig);
             if (scanConfig != null) {
                 // From start to end row
                 byte[] startRow = scanConfig.getStartRow();
                 byte[] stopRow = scanConfig.getStopRow();
+                String pageToken = criteria.pageToken();
+                byte[] lastRow = pageToken != null ? decodePageToken(pageToken) : null;
                 Scan scan;
                 if(criteria.isDescending()) {
-                    scan = new Scan(stopRow, startRow);
+                    scan = new Scan(lastRow != null ? lastRow : stopRow, startRow);
                     scan.setReversed(true);
                 } else {
-                    scan = new Scan(startRow, stopRow);
+                    scan = new Scan(lastRow != null ? lastRow : startRow, stopRow);
                 }
                 scan.setFilter(scanConfig.filterList());
-                ResultScanner scanner = tables.get(scanConfig.getMapper().getTableName()).get().getScanner(scan);
-                for (Result result : scanner) {
-                    entities.add(scanConfig.getMapper().entity(result));
+                int numRows = scanConfig.getNumRows();
+                // fetch the page in a single rpc
+                scan.setCaching(numRows + 2);
+                try (ResultScanner scanner = tables.get(scanConfig.getMapper().getTableName()).get().getScanner(scan)) {
+                    byte[] lastEntityRow = null;
+                    for (Result result : scanner) {
+                        if (lastRow != null && Arrays.equals(lastRow, result.getRow())) {
+                            continue;
+                        }
+                        if (entities.size() == numRows) {
+                            nextPageToken = encodePageToken(lastEntityRow);
+                            break;
+                        }
+                        entities.add(scanConfig.getMapper().entity(result));
+                        lastEntityRow = result.getRow();
+                    }
                 }
             }
         } catch (IOException ex) {
             throw new NotificationStoreException("Error during scan", ex);
         }
 
-        return entities;
+        return new Page<>(entities, nextPageToken);
+    }
+
+    private static String encodePageToken(byte[] row) {
+        return Base64.getUrlEncoder().encodeToString(row);
+    }
+
+    private static byte[] decodePageToken(String pageToken) {
+        try {
+            return Base64.getUrlDecoder().decode(pageToken);
+        } catch (IllegalArgumentException ex) {
+            throw new NotificationStoreException("Invalid page token " + pageToken, ex);
+        }
     }
 
     @Override
     public void close() {
         try {
+            if (flushExecutor != null) {
+                flushExecutor.shutdown();
+            }
+            if (sweepExecutor != null) {
+                sweepExecutor.shutdownNow();
+            }
+            for (Map.Entry<String, BufferedMutator> entry : mutators.entrySet()) {
+                LOG.debug("Closing buffered mutator of table {}", entry.getKey());
+                // flushes the pending writes
+                entry.getValue().close();
+            }
             for (ThreadLocal<Table> table : tables.values()) {
                 LOG.debug("Closing table {}", table);
                 table.get().close();
@@ -240,13 +622,73 @@ public class HBaseNotificationStore implements NotificationStore {
     @Override
     public Notification updateNotificationStatus(String notificationId, Notification.Status status) {
         try {
-            store(notificationMapper.status(getNotification(notificationId), status));
-            return getNotification(notificationId);
+            for (int attempt = 1; ; ++attempt) {
+                Notification notification = getNotification(notificationId);
+                if (notification == null) {
+                    throw new NotificationStoreException("Notification not found, id: " + notificationId);
+                }
+                if (notification.getStatus() == status) {
+                    return notification;
+                }
+                if (checkAndUpdateStatus(notification, status)) {
+                    return new NotificationImpl.Builder(notification).status(status).build();
+                }
+                if (attempt >= MAX_STATUS_UPDATE_ATTEMPTS) {
+                    throw new NotificationStoreException("Status of notification-id: " + notificationId
+                            + " changed concurrently " + attempt + " times");
+                }
+                LOG.debug("Status of notification {} changed concurrently, retrying", notificationId);
+            }
         } catch (IOException ex) {
             throw new NotificationStoreException("Error updating status, notification-id: " + notificationId, ex);
         }
     }
 
+    /*
+     * Updates the status of the notification row only if it is still the status of the given notification,
+     * so that concurrent updates do not leave stale status index rows. The index rows are then updated with
+     * a single batch per index table. Returns false if the status was changed concurrently.
+     */
+    private boolean checkAndUpdateStatus(Notification notification, Notification.Status status) throws IOException {
+        String tableName = notificationMapper.getTableName();
+        List<byte[]> statusColumn = notificationMapper.mapMemberValue("status", notification.getStatus().toString());
+        List<TableMutation> indexMutations = new ArrayList<>();
+        Put statusPut = null;
+        for (TableMutation tm : notificationMapper.status(notification, status)) {
+            if (tableName.equals(tm.tableName())) {
+                statusPut = tm.updates().get(0);
+            } else {
+                indexMutations.add(tm);
+            }
+        }
+        setTtl(indexMutations, notification);
+        if (ttlMs > 0) {
+            statusPut.setTTL(remainingTtl(notification));
+        }
+        Table table = tables.get(tableName).get();
+        if (!table.checkAndPut(statusPut.getRow(), statusColumn.get(0), statusColumn.get(1), statusColumn.get(2), statusPut)) {
+            return false;
+        }
+        if (!mutators.isEmpty()) {
+            write(indexMutations);
+            return true;
+        }
+        for (TableMutation tm : indexMutations) {
+            List<Row> rows = new ArrayList<>(tm.updates().size() + tm.deletes().size());
+            rows.addAll(tm.deletes());
+            rows.addAll(tm.updates());
+            if (!rows.isEmpty()) {
+                try {
+                    tables.get(tm.tableName()).get().batch(rows, new Object[rows.size()]);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while updating table " + tm.tableName(), ex);
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Return a {@link ThreadLocal} wrapped HTable
      */
@@ -20,6 +20,7 @@ package com.hortonworks.streamline.streams.notification.store.hbase.mappers;
 import com.hortonworks.streamline.streams.notification.Notification;
 import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
 import com.hortonworks.streamline.streams.notification.store.hbase.Serializer;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -174,6 +175,21 @@ public abstract class AbstractNotificationMapper implements Mapper<Notification>
         return notification;
     }
 
+    @Override
+    public Get get(String rowKey, List<String> fieldNames) {
+        Get get = new Get(rowKey.getBytes(CHARSET));
+        if (fieldNames != null) {
+            // the other members are needed to build the notification
+            for (byte[] cf : Arrays.asList(CF_STATUS, CF_NOTIFIER_NAME, CF_EVENTIDS, CF_DATASOURCE_IDS, CF_RULEID, CF_TIMESTAMP)) {
+                get.addFamily(cf);
+            }
+            for (String fieldName : fieldNames) {
+                get.addColumn(CF_FIELDS, fieldName.getBytes(CHARSET));
+            }
+        }
+        return get;
+    }
+
     public List<TableMutation> status(Notification notification, Notification.Status status) {
         List<TableMutation> tableMutations = new ArrayList<>();
         for (byte[] rowKey : getRowKeys(notification)) {
@@ -17,8 +17,10 @@
 
 package com.hortonworks.streamline.streams.notification.store.hbase.mappers;
 
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Result;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -57,4 +59,12 @@ public interface Mapper<T> {
      * </p>
      */
     List<byte[]> mapMemberValue(String memberName, String value);
+
+    /**
+     * Returns the Get for reading the row of the given key, with only the given
+     * fields of the entity, or all of them if fieldNames is null.
+     */
+    default Get get(String rowKey, List<String> fieldNames) {
+        return new Get(rowKey.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -41,8 +41,18 @@ public abstract class NotificationIndexMapper extends AbstractNotificationMapper
         put.addColumn(CF_NOTIFICATION_ID, notification.getId().getBytes(CHARSET), CV_DEFAULT);
     }
 
+    /**
+     * Returns the column family holding the id of the notification an index row refers to.
+     */
+    public byte[] getNotificationIdFamily() {
+        return CF_NOTIFICATION_ID.clone();
+    }
+
+    /**
+     * Returns the id of the notification the index row refers to.
+     */
     @Override
-    protected String getNotificationId(Result result) {
+    public String getNotificationId(Result result) {
         return Bytes.toString(result.getFamilyMap(CF_NOTIFICATION_ID).firstEntry().getKey());
     }
 
@@ -19,6 +19,7 @@ package com.hortonworks.streamline.streams.notification.store.hbase.mappers;
 
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
 
@@ -54,6 +55,18 @@ public class StreamlineEventMapper implements Mapper<StreamlineEvent> {
         return new StreamlineEventImpl(fieldsAndValues, dataSourceId, id);
     }
 
+    @Override
+    public Get get(String rowKey, List<String> fieldNames) {
+        Get get = new Get(rowKey.getBytes(StandardCharsets.UTF_8));
+        if (fieldNames != null) {
+            get.addFamily(CF_DATASOURCE_ID);
+            for (String fieldName : fieldNames) {
+                get.addColumn(CF_FIELDS, fieldName.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return get;
+    }
+
     @Override
     public String getTableName() {
         return TABLE_NAME;
@@ -0,0 +1,569 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.store.local;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
+import com.hortonworks.streamline.streams.notification.store.Criteria;
+import com.hortonworks.streamline.streams.notification.store.NotificationStore;
+import com.hortonworks.streamline.streams.notification.store.NotificationStoreException;
+import com.hortonworks.streamline.streams.notification.store.Page;
+import com.hortonworks.streamline.streams.notification.store.hbase.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * An embedded notification store, for single node deployments and tests, which keeps the notifications
+ * in memory and in an append only log file.
+ * <p>
+ * Each stored notification and each status update is appended to the log, which is replayed when the store
+ * is initialized. The log is rewritten with only the current notifications once most of its records are
+ * superseded by later ones. The notifications are indexed by notifier, rule, data source and status, ordered
+ * by timestamp, so that the same {@link Criteria} as the HBase store are served without going over all the
+ * notifications. Events are not stored, they are written to HBase by the topology itself.
+ * </p>
+ * <p>
+ * The store is single process only. The store directory is locked when the store is initialized, and a second
+ * store on the same directory, in this or another process, fails to initialize. With {@link #INSTANCE} set, the
+ * store is kept in a sub directory of that name, which the notification bolt sets to its component id and task
+ * index so that each task gets its own directory whatever the parallelism.
+ * </p>
+ * <p>
+ * The notifications kept here are only visible to the store that wrote them. The webservice, and so the UI,
+ * reads the notifications from the HBase store and does not see them.
+ * </p>
+ * It is used by setting the notification store class to this class, with {@link #DIR} as store config.
+ */
+public class LocalNotificationStore implements NotificationStore {
+    private static final Logger LOG = LoggerFactory.getLogger(LocalNotificationStore.class);
+
+    public static final String DIR = "notification.store.local.dir";
+    public static final String INSTANCE = "notification.store.local.instance";
+    private static final String LOG_FILE = "notifications.log";
+    private static final String LOCK_FILE = "notifications.lock";
+    private static final int DEFAULT_NUM_ROWS = 10;
+    // the log is compacted once it has that many records more than the current notifications
+    private static final int COMPACTION_THRESHOLD = 10000;
+
+    private static final String FIELD_NOTIFIER_NAME = "notifierName";
+    private static final String FIELD_RULE_ID = "ruleId";
+    private static final String FIELD_DATASOURCE_ID = "dataSourceId";
+    private static final String FIELD_STATUS = "status";
+
+    // record keys
+    private static final String RECORD_ID = "id";
+    private static final String RECORD_FIELDS_AND_VALUES = "fieldsAndValues";
+    private static final String RECORD_EVENT_IDS = "eventIds";
+    private static final String RECORD_DATASOURCE_IDS = "dataSourceIds";
+    private static final String RECORD_RULE_ID = "ruleId";
+    private static final String RECORD_STATUS = "status";
+    private static final String RECORD_NOTIFIER_NAME = "notifierName";
+    private static final String RECORD_TS = "ts";
+
+    private final Serializer serializer = new Serializer();
+    private final Map<String, Notification> notifications = new HashMap<>();
+    private final NavigableSet<IndexKey> timestampIndex = new TreeSet<>();
+    // index of the notifications keyed by the indexed field and its value
+    private final Map<String, Map<String, NavigableSet<IndexKey>>> indexes = new HashMap<>();
+    private File logFile;
+    private DataOutputStream logOutput;
+    private FileOutputStream logFileOutput;
+    private long logRecords;
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    /**
+     * The key of a notification in the indexes, ordered by the notification timestamp.
+     */
+    private static final class IndexKey implements Comparable<IndexKey> {
+        final long ts;
+        final String id;
+
+        IndexKey(long ts, String id) {
+            this.ts = ts;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int cmp = Long.compare(ts, other.ts);
+            return cmp != 0 ? cmp : id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IndexKey indexKey = (IndexKey) o;
+            return ts == indexKey.ts && id.equals(indexKey.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(ts) + id.hashCode();
+        }
+    }
+
+    @Override
+    public synchronized void init(Map<String, Object> config) {
+        Object dir = config != null ? config.get(DIR) : null;
+        File storeDir = dir != null ? new File(dir.toString())
+                : new File(System.getProperty("java.io.tmpdir"), "streamline-notifications");
+        Object instance = config != null ? config.get(INSTANCE) : null;
+        if (instance != null) {
+            storeDir = new File(storeDir, instance.toString());
+        }
+        LOG.info("Initializing LocalNotificationStore in {}", storeDir);
+        if (!storeDir.isDirectory() && !storeDir.mkdirs()) {
+            throw new NotificationStoreException("Could not create directory " + storeDir);
+        }
+        lock(storeDir);
+        indexes.put(FIELD_NOTIFIER_NAME, new HashMap<String, NavigableSet<IndexKey>>());
+        indexes.put(FIELD_RULE_ID, new HashMap<String, NavigableSet<IndexKey>>());
+        indexes.put(FIELD_DATASOURCE_ID, new HashMap<String, NavigableSet<IndexKey>>());
+        indexes.put(FIELD_STATUS, new HashMap<String, NavigableSet<IndexKey>>());
+        logFile = new File(storeDir, LOG_FILE);
+        try {
+            replay();
+            logFileOutput = new FileOutputStream(logFile, true);
+            logOutput = new DataOutputStream(new BufferedOutputStream(logFileOutput));
+            if (logRecords - notifications.size() > COMPACTION_THRESHOLD) {
+                compact();
+            }
+        } catch (IOException ex) {
+            unlock();
+            throw new NotificationStoreException("Error opening notification log " + logFile, ex);
+        }
+        LOG.info("Loaded {} notifications from {}", notifications.size(), logFile);
+    }
+
+    @Override
+    public synchronized void store(Notification notification) {
+        LOG.debug("Storing notification {}", notification);
+        try {
+            append(toRecord(notification));
+            logOutput.flush();
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error storing notification, id: " + notification.getId(), ex);
+        }
+        put(notification);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void store(List<Notification> notifications) {
+        LOG.debug("Storing {} notifications", notifications.size());
+        try {
+            for (Notification notification : notifications) {
+                append(toRecord(notification));
+            }
+            logOutput.flush();
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error storing " + notifications.size() + " notifications", ex);
+        }
+        for (Notification notification : notifications) {
+            put(notification);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Syncs the log to the disk.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            logOutput.flush();
+            logFileOutput.getFD().sync();
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error syncing notification log " + logFile, ex);
+        }
+    }
+
+    @Override
+    public synchronized Notification getNotification(String notificationId) {
+        return notifications.get(notificationId);
+    }
+
+    @Override
+    public synchronized List<Notification> getNotifications(List<String> notificationIds) {
+        List<Notification> result = new ArrayList<>(notificationIds.size());
+        for (String notificationId : notificationIds) {
+            result.add(notifications.get(notificationId));
+        }
+        return result;
+    }
+
+    @Override
+    public StreamlineEvent getEvent(String eventId) {
+        return null;
+    }
+
+    @Override
+    public List<StreamlineEvent> getEvents(List<String> eventIds) {
+        return new ArrayList<>(Collections.<StreamlineEvent>nCopies(eventIds.size(), null));
+    }
+
+    @Override
+    public <T> List<T> findEntities(Criteria<T> criteria) {
+        return findEntitiesPage(criteria).getEntities();
+    }
+
+    /**
+     * Goes over the notifications of the index of the first indexed field restriction, or over all the
+     * notifications ordered by timestamp if none, and returns those matching all the restrictions.
+     */
+    @Override
+    public synchronized <T> Page<T> findEntitiesPage(Criteria<T> criteria) {
+        if (!Notification.class.isAssignableFrom(criteria.clazz())) {
+            throw new NotificationStoreException("Unsupported entity class " + criteria.clazz());
+        }
+        LOG.debug("Finding entities, Criteria {}", criteria);
+        List<Criteria.Field> restrictions = criteria.fieldRestrictions() != null
+                ? criteria.fieldRestrictions() : Collections.<Criteria.Field>emptyList();
+        NavigableSet<IndexKey> index = timestampIndex;
+        for (Criteria.Field field : restrictions) {
+            if (indexes.containsKey(field.getName())) {
+                index = indexes.get(field.getName()).get(field.getValue());
+                break;
+            }
+        }
+        List<T> entities = new ArrayList<>();
+        if (index == null) {
+            return new Page<>(entities, null);
+        }
+        long endTs = criteria.endTs() != 0 ? criteria.endTs() : Long.MAX_VALUE;
+        NavigableSet<IndexKey> range = index.subSet(new IndexKey(criteria.startTs(), ""), true, new IndexKey(endTs, ""), false);
+        if (criteria.isDescending()) {
+            range = range.descendingSet();
+        }
+        if (criteria.pageToken() != null) {
+            range = range.tailSet(decodePageToken(criteria.pageToken()), false);
+        }
+        int numRows = criteria.numRows() > 0 ? criteria.numRows() : DEFAULT_NUM_ROWS;
+        IndexKey last = null;
+        for (IndexKey key : range) {
+            Notification notification = notifications.get(key.id);
+            if (!matches(notification, restrictions)) {
+                continue;
+            }
+            if (entities.size() == numRows) {
+                return new Page<>(entities, encodePageToken(last));
+            }
+            entities.add(criteria.clazz().cast(notification));
+            last = key;
+        }
+        return new Page<>(entities, null);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (logOutput != null) {
+                logOutput.close();
+            }
+        } catch (IOException ex) {
+            LOG.error("Got exception in close", ex);
+        }
+        unlock();
+    }
+
+    /*
+     * Takes an exclusive lock on the store directory, so that two stores never append to
+     * and compact the same log.
+     */
+    private void lock(File storeDir) {
+        File lockFile = new File(storeDir, LOCK_FILE);
+        try {
+            lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                lock = null;
+            }
+        } catch (IOException ex) {
+            unlock();
+            throw new NotificationStoreException("Error locking notification store directory " + storeDir, ex);
+        }
+        if (lock == null) {
+            unlock();
+            throw new NotificationStoreException("Notification store directory " + storeDir
+                    + " is in use by another store, each store needs its own directory");
+        }
+    }
+
+    private void unlock() {
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } catch (IOException ex) {
+            LOG.error("Error releasing notification store lock", ex);
+        } finally {
+            lock = null;
+            lockChannel = null;
+        }
+    }
+
+    @Override
+    public synchronized Notification updateNotificationStatus(String notificationId, Notification.Status status) {
+        Notification notification = notifications.get(notificationId);
+        if (notification == null) {
+            throw new NotificationStoreException("No notification exists for notification-id: " + notificationId);
+        }
+        if (notification.getStatus() == status) {
+            return notification;
+        }
+        Map<String, Object> record = new HashMap<>();
+        record.put(RECORD_ID, notificationId);
+        record.put(RECORD_STATUS, status.name());
+        try {
+            append(record);
+            logOutput.flush();
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error updating status, notification-id: " + notificationId, ex);
+        }
+        Notification updated = new NotificationImpl.Builder(notification).status(status).build();
+        put(updated);
+        compactIfNeeded();
+        return updated;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void replay() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        long validLength = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                byte[] bytes;
+                try {
+                    bytes = new byte[input.readInt()];
+                    input.readFully(bytes);
+                } catch (EOFException ex) {
+                    break;
+                }
+                apply((Map<String, Object>) serializer.deserialize(bytes));
+                validLength += 4 + bytes.length;
+                logRecords++;
+            }
+        }
+        if (validLength < logFile.length()) {
+            // the last record was partially written
+            LOG.warn("Truncating the partially written record at the end of {}", logFile);
+            try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+    }
+
+    private void apply(Map<String, Object> record) {
+        String id = (String) record.get(RECORD_ID);
+        if (record.containsKey(RECORD_TS)) {
+            put(toNotification(record));
+        } else {
+            Notification notification = notifications.get(id);
+            if (notification != null) {
+                put(new NotificationImpl.Builder(notification)
+                        .status(Notification.Status.valueOf((String) record.get(RECORD_STATUS))).build());
+            }
+        }
+    }
+
+    private void append(Map<String, Object> record) throws IOException {
+        byte[] bytes = serializer.serialize(record);
+        logOutput.writeInt(bytes.length);
+        logOutput.write(bytes);
+        logRecords++;
+    }
+
+    private void compactIfNeeded() {
+        if (logRecords - notifications.size() > COMPACTION_THRESHOLD && logRecords > 2L * notifications.size()) {
+            try {
+                compact();
+            } catch (IOException ex) {
+                LOG.error("Error compacting notification log {}", logFile, ex);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log with one record per notification and replaces the current one.
+     */
+    private void compact() throws IOException {
+        LOG.info("Compacting notification log {}, {} records, {} notifications", logFile, logRecords, notifications.size());
+        File compactedFile = new File(logFile.getParentFile(), LOG_FILE + ".compacted");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile)))) {
+            for (IndexKey key : timestampIndex) {
+                byte[] bytes = serializer.serialize(toRecord(notifications.get(key.id)));
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+        logOutput.close();
+        Files.move(compactedFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logFileOutput = new FileOutputStream(logFile, true);
+        logOutput = new DataOutputStream(new BufferedOutputStream(logFileOutput));
+        logRecords = notifications.size();
+    }
+
+    private void put(Notification notification) {
+        Notification previous = notifications.put(notification.getId(), notification);
+        if (previous != null) {
+            index(previous, false);
+        }
+        index(notification, true);
+    }
+
+    private void index(Notification notification, boolean add) {
+        IndexKey key = new IndexKey(notification.getTs(), notification.getId());
+        update(timestampIndex, key, add);
+        update(FIELD_NOTIFIER_NAME, notification.getNotifierName(), key, add);
+        update(FIELD_RULE_ID, notification.getRuleId(), key, add);
+        update(FIELD_STATUS, notification.getStatus().name(), key, add);
+        if (notification.getDataSourceIds() != null) {
+            for (String dataSourceId : notification.getDataSourceIds()) {
+                update(FIELD_DATASOURCE_ID, dataSourceId, key, add);
+            }
+        }
+    }
+
+    private void update(String field, String value, IndexKey key, boolean add) {
+        if (value == null) {
+            return;
+        }
+        Map<String, NavigableSet<IndexKey>> index = indexes.get(field);
+        NavigableSet<IndexKey> keys = index.get(value);
+        if (keys == null) {
+            if (!add) {
+                return;
+            }
+            keys = new TreeSet<>();
+            index.put(value, keys);
+        }
+        update(keys, key, add);
+        if (keys.isEmpty()) {
+            index.remove(value);
+        }
+    }
+
+    private void update(NavigableSet<IndexKey> keys, IndexKey key, boolean add) {
+        if (add) {
+            keys.add(key);
+        } else {
+            keys.remove(key);
+        }
+    }
+
+    private boolean matches(Notification notification, List<Criteria.Field> restrictions) {
+        for (Criteria.Field field : restrictions) {
+            String name = field.getName();
+            String value = field.getValue();
+            boolean matches;
+            if (FIELD_NOTIFIER_NAME.equals(name)) {
+                matches = value.equals(notification.getNotifierName());
+            } else if (FIELD_RULE_ID.equals(name)) {
+                matches = value.equals(notification.getRuleId());
+            } else if (FIELD_STATUS.equals(name)) {
+                matches = value.equals(notification.getStatus().name());
+            } else if (FIELD_DATASOURCE_ID.equals(name)) {
+                matches = notification.getDataSourceIds() != null && notification.getDataSourceIds().contains(value);
+            } else {
+                Object fieldValue = notification.getFieldsAndValues() != null
+                        ? notification.getFieldsAndValues().get(name) : null;
+                matches = fieldValue != null && value.equals(fieldValue.toString());
+            }
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, Object> toRecord(Notification notification) {
+        Map<String, Object> record = new HashMap<>();
+        record.put(RECORD_ID, notification.getId());
+        record.put(RECORD_FIELDS_AND_VALUES, notification.getFieldsAndValues() != null
+                ? new HashMap<>(notification.getFieldsAndValues()) : null);
+        record.put(RECORD_EVENT_IDS, notification.getEventIds() != null ? new ArrayList<>(notification.getEventIds()) : null);
+        record.put(RECORD_DATASOURCE_IDS, notification.getDataSourceIds() != null
+                ? new ArrayList<>(notification.getDataSourceIds()) : null);
+        record.put(RECORD_RULE_ID, notification.getRuleId());
+        record.put(RECORD_STATUS, notification.getStatus().name());
+        record.put(RECORD_NOTIFIER_NAME, notification.getNotifierName());
+        record.put(RECORD_TS, notification.getTs());
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Notification toNotification(Map<String, Object> record) {
+        return new NotificationImpl.Builder((Map<String, Object>) record.get(RECORD_FIELDS_AND_VALUES))
+                .id((String) record.get(RECORD_ID))
+                .eventIds((List<String>) record.get(RECORD_EVENT_IDS))
+                .dataSourceIds((List<String>) record.get(RECORD_DATASOURCE_IDS))
+                .ruleId((String) record.get(RECORD_RULE_ID))
+                .status(Notification.Status.valueOf((String) record.get(RECORD_STATUS)))
+                .notifierName((String) record.get(RECORD_NOTIFIER_NAME))
+                .timestamp((Long) record.get(RECORD_TS))
+                .build();
+    }
+
+    private static String encodePageToken(IndexKey key) {
+        String token = key.ts + ":" + key.id;
+        return Base64.getUrlEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static IndexKey decodePageToken(String pageToken) {
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+            int sep = token.indexOf(':');
+            return new IndexKey(Long.parseLong(token.substring(0, sep)), token.substring(sep + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new NotificationStoreException("Invalid page token " + pageToken, ex);
+        }
+    }
+}
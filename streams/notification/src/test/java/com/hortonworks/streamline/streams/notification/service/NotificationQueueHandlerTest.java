@@ -0,0 +1,145 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.NotificationContext;
+import com.hortonworks.streamline.streams.notification.Notifier;
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JMockit.class)
+public class NotificationQueueHandlerTest {
+
+    @Mocked
+    Notifier mockNotifier;
+
+    @Mocked
+    Notification mockNotification;
+
+    NotificationQueueHandler queueHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        queueHandler = new NotificationQueueHandler(2, ImmutableMap.<String, Object>of(
+                NotificationQueueHandler.QUEUE_SIZE, 1,
+                NotificationQueueHandler.MAX_CONCURRENCY, 1,
+                NotificationQueueHandler.INITIAL_BACKOFF_MS, 100,
+                NotificationQueueHandler.MAX_BACKOFF_MS, 1000));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queueHandler.shutdown();
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        new Expectations() {
+            {
+                mockNotification.getId();
+                returns("1", "2", "3");
+                mockNotifier.notify((Notification) any);
+                result = new Delegate() {
+                    void notify(Notification notification) throws Exception {
+                        started.countDown();
+                        done.await();
+                    }
+                };
+            }
+        };
+        queueHandler.enqueue(mockNotifier, mockNotification);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        queueHandler.enqueue(mockNotifier, mockNotification);
+        assertEquals(1, queueHandler.getQueueDepth(mockNotifier));
+        try {
+            queueHandler.enqueue(mockNotifier, mockNotification);
+            fail("The queue of the notifier is full");
+        } catch (NotificationServiceException ex) {
+            // expected
+        }
+        assertEquals(1, queueHandler.getMetrics().counter("rejected").getCount());
+        done.countDown();
+    }
+
+    @Test
+    public void testBatchFailure(@Mocked final Notification otherNotification,
+                                 @Mocked final NotificationContext mockContext) throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        new Expectations() {
+            {
+                mockNotification.getId();
+                result = "1";
+                otherNotification.getId();
+                result = "2";
+                mockNotifier.getContext();
+                result = mockContext;
+                mockNotifier.notify((List<Notification>) any);
+                result = new Delegate() {
+                    void notify(List<Notification> notifications) {
+                        // the first notification is delivered before the notifier throws
+                        queueHandler.remove("1");
+                        throw new RuntimeException("Notifier failure");
+                    }
+                };
+                mockContext.fail(anyString);
+                result = new Delegate() {
+                    void fail(String notificationId) {
+                        failed.countDown();
+                    }
+                };
+            }
+        };
+        queueHandler.enqueue(mockNotifier, Arrays.asList(mockNotification, otherNotification));
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        new Verifications() {
+            {
+                mockContext.fail("2"); times = 1;
+                mockContext.fail("1"); times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void testBackoff() throws Exception {
+        for (int attempt = 1; attempt <= 3; ++attempt) {
+            long backoff = 100 << (attempt - 1);
+            long backoffMs = queueHandler.backoffMs(attempt);
+            assertTrue(backoffMs >= backoff / 2 && backoffMs <= backoff);
+        }
+        long backoffMs = queueHandler.backoffMs(40);
+        assertTrue(backoffMs >= 500 && backoffMs <= 1000);
+    }
+}
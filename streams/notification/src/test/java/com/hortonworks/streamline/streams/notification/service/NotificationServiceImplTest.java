@@ -34,8 +34,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(JMockit.class)
 public class NotificationServiceImplTest {
@@ -94,6 +96,20 @@ public class NotificationServiceImplTest {
         };
     }
 
+    @Test
+    public void testMetrics() throws Exception {
+        NotificationServiceImpl service = new NotificationServiceImpl(
+                Collections.<String, Object>singletonMap(NotificationThrottler.MAX_PER_RULE, 1), mockNotificationStore);
+        try {
+            assertTrue(service.getMetrics().getGauges().containsKey("queue.queueDepth"));
+            assertTrue(service.getMetrics().getCounters().containsKey("queue.rejected"));
+            assertTrue(service.getMetrics().getCounters().containsKey("throttler.suppressed.rule"));
+            assertTrue(service.getMetrics().getCounters().containsKey("throttler.suppressed.duplicate"));
+        } finally {
+            service.close();
+        }
+    }
+
     @Test
     public void testDuplicateRegister() throws Exception {
         new Expectations() {
@@ -0,0 +1,120 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationThrottlerTest {
+
+    @Test
+    public void testDedup() throws Exception {
+        NotificationThrottler throttler = new NotificationThrottler(ImmutableMap.<String, Object>of(
+                NotificationThrottler.DEDUP_FIELDS, "host",
+                NotificationThrottler.DEDUP_WINDOW_MS, 1000));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 0));
+        assertFalse(throttler.accept("email", notification("1", "h1"), 500));
+        assertTrue(throttler.accept("email", notification("1", "h2"), 500));
+        assertTrue(throttler.accept("email", notification("2", "h1"), 500));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 1000));
+        assertEquals(1, throttler.getMetrics().counter("suppressed.duplicate").getCount());
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        NotificationThrottler throttler = new NotificationThrottler(ImmutableMap.<String, Object>of(
+                NotificationThrottler.MAX_PER_RULE, 2,
+                NotificationThrottler.MAX_PER_NOTIFIER, 3,
+                NotificationThrottler.RATE_WINDOW_MS, 1000));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 0));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 0));
+        assertFalse(throttler.accept("email", notification("1", "h1"), 0));
+        assertTrue(throttler.accept("email", notification("2", "h1"), 0));
+        assertFalse(throttler.accept("email", notification("3", "h1"), 0));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 1000));
+        assertEquals(1, throttler.getMetrics().counter("suppressed.rule").getCount());
+        assertEquals(1, throttler.getMetrics().counter("suppressed.notifier").getCount());
+    }
+
+    @Test
+    public void testRateLimitsAreChargedOnlyWhenAccepted() throws Exception {
+        NotificationThrottler throttler = new NotificationThrottler(ImmutableMap.<String, Object>of(
+                NotificationThrottler.MAX_PER_RULE, 2,
+                NotificationThrottler.MAX_PER_NOTIFIER, 2,
+                NotificationThrottler.RATE_WINDOW_MS, 1000));
+        assertTrue(throttler.accept("email", notification("2", "h1"), 0));
+        assertTrue(throttler.accept("email", notification("2", "h1"), 0));
+        // suppressed by the notifier limit, rule 1 is not charged
+        assertFalse(throttler.accept("email", notification("1", "h1"), 500));
+        assertFalse(throttler.accept("email", notification("1", "h1"), 600));
+        // the notifier window has elapsed, rule 1 still has its whole limit
+        assertTrue(throttler.accept("email", notification("1", "h1"), 1000));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 1000));
+        assertFalse(throttler.accept("email", notification("1", "h1"), 1000));
+        assertEquals(1, throttler.getMetrics().counter("suppressed.rule").getCount());
+        assertEquals(2, throttler.getMetrics().counter("suppressed.notifier").getCount());
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        NotificationThrottler throttler = new NotificationThrottler(ImmutableMap.<String, Object>of(
+                NotificationThrottler.DEDUP_FIELDS, "host",
+                NotificationThrottler.MAX_PER_RULE, 1,
+                NotificationThrottler.RATE_WINDOW_MS, 1000));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 0));
+        // the notification could not be queued, its replay is accepted
+        throttler.release("email", notification("1", "h1"));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 100));
+        assertFalse(throttler.accept("email", notification("1", "h2"), 100));
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        NotificationThrottler throttler = new NotificationThrottler(ImmutableMap.<String, Object>of(
+                NotificationThrottler.DEDUP_FIELDS, "host",
+                NotificationThrottler.DIGEST_INTERVAL_MS, 1000));
+        assertTrue(throttler.accept("email", notification("1", "h1"), 0));
+        assertFalse(throttler.accept("email", notification("1", "h1"), 100));
+        assertFalse(throttler.accept("email", notification("1", "h1"), 200));
+        assertTrue(throttler.drainDigests(500).isEmpty());
+
+        List<Notification> digests = throttler.drainDigests(1100);
+        assertEquals(1, digests.size());
+        Notification digest = digests.get(0);
+        assertEquals("email", digest.getNotifierName());
+        assertEquals("1", digest.getRuleId());
+        assertEquals("h1", digest.getFieldsAndValues().get("host"));
+        assertEquals(2, digest.getFieldsAndValues().get(NotificationThrottler.FIELD_SUPPRESSED_COUNT));
+        assertEquals(100L, digest.getFieldsAndValues().get(NotificationThrottler.FIELD_DIGEST_START_TS));
+        assertEquals(200L, digest.getFieldsAndValues().get(NotificationThrottler.FIELD_DIGEST_END_TS));
+        assertTrue(throttler.drainDigests(2200).isEmpty());
+    }
+
+    private Notification notification(String ruleId, String host) {
+        Map<String, Object> fieldsAndValues = Collections.<String, Object>singletonMap("host", host);
+        return new NotificationImpl.Builder(fieldsAndValues).ruleId(ruleId).notifierName("email").build();
+    }
+}
@@ -21,6 +21,7 @@ import com.hortonworks.streamline.streams.notification.Notification;
 import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
 import com.hortonworks.streamline.streams.notification.store.Criteria;
 import com.hortonworks.streamline.streams.notification.store.CriteriaImpl;
+import com.hortonworks.streamline.streams.notification.store.Page;
 import mockit.Expectations;
 import mockit.Mock;
 import mockit.MockUp;
@@ -29,12 +30,16 @@ import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.BufferedMutator;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -49,9 +54,12 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(JMockit.class)
 public class HBaseNotificationStoreTest {
@@ -77,6 +85,9 @@ public class HBaseNotificationStoreTest {
     @Mocked
     ResultScanner mockResultScanner;
 
+    @Mocked
+    BufferedMutator mockMutator;
+
 
     @Before
     public void setUp() {
@@ -123,6 +134,104 @@ public class HBaseNotificationStoreTest {
         };
     }
 
+    @Test
+    public void testBufferedStore() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(HBaseNotificationStore.BUFFERED_WRITES, "true");
+        config.put(HBaseNotificationStore.FLUSH_INTERVAL_MS, "60000");
+        HBaseNotificationStore bufferedStore = new HBaseNotificationStore();
+        bufferedStore.init(config);
+
+        bufferedStore.store(notification);
+        new Verifications() {
+            {
+                mockMutator.mutate((List<Mutation>) any); times = 8;
+                mockHTable.put((List<Put>) any); times = 0;
+                mockMutator.flush(); times = 0;
+            }
+        };
+
+        bufferedStore.flush();
+        new Verifications() {
+            {
+                // one mutator per notification, index and event table
+                mockMutator.flush(); times = 9;
+            }
+        };
+    }
+
+    @Test
+    public void testStoreWithTtl() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(HBaseNotificationStore.TTL_SECS, "3600");
+        config.put(HBaseNotificationStore.SWEEP_INTERVAL_MS, "0");
+        HBaseNotificationStore retainingStore = new HBaseNotificationStore();
+        retainingStore.init(config);
+
+        retainingStore.store(notification);
+        new Verifications() {
+            {
+                List<List<Put>> puts = new ArrayList<>();
+                mockHTable.put(withCapture(puts)); times = 8;
+                for (List<Put> tablePuts : puts) {
+                    for (Put put : tablePuts) {
+                        assertTrue(put.getTTL() > 0 && put.getTTL() <= 3600 * 1000);
+                    }
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testRetentionTasksAreOptIn() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(HBaseNotificationStore.TTL_SECS, "3600");
+        config.put(HBaseNotificationStore.FAMILY_TTL, "true");
+        HBaseNotificationStore retainingStore = new HBaseNotificationStore();
+        retainingStore.init(config);
+        new Verifications() {
+            {
+                mockConnection.getAdmin(); times = 0;
+            }
+        };
+        retainingStore.close();
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(HBaseNotificationStore.TTL_SECS, "3600");
+        config.put(HBaseNotificationStore.SWEEP_INTERVAL_MS, "0");
+        HBaseNotificationStore retainingStore = new HBaseNotificationStore();
+        retainingStore.init(config);
+
+        new Expectations() {
+            {
+                mockHTable.getScanner(withAny(new Scan()));
+                result = mockResultScanner;
+                // an expired notification in the timestamp index, no orphaned index rows
+                mockResultScanner.next(anyInt);
+                returns(new Result[]{mockResult}, new Result[0]);
+                mockResult.getFamilyMap("ni".getBytes());
+                result = familyMap("nid");
+                mockHTable.existsAll((List<Get>) any);
+                result = new boolean[0];
+            }
+        };
+        assertEquals(1, retainingStore.sweep());
+        new Verifications() {
+            {
+                List<Scan> scans = new ArrayList<>();
+                // the timestamp index for the expired notifications, then every index
+                mockHTable.getScanner(withCapture(scans)); times = 8;
+                assertTrue(scans.get(0).getStopRow().length > 0);
+                List<Delete> deletes;
+                mockHTable.delete(deletes = withCapture()); times = 1;
+                assertEquals("nid", new String(deletes.get(0).getRow(), CHARSET));
+            }
+        };
+    }
+
     @Test
     public void testGetNotification() throws Exception {
         final Map<byte[], byte[]> tsMap = new TreeMap<>(new Bytes.ByteArrayComparator());
@@ -153,6 +262,78 @@ public class HBaseNotificationStoreTest {
     }
 
 
+    @Test
+    public void testUpdateNotificationStatus() throws Exception {
+        new Expectations() {
+            {
+                mockResult.getRow();
+                result = "n123".getBytes(CHARSET);
+                mockResult.getValue("s".getBytes(), "qs".getBytes()); times = 1;
+                result = "NEW".getBytes();
+                mockResult.getFamilyMap("ts".getBytes());
+                result = familyMap("1444042473518");
+                mockResult.getFamilyMap("r".getBytes());
+                result = familyMap("ruleId");
+                mockResult.getFamilyMap("nn".getBytes());
+                result = familyMap("notifierName");
+                mockResult.getFamilyMap("d".getBytes());
+                result = familyMap("d1");
+                mockHTable.checkAndPut((byte[]) any, "s".getBytes(), "qs".getBytes(), "NEW".getBytes(), (Put) any);
+                result = true;
+            }
+        };
+
+        Notification updated = notificationStore.updateNotificationStatus("n123", Notification.Status.DELIVERED);
+        assertEquals("n123", updated.getId());
+        assertEquals(Notification.Status.DELIVERED, updated.getStatus());
+        new Verifications() {
+            {
+                // read once, the status is not read back
+                mockHTable.get(withInstanceOf(Get.class)); times = 1;
+                mockHTable.checkAndPut((byte[]) any, (byte[]) any, (byte[]) any, (byte[]) any, (Put) any); times = 1;
+                // one batch per status index table
+                mockHTable.batch((List<Row>) any, (Object[]) any); times = 3;
+            }
+        };
+    }
+
+    @Test
+    public void testGetNotifications() throws Exception {
+        final Map<byte[], byte[]> tsMap = new TreeMap<>(new Bytes.ByteArrayComparator());
+        tsMap.put("1444042473518".getBytes(), "1".getBytes());
+        new Expectations() {
+            {
+                mockHTable.get((List<Get>) any); times = 1;
+                result = new Result[]{mockResult, null};
+                mockResult.getRow(); times = 1;
+                result = "rowid".getBytes(CHARSET);
+                mockResult.getValue("s".getBytes(), "qs".getBytes()); times = 1;
+                result = "DELIVERED".getBytes();
+                mockResult.getFamilyMap("ts".getBytes()); times = 1;
+                result = tsMap;
+            }
+        };
+
+        List<Notification> notifications = notificationStore.getNotifications(Arrays.asList("n123", "n456"),
+                Arrays.asList("temp"));
+        assertEquals(2, notifications.size());
+        assertEquals("rowid", notifications.get(0).getId());
+        assertEquals(Notification.Status.DELIVERED, notifications.get(0).getStatus());
+        assertNull(notifications.get(1));
+        new Verifications() {
+            {
+                List<Get> gets;
+                mockHTable.get(gets = withCapture()); times = 1;
+                assertEquals(2, gets.size());
+                assertEquals("n123", Bytes.toString(gets.get(0).getRow()));
+                assertEquals("n456", Bytes.toString(gets.get(1).getRow()));
+                // only the requested field is fetched along with the other members
+                assertEquals(1, gets.get(0).getFamilyMap().get("f".getBytes(CHARSET)).size());
+                assertEquals(7, gets.get(0).numFamilies());
+            }
+        };
+    }
+
     @Test
     public void testFindEntities() throws Exception {
         final List<Criteria.Field> fr = new ArrayList<>();
@@ -200,4 +381,55 @@ public class HBaseNotificationStoreTest {
         };
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testFindEntitiesPage() throws Exception {
+        final List<Criteria.Field> fr = new ArrayList<>();
+        fr.add(new CriteriaImpl.FieldImpl("ruleId", "1"));
+
+        new Expectations() {
+            {
+                mockCriteria.clazz();
+                result = Notification.class;
+                mockCriteria.fieldRestrictions();
+                result = fr;
+                mockCriteria.numRows();
+                result = 1;
+                mockCriteria.pageToken();
+                returns(null, "cm93MQ==");
+                mockHTable.getScanner(withAny(new Scan()));
+                result = mockResultScanner;
+                mockResultScanner.iterator();
+                returns(Arrays.asList(mockResult, mockResult).iterator(), Arrays.asList(mockResult, mockResult).iterator());
+                mockResult.getRow();
+                returns("row1".getBytes(CHARSET), "row1".getBytes(CHARSET), "row2".getBytes(CHARSET));
+                mockResult.getFamilyMap("ni".getBytes());
+                returns(familyMap("nid1"), familyMap("nid2"));
+            }
+        };
+        Page<Notification> page = notificationStore.findEntitiesPage(mockCriteria);
+        assertEquals(1, page.getEntities().size());
+        assertEquals("nid1", page.getEntities().get(0).getId());
+        assertEquals("cm93MQ==", page.getNextPageToken());
+
+        page = notificationStore.findEntitiesPage(mockCriteria);
+        assertEquals(1, page.getEntities().size());
+        assertEquals("nid2", page.getEntities().get(0).getId());
+        assertNull(page.getNextPageToken());
+
+        new Verifications() {
+            {
+                List<Scan> scans = new ArrayList<>();
+                mockHTable.getScanner(withCapture(scans)); times = 2;
+                assertEquals(3, scans.get(0).getCaching());
+                assertEquals("row1", new String(scans.get(1).getStartRow(), CHARSET));
+                mockResultScanner.close(); times = 2;
+            }
+        };
+    }
+
+    private NavigableMap<byte[], byte[]> familyMap(String qualifier) {
+        NavigableMap<byte[], byte[]> familyMap = new TreeMap<>(new Bytes.ByteArrayComparator());
+        familyMap.put(qualifier.getBytes(CHARSET), "1".getBytes(CHARSET));
+        return familyMap;
+    }
+}
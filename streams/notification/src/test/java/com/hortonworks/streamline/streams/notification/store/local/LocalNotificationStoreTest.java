@@ -0,0 +1,165 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.store.local;
+
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
+import com.hortonworks.streamline.streams.notification.store.CriteriaImpl;
+import com.hortonworks.streamline.streams.notification.store.NotificationStoreException;
+import com.hortonworks.streamline.streams.notification.store.Page;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalNotificationStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    LocalNotificationStore notificationStore;
+
+    @Before
+    public void setUp() throws Exception {
+        notificationStore = open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        notificationStore.close();
+    }
+
+    @Test
+    public void testStore() throws Exception {
+        notificationStore.store(notification("n1", "r1", 1000));
+        Notification notification = notificationStore.getNotification("n1");
+        assertEquals("r1", notification.getRuleId());
+        assertEquals(Arrays.asList("d1"), notification.getDataSourceIds());
+        assertEquals("100", notification.getFieldsAndValues().get("temp"));
+        assertNull(notificationStore.getNotification("n2"));
+    }
+
+    @Test
+    public void testFindEntitiesPage() throws Exception {
+        notificationStore.store(Arrays.asList(notification("n1", "r1", 1000), notification("n2", "r2", 2000),
+                notification("n3", "r1", 3000), notification("n4", "r1", 4000)));
+        CriteriaImpl<Notification> criteria = new CriteriaImpl<>(Notification.class);
+        criteria.addFieldRestriction("ruleId", "r1");
+        criteria.setNumRows(2);
+        criteria.setDescending(true);
+
+        Page<Notification> page = notificationStore.findEntitiesPage(criteria);
+        assertEquals(Arrays.asList("n4", "n3"), ids(page.getEntities()));
+
+        criteria.setPageToken(page.getNextPageToken());
+        page = notificationStore.findEntitiesPage(criteria);
+        assertEquals(Collections.singletonList("n1"), ids(page.getEntities()));
+        assertNull(page.getNextPageToken());
+
+        criteria = new CriteriaImpl<>(Notification.class);
+        criteria.setStartTs(2000L);
+        criteria.setEndTs(4000L);
+        assertEquals(Arrays.asList("n2", "n3"), ids(notificationStore.findEntities(criteria)));
+    }
+
+    @Test
+    public void testUpdateStatusAndReplay() throws Exception {
+        notificationStore.store(notification("n1", "r1", 1000));
+        notificationStore.store(notification("n2", "r1", 2000));
+        notificationStore.updateNotificationStatus("n1", Notification.Status.DELIVERED);
+        notificationStore.close();
+
+        notificationStore = open();
+        assertEquals(Notification.Status.DELIVERED, notificationStore.getNotification("n1").getStatus());
+        CriteriaImpl<Notification> criteria = new CriteriaImpl<>(Notification.class);
+        criteria.addFieldRestriction("status", "NEW");
+        assertEquals(Collections.singletonList("n2"), ids(notificationStore.findEntities(criteria)));
+    }
+
+    @Test(expected = NotificationStoreException.class)
+    public void testDirectoryIsLocked() throws Exception {
+        open();
+    }
+
+    @Test
+    public void testDirectoryIsUnlockedOnClose() throws Exception {
+        notificationStore.close();
+        notificationStore = open();
+        notificationStore.store(notification("n1", "r1", 1000));
+        assertEquals("r1", notificationStore.getNotification("n1").getRuleId());
+    }
+
+    @Test
+    public void testInstancesHaveTheirOwnDirectory() throws Exception {
+        LocalNotificationStore first = open("bolt-0");
+        LocalNotificationStore second = open("bolt-1");
+        try {
+            first.store(notification("n1", "r1", 1000));
+            assertEquals("r1", first.getNotification("n1").getRuleId());
+            assertNull(second.getNotification("n1"));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    private LocalNotificationStore open() {
+        return open(null);
+    }
+
+    private LocalNotificationStore open(String instance) {
+        LocalNotificationStore store = new LocalNotificationStore();
+        Map<String, Object> config = new HashMap<>();
+        config.put(LocalNotificationStore.DIR, folder.getRoot().getAbsolutePath());
+        if (instance != null) {
+            config.put(LocalNotificationStore.INSTANCE, instance);
+        }
+        store.init(config);
+        return store;
+    }
+
+    private Notification notification(String id, String ruleId, long ts) {
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        fieldsAndValues.put("temp", "100");
+        return new NotificationImpl.Builder(fieldsAndValues)
+                .id(id)
+                .eventIds(Arrays.asList("ev1"))
+                .dataSourceIds(Arrays.asList("d1"))
+                .ruleId(ruleId)
+                .notifierName("notifierName")
+                .timestamp(ts)
+                .build();
+    }
+
+    private List<String> ids(List<Notification> notifications) {
+        List<String> ids = new ArrayList<>();
+        for (Notification notification : notifications) {
+            ids.add(notification.getId());
+        }
+        return ids;
+    }
+}
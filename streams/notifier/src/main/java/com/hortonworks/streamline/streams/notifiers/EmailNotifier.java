@@ -26,6 +26,7 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.PasswordAuthentication;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Transport;
 import javax.mail.event.TransportEvent;
@@ -40,10 +41,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 
 /**
  * Notifier for sending email notifications. This uses the JavaMail api to send emails.
+ * <p>
+ * Messages are sent over a pool of transports so that notifications delivered concurrently
+ * do not wait for each other. A transport whose connection fails is closed and the message
+ * is sent again over a new connection.
  *
  * @see <a href="https://java.net/projects/javamail/pages/Home">JavaMail API</a>
  */
@@ -76,6 +84,7 @@ public class EmailNotifier implements Notifier, TransportListener {
     private static final Field PROP_DEBUG = Field("debug", "false");
     private static final Field PROP_PROTOCOL = Field("protocol", "smtp");
     private static final Field PROP_AUTH = Field("auth", "true");
+    private static final Field PROP_POOL_SIZE = Field("poolSize", "4");
 
     // SMTP keys
     private static final String SMTP_HOST = "mail.smtp.host";
@@ -94,11 +103,16 @@ public class EmailNotifier implements Notifier, TransportListener {
     private static final Field FIELD_BODY = Field("body", "Got an alert");
     private static final Field[] MSG_FIELDS = {FIELD_FROM, FIELD_TO, FIELD_SUBJECT, FIELD_CONTENT_TYPE, FIELD_BODY};
 
+    // the first attempt and one over a new connection
+    private static final int MAX_SEND_ATTEMPTS = 2;
+
     private NotificationContext ctx;
     private final Map<Message, String> msgNotificationMap = new ConcurrentHashMap<>();
     private Map<String, String> msgFields;
     private Session emailSession;
-    private Transport emailTransport;
+    // idle transports, a transport is created when none is idle and fewer than the pool size are in use
+    private BlockingQueue<Transport> emailTransports;
+    private Semaphore transportPermits;
 
     @Override
     public void open(NotificationContext ctx) {
@@ -107,8 +121,16 @@ public class EmailNotifier implements Notifier, TransportListener {
         Map<String, Object> defaultFieldValues = new HashMap<>();
         defaultFieldValues.putAll(ctx.getConfig().getDefaultFieldValues());
         this.msgFields = getMsgFields(defaultFieldValues, null);
-        this.emailSession = getEmailSession(ctx.getConfig().getProperties());
-        this.emailTransport = getEmailTransport(emailSession, this);
+        Properties properties = ctx.getConfig().getProperties();
+        this.emailSession = getEmailSession(properties);
+        int poolSize = Integer.parseInt(getProperty(properties, PROP_POOL_SIZE));
+        if (poolSize <= 0) {
+            throw new NotifierRuntimeException("Invalid pool size " + poolSize);
+        }
+        this.emailTransports = new LinkedBlockingQueue<>(poolSize);
+        this.transportPermits = new Semaphore(poolSize);
+        // connect one transport upfront so that a wrong configuration fails fast
+        this.emailTransports.add(getEmailTransport(emailSession, this));
     }
 
     /**
@@ -156,25 +178,22 @@ public class EmailNotifier implements Notifier, TransportListener {
         if (notificationId == null) {
             throw new NotifierRuntimeException("Id is null for notification " + notification);
         }
+        Message emailMessage;
         try {
-            Message emailMessage = getEmailMessage(fieldsToSend);
-            msgNotificationMap.put(emailMessage, notificationId);
-            if (!emailTransport.isConnected()) {
-                emailTransport.connect();
-            }
-            emailTransport.sendMessage(emailMessage, emailMessage.getAllRecipients());
+            emailMessage = getEmailMessage(fieldsToSend);
         } catch (MessagingException ex) {
             LOG.error("Got exception", ex);
             throw new NotifierRuntimeException(ex);
         }
+        msgNotificationMap.put(emailMessage, notificationId);
+        sendMessage(emailMessage);
     }
 
     @Override
     public void close() {
-        try {
-            emailTransport.close();
-        } catch (MessagingException ex) {
-            LOG.error("Error trying to close email transport", ex);
+        Transport transport;
+        while ((transport = emailTransports.poll()) != null) {
+            closeTransport(transport);
         }
     }
 
@@ -264,6 +283,82 @@ public class EmailNotifier implements Notifier, TransportListener {
         }
     }
 
+    /**
+     * Sends the message over a transport of the pool, again over a new connection if the
+     * connection of the transport failed.
+     */
+    private void sendMessage(Message emailMessage) {
+        for (int attempt = 1; ; ++attempt) {
+            Transport transport = borrowTransport();
+            try {
+                if (!transport.isConnected()) {
+                    transport.connect();
+                }
+                transport.sendMessage(emailMessage, emailMessage.getAllRecipients());
+                releaseTransport(transport);
+                return;
+            } catch (SendFailedException ex) {
+                // the message was rejected by the server, the connection can still be used
+                releaseTransport(transport);
+                LOG.error("Got exception", ex);
+                throw new NotifierRuntimeException(ex);
+            } catch (MessagingException | IllegalStateException ex) {
+                discardTransport(transport);
+                if (attempt >= MAX_SEND_ATTEMPTS) {
+                    LOG.error("Got exception", ex);
+                    throw new NotifierRuntimeException(ex);
+                }
+                LOG.warn("Sending message failed, reconnecting", ex);
+            } catch (RuntimeException ex) {
+                discardTransport(transport);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Returns an idle transport of the pool, or a new one if none is idle. Waits
+     * if all the transports of the pool are in use.
+     */
+    private Transport borrowTransport() {
+        try {
+            transportPermits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NotifierRuntimeException("Interrupted while waiting for an email transport", ex);
+        }
+        Transport transport = emailTransports.poll();
+        if (transport == null) {
+            try {
+                transport = getEmailTransport(emailSession, this);
+            } catch (RuntimeException ex) {
+                transportPermits.release();
+                throw ex;
+            }
+        }
+        return transport;
+    }
+
+    private void releaseTransport(Transport transport) {
+        if (!emailTransports.offer(transport)) {
+            closeTransport(transport);
+        }
+        transportPermits.release();
+    }
+
+    private void discardTransport(Transport transport) {
+        closeTransport(transport);
+        transportPermits.release();
+    }
+
+    private void closeTransport(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException ex) {
+            LOG.error("Error trying to close email transport", ex);
+        }
+    }
+
     /**
      * Construct a {@link Message} from the map of message field values
      */
@@ -30,6 +30,7 @@ import org.junit.runner.RunWith;
 
 import javax.mail.Address;
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.event.TransportEvent;
 import java.util.HashMap;
 import java.util.Map;
@@ -288,4 +289,27 @@ public class EmailNotifierTest {
             }
         };
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReconnectOnFailure() throws Exception {
+        setupExpectations();
+        new Expectations() {
+            {
+                mockTransport.sendMessage((Message) any, (Address[]) any);
+                result = new MessagingException("Connection reset");
+                result = null;
+            }
+        };
+        emailNotifier.open(mockNotificationContext);
+        emailNotifier.notify(mockNotification);
+        new Verifications() {
+            {
+                mockTransport.sendMessage((Message) any, (Address[]) any);
+                times = 2;
+                // the failed transport is closed
+                mockTransport.close();
+                times = 1;
+            }
+        };
+    }
+}
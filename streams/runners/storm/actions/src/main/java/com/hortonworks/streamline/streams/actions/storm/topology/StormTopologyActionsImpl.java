@@ -44,6 +44,7 @@ import com.hortonworks.streamline.streams.layout.storm.StormTopologyFluxGenerato
 import com.hortonworks.streamline.streams.layout.storm.StormTopologyLayoutConstants;
 import com.hortonworks.streamline.streams.layout.storm.StormTopologyValidator;
 import com.hortonworks.streamline.streams.storm.common.StormRestAPIClient;
+import com.hortonworks.streamline.streams.storm.common.StormTopologyRegistry;
 import com.hortonworks.streamline.streams.storm.common.StormTopologyUtil;
 import com.hortonworks.streamline.streams.exception.TopologyNotAliveException;
 import org.glassfish.jersey.client.ClientConfig;
@@ -123,6 +124,7 @@ public class StormTopologyActionsImpl implements TopologyActions {
     private String catalogRootUrl;
     private String javaJarCommand;
     private StormRestAPIClient client;
+    private StormTopologyRegistry topologyRegistry;
     private String nimbusSeeds;
     private Integer nimbusPort;
     private Map<String, Object> conf;
@@ -171,6 +173,7 @@ public class StormTopologyActionsImpl implements TopologyActions {
             Client restClient = ClientBuilder.newClient(new ClientConfig());
 
             this.client = new StormRestAPIClient(restClient, stormApiRootUrl, subject);
+            this.topologyRegistry = StormTopologyRegistry.forCluster(client, conf);
             nimbusSeeds = (String) conf.get(NIMBUS_SEEDS);
             nimbusPort = Integer.valueOf((String) conf.get(NIMBUS_PORT));
 
@@ -254,6 +257,7 @@ public class StormTopologyActionsImpl implements TopologyActions {
                 throw new Exception("Topology could not be deployed successfully: storm deploy command failed with " + errors);
             }
         }
+        topologyRegistry.register(topology.getId(), asUser);
     }
 
     @Override
@@ -304,6 +308,7 @@ public class StormTopologyActionsImpl implements TopologyActions {
             throw new Exception("Topology could not be killed " +
                     "successfully.");
         }
+        topologyRegistry.unregister(topology.getId());
         File artifactsDir = getArtifactsLocation(topology).toFile();
         if (artifactsDir.exists() && artifactsDir.isDirectory()) {
             LOG.debug("Cleaning up {}", artifactsDir);
@@ -374,7 +379,7 @@ public class StormTopologyActionsImpl implements TopologyActions {
 
     @Override
     public String getRuntimeTopologyId(TopologyLayout topology, String asUser) {
-        String stormTopologyId = StormTopologyUtil.findStormTopologyId(client, topology.getId(), asUser);
+        String stormTopologyId = topologyRegistry.findStormTopologyId(topology.getId(), asUser);
         if (StringUtils.isEmpty(stormTopologyId)) {
             throw new TopologyNotAliveException("Topology not found in Storm Cluster - topology id: " + topology.getId());
         }
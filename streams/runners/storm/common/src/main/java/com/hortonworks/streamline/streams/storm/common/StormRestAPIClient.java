@@ -46,6 +46,10 @@ public class StormRestAPIClient {
         this.subject = subject;
     }
 
+    public String getStormApiRootUrl() {
+        return stormApiRootUrl;
+    }
+
     public Map getTopologySummary(String asUser) {
         return doGetRequest(getTopologySummaryUrl(encode(asUser)));
     }
@@ -0,0 +1,259 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.storm.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the ids and names of the Storm topologies deployed for Streamline topologies, so that they can be looked up
+ * without retrieving the topology summary from the Storm cluster on every call.
+ * <p>
+ * The topologies are recorded when they are deployed or killed through Streamline, and reconciled against the
+ * topology summary of the cluster, which is retrieved at most once per refresh interval, or once per miss refresh
+ * interval when a topology is not found, so that topologies deployed from elsewhere are seen soon. As the topologies
+ * visible to a user depend on the cluster authorization, the topologies are kept per user.
+ * <p>
+ * The topology actions and metrics share the registry of their Storm cluster, see {@link #forCluster}, so that a
+ * topology deployed through the actions is looked up by the metrics without waiting for the next refresh. The
+ * registry then uses the client and configuration it was last given, so that the actions and metrics created again
+ * for a changed namespace or subject don't look up the topologies with a stale client.
+ */
+public class StormTopologyRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(StormTopologyRegistry.class);
+
+    public static final String REFRESH_INTERVAL_MS = "storm.topology.registry.refresh.interval.ms";
+    public static final String MISS_REFRESH_INTERVAL_MS = "storm.topology.registry.miss.refresh.interval.ms";
+
+    private static final long DEFAULT_REFRESH_INTERVAL_MS = 10_000L;
+    private static final long DEFAULT_MISS_REFRESH_INTERVAL_MS = 1_000L;
+    private static final String TOPOLOGY_NAME_PREFIX = "streamline-";
+
+    // keyed by the Storm API root url
+    private static final ConcurrentMap<String, StormTopologyRegistry> REGISTRIES = new ConcurrentHashMap<>();
+
+    private volatile StormRestAPIClient client;
+    private volatile long refreshIntervalMs;
+    private volatile long missRefreshIntervalMs;
+    // keyed by the user, an empty string when the topologies are not looked up on behalf of a user
+    private final ConcurrentMap<String, UserTopologies> userTopologies = new ConcurrentHashMap<>();
+
+    public StormTopologyRegistry(StormRestAPIClient client, Map<String, Object> conf) {
+        configure(client, conf);
+    }
+
+    /**
+     * Returns the registry of the Storm cluster the given client is connected to, creating it if it does not exist
+     * yet. The registry uses the given client and configuration from then on.
+     */
+    public static StormTopologyRegistry forCluster(StormRestAPIClient client, Map<String, Object> conf) {
+        return REGISTRIES.compute(String.valueOf(client.getStormApiRootUrl()),
+                (url, registry) -> registry == null ? new StormTopologyRegistry(client, conf) : registry.configure(client, conf));
+    }
+
+    private StormTopologyRegistry configure(StormRestAPIClient client, Map<String, Object> conf) {
+        this.client = client;
+        this.refreshIntervalMs = getLong(conf, REFRESH_INTERVAL_MS, DEFAULT_REFRESH_INTERVAL_MS);
+        this.missRefreshIntervalMs = Math.min(refreshIntervalMs,
+                getLong(conf, MISS_REFRESH_INTERVAL_MS, DEFAULT_MISS_REFRESH_INTERVAL_MS));
+        // the topologies seen with the previous client are checked with the new one on the next lookup
+        for (UserTopologies topologies : userTopologies.values()) {
+            topologies.refreshedMs = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the id of the Storm topology deployed for the given Streamline topology, or null if it is not running.
+     */
+    public String findStormTopologyId(Long topologyId, String asUser) {
+        RuntimeTopology runtimeTopology = find(topologyId, asUser);
+        return runtimeTopology != null ? runtimeTopology.id : null;
+    }
+
+    /**
+     * Returns the name of the Storm topology deployed for the given Streamline topology, or null if it is not running.
+     */
+    public String findStormTopologyName(Long topologyId, String asUser) {
+        RuntimeTopology runtimeTopology = find(topologyId, asUser);
+        return runtimeTopology != null ? runtimeTopology.name : null;
+    }
+
+    /**
+     * Returns the name of the Storm topology deployed for the given Streamline topology, or the name it would be
+     * deployed with if it is not running.
+     */
+    public String findOrGenerateTopologyName(Long topologyId, String topologyName, String asUser) {
+        String stormTopologyName = findStormTopologyName(topologyId, asUser);
+        return stormTopologyName != null ? stormTopologyName : StormTopologyUtil.generateStormTopologyName(topologyId, topologyName);
+    }
+
+    /**
+     * Records the Storm topology which has just been deployed for the given Streamline topology.
+     */
+    public void register(Long topologyId, String asUser) {
+        // let the other users see the topology on their next lookup
+        for (UserTopologies topologies : userTopologies.values()) {
+            topologies.refreshedMs = 0;
+        }
+        try {
+            // the deploy command does not print the id of the new topology, so it is taken from the summary
+            UserTopologies topologies = getUserTopologies(asUser);
+            refresh(topologies, 0);
+            if (!topologies.runtimeTopologies.containsKey(topologyId)) {
+                LOG.warn("Deployed topology {} is not found in the Storm cluster summary", topologyId);
+            }
+        } catch (RuntimeException e) {
+            // the topology is deployed anyway, it is looked up again on the next call
+            LOG.warn("Failed to retrieve the Storm cluster summary after deploying topology {}", topologyId, e);
+        }
+    }
+
+    /**
+     * Forgets the Storm topology deployed for the given Streamline topology, which has just been killed.
+     */
+    public void unregister(Long topologyId) {
+        for (UserTopologies topologies : userTopologies.values()) {
+            synchronized (topologies) {
+                if (topologies.runtimeTopologies.containsKey(topologyId)) {
+                    Map<Long, RuntimeTopology> runtimeTopologies = new HashMap<>(topologies.runtimeTopologies);
+                    runtimeTopologies.remove(topologyId);
+                    topologies.runtimeTopologies = runtimeTopologies;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reconciles the topologies of the given user with a topology summary which has been retrieved from the cluster.
+     */
+    public void reconcile(String asUser, Map<?, ?> summaryMap) {
+        UserTopologies topologies = getUserTopologies(asUser);
+        long now = System.currentTimeMillis();
+        synchronized (topologies) {
+            topologies.runtimeTopologies = parse(summaryMap);
+            topologies.refreshedMs = now;
+        }
+    }
+
+    private RuntimeTopology find(Long topologyId, String asUser) {
+        UserTopologies topologies = getUserTopologies(asUser);
+        refresh(topologies, refreshIntervalMs);
+        RuntimeTopology runtimeTopology = topologies.runtimeTopologies.get(topologyId);
+        if (runtimeTopology == null) {
+            // the topology may have been deployed since, but don't retrieve the summary on every miss
+            refresh(topologies, missRefreshIntervalMs);
+            runtimeTopology = topologies.runtimeTopologies.get(topologyId);
+        }
+        return runtimeTopology;
+    }
+
+    private UserTopologies getUserTopologies(String asUser) {
+        return userTopologies.computeIfAbsent(key(asUser), k -> new UserTopologies(asUser));
+    }
+
+    // retrieves the summary if the topologies have been refreshed more than maxAgeMs ago
+    private void refresh(UserTopologies topologies, long maxAgeMs) {
+        if (System.currentTimeMillis() - topologies.refreshedMs < maxAgeMs) {
+            return;
+        }
+        synchronized (topologies) {
+            // may have been refreshed by another thread meanwhile
+            long now = System.currentTimeMillis();
+            if (now - topologies.refreshedMs < maxAgeMs) {
+                return;
+            }
+            LOG.debug("Retrieving topology summary as user {}", topologies.asUser);
+            topologies.runtimeTopologies = parse(client.getTopologySummary(topologies.asUser));
+            topologies.refreshedMs = now;
+        }
+    }
+
+    private static Map<Long, RuntimeTopology> parse(Map<?, ?> summaryMap) {
+        List<Map<?, ?>> topologies = (List<Map<?, ?>>) summaryMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGIES);
+        if (topologies == null) {
+            return Collections.emptyMap();
+        }
+        Map<Long, RuntimeTopology> runtimeTopologies = new HashMap<>();
+        for (Map<?, ?> topologyMap : topologies) {
+            String name = (String) topologyMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_NAME);
+            Long topologyId = parseTopologyId(name);
+            if (topologyId != null) {
+                String id = (String) topologyMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_ID_ENCODED);
+                runtimeTopologies.put(topologyId, new RuntimeTopology(id, name));
+            }
+        }
+        return runtimeTopologies;
+    }
+
+    // the id of the Streamline topology from a name generated by StormTopologyUtil, null for other topologies
+    private static Long parseTopologyId(String name) {
+        if (name == null || !name.startsWith(TOPOLOGY_NAME_PREFIX)) {
+            return null;
+        }
+        int end = name.indexOf('-', TOPOLOGY_NAME_PREFIX.length());
+        if (end < 0) {
+            return null;
+        }
+        try {
+            return Long.valueOf(name.substring(TOPOLOGY_NAME_PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long getLong(Map<String, Object> conf, String key, long defaultValue) {
+        Object value = conf != null ? conf.get(key) : null;
+        if (value == null) {
+            return defaultValue;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else {
+            return Long.parseLong(value.toString());
+        }
+    }
+
+    private static String key(String asUser) {
+        return asUser == null ? "" : asUser;
+    }
+
+    private static final class RuntimeTopology {
+        private final String id;
+        private final String name;
+
+        RuntimeTopology(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static final class UserTopologies {
+        private final String asUser;
+        private volatile Map<Long, RuntimeTopology> runtimeTopologies = Collections.emptyMap();
+        private volatile long refreshedMs;
+
+        UserTopologies(String asUser) {
+            this.asUser = asUser;
+        }
+    }
+}
@@ -15,9 +15,6 @@
  **/
 package com.hortonworks.streamline.streams.storm.common;
 
-import java.util.List;
-import java.util.Map;
-
 public class StormTopologyUtil {
     private StormTopologyUtil() {
     }
@@ -29,44 +26,4 @@ public class StormTopologyUtil {
     public static String generateUniqueStormTopologyNamePrefix(Long topologyId) {
         return "streamline-" + topologyId + "-";
     }
-
-    public static String findStormTopologyId(StormRestAPIClient client, Long topologyId, String asUser) {
-        String topologyNamePrefix = generateUniqueStormTopologyNamePrefix(topologyId);
-        Map<?, ?> summaryMap = client.getTopologySummary(asUser);
-        List<Map<?, ?>> topologies = (List<Map<?, ?>>) summaryMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGIES);
-        String stormTopologyId = null;
-        for (Map<?, ?> topologyMap : topologies) {
-            String topologyNameForStorm = (String) topologyMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_NAME);
-
-            if (topologyNameForStorm.startsWith(topologyNamePrefix)) {
-                stormTopologyId = (String) topologyMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_ID_ENCODED);
-                break;
-            }
-        }
-        return stormTopologyId;
-    }
-
-    public static String findStormCompleteTopologyName(StormRestAPIClient client, Long topologyId, String asUser) {
-        String topologyNamePrefix = generateUniqueStormTopologyNamePrefix(topologyId);
-        Map<?, ?> summaryMap = client.getTopologySummary(asUser);
-        List<Map<?, ?>> topologies = (List<Map<?, ?>>) summaryMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGIES);
-        String topologyName = null;
-        for (Map<?, ?> topologyMap : topologies) {
-            String topologyNameForStorm = (String) topologyMap.get(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_NAME);
-
-            if (topologyNameForStorm.startsWith(topologyNamePrefix)) {
-                topologyName = topologyNameForStorm;
-                break;
-            }
-        }
-        return topologyName;
-    }
-
-    public static String findOrGenerateTopologyName(StormRestAPIClient client, Long topologyId, String topologyName, String asUser) {
-        String actualTopologyName = findStormCompleteTopologyName(client, topologyId, asUser);
-        if (actualTopologyName == null) {
-            actualTopologyName = generateStormTopologyName(topologyId, topologyName);
-        }
-        return actualTopologyName;
-    }
 }
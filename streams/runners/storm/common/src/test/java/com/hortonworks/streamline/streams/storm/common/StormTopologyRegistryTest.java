@@ -0,0 +1,149 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.storm.common;
+
+import com.google.common.collect.ImmutableMap;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(JMockit.class)
+public class StormTopologyRegistryTest {
+    @Mocked
+    private StormRestAPIClient client;
+
+    private StormTopologyRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new StormTopologyRegistry(client,
+                Collections.<String, Object>singletonMap(StormTopologyRegistry.REFRESH_INTERVAL_MS, 60_000L));
+    }
+
+    @Test
+    public void testSummaryIsRetrievedOncePerInterval() throws Exception {
+        new Expectations() {{
+            client.getTopologySummary("user");
+            result = summary(topology("streamline-1-a", "streamline-1-a-1-1"), topology("other", "other-2-2"));
+        }};
+
+        assertEquals("streamline-1-a-1-1", registry.findStormTopologyId(1L, "user"));
+        assertEquals("streamline-1-a", registry.findStormTopologyName(1L, "user"));
+        assertNull(registry.findStormTopologyId(2L, "user"));
+        assertEquals("streamline-2-b", registry.findOrGenerateTopologyName(2L, "b", "user"));
+
+        new Verifications() {{
+            client.getTopologySummary("user"); times = 1;
+        }};
+    }
+
+    @Test
+    public void testRegisterAndUnregister() throws Exception {
+        new Expectations() {{
+            client.getTopologySummary(anyString);
+            returns(summary(), summary(topology("streamline-1-a", "streamline-1-a-1-1")));
+        }};
+
+        assertNull(registry.findStormTopologyId(1L, "user"));
+        registry.register(1L, "user");
+        assertEquals("streamline-1-a-1-1", registry.findStormTopologyId(1L, "user"));
+        registry.unregister(1L);
+        assertNull(registry.findStormTopologyId(1L, "user"));
+
+        new Verifications() {{
+            client.getTopologySummary("user"); times = 2;
+        }};
+    }
+
+    @Test
+    public void testMissRefreshesSummary() throws Exception {
+        registry = new StormTopologyRegistry(client, ImmutableMap.<String, Object>of(
+                StormTopologyRegistry.REFRESH_INTERVAL_MS, 60_000L, StormTopologyRegistry.MISS_REFRESH_INTERVAL_MS, 0L));
+        new Expectations() {{
+            client.getTopologySummary(anyString);
+            returns(summary(), summary(), summary(topology("streamline-1-a", "streamline-1-a-1-1")));
+        }};
+
+        assertNull(registry.findStormTopologyId(1L, "user"));
+        assertEquals("streamline-1-a-1-1", registry.findStormTopologyId(1L, "user"));
+        assertEquals("streamline-1-a-1-1", registry.findStormTopologyId(1L, "user"));
+
+        new Verifications() {{
+            client.getTopologySummary("user"); times = 3;
+        }};
+    }
+
+    @Test
+    public void testRegistryIsSharedPerCluster() throws Exception {
+        new Expectations() {{
+            client.getStormApiRootUrl(); result = "http://storm-ui:8080/api/v1";
+        }};
+
+        StormTopologyRegistry actionsRegistry = StormTopologyRegistry.forCluster(client, null);
+        assertSame(actionsRegistry, StormTopologyRegistry.forCluster(client, null));
+    }
+
+    @Test
+    public void testRegistryUsesLatestClient(@Mocked final StormRestAPIClient newClient) throws Exception {
+        new Expectations() {{
+            client.getStormApiRootUrl(); result = "http://storm-ui:8080/api/v2";
+            newClient.getStormApiRootUrl(); result = "http://storm-ui:8080/api/v2";
+            client.getTopologySummary(anyString); result = summary();
+            newClient.getTopologySummary(anyString); result = summary(topology("streamline-1-a", "streamline-1-a-1-1"));
+        }};
+
+        StormTopologyRegistry clusterRegistry = StormTopologyRegistry.forCluster(client, null);
+        assertNull(clusterRegistry.findStormTopologyId(1L, "user"));
+        assertSame(clusterRegistry, StormTopologyRegistry.forCluster(newClient, null));
+        assertEquals("streamline-1-a-1-1", clusterRegistry.findStormTopologyId(1L, "user"));
+
+        new Verifications() {{
+            newClient.getTopologySummary("user"); times = 1;
+        }};
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        registry.reconcile("user", summary(topology("streamline-3-c", "streamline-3-c-3-3")));
+
+        assertEquals("streamline-3-c-3-3", registry.findStormTopologyId(3L, "user"));
+
+        new Verifications() {{
+            client.getTopologySummary(anyString); times = 0;
+        }};
+    }
+
+    private Map<String, Object> summary(Map<?, ?>... topologies) {
+        return ImmutableMap.<String, Object>of(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGIES, Arrays.asList(topologies));
+    }
+
+    private Map<String, Object> topology(String name, String id) {
+        return ImmutableMap.<String, Object>of(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_NAME, name,
+                StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_ID_ENCODED, id);
+    }
+}
@@ -69,16 +69,26 @@ import java.util.stream.Collectors;
 public class CassandraBoltFluxComponent extends AbstractFluxComponent {
 
     private static final String CASSANDRA_BOLT_CLASS = "com.hortonworks.streamline.streams.runtime.storm.cassandra.StreamlineCassandraBolt";
+    private static final String CASSANDRA_ASYNC_BOLT_CLASS = "com.hortonworks.streamline.streams.runtime.storm.cassandra.StreamlineCassandraAsyncBolt";
     private static final String MAPPER_BUILDER_CLASS = "org.apache.storm.cassandra.query.builder.BoundCQLStatementMapperBuilder";
+    private static final String BOUND_STATEMENT_MAPPER_CLASS = "com.hortonworks.streamline.streams.runtime.storm.cassandra.StreamlineBoundStatementMapper";
     private static final String FIELD_SELECTOR_CLASS_NAME = "com.hortonworks.streamline.streams.runtime.storm.cassandra.StreamlineFieldSelector";
 
     private static final String COLUMN_NAME_KEY = "columnName";
     private static final String FIELD_NAME_KEY = "fieldName";
     private static final String TABLE_NAME_KEY = "tableName";
     private static final String COLUMNS_KEY = "columns";
+    private static final String WRITE_MODE_KEY = "writeMode";
+    private static final String MAX_IN_FLIGHT_REQUESTS_KEY = "maxInFlightRequests";
+    private static final String MAX_BATCH_SIZE_KEY = "maxBatchSize";
+    private static final String ASYNC_WRITE_MODE = "async";
 
     @Override
     protected void generateComponent() {
+        if (ASYNC_WRITE_MODE.equals(conf.get(WRITE_MODE_KEY))) {
+            generateAsyncComponent();
+            return;
+        }
         String boltClassId = "StreamlineCassandraBolt-" + UUID_FOR_COMPONENTS;
 
         List<Object> constructorArgs = new ArrayList<>();
@@ -98,6 +108,38 @@ public class CassandraBoltFluxComponent extends AbstractFluxComponent {
         addParallelismToComponent();
     }
 
+    // statements are sent asynchronously, grouped by partition, instead of in batches on every tick
+    private void generateAsyncComponent() {
+        String boltClassId = "StreamlineCassandraAsyncBolt-" + UUID_FOR_COMPONENTS;
+
+        List<Object> constructorArgs = new ArrayList<>();
+        constructorArgs.add(getRefYaml(addBoundStatementMapper()));
+
+        List<Map<String, Object>> configMethods = new ArrayList<>();
+        configMethods.add(getConfigMethodWithRefArgs("withCassandraConfig", Collections.singletonList(addCassandraConfig())));
+        configMethods.addAll(getConfigMethodsYaml(new String[]{"withMaxInFlightRequests", "withMaxBatchSize"},
+                new String[]{MAX_IN_FLIGHT_REQUESTS_KEY, MAX_BATCH_SIZE_KEY}));
+
+        component = createComponent(boltClassId, CASSANDRA_ASYNC_BOLT_CLASS, null, constructorArgs, configMethods);
+
+        addParallelismToComponent();
+    }
+
+    private String addBoundStatementMapper() {
+        String mapperClassId = "boundStatementMapper-" + UUID_FOR_COMPONENTS;
+
+        String tableName = (String) conf.get(TABLE_NAME_KEY);
+        List<Map<String, String>> columns = (List<Map<String, String>>) conf.get(COLUMNS_KEY);
+        List<String> columnNames = columns.stream().map(column -> column.get(COLUMN_NAME_KEY)).collect(Collectors.toList());
+        List<String> fieldSelectorIds = createFieldSelectors(columns);
+
+        String cql = createInsertToCql(tableName, columnNames);
+        Map<String, Object> configMethod = getConfigMethodWithRefListArg("bind", fieldSelectorIds);
+        addToComponents(createComponent(mapperClassId, BOUND_STATEMENT_MAPPER_CLASS, null, Arrays.asList(cql), Arrays.asList(configMethod)));
+
+        return mapperClassId;
+    }
+
     private String addCassandraConfig() {
         String mapClassId = "map-" + UUID_FOR_COMPONENTS;
         Map<String, Object> cassandraEndpointConfig = (Map<String, Object>) conf.get("cassandraEndpointConfig");
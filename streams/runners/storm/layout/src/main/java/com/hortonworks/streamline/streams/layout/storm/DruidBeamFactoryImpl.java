@@ -65,6 +65,7 @@ public class DruidBeamFactoryImpl implements DruidBeamFactory<Map<String, Object
     private String tranquilityZKconnect = "";
     private List<String> dimensions = new LinkedList<>();
     private String timestampField  = "timestamp";
+    private String timestampFormat = "auto";
     private int clusterPartitions = 1;
     private int clusterReplication = 1 ;
     private String windowPeriod = "PT10M";
@@ -91,7 +92,12 @@ public class DruidBeamFactoryImpl implements DruidBeamFactory<Map<String, Object
                 if(PROCESSING_TIME.equalsIgnoreCase(timestampField))
                     return new DateTime(System.currentTimeMillis());
 
-                return new DateTime(theMap.get(timestampField));
+                Object timestamp = theMap.get(timestampField);
+                // events mapped with a DruidMappingPlan have their timestamp in epoch millis
+                if (timestamp instanceof Long)
+                    return new DateTime(((Long) timestamp).longValue());
+
+                return new DateTime(timestamp);
             }
         };
 
@@ -105,7 +111,7 @@ public class DruidBeamFactoryImpl implements DruidBeamFactory<Map<String, Object
 
         // The JSON serialization of your object must have a timestamp field in a format that Druid understands. By default,
         // Druid expects the field to be called "timestamp" and to be an ISO8601 timestamp.
-        final TimestampSpec timestampSpec = new TimestampSpec(timestampField, "auto", null);
+        final TimestampSpec timestampSpec = new TimestampSpec(timestampField, timestampFormat, null);
 
         // Tranquility needs to be able to serialize your object type to JSON for transmission to Druid. By default this is
         // done with Jackson. If you want to provide an alternate serializer, you can provide your own via ```.objectWriter(...)```.
@@ -192,6 +198,17 @@ public class DruidBeamFactoryImpl implements DruidBeamFactory<Map<String, Object
         this.timestampField = timestampField;
     }
 
+    public String getTimestampFormat() {
+        return timestampFormat;
+    }
+
+    /**
+     * Sets the format of the timestamps sent to druid, "auto" by default.
+     */
+    public void setTimestampFormat(String timestampFormat) {
+        this.timestampFormat = timestampFormat;
+    }
+
     public int getClusterReplication() {
         return clusterReplication;
     }
@@ -19,6 +19,7 @@ package com.hortonworks.streamline.streams.layout.storm;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -49,6 +50,9 @@ public class DruidBoltFluxComponent extends AbstractFluxComponent {
     public final static String KEY_SEGMENT_GRANULARITY = "segmentGranularity";
     public final static String KEY_QUERY_GRANULARITY = "queryGranularity";
     public final static String KEY_AGGR_LIST = "aggregatorList";
+    public final static String KEY_TIMESTAMP_FORMAT = "timestampFormat";
+
+    private final static String AGGR_FIELD_NAME = "fieldName";
 
     @Override
     protected void generateComponent() {
@@ -90,6 +94,10 @@ public class DruidBoltFluxComponent extends AbstractFluxComponent {
         };
 
         List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+        if (conf.get(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA) != null) {
+            // the events are mapped with a DruidMappingPlan, which converts the timestamps to epoch millis
+            configMethods.addAll(getConfigMethodsYaml(new String[]{"setTimestampFormat"}, new Object[]{"millis"}));
+        }
         addToComponents(createComponent(componentId, className, null, constructorArgs, configMethods));
         return componentId;
     }
@@ -106,11 +114,52 @@ public class DruidBoltFluxComponent extends AbstractFluxComponent {
     private String addTupleDruidEventMapperComponent() {
         String componentId = "druidTupleDruidEventMapper" + UUID_FOR_COMPONENTS;
         String className = "com.hortonworks.streamline.streams.layout.storm.DruidEventMapper";
-        List<String> constructorArgs = Lists.newArrayList(StreamlineEvent.STREAMLINE_EVENT);
+        List<Object> constructorArgs = Lists.newArrayList(StreamlineEvent.STREAMLINE_EVENT);
+        if (conf.get(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA) != null) {
+            constructorArgs.add(getRefYaml(addDruidMappingPlanComponent()));
+        }
         addToComponents(createComponent(componentId, className, null, constructorArgs, null));
         return componentId;
     }
 
+    private String addDruidMappingPlanComponent() {
+        String componentId = "druidMappingPlan" + UUID_FOR_COMPONENTS;
+        String className = "com.hortonworks.streamline.streams.layout.storm.DruidMappingPlan";
+        List<Object> constructorArgs = Lists.newArrayList(getJsonString(conf.get(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA)),
+                conf.get(KEY_TIMESTAMP_FIELD), conf.get(KEY_DIMENSIONS));
+        List<String> configMethodNames = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        List<String> metricFields = getMetricFields();
+        if (!metricFields.isEmpty()) {
+            configMethodNames.add("withMetricFields");
+            values.add(metricFields);
+        }
+        if (conf.get(KEY_TIMESTAMP_FORMAT) != null) {
+            configMethodNames.add("withTimestampFormat");
+            values.add(conf.get(KEY_TIMESTAMP_FORMAT));
+        }
+        List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames.toArray(new String[0]), values.toArray());
+        addToComponents(createComponent(componentId, className, null, constructorArgs, configMethods));
+        return componentId;
+    }
+
+    // the fields the aggregators are computed from
+    private List<String> getMetricFields() {
+        List<String> metricFields = new ArrayList<>();
+        List<Map<String, Map<String, String>>> aggregators = (List<Map<String, Map<String, String>>>) conf.get(KEY_AGGR_LIST);
+        if (aggregators != null) {
+            for (Map<String, Map<String, String>> aggregator : aggregators) {
+                for (Map<String, String> aggregatorInfo : aggregator.values()) {
+                    String fieldName = aggregatorInfo.get(AGGR_FIELD_NAME);
+                    if (fieldName != null && !metricFields.contains(fieldName)) {
+                        metricFields.add(fieldName);
+                    }
+                }
+            }
+        }
+        return metricFields;
+    }
+
     private String addDruidConfigBuilderComponent() {
         String builderComponentId = "druidConfig" + UUID_FOR_COMPONENTS;
         String builderClassName = "org.apache.storm.druid.bolt.DruidConfig$Builder";
@@ -30,14 +30,26 @@ public final class DruidEventMapper implements ITupleDruidEventMapper<Map<String
     public static final String DEFAULT_FIELD_NAME = "event";
 
     private final String eventFiledName;
+    private final DruidMappingPlan mappingPlan;
 
     public DruidEventMapper(String eventFiledName) {
+        this(eventFiledName, null);
+    }
+
+    /**
+     * Maps the events with the given plan, which only keeps the fields needed by druid.
+     */
+    public DruidEventMapper(String eventFiledName, DruidMappingPlan mappingPlan) {
         this.eventFiledName =  eventFiledName;
+        this.mappingPlan = mappingPlan;
     }
 
     @Override
     public Map<String, Object> getEvent(ITuple tuple) {
         StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(eventFiledName);
+        if (mappingPlan != null) {
+            return mappingPlan.toDruidEvent(event);
+        }
         return event.addFieldAndValue(DruidBeamFactoryImpl.PROCESSING_TIME, System.currentTimeMillis());
     }
 }
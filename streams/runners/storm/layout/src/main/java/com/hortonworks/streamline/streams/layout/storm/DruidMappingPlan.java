@@ -0,0 +1,175 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.layout.storm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.registries.common.Schema;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the events of a stream to the events sent to druid, with a plan built once from the schema of the stream.
+ * <p>
+ * The druid event only holds the timestamp, the dimensions and the fields of the metrics. The timestamp is
+ * converted to epoch millis with a parser chosen from the type of the timestamp field: numbers are taken as
+ * epoch millis and strings are parsed as ISO 8601 timestamps, or with the pattern given by
+ * {@link #withTimestampFormat(String)}, with a formatter built once. When the timestamp field is
+ * {@link DruidBeamFactoryImpl#PROCESSING_TIME}, the current time is used.
+ */
+public class DruidMappingPlan implements Serializable {
+    private enum TimestampType {
+        PROCESSING_TIME, EPOCH_MILLIS, STRING, AUTO
+    }
+
+    private final Set<String> schemaFields;
+    private final String timestampField;
+    private final TimestampType timestampType;
+    private final List<String> fields;
+    private String timestampFormat;
+
+    private transient DateTimeFormatter formatter;
+
+    public DruidMappingPlan(String schemaJson, String timestampField, List<String> dimensions) {
+        Schema.Field timestampSchemaField = null;
+        this.schemaFields = new HashSet<>();
+        for (Schema.Field field : parseSchema(schemaJson).getFields()) {
+            schemaFields.add(field.getName());
+            if (field.getName().equals(timestampField)) {
+                timestampSchemaField = field;
+            }
+        }
+        this.timestampField = timestampField;
+        this.timestampType = timestampType(timestampSchemaField);
+        this.fields = new ArrayList<>();
+        addFields(dimensions);
+    }
+
+    /**
+     * Adds the fields the metrics are computed from.
+     */
+    public DruidMappingPlan withMetricFields(List<String> metricFields) {
+        addFields(metricFields);
+        return this;
+    }
+
+    /**
+     * Sets the joda pattern of the timestamps given as strings, ISO 8601 timestamps are expected otherwise.
+     */
+    public DruidMappingPlan withTimestampFormat(String timestampFormat) {
+        // fails early on invalid patterns
+        DateTimeFormat.forPattern(timestampFormat);
+        this.timestampFormat = timestampFormat;
+        return this;
+    }
+
+    public String getTimestampField() {
+        return timestampField;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the druid event for the given streamline event, with the timestamp in epoch millis.
+     */
+    public Map<String, Object> toDruidEvent(Map<String, Object> event) {
+        Map<String, Object> druidEvent = new HashMap<>(2 * (fields.size() + 1));
+        druidEvent.put(timestampField, timestamp(event));
+        for (String field : fields) {
+            Object value = event.get(field);
+            if (value != null) {
+                druidEvent.put(field, value);
+            }
+        }
+        return druidEvent;
+    }
+
+    long timestamp(Map<String, Object> event) {
+        if (timestampType == TimestampType.PROCESSING_TIME) {
+            return System.currentTimeMillis();
+        }
+        Object value = event.get(timestampField);
+        // as with the generic mapping, events without timestamp get the current time
+        if (value == null) {
+            return System.currentTimeMillis();
+        }
+        if (value instanceof Number && timestampType != TimestampType.STRING) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String && timestampType != TimestampType.EPOCH_MILLIS) {
+            return getFormatter().parseMillis((String) value);
+        }
+        throw new IllegalArgumentException("Unsupported value " + value + " for timestamp field " + timestampField);
+    }
+
+    private DateTimeFormatter getFormatter() {
+        if (formatter == null) {
+            formatter = timestampFormat != null ? DateTimeFormat.forPattern(timestampFormat)
+                    : ISODateTimeFormat.dateTimeParser().withOffsetParsed();
+        }
+        return formatter;
+    }
+
+    private void addFields(List<String> names) {
+        for (String name : names) {
+            if (!schemaFields.contains(name)) {
+                throw new IllegalArgumentException("Field " + name + " is not part of the input schema of the druid sink");
+            }
+            if (!fields.contains(name)) {
+                fields.add(name);
+            }
+        }
+    }
+
+    private TimestampType timestampType(Schema.Field field) {
+        if (DruidBeamFactoryImpl.PROCESSING_TIME.equalsIgnoreCase(timestampField)) {
+            return TimestampType.PROCESSING_TIME;
+        }
+        if (field == null) {
+            return TimestampType.AUTO;
+        }
+        switch (field.getType()) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+                return TimestampType.EPOCH_MILLIS;
+            case STRING:
+                return TimestampType.STRING;
+            default:
+                return TimestampType.AUTO;
+        }
+    }
+
+    private static Schema parseSchema(String schemaJson) {
+        try {
+            return new ObjectMapper().readValue(schemaJson, Schema.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid schema " + schemaJson, e);
+        }
+    }
+}
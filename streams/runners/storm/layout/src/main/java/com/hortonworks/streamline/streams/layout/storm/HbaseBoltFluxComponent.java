@@ -15,6 +15,8 @@
  **/
 package com.hortonworks.streamline.streams.layout.storm;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
 import com.hortonworks.streamline.streams.layout.exception.ComponentConfigException;
 
@@ -71,22 +73,67 @@ public class HbaseBoltFluxComponent extends AbstractFluxComponent {
         List<Object> hbaseMapperConstructorArgs = getConstructorArgsYaml
                 (constructorArgNames);
 
+        List<String> configMethodNames = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        if (Boolean.TRUE.equals(conf.get(TopologyLayoutConstants.JSON_KEY_SCHEMA_MAPPING))) {
+            // columns are mapped from the schema of the input streams
+            configMethodNames.add("withSchema");
+            values.add(getInputSchemaJson());
+            List<String> packedFields = (List<String>) conf.get(TopologyLayoutConstants.JSON_KEY_PACKED_FIELDS);
+            if (packedFields != null && !packedFields.isEmpty()) {
+                configMethodNames.add("withPackedColumn");
+                values.add(new Object[]{conf.get(TopologyLayoutConstants.JSON_KEY_PACKED_COLUMN), packedFields});
+            }
+        }
+        List<String> rowKeyFields = (List<String>) conf.get(TopologyLayoutConstants.JSON_KEY_ROW_KEY_FIELDS);
+        if (rowKeyFields != null && !rowKeyFields.isEmpty()) {
+            configMethodNames.add("withRowKeyFields");
+            values.add(rowKeyFields);
+        }
+        if (conf.get(TopologyLayoutConstants.JSON_KEY_ROW_KEY_SALT_BUCKETS) != null) {
+            configMethodNames.add("withRowKeySaltBuckets");
+            values.add(conf.get(TopologyLayoutConstants.JSON_KEY_ROW_KEY_SALT_BUCKETS));
+        }
+        List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames.toArray(new String[0]), values.toArray());
+
         this.addToComponents(this.createComponent(hbaseMapperComponentId,
-                hbaseMapperClassName, null, hbaseMapperConstructorArgs, null));
+                hbaseMapperClassName, null, hbaseMapperConstructorArgs, configMethods));
         return hbaseMapperComponentId;
 
     }
 
+    private String getInputSchemaJson () {
+        try {
+            return new ObjectMapper().writeValueAsString(conf.get(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Error creating json for the input schema of the hbase sink", e);
+        }
+    }
+
     @Override
     public void validateConfig () throws ComponentConfigException {
         super.validateConfig();
         validateBooleanFields();
         validateStringFields();
+        validatePackedColumn();
+    }
+
+    private void validatePackedColumn () throws ComponentConfigException {
+        List packedFields = (List) conf.get(TopologyLayoutConstants.JSON_KEY_PACKED_FIELDS);
+        if (packedFields != null && !packedFields.isEmpty()) {
+            String packedColumn = (String) conf.get(TopologyLayoutConstants.JSON_KEY_PACKED_COLUMN);
+            if (packedColumn == null || packedColumn.isEmpty()
+                    || !Boolean.TRUE.equals(conf.get(TopologyLayoutConstants.JSON_KEY_SCHEMA_MAPPING))) {
+                throw new ComponentConfigException(String.format(TopologyLayoutConstants.ERR_MSG_MISSING_INVALID_CONFIG,
+                        TopologyLayoutConstants.JSON_KEY_PACKED_COLUMN));
+            }
+        }
     }
 
     private void validateBooleanFields () throws ComponentConfigException {
         String[] optionalBooleanFields = {
-            TopologyLayoutConstants.JSON_KEY_WRITE_TO_WAL
+            TopologyLayoutConstants.JSON_KEY_WRITE_TO_WAL,
+            TopologyLayoutConstants.JSON_KEY_SCHEMA_MAPPING
         };
         validateBooleanFields(optionalBooleanFields, false);
     }
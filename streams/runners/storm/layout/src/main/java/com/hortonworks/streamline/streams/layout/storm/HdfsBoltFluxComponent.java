@@ -15,11 +15,15 @@
  **/
 package com.hortonworks.streamline.streams.layout.storm;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.registries.common.Schema;
 import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
 import com.hortonworks.streamline.streams.layout.exception.ComponentConfigException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,11 +32,14 @@ import java.util.Map;
  * Implementation for HdfsBolt
  */
 public class HdfsBoltFluxComponent extends AbstractFluxComponent {
+    private static final String OUTPUT_FORMAT_TEXT = "text";
 
     @Override
     protected void generateComponent () {
         String boltId = "hdfsBolt" + UUID_FOR_COMPONENTS;
-        String boltClassName = "org.apache.storm.hdfs.bolt.HdfsBolt";
+        boolean columnar = isColumnarOutputFormat();
+        String boltClassName = columnar ? "com.hortonworks.streamline.streams.runtime.storm.hdfs.StreamlineHdfsBolt"
+                : "org.apache.storm.hdfs.bolt.HdfsBolt";
 
         String[] configMethodNames = {"withFsUrl", "withConfigKey"};
         String[] configKeys = {
@@ -41,18 +48,21 @@ public class HdfsBoltFluxComponent extends AbstractFluxComponent {
         };
         List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames,
                 configKeys);
-        String[] moreConfigMethodNames = {
-            "withFileNameFormat",
-             "withRecordFormat",
-             "withSyncPolicy",
-             "withRotationPolicy"
-        };
+        List<String> moreConfigMethodNames = new ArrayList<>();
         List<String> configMethodArgRefs = new ArrayList<>();
+        moreConfigMethodNames.add("withFileNameFormat");
         configMethodArgRefs.add(addFileNameFormatComponent());
-        configMethodArgRefs.add(addRecordFormatComponent());
+        if (columnar) {
+            configMethods.addAll(getColumnarConfigMethods());
+        } else {
+            moreConfigMethodNames.add("withRecordFormat");
+            configMethodArgRefs.add(addRecordFormatComponent());
+        }
+        moreConfigMethodNames.add("withSyncPolicy");
         configMethodArgRefs.add(addSyncPolicyComponent());
+        moreConfigMethodNames.add("withRotationPolicy");
         configMethodArgRefs.add(addRotationPolicyComponent());
-        configMethods.addAll(getConfigMethodWithRefArg(moreConfigMethodNames,
+        configMethods.addAll(getConfigMethodWithRefArg(moreConfigMethodNames.toArray(new String[moreConfigMethodNames.size()]),
                 configMethodArgRefs.toArray(new String[configMethodArgRefs
                         .size()])));
         component = createComponent(boltId, boltClassName, null, null,
@@ -61,7 +71,46 @@ public class HdfsBoltFluxComponent extends AbstractFluxComponent {
         addParallelismToComponent();
     }
 
+    private boolean isColumnarOutputFormat () {
+        Object outputFormat = conf.get(TopologyLayoutConstants.JSON_KEY_OUTPUT_FORMAT);
+        return outputFormat != null && !OUTPUT_FORMAT_TEXT.equals(outputFormat);
+    }
 
+    // avro and parquet files are written by StreamlineHdfsBolt, with a schema made of the output fields
+    private List<Map<String, Object>> getColumnarConfigMethods () {
+        String[] configMethodNames = {"withOutputFormat", "withCompressionCodec", "withBlockSize", "withMaxBufferedBytes"};
+        String[] configKeys = {
+                TopologyLayoutConstants.JSON_KEY_OUTPUT_FORMAT,
+                TopologyLayoutConstants.JSON_KEY_COMPRESSION_CODEC,
+                TopologyLayoutConstants.JSON_KEY_BLOCK_SIZE,
+                TopologyLayoutConstants.JSON_KEY_MAX_BUFFERED_BYTES
+        };
+        List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+        configMethods.addAll(getConfigMethodsYaml(new String[]{"withSchema"}, new Object[]{getOutputSchemaJson()}));
+        return configMethods;
+    }
+
+    private String getOutputSchemaJson () {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Schema inputSchema = objectMapper.convertValue(conf.get(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA), Schema.class);
+        Map<String, Schema.Field> inputFields = new HashMap<>();
+        for (Schema.Field field : inputSchema.getFields()) {
+            inputFields.put(field.getName(), field);
+        }
+        List<Schema.Field> outputFields = new ArrayList<>();
+        for (String outputField : (List<String>) conf.get("outputFields")) {
+            Schema.Field field = inputFields.get(outputField);
+            if (field == null) {
+                throw new IllegalArgumentException("Output field " + outputField + " is not part of the input schema of the hdfs sink");
+            }
+            outputFields.add(field);
+        }
+        try {
+            return objectMapper.writeValueAsString(Schema.of(outputFields));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Error creating json for the output schema of the hdfs sink", e);
+        }
+    }
 
     private String addFileNameFormatComponent () {
         String fileNameFormatComponentId = "fileNameFormat" +
@@ -155,6 +204,7 @@ public class HdfsBoltFluxComponent extends AbstractFluxComponent {
         super.validateConfig();
         validateStringFields();
         validateIntegerFields();
+        validateLongFields();
         validateFloatOrDoubleFields();
     }
 
@@ -168,7 +218,9 @@ public class HdfsBoltFluxComponent extends AbstractFluxComponent {
             TopologyLayoutConstants.JSON_KEY_CONFIG_KEY,
             TopologyLayoutConstants.JSON_KEY_PATH,
             TopologyLayoutConstants.JSON_KEY_PREFIX,
-            TopologyLayoutConstants.JSON_KEY_EXTENSION
+            TopologyLayoutConstants.JSON_KEY_EXTENSION,
+            TopologyLayoutConstants.JSON_KEY_OUTPUT_FORMAT,
+            TopologyLayoutConstants.JSON_KEY_COMPRESSION_CODEC
         };
         validateStringFields(optionalStringFields, false);
     }
@@ -184,6 +236,23 @@ public class HdfsBoltFluxComponent extends AbstractFluxComponent {
             Integer.MAX_VALUE
         };
         validateIntegerFields(requiredIntegerFields, true, mins, maxes);
+        String[] optionalIntegerFields = {
+            TopologyLayoutConstants.JSON_KEY_BLOCK_SIZE
+        };
+        validateIntegerFields(optionalIntegerFields, false, mins, maxes);
+    }
+
+    private void validateLongFields () throws ComponentConfigException {
+        String[] optionalLongFields = {
+            TopologyLayoutConstants.JSON_KEY_MAX_BUFFERED_BYTES
+        };
+        Long[] mins = {
+            1L
+        };
+        Long[] maxes = {
+            Long.MAX_VALUE
+        };
+        validateLongFields(optionalLongFields, false, mins, maxes);
     }
 
     private void validateFloatOrDoubleFields () throws ComponentConfigException {
@@ -49,14 +49,26 @@ public class HiveBoltFluxComponent extends AbstractFluxComponent {
     private static final String KEY_TIMEFORMAT = "timeFormat";
     private static final String KEY_FIELD_DELIMITER = "fieldDelimiter";
 
+    private static final String KEY_ADAPTIVE_BATCHING = "adaptiveBatching";
+    private static final String KEY_TARGET_COMMIT_LATENCY_SECS = "targetCommitLatencySecs";
+    private static final String KEY_MAX_TXNS_PER_BATCH = "maxTxnsPerBatch";
+
 
     @Override
     protected void generateComponent() {
         String boltId = "hiveBolt" + UUID_FOR_COMPONENTS;
-        String boltClassName = "org.apache.storm.hive.bolt.HiveBolt";
         List<Object> constructorArgs = new ArrayList<>();
         addArg(constructorArgs, getRefYaml(getHiveOptions()));
-        component = createComponent(boltId, boltClassName, null, constructorArgs, null);
+        if (Boolean.TRUE.equals(conf.get(KEY_ADAPTIVE_BATCHING))) {
+            String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.hive.StreamlineHiveBolt";
+            String[] configMethodNames = {"withTargetCommitLatencySecs", "withMaxTxnsPerBatch"};
+            String[] configKeys = {KEY_TARGET_COMMIT_LATENCY_SECS, KEY_MAX_TXNS_PER_BATCH};
+            component = createComponent(boltId, boltClassName, null, constructorArgs,
+                    getConfigMethodsYaml(configMethodNames, configKeys));
+        } else {
+            String boltClassName = "org.apache.storm.hive.bolt.HiveBolt";
+            component = createComponent(boltId, boltClassName, null, constructorArgs, null);
+        }
         addParallelismToComponent();
     }
 
@@ -87,7 +99,6 @@ public class HiveBoltFluxComponent extends AbstractFluxComponent {
                 KEY_MAX_OPEN_CONNECTIONS,
                 KEY_BATCH_SIZE,
                 KEY_IDLE_TIMEOUT,
-                KEY_IDLE_TIMEOUT,
                 KEY_CALL_TIMEOUT,
                 KEY_HEARTBEAT_INTERVAL,
                 KEY_AUTOCREATE_PARTITIONS,
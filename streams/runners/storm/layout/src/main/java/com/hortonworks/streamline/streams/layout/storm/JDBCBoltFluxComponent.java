@@ -38,14 +38,16 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
     private static final String KEY_JDBC_URL = "jdbcUrl";
     private static final String KEY_USERNAME = "username";
     private static final String KEY_PASSWORD = "password";
+    private static final String KEY_BATCH_SIZE = "batchSize";
+    private static final String KEY_FLUSH_INTERVAL_SECS = "flushIntervalSecs";
     private static final String PHOENIX = "phoenix";
     private static final String MYSQL = "mysql";
     private static final String POSTGRESQL = "postgresql";
 
     @Override
     protected void generateComponent() {
-        String boltId = "jdbcInsertBolt" + UUID_FOR_COMPONENTS;
-        String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.jdbc.StreamlineJdbcInsertBolt";
+        String boltId = "jdbcBatchBolt" + UUID_FOR_COMPONENTS;
+        String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.jdbc.StreamlineJdbcBatchBolt";
 
         String dbType = (String) conf.get(KEY_DB_TYPE);
         String tableName = (String) conf.get(KEY_TABLE_NAME);
@@ -60,11 +62,13 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
         addArg(constructorArgs, getRefYaml(connectionProviderId));
         addArg(constructorArgs, getRefYaml(getJdbcMapper(connectionProviderId, queryInfo.getColumnList())));
 
-        Map<String, Object> withInsertQuery = new LinkedHashMap<>();
-        withInsertQuery.put(StormTopologyLayoutConstants.YAML_KEY_NAME, "withInsertQuery");
-        withInsertQuery.put(StormTopologyLayoutConstants.YAML_KEY_ARGS, Arrays.asList(queryInfo.getQuery()));
+        Map<String, Object> withQuery = new LinkedHashMap<>();
+        withQuery.put(StormTopologyLayoutConstants.YAML_KEY_NAME, "withQuery");
+        withQuery.put(StormTopologyLayoutConstants.YAML_KEY_ARGS, Arrays.asList(queryInfo.getQuery()));
 
-        configMethods.add(withInsertQuery);
+        configMethods.add(withQuery);
+        configMethods.addAll(getConfigMethodsYaml(new String[]{"withBatchSize", "withFlushIntervalSecs"},
+                new String[]{KEY_BATCH_SIZE, KEY_FLUSH_INTERVAL_SECS}));
         component = createComponent(boltId, boltClassName, null, constructorArgs, configMethods);
         addParallelismToComponent();
     }
@@ -192,13 +196,9 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
                     + String.join(", ", getColumnNames(columns, "`%s`"))
                     + ") VALUES(" + getBindVariables("?,", columns.size()) + ")"
                     + " ON DUPLICATE KEY UPDATE "
-                    + String.join(", ", getColumnNames(columns, "`%s` = ?"));
+                    + String.join(", ", getColumnNames(columns, "`%1$s` = VALUES(`%1$s`)"));
 
-            List<String> columnsForUpsert = new ArrayList<>();
-            columnsForUpsert.addAll(columns);
-            columnsForUpsert.addAll(columns);
-
-            return new UpsertQueryInfo(sql, columnsForUpsert);
+            return new UpsertQueryInfo(sql, columns);
         }
     }
 
@@ -211,13 +211,9 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
                     + String.join(", ", columnNames)
                     + ") VALUES(" + getBindVariables("?,", columnNames.size()) + ")"
                     + " ON CONFLICT ON CONSTRAINT " + tableName + "_pkey"
-                    + " DO UPDATE SET " + String.join(", ", getColumnNames(columns, "\"%s\" = ?"));
+                    + " DO UPDATE SET " + String.join(", ", getColumnNames(columns, "\"%1$s\" = EXCLUDED.\"%1$s\""));
 
-            List<String> columnsForUpsert = new ArrayList<>();
-            columnsForUpsert.addAll(columns);
-            columnsForUpsert.addAll(columns);
-
-            return new UpsertQueryInfo(sql, columnsForUpsert);
+            return new UpsertQueryInfo(sql, columns);
         }
     }
 
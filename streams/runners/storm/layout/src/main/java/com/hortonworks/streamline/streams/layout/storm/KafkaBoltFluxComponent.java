@@ -27,6 +27,8 @@ import java.util.List;
  */
 public class KafkaBoltFluxComponent extends AbstractFluxComponent {
     private static final Logger LOG = LoggerFactory.getLogger(KafkaBoltFluxComponent.class);
+    static final String KEY_ACK_ON_SEND_COMPLETION = "ackOnSendCompletion";
+    static final String KEY_MAX_PENDING_SENDS = "maxPendingSends";
 
     public KafkaBoltFluxComponent () {}
 
@@ -35,11 +37,20 @@ public class KafkaBoltFluxComponent extends AbstractFluxComponent {
         validateSSLConfig();
         setSaslJaasConfig();
         String boltId = "kafkaBolt" + UUID_FOR_COMPONENTS;
-        String boltClassName = "org.apache.storm.kafka.bolt.KafkaBolt";
+        String boltClassName;
         List<Object> configMethods = new ArrayList<>();
-        String[]  configMethodNames = {"setFireAndForget", "setAsync"};
-        String[] configKeys = {"fireAndForget", "async"};
-        configMethods.addAll(getConfigMethodsYaml(configMethodNames, configKeys));
+        if (Boolean.TRUE.equals(conf.get(KEY_ACK_ON_SEND_COMPLETION))) {
+            // acks tuples once their records are sent, with a bound on the sends in flight
+            boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.kafka.StreamlineKafkaBolt";
+            String[] configMethodNames = {"withMaxPendingSends"};
+            String[] configKeys = {KEY_MAX_PENDING_SENDS};
+            configMethods.addAll(getConfigMethodsYaml(configMethodNames, configKeys));
+        } else {
+            boltClassName = "org.apache.storm.kafka.bolt.KafkaBolt";
+            String[] configMethodNames = {"setFireAndForget", "setAsync"};
+            String[] configKeys = {"fireAndForget", "async"};
+            configMethods.addAll(getConfigMethodsYaml(configMethodNames, configKeys));
+        }
         String[] moreConfigMethodNames = {
             "withTupleToKafkaMapper",
             "withTopicSelector",
@@ -150,7 +150,11 @@ public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
         if(readerSchemaVersion != null && !readerSchemaVersion.isEmpty()) {
             constructorArgs.add(Integer.parseInt(readerSchemaVersion));
         }
-        addToComponents(createComponent(translatorId, translatorClassname, null, constructorArgs, null));
+        // fields used by the downstream components, the rest are skipped while deserializing, and the conditions
+        // of the rules the events go to, events which match none of them are dropped
+        List<Map<String, Object>> configMethods = getConfigMethodsYaml(new String[]{"setProjectedFields", "setFilterConditions"},
+                new String[]{TopologyLayoutConstants.JSON_KEY_PROJECTED_FIELDS, TopologyLayoutConstants.JSON_KEY_FILTER_CONDITIONS});
+        addToComponents(createComponent(translatorId, translatorClassname, null, constructorArgs, configMethods));
         return translatorId;
     }
 
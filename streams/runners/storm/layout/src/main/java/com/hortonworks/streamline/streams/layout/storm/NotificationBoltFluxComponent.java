@@ -51,8 +51,10 @@ public class NotificationBoltFluxComponent extends AbstractFluxComponent {
             throw new RuntimeException(ex);
         }
         List<Object> boltConstructorArgs = getConstructorArgsYaml(constructorArgNames);
-        String[] configMethodNames = {"withNotificationStoreClass"};
-        String[] configKeys = {TopologyLayoutConstants.JSON_KEY_NOTIFICATION_STORE_CLASS};
+        String[] configMethodNames = {"withNotificationStoreClass", "withBatchSize", "withFlushIntervalSecs"};
+        String[] configKeys = {TopologyLayoutConstants.JSON_KEY_NOTIFICATION_STORE_CLASS,
+                TopologyLayoutConstants.JSON_KEY_NOTIFICATION_BATCH_SIZE,
+                TopologyLayoutConstants.JSON_KEY_NOTIFICATION_FLUSH_INTERVAL_SECS};
         List configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
         component = createComponent(boltId, boltClassName, null, boltConstructorArgs, configMethods);
         addParallelismToComponent();
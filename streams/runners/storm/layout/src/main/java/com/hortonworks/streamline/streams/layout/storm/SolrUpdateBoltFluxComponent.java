@@ -16,8 +16,13 @@
 
 package com.hortonworks.streamline.streams.layout.storm;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static com.hortonworks.streamline.streams.layout.storm.DruidBoltFluxComponent.KEY_BATCH_SIZE;
 
@@ -31,9 +36,23 @@ public class SolrUpdateBoltFluxComponent extends AbstractFluxComponent {
     public final static String JSON_KEY_COMMIT_BATCH_SIZE = "commitBatchSize";
     public final static String JSON_KEY_JSON_TUPLE_FIELD = "jsonTupleField";
     public final static String JSON_KEY_SOLR_JSON_UPDATE_URL = "solrJsonUpdateUrl";
+    public final static String JSON_KEY_WRITE_MODE = "writeMode";
+    public final static String JSON_KEY_UPDATE_BATCH_SIZE = "updateBatchSize";
+    public final static String JSON_KEY_MAX_BATCH_BYTES = "maxBatchBytes";
+    public final static String JSON_KEY_FLUSH_INTERVAL_SECS = "flushIntervalSecs";
+    public final static String JSON_KEY_COMMIT_WITHIN_MS = "commitWithinMs";
+    public final static String JSON_KEY_MAX_IN_FLIGHT_REQUESTS = "maxInFlightRequests";
+
+    private static final String BUFFERED_WRITE_MODE = "buffered";
+    // same as the default of the component config, commitBatchSize being optional
+    private static final int DEFAULT_COMMIT_BATCH_SIZE = 10000;
 
     @Override
     protected void generateComponent() {
+        if (BUFFERED_WRITE_MODE.equals(conf.get(JSON_KEY_WRITE_MODE))) {
+            generateBufferedComponent();
+            return;
+        }
         final String boltId = "solrUpdateBolt" + UUID_FOR_COMPONENTS;
         final String boltClassName = "org.apache.storm.solr.bolt.SolrUpdateBolt";
         final List<Object> boltConstructorArgs = new ArrayList<>();
@@ -44,6 +63,45 @@ public class SolrUpdateBoltFluxComponent extends AbstractFluxComponent {
         addParallelismToComponent();
     }
 
+    private void generateBufferedComponent() {
+        final String boltId = "streamlineSolrBolt" + UUID_FOR_COMPONENTS;
+        final String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.solr.StreamlineSolrBolt";
+        final List<Object> boltConstructorArgs = new ArrayList<>();
+        boltConstructorArgs.add(conf.get(JSON_KEY_SOLR_ZK_HOST_STRING));
+        boltConstructorArgs.add(conf.get(JSON_KEY_SOLR_COLLECTION_NAME));
+        boltConstructorArgs.add(getRefYaml(addSolrDocumentMapper()));
+        final String[] configMethodNames = {
+                "withBatchSize", "withMaxBatchBytes", "withFlushIntervalSecs", "withCommitWithinMs", "withMaxInFlightRequests"
+        };
+        final String[] configKeys = {
+                JSON_KEY_UPDATE_BATCH_SIZE, JSON_KEY_MAX_BATCH_BYTES, JSON_KEY_FLUSH_INTERVAL_SECS, JSON_KEY_COMMIT_WITHIN_MS,
+                JSON_KEY_MAX_IN_FLIGHT_REQUESTS
+        };
+        component = createComponent(boltId, boltClassName, null, boltConstructorArgs,
+                getConfigMethodsYaml(configMethodNames, configKeys));
+        addParallelismToComponent();
+    }
+
+    private String addSolrDocumentMapper() {
+        final String componentId = "streamlineSolrDocumentMapper" + UUID_FOR_COMPONENTS;
+        final String className = "com.hortonworks.streamline.streams.runtime.storm.bolt.solr.StreamlineSolrDocumentMapper";
+        List<Map<String, Object>> configMethods = null;
+        // documents are mapped from the schema of the input streams when it is known
+        if (conf.get(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA) != null) {
+            configMethods = getConfigMethodsYaml(new String[]{"withSchema"}, new Object[]{getInputSchemaJson()});
+        }
+        addToComponents(createComponent(componentId, className, null, null, configMethods));
+        return componentId;
+    }
+
+    private String getInputSchemaJson() {
+        try {
+            return new ObjectMapper().writeValueAsString(conf.get(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Error creating json for the input schema of the solr sink", e);
+        }
+    }
+
     private String addSolrConfig() {
         final String componentId = "solrConfig" + UUID_FOR_COMPONENTS;
         final String className = "org.apache.storm.solr.config.SolrConfig";
@@ -70,7 +128,7 @@ public class SolrUpdateBoltFluxComponent extends AbstractFluxComponent {
         final String componentId = "countBasedCommit" + UUID_FOR_COMPONENTS;
         final String className = "org.apache.storm.solr.config.CountBasedCommit";
         final List<Object> constructorArgs = new ArrayList<Object>() {{
-            add(conf.get(JSON_KEY_COMMIT_BATCH_SIZE));
+            add(conf.get(JSON_KEY_COMMIT_BATCH_SIZE) != null ? conf.get(JSON_KEY_COMMIT_BATCH_SIZE) : DEFAULT_COMMIT_BATCH_SIZE);
         }};
 
         addToComponents(createComponent(componentId, className, null, constructorArgs, null));
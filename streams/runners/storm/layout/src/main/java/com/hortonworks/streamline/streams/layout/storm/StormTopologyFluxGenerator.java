@@ -15,11 +15,15 @@
  **/
 package com.hortonworks.streamline.streams.layout.storm;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Multimap;
+import com.hortonworks.registries.common.Schema;
 import com.hortonworks.streamline.common.Config;
+import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
 import com.hortonworks.streamline.streams.layout.component.Component;
 import com.hortonworks.streamline.streams.layout.component.Edge;
 import com.hortonworks.streamline.streams.layout.component.InputComponent;
@@ -28,12 +32,15 @@ import com.hortonworks.streamline.streams.layout.component.StreamlineProcessor;
 import com.hortonworks.streamline.streams.layout.component.StreamlineSink;
 import com.hortonworks.streamline.streams.layout.component.StreamlineSource;
 import com.hortonworks.streamline.streams.layout.component.OutputComponent;
+import com.hortonworks.streamline.streams.layout.component.SourceFilterVisitor;
+import com.hortonworks.streamline.streams.layout.component.SourceProjectionVisitor;
 import com.hortonworks.streamline.streams.layout.component.StreamGrouping;
 import com.hortonworks.streamline.streams.layout.component.TopologyDag;
 import com.hortonworks.streamline.streams.layout.component.TopologyDagVisitor;
 import com.hortonworks.streamline.streams.layout.component.TopologyLayout;
 import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
 import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
 import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,12 +48,14 @@ import org.slf4j.LoggerFactory;
 import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.hortonworks.streamline.streams.layout.storm.StormTopologyLayoutConstants.YAML_KEY_ID;
 import static com.hortonworks.streamline.streams.layout.storm.StormTopologyLayoutConstants.YAML_KEY_STREAMS;
@@ -57,30 +66,149 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
 
     private static final int DELTA = 5;
 
+    // see DeadLetterBolt in the storm runtime
+    private static final String DEAD_LETTER_BOLT_CLASS_NAME = "com.hortonworks.streamline.streams.runtime.storm.bolt.DeadLetterBolt";
+    private static final String DEAD_LETTER_STREAM = "deadLetterStream";
+    private static final List<Schema.Field> DEAD_LETTER_ERROR_FIELDS = Arrays.asList(
+            Schema.Field.optional("errorMessage", Schema.Type.STRING),
+            Schema.Field.optional("errorClass", Schema.Type.STRING),
+            Schema.Field.optional("errorComponent", Schema.Type.STRING),
+            Schema.Field.optional("errorAttempts", Schema.Type.INTEGER),
+            Schema.Field.optional("errorTimestamp", Schema.Type.LONG));
+    private static final int DEFAULT_DEAD_LETTER_MAX_RETRIES = 3;
+    private static final long DEFAULT_DEAD_LETTER_INITIAL_BACKOFF_MS = 1000;
+    private static final long DEFAULT_DEAD_LETTER_MAX_BACKOFF_MS = 10000;
+
     private final FluxComponentFactory fluxComponentFactory;
 
     private final List<Map.Entry<String, Map<String, Object>>> keysAndComponents = new ArrayList<>();
     private final TopologyDag topologyDag;
     private final Map<String, Object> config;
     private final Config topologyConfig;
+    private final SourceProjectionVisitor sourceProjectionVisitor;
+    private final SourceFilterVisitor sourceFilterVisitor;
 
     public StormTopologyFluxGenerator(TopologyLayout topologyLayout, Map<String, Object> config, Path extraJarsLocation) {
         this.topologyDag = topologyLayout.getTopologyDag();
         this.topologyConfig = topologyLayout.getConfig();
         this.config = config;
         fluxComponentFactory = new FluxComponentFactory(extraJarsLocation);
+        sourceProjectionVisitor = new SourceProjectionVisitor();
+        topologyDag.traverse(sourceProjectionVisitor);
+        sourceFilterVisitor = new SourceFilterVisitor();
+        topologyDag.traverse(sourceFilterVisitor);
     }
 
     @Override
     public void visit(StreamlineSource source) {
+        // let the source skip the fields which are not used downstream
+        Set<String> projectedFields = sourceProjectionVisitor.getRequiredFields(source);
+        if (projectedFields != null) {
+            LOG.debug("Fields used downstream of source {} are {}", source.getId(), projectedFields);
+            source.getConfig().setAny(TopologyLayoutConstants.JSON_KEY_PROJECTED_FIELDS, new ArrayList<>(projectedFields));
+        }
+        // let the source drop the events which cannot match the rules they are sent to
+        List<Condition> filterConditions = sourceFilterVisitor.getFilterConditions(source);
+        if (filterConditions != null) {
+            try {
+                source.getConfig().setAny(TopologyLayoutConstants.JSON_KEY_FILTER_CONDITIONS,
+                        new ObjectMapper().writeValueAsString(filterConditions));
+            } catch (JsonProcessingException e) {
+                LOG.warn("Error creating json for the filter conditions of source {}, events are not filtered at the source",
+                        source.getId(), e);
+            }
+        }
         keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_SPOUTS,
                 getYamlComponents(fluxComponentFactory.getFluxComponent(source), source)));
     }
 
     @Override
     public void visit(StreamlineSink sink) {
-        keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_BOLTS,
-                getYamlComponents(fluxComponentFactory.getFluxComponent(sink), sink)));
+        // sinks can map the events based on the schema of the streams they receive
+        if (!sink.getConfig().getProperties().containsKey(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA)) {
+            sink.getConfig().setAny(TopologyLayoutConstants.JSON_KEY_INPUT_SCHEMA, getInputSchema(sink));
+        }
+        Map<String, Object> yamlComponent = getYamlComponents(fluxComponentFactory.getFluxComponent(sink), sink);
+        if (sink.getConfig().getBoolean(TopologyLayoutConstants.JSON_KEY_DEAD_LETTER_ENABLED, false)) {
+            yamlComponent = wrapWithDeadLetterBolt(sink, yamlComponent);
+        }
+        keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_BOLTS, yamlComponent));
+    }
+
+    /*
+     * The sink bolt is declared as a component and given to a DeadLetterBolt which takes its place, and which retries
+     * the failed tuples before sending them to the dead letter stream. This stream is connected to the dead letter sink
+     * if one is configured, otherwise the dead lettered events are only logged.
+     */
+    private Map<String, Object> wrapWithDeadLetterBolt(StreamlineSink sink, Map<String, Object> yamlComponent) {
+        String fluxId = getFluxId(sink);
+        String delegateId = fluxId + "-delegate";
+        Object parallelism = yamlComponent.remove(StormTopologyLayoutConstants.YAML_KEY_PARALLELISM);
+        yamlComponent.put(StormTopologyLayoutConstants.YAML_KEY_ID, delegateId);
+        keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_COMPONENTS, yamlComponent));
+
+        Config config = sink.getConfig();
+        List<Map<String, Object>> configMethods = new ArrayList<>();
+        configMethods.add(configMethod("withMaxRetries",
+                config.getInt(TopologyLayoutConstants.JSON_KEY_DEAD_LETTER_MAX_RETRIES, DEFAULT_DEAD_LETTER_MAX_RETRIES)));
+        configMethods.add(configMethod("withInitialBackoffMs",
+                config.getLong(TopologyLayoutConstants.JSON_KEY_DEAD_LETTER_INITIAL_BACKOFF_MS, DEFAULT_DEAD_LETTER_INITIAL_BACKOFF_MS)));
+        configMethods.add(configMethod("withMaxBackoffMs",
+                config.getLong(TopologyLayoutConstants.JSON_KEY_DEAD_LETTER_MAX_BACKOFF_MS, DEFAULT_DEAD_LETTER_MAX_BACKOFF_MS)));
+
+        Map<String, Object> ref = new LinkedHashMap<>();
+        ref.put(StormTopologyLayoutConstants.YAML_KEY_REF, delegateId);
+        List<Object> constructorArgs = new ArrayList<>();
+        constructorArgs.add(ref);
+        Map<String, Object> deadLetterBolt = new LinkedHashMap<>();
+        deadLetterBolt.put(StormTopologyLayoutConstants.YAML_KEY_ID, fluxId);
+        deadLetterBolt.put(StormTopologyLayoutConstants.YAML_KEY_CLASS_NAME, DEAD_LETTER_BOLT_CLASS_NAME);
+        deadLetterBolt.put(StormTopologyLayoutConstants.YAML_KEY_CONSTRUCTOR_ARGS, constructorArgs);
+        deadLetterBolt.put(StormTopologyLayoutConstants.YAML_KEY_CONFIG_METHODS, configMethods);
+        if (parallelism != null) {
+            deadLetterBolt.put(StormTopologyLayoutConstants.YAML_KEY_PARALLELISM, parallelism);
+        }
+
+        String deadLetterSinkName = config.get(TopologyLayoutConstants.JSON_KEY_DEAD_LETTER_SINK, "");
+        if (!deadLetterSinkName.isEmpty()) {
+            StreamlineSink deadLetterSink = getSink(deadLetterSinkName);
+            if (deadLetterSink == null || deadLetterSink.equals(sink)) {
+                throw new IllegalArgumentException("Invalid dead letter sink " + deadLetterSinkName + " for sink " + sink.getName());
+            }
+            addEdge(fluxId, getFluxId(deadLetterSink), DEAD_LETTER_STREAM, Stream.Grouping.SHUFFLE, null);
+        }
+        return deadLetterBolt;
+    }
+
+    private Map<String, Object> configMethod(String name, Object arg) {
+        Map<String, Object> configMethod = new LinkedHashMap<>();
+        configMethod.put(StormTopologyLayoutConstants.YAML_KEY_NAME, name);
+        List<Object> args = new ArrayList<>();
+        args.add(arg);
+        configMethod.put(StormTopologyLayoutConstants.YAML_KEY_ARGS, args);
+        return configMethod;
+    }
+
+    private StreamlineSink getSink(String name) {
+        for (Component component : topologyDag.getComponents()) {
+            if (component instanceof StreamlineSink && name.equals(component.getName())) {
+                return (StreamlineSink) component;
+            }
+        }
+        return null;
+    }
+
+    // sinks whose failed events are sent to the given sink
+    private List<StreamlineSink> getDeadLetterSources(Component deadLetterSink) {
+        List<StreamlineSink> sinks = new ArrayList<>();
+        for (Component component : topologyDag.getComponents()) {
+            if (component instanceof StreamlineSink && !component.equals(deadLetterSink)
+                    && component.getConfig().getBoolean(TopologyLayoutConstants.JSON_KEY_DEAD_LETTER_ENABLED, false)
+                    && deadLetterSink.getName().equals(component.getConfig().get(TopologyLayoutConstants.JSON_KEY_DEAD_LETTER_SINK, ""))) {
+                sinks.add((StreamlineSink) component);
+            }
+        }
+        return sinks;
     }
 
     @Override
@@ -226,6 +354,34 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
         return false;
     }
 
+    // fields of the streams received by the component, fields with the same name are taken once
+    private Schema getInputSchema(InputComponent component) {
+        Map<String, Schema.Field> fields = new LinkedHashMap<>();
+        addStreamFields(component, fields);
+        // along with the events dead lettered by other sinks and their error fields
+        for (StreamlineSink sink : getDeadLetterSources(component)) {
+            addStreamFields(sink, fields);
+            for (Schema.Field field : DEAD_LETTER_ERROR_FIELDS) {
+                if (!fields.containsKey(field.getName())) {
+                    fields.put(field.getName(), field);
+                }
+            }
+        }
+        return Schema.of(new ArrayList<>(fields.values()));
+    }
+
+    private void addStreamFields(InputComponent component, Map<String, Schema.Field> fields) {
+        for (Edge edge : topologyDag.getEdgesTo(component)) {
+            for (StreamGrouping streamGrouping : edge.getStreamGroupings()) {
+                for (Schema.Field field : streamGrouping.getStream().getSchema().getFields()) {
+                    if (!fields.containsKey(field.getName())) {
+                        fields.put(field.getName(), field);
+                    }
+                }
+            }
+        }
+    }
+
     public List<Map.Entry<String, Map<String, Object>>> getYamlKeysAndComponents() {
         return keysAndComponents;
     }
@@ -252,6 +408,10 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
     }
 
     private void addEdge(OutputComponent from, InputComponent to, String streamId, Stream.Grouping groupingType, List<String> fields) {
+        addEdge(getFluxId(from), getFluxId(to), streamId, groupingType, fields);
+    }
+
+    private void addEdge(String fromFluxId, String toFluxId, String streamId, Stream.Grouping groupingType, List<String> fields) {
         LinkFluxComponent fluxComponent = new LinkFluxComponent();
         Map<String, Object> config = new HashMap<>();
         Map<String, Object> grouping = new LinkedHashMap<>();
@@ -270,8 +430,8 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
         }
         grouping.put(StormTopologyLayoutConstants.YAML_KEY_STREAM_ID, streamId);
         fluxComponent.updateLinkComponentWithGrouping(grouping);
-        config.put(StormTopologyLayoutConstants.YAML_KEY_FROM, getFluxId(from));
-        config.put(StormTopologyLayoutConstants.YAML_KEY_TO, getFluxId(to));
+        config.put(StormTopologyLayoutConstants.YAML_KEY_FROM, fromFluxId);
+        config.put(StormTopologyLayoutConstants.YAML_KEY_TO, toFluxId);
         fluxComponent.withConfig(config);
         Map<String, Object> yamlComponent = fluxComponent.getComponent();
         keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_STREAMS, yamlComponent));
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -41,6 +42,8 @@ public class CassandraBoltFluxComponentTest {
 
     private static final String FIELD_SELECTOR_CLASS = "com.hortonworks.streamline.streams.runtime.storm.cassandra.StreamlineFieldSelector";
     private static final String MAPPER_CLASS = "org.apache.storm.cassandra.query.builder.BoundCQLStatementMapperBuilder";
+    private static final String BOUND_STATEMENT_MAPPER_CLASS = "com.hortonworks.streamline.streams.runtime.storm.cassandra.StreamlineBoundStatementMapper";
+    private static final String ASYNC_BOLT_CLASS = "com.hortonworks.streamline.streams.runtime.storm.cassandra.StreamlineCassandraAsyncBolt";
 
     @Test
     public void testCassandraFluxGeneration() throws Exception {
@@ -85,4 +88,35 @@ public class CassandraBoltFluxComponentTest {
         Assert.assertEquals(selectorIds, bindArgRefs);
     }
 
+    @Test
+    public void testCassandraAsyncFluxGeneration() throws Exception {
+        CassandraBoltFluxComponent cassandraBoltFluxComponent = new CassandraBoltFluxComponent();
+        InputStream resourceAsStream = this.getClass().getResourceAsStream("/cassandra-flux.json");
+        Map<String, Object> config = new ObjectMapper().readValue(IOUtils.toString(resourceAsStream, "UTF-8"),
+                                                                  new TypeReference<Map<String, Object>>() {});
+        config.put("writeMode", "async");
+        config.put("maxInFlightRequests", 32);
+        cassandraBoltFluxComponent.withConfig(config);
+
+        FluxBoltGenerator fluxBoltGenerator = new FluxBoltGenerator();
+        Map<String, Object> yamlMap = fluxBoltGenerator.generateYaml(cassandraBoltFluxComponent);
+        LOG.info("yamlString = \n" + fluxBoltGenerator.toYamlString(yamlMap));
+
+        List<Map<String, Object>> components = (List<Map<String, Object>>) yamlMap.get(StormTopologyLayoutConstants.YAML_KEY_COMPONENTS);
+        String mapperId = null;
+        for (Map<String, Object> component : components) {
+            if (BOUND_STATEMENT_MAPPER_CLASS.equals(component.get(StormTopologyLayoutConstants.YAML_KEY_CLASS_NAME))) {
+                mapperId = (String) component.get(StormTopologyLayoutConstants.YAML_KEY_ID);
+                Assert.assertEquals("INSERT INTO temperature (weather_station_id, event_time, temperature) VALUES (?, ?, ?)",
+                                    ((List<Object>) component.get(StormTopologyLayoutConstants.YAML_KEY_CONSTRUCTOR_ARGS)).get(0));
+            }
+        }
+        Assert.assertNotNull(mapperId);
+
+        Map<String, Object> bolt = ((List<Map<String, Object>>) yamlMap.get(StormTopologyLayoutConstants.YAML_KEY_BOLTS)).get(0);
+        Assert.assertEquals(ASYNC_BOLT_CLASS, bolt.get(StormTopologyLayoutConstants.YAML_KEY_CLASS_NAME));
+        List<Map<String, Object>> configMethods = (List<Map<String, Object>>) bolt.get(StormTopologyLayoutConstants.YAML_KEY_CONFIG_METHODS);
+        List<String> configMethodNames = configMethods.stream().map(x -> (String) x.get("name")).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("withCassandraConfig", "withMaxInFlightRequests"), configMethodNames);
+    }
 }
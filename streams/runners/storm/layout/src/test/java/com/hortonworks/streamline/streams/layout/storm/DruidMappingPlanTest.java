@@ -0,0 +1,73 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.layout.storm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.hortonworks.registries.common.Schema;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class DruidMappingPlanTest {
+    private static final long TIMESTAMP = new DateTime(2017, 3, 1, 10, 30, DateTimeZone.UTC).getMillis();
+
+    @Test
+    public void testEpochMillisTimestamp() throws Exception {
+        DruidMappingPlan plan = new DruidMappingPlan(schemaJson(Schema.Type.LONG), "ts", Arrays.asList("city", "device"))
+                .withMetricFields(Arrays.asList("temperature", "city"));
+
+        Map<String, Object> druidEvent = plan.toDruidEvent(ImmutableMap.<String, Object>of("ts", TIMESTAMP, "city", "Santa Clara",
+                "temperature", 20.5, "other", "dropped"));
+
+        Assert.assertEquals(Arrays.asList("city", "device", "temperature"), plan.getFields());
+        Assert.assertEquals(ImmutableMap.of("ts", TIMESTAMP, "city", "Santa Clara", "temperature", 20.5), druidEvent);
+    }
+
+    @Test
+    public void testStringTimestamp() throws Exception {
+        DruidMappingPlan plan = new DruidMappingPlan(schemaJson(Schema.Type.STRING), "ts", Collections.singletonList("city"));
+        Assert.assertEquals(TIMESTAMP, plan.timestamp(ImmutableMap.<String, Object>of("ts", "2017-03-01T12:30:00.000+02:00")));
+
+        plan.withTimestampFormat("yyyy-MM-dd HH:mm:ssZ");
+        Assert.assertEquals(TIMESTAMP, plan.timestamp(ImmutableMap.<String, Object>of("ts", "2017-03-01 10:30:00+0000")));
+    }
+
+    @Test
+    public void testProcessingTime() throws Exception {
+        DruidMappingPlan plan = new DruidMappingPlan(schemaJson(Schema.Type.LONG), DruidBeamFactoryImpl.PROCESSING_TIME,
+                Collections.singletonList("city"));
+        long start = System.currentTimeMillis();
+        Map<String, Object> druidEvent = plan.toDruidEvent(ImmutableMap.<String, Object>of("ts", TIMESTAMP, "city", "Santa Clara"));
+        Assert.assertTrue((Long) druidEvent.get(DruidBeamFactoryImpl.PROCESSING_TIME) >= start);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDimension() throws Exception {
+        new DruidMappingPlan(schemaJson(Schema.Type.LONG), "ts", Collections.singletonList("country"));
+    }
+
+    private String schemaJson(Schema.Type timestampType) throws Exception {
+        return new ObjectMapper().writeValueAsString(Schema.of(Schema.Field.of("ts", timestampType),
+                Schema.Field.of("city", Schema.Type.STRING), Schema.Field.of("device", Schema.Type.STRING),
+                Schema.Field.of("temperature", Schema.Type.DOUBLE), Schema.Field.of("other", Schema.Type.STRING)));
+    }
+}
@@ -0,0 +1,45 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.layout.storm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class JDBCBoltFluxComponentTest {
+    private static final List<String> COLUMNS = Arrays.asList("id", "name");
+
+    @Test
+    public void testMySQLUpsertQuery() {
+        JDBCBoltFluxComponent.UpsertQueryInfo queryInfo = new JDBCBoltFluxComponent.MySQLUpsertSupport().buildUpsertQuery("events", COLUMNS);
+
+        Assert.assertEquals("INSERT INTO `events` (`id`, `name`) VALUES(?,?)"
+                + " ON DUPLICATE KEY UPDATE `id` = VALUES(`id`), `name` = VALUES(`name`)", queryInfo.getQuery());
+        Assert.assertEquals(COLUMNS, queryInfo.getColumnList());
+    }
+
+    @Test
+    public void testPostgreSQLUpsertQuery() {
+        JDBCBoltFluxComponent.UpsertQueryInfo queryInfo = new JDBCBoltFluxComponent.PostgreSQLUpsertSupport().buildUpsertQuery("events", COLUMNS);
+
+        Assert.assertEquals("INSERT INTO \"events\" (\"id\", \"name\") VALUES(?,?)"
+                + " ON CONFLICT ON CONSTRAINT events_pkey"
+                + " DO UPDATE SET \"id\" = EXCLUDED.\"id\", \"name\" = EXCLUDED.\"name\"", queryInfo.getQuery());
+        Assert.assertEquals(COLUMNS, queryInfo.getColumnList());
+    }
+}
@@ -0,0 +1,173 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.metrics.storm.topology;
+
+import com.hortonworks.streamline.common.util.ParallelStreamUtil;
+import com.hortonworks.streamline.streams.metrics.topology.MetricsSnapshotCollector;
+import com.hortonworks.streamline.streams.storm.common.StormRestAPIClient;
+import com.hortonworks.streamline.streams.storm.common.StormTopologyRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_BOLTS;
+import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_BOLT_ID;
+import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_COMPONENT_ERRORS;
+import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_SPOUTS;
+import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_SPOUT_ID;
+import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGIES;
+import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_ID_ENCODED;
+
+/**
+ * Collects the topology info and the error counts of all the topologies running in the Storm cluster: the topology
+ * summary is retrieved once per poll, then the info of each topology. The error counts need a request per component,
+ * so they are collected at most once per error count interval and carried over from the previous snapshot in
+ * between. The topology registry is reconciled with the retrieved summary.
+ */
+public class StormTopologyMetricsCollector extends MetricsSnapshotCollector<StormTopologyMetricsCollector.Snapshot> {
+    private static final Logger LOG = LoggerFactory.getLogger(StormTopologyMetricsCollector.class);
+
+    public static final String ERROR_COUNT_INTERVAL_MS = "metrics.snapshot.error.count.interval.ms";
+
+    private static final long DEFAULT_ERROR_COUNT_INTERVAL_MS = 120_000L;
+
+    private final StormRestAPIClient client;
+    private final StormTopologyRegistry topologyRegistry;
+    private final ForkJoinPool forkJoinPool;
+    private final long errorCountIntervalMs;
+
+    public StormTopologyMetricsCollector(StormRestAPIClient client, StormTopologyRegistry topologyRegistry,
+                                         ForkJoinPool forkJoinPool, Map<String, Object> conf) {
+        super("storm", conf);
+        this.client = client;
+        this.topologyRegistry = topologyRegistry;
+        this.forkJoinPool = forkJoinPool;
+        this.errorCountIntervalMs = getLong(conf, ERROR_COUNT_INTERVAL_MS, DEFAULT_ERROR_COUNT_INTERVAL_MS);
+    }
+
+    /**
+     * Returns how long the error count of a topology is reused before being collected again.
+     */
+    public long getErrorCountIntervalMs() {
+        return errorCountIntervalMs;
+    }
+
+    @Override
+    protected Snapshot collect(String asUser, Snapshot previous) {
+        long now = System.currentTimeMillis();
+        Map<?, ?> summaryMap = client.getTopologySummary(asUser);
+        List<Map<?, ?>> topologies = (List<Map<?, ?>>) summaryMap.get(TOPOLOGY_SUMMARY_JSON_TOPOLOGIES);
+        topologyRegistry.reconcile(asUser, summaryMap);
+        List<String> stormTopologyIds = new ArrayList<>();
+        for (Map<?, ?> topologyMap : topologies) {
+            stormTopologyIds.add((String) topologyMap.get(TOPOLOGY_SUMMARY_JSON_TOPOLOGY_ID_ENCODED));
+        }
+
+        Map<String, TopologyInfo> topologyInfos = ParallelStreamUtil.execute(() -> {
+            Map<String, TopologyInfo> infos = Collections.synchronizedMap(new HashMap<>());
+            stormTopologyIds.parallelStream().forEach(stormTopologyId -> {
+                try {
+                    Map<String, ?> topologyInfo = client.getTopology(stormTopologyId, asUser);
+                    TopologyInfo previousInfo = previous != null ? previous.getTopologyInfo(stormTopologyId) : null;
+                    if (previousInfo != null && now - previousInfo.errorCountCollectedMs < errorCountIntervalMs) {
+                        infos.put(stormTopologyId, new TopologyInfo(topologyInfo, previousInfo.errorCount,
+                                previousInfo.errorCountCollectedMs));
+                    } else {
+                        infos.put(stormTopologyId, new TopologyInfo(topologyInfo,
+                                getErrorCount(stormTopologyId, topologyInfo, asUser), now));
+                    }
+                } catch (Exception e) {
+                    // the topology may have been killed since the summary was retrieved
+                    LOG.debug("Failed to collect metrics of topology {} as user {}", stormTopologyId, asUser, e);
+                }
+            });
+            return infos;
+        }, forkJoinPool);
+        return new Snapshot(topologyInfos);
+    }
+
+    /**
+     * Returns the number of errors of the components of the given Storm topology.
+     */
+    long getErrorCount(String stormTopologyId, Map<String, ?> topologyInfo, String asUser) {
+        List<String> componentIds = new ArrayList<>();
+        addComponentIds(componentIds, (List<Map<String, ?>>) topologyInfo.get(TOPOLOGY_JSON_SPOUTS), TOPOLOGY_JSON_SPOUT_ID);
+        addComponentIds(componentIds, (List<Map<String, ?>>) topologyInfo.get(TOPOLOGY_JSON_BOLTS), TOPOLOGY_JSON_BOLT_ID);
+        // run in the fork join pool of the caller
+        return componentIds.parallelStream().mapToLong(componentId -> {
+            Map<String, ?> componentStats = client.getComponent(stormTopologyId, componentId, asUser);
+            List<?> componentErrors = (List<?>) componentStats.get(TOPOLOGY_JSON_COMPONENT_ERRORS);
+            return componentErrors != null ? componentErrors.size() : 0;
+        }).sum();
+    }
+
+    private void addComponentIds(List<String> componentIds, List<Map<String, ?>> components, String idKey) {
+        if (components != null) {
+            for (Map<String, ?> component : components) {
+                componentIds.add((String) component.get(idKey));
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the topologies running in the Storm cluster.
+     */
+    public static class Snapshot {
+        // keyed by the storm topology ids
+        private final Map<String, TopologyInfo> topologyInfos;
+
+        Snapshot(Map<String, TopologyInfo> topologyInfos) {
+            this.topologyInfos = topologyInfos;
+        }
+
+        /**
+         * Returns the info of the given Storm topology, or null if it could not be collected.
+         */
+        public TopologyInfo getTopologyInfo(String stormTopologyId) {
+            return topologyInfos.get(stormTopologyId);
+        }
+    }
+
+    /**
+     * Topology info as returned by the Storm REST API, along with the number of errors of its components, which may
+     * be up to an error count interval old.
+     */
+    public static class TopologyInfo {
+        private final Map<String, ?> topologyInfo;
+        private final long errorCount;
+        private final long errorCountCollectedMs;
+
+        TopologyInfo(Map<String, ?> topologyInfo, long errorCount, long errorCountCollectedMs) {
+            this.topologyInfo = topologyInfo;
+            this.errorCount = errorCount;
+            this.errorCountCollectedMs = errorCountCollectedMs;
+        }
+
+        public Map<String, ?> getTopologyInfo() {
+            return topologyInfo;
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+    }
+}
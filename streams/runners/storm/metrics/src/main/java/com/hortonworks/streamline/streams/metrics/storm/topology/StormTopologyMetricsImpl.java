@@ -17,12 +17,9 @@ package com.hortonworks.streamline.streams.metrics.storm.topology;
 
 import org.apache.commons.lang3.StringUtils;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.UncheckedExecutionException;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
 import com.hortonworks.streamline.common.util.ParallelStreamUtil;
 import com.hortonworks.streamline.streams.exception.ConfigException;
 import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
@@ -32,8 +29,10 @@ import com.hortonworks.streamline.streams.metrics.TimeSeriesQuerier;
 import com.hortonworks.streamline.streams.metrics.topology.TopologyMetrics;
 import com.hortonworks.streamline.streams.metrics.topology.TopologyTimeSeriesMetrics;
 import com.hortonworks.streamline.streams.storm.common.StormRestAPIClient;
-import com.hortonworks.streamline.streams.storm.common.StormTopologyUtil;
+import com.hortonworks.streamline.streams.storm.common.StormTopologyRegistry;
 import com.hortonworks.streamline.streams.exception.TopologyNotAliveException;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.glassfish.jersey.client.ClientConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,10 +40,10 @@ import org.slf4j.LoggerFactory;
 import javax.security.auth.Subject;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
@@ -59,7 +58,6 @@ import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConsta
 import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.STATS_JSON_TRANSFERRED_TUPLES;
 import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_BOLTS;
 import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_BOLT_ID;
-import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_COMPONENT_ERRORS;
 import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_EXECUTORS_TOTAL;
 import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_SPOUTS;
 import static com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant.TOPOLOGY_JSON_SPOUT_ID;
@@ -76,25 +74,31 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
     private static final Logger LOG = LoggerFactory.getLogger(StormTopologyMetricsImpl.class);
 
     private static final String FRAMEWORK = "STORM";
+    private static final int FORK_JOIN_POOL_PARALLELISM = 50;
     private static final int MAX_SIZE_TOPOLOGY_CACHE = 10;
-    private static final int MAX_SIZE_COMPONENT_CACHE = 50;
     private static final int CACHE_DURATION_SECS = 5;
-    private static final int FORK_JOIN_POOL_PARALLELISM = 50;
 
     // shared across the metrics instances
     private static final ForkJoinPool FORK_JOIN_POOL = new ForkJoinPool(FORK_JOIN_POOL_PARALLELISM);
 
     private StormRestAPIClient client;
+    private StormTopologyRegistry topologyRegistry;
     private TopologyTimeSeriesMetrics timeSeriesMetrics;
 
-    private LoadingCache<Pair<String, String>, Map<String, ?>> topologyRetrieveCache;
-    private LoadingCache<Pair<Pair<String, String>, String>, Map<String, ?>> componentRetrieveCache;
+    private StormTopologyMetricsCollector metricsCollector;
+    // used when the snapshot is stale, keyed by the storm topology id and the user
+    private Cache<Pair<String, String>, Map<String, ?>> topologyRetrieveCache;
+    private Cache<Pair<String, String>, Long> errorCountCache;
 
     public StormTopologyMetricsImpl() {
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The metrics of the topologies are served from a snapshot of the cluster which is refreshed in the background,
+     * see {@link com.hortonworks.streamline.streams.metrics.topology.MetricsSnapshotCollector} for the configuration.
+     * The Storm REST API is queried directly when the snapshot is stale.
      */
     @Override
     public void init(Map<String, Object> conf) throws ConfigException {
@@ -106,33 +110,21 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
         }
         Client restClient = ClientBuilder.newClient(new ClientConfig());
         this.client = new StormRestAPIClient(restClient, stormApiRootUrl, subject);
-        timeSeriesMetrics = new StormTopologyTimeSeriesMetricsImpl(client);
+        this.topologyRegistry = StormTopologyRegistry.forCluster(client, conf);
+        timeSeriesMetrics = new StormTopologyTimeSeriesMetricsImpl(topologyRegistry);
+        if (metricsCollector != null) {
+            metricsCollector.close();
+        }
+        metricsCollector = new StormTopologyMetricsCollector(client, topologyRegistry, FORK_JOIN_POOL, conf);
+        metricsCollector.start();
         topologyRetrieveCache = CacheBuilder.newBuilder()
                 .maximumSize(MAX_SIZE_TOPOLOGY_CACHE)
                 .expireAfterWrite(CACHE_DURATION_SECS, TimeUnit.SECONDS)
-                .build(new CacheLoader<Pair<String, String>, Map<String, ?>>() {
-                    @Override
-                    public Map<String, ?> load(Pair<String, String> stormTopologyIdAndAsUser) {
-                        String stormTopologyId = stormTopologyIdAndAsUser.getLeft();
-                        String asUser = stormTopologyIdAndAsUser.getRight();
-                        LOG.debug("retrieving topology info - topology id: {}, asUser: {}", stormTopologyId, asUser);
-                        return client.getTopology(stormTopologyId, asUser);
-                    }
-                });
-        componentRetrieveCache = CacheBuilder.newBuilder()
-                .maximumSize(MAX_SIZE_COMPONENT_CACHE)
-                .expireAfterWrite(CACHE_DURATION_SECS, TimeUnit.SECONDS)
-                .build(new CacheLoader<Pair<Pair<String, String>, String>, Map<String, ?>>() {
-                    @Override
-                    public Map<String, ?> load(Pair<Pair<String, String>, String> componentIdAndAsUserPair) {
-                        String topologyId = componentIdAndAsUserPair.getLeft().getLeft();
-                        String componentId = componentIdAndAsUserPair.getLeft().getRight();
-                        String asUser = componentIdAndAsUserPair.getRight();
-                        LOG.debug("retrieving component info - topology id: {}, component id: {}, asUser: {}",
-                                topologyId, componentId, asUser);
-                        return client.getComponent(topologyId, componentId, asUser);
-                    }
-                });
+                .build();
+        errorCountCache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_SIZE_TOPOLOGY_CACHE)
+                .expireAfterWrite(metricsCollector.getErrorCountIntervalMs(), TimeUnit.MILLISECONDS)
+                .build();
     }
 
     /**
@@ -140,12 +132,11 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
      */
     @Override
     public TopologyMetric getTopologyMetric(TopologyLayout topology, String asUser) {
-        String topologyId = StormTopologyUtil.findStormTopologyId(client, topology.getId(), asUser);
-        if (StringUtils.isEmpty(topologyId)) {
-            throw new TopologyNotAliveException("Topology not found in Storm Cluster - topology id: " + topology.getId());
-        }
+        StormTopologyMetricsCollector.Snapshot snapshot = metricsCollector.getSnapshot(asUser);
+        String topologyId = findStormTopologyId(topology, asUser);
+        StormTopologyMetricsCollector.TopologyInfo topologyInfo = snapshot != null ? snapshot.getTopologyInfo(topologyId) : null;
 
-        Map<String, ?> responseMap = getTopologyInfo(topologyId, asUser);
+        Map<String, ?> responseMap = topologyInfo != null ? topologyInfo.getTopologyInfo() : getTopologyInfo(topologyId, asUser);
 
         Long uptimeSeconds = ((Number) responseMap.get(TOPOLOGY_JSON_UPTIME_SECS)).longValue();
         String status = (String) responseMap.get(TOPOLOGY_JSON_STATUS);
@@ -153,8 +144,6 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
         Long executorTotal = ((Number) responseMap.get(TOPOLOGY_JSON_EXECUTORS_TOTAL)).longValue();
 
         List<Map<String, ?>> topologyStatsList = (List<Map<String, ?>>) responseMap.get(TOPOLOGY_JSON_STATS);
-        List<Map<String, ?>> spouts = (List<Map<String,?>>) responseMap.get(TOPOLOGY_JSON_SPOUTS);
-        List<Map<String, ?>> bolts = (List<Map<String,?>>) responseMap.get(TOPOLOGY_JSON_BOLTS);
 
         // pick smallest time window
         Map<String, ?> topologyStatsMap = null;
@@ -177,7 +166,7 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
         // Storm specific metrics
         Long emittedTotal = getLongValueOrDefault(topologyStatsMap, STATS_JSON_EMITTED_TUPLES, 0L);
         Long transferred = getLongValueOrDefault(topologyStatsMap, STATS_JSON_TRANSFERRED_TUPLES, 0L);
-        Long errorsTotal = getErrorCountFromAllComponents(topologyId, spouts, bolts, asUser);
+        Long errorsTotal = topologyInfo != null ? topologyInfo.getErrorCount() : getErrorCountFromAllComponents(topologyId, responseMap, asUser);
 
         Map<String, Number> miscMetrics = new HashMap<>();
         miscMetrics.put(TOPOLOGY_JSON_WORKERS_TOTAL, workerTotal);
@@ -195,12 +184,11 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
      */
     @Override
     public Map<String, ComponentMetric> getMetricsForTopology(TopologyLayout topology, String asUser) {
-        String topologyId = StormTopologyUtil.findStormTopologyId(client, topology.getId(), asUser);
-        if (StringUtils.isEmpty(topologyId)) {
-            throw new TopologyNotAliveException("Topology not found in Storm Cluster - topology id: " + topology.getId());
-        }
+        StormTopologyMetricsCollector.Snapshot snapshot = metricsCollector.getSnapshot(asUser);
+        String topologyId = findStormTopologyId(topology, asUser);
+        StormTopologyMetricsCollector.TopologyInfo topologyInfo = snapshot != null ? snapshot.getTopologyInfo(topologyId) : null;
 
-        Map<String, ?> responseMap = getTopologyInfo(topologyId, asUser);
+        Map<String, ?> responseMap = topologyInfo != null ? topologyInfo.getTopologyInfo() : getTopologyInfo(topologyId, asUser);
 
         Map<String, ComponentMetric> metricMap = new HashMap<>();
         List<Map<String, ?>> spouts = (List<Map<String, ?>>) responseMap.get(TOPOLOGY_JSON_SPOUTS);
@@ -212,6 +200,17 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
         return metricMap;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (metricsCollector != null) {
+            // a closed collector has no snapshot, the lookups still in progress query the REST API
+            metricsCollector.close();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -260,36 +259,23 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
         return timeSeriesMetrics.getComponentStats(topology, component, from, to, asUser);
     }
 
-    private long getErrorCountFromAllComponents(String topologyId, List<Map<String, ?>> spouts, List<Map<String, ?>> bolts, String asUser) {
+    private String findStormTopologyId(TopologyLayout topology, String asUser) {
+        String topologyId = topologyRegistry.findStormTopologyId(topology.getId(), asUser);
+        if (StringUtils.isEmpty(topologyId)) {
+            throw new TopologyNotAliveException("Topology not found in Storm Cluster - topology id: " + topology.getId());
+        }
+        return topologyId;
+    }
+
+    private long getErrorCountFromAllComponents(String topologyId, Map<String, ?> topologyInfo, String asUser) {
         LOG.debug("[START] getErrorCountFromAllComponents - topology id: {}, asUser: {}", topologyId, asUser);
         Stopwatch stopwatch = Stopwatch.createStarted();
 
         try {
-            List<String> componentIds = new ArrayList<>();
-
-            if (spouts != null) {
-                for (Map<String, ?> spout : spouts) {
-                    componentIds.add((String) spout.get(TOPOLOGY_JSON_SPOUT_ID));
-                }
-            }
-
-            if (bolts != null) {
-                for (Map<String, ?> bolt : bolts) {
-                    componentIds.add((String) bolt.get(TOPOLOGY_JSON_BOLT_ID));
-                }
-            }
-
             // query to components in parallel
-            long errorCount = ParallelStreamUtil.execute(() ->
-                            componentIds.parallelStream().mapToLong(componentId -> {
-                                Map componentStats = getComponentInfo(topologyId, componentId, asUser);
-                                List<?> componentErrors = (List<?>) componentStats.get(TOPOLOGY_JSON_COMPONENT_ERRORS);
-                                if (componentErrors != null && !componentErrors.isEmpty()) {
-                                    return componentErrors.size();
-                                } else {
-                                    return 0;
-                                }
-                            }).sum(), FORK_JOIN_POOL);
+            long errorCount = getCached(errorCountCache, new ImmutablePair<>(topologyId, asUser),
+                    () -> ParallelStreamUtil.execute(() ->
+                            metricsCollector.getErrorCount(topologyId, topologyInfo, asUser), FORK_JOIN_POOL));
 
             LOG.debug("[END] getErrorCountFromAllComponents - topology id: {}, elapsed: {} ms", topologyId,
                     stopwatch.elapsed(TimeUnit.MILLISECONDS));
@@ -366,23 +352,8 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
         Stopwatch stopwatch = Stopwatch.createStarted();
 
         try {
-            Map<String, ?> responseMap;
-            try {
-                responseMap = topologyRetrieveCache.get(new ImmutablePair<>(topologyId, asUser));
-            } catch (ExecutionException e) {
-                if (e.getCause() != null) {
-                    throw new RuntimeException(e.getCause());
-                } else {
-                    throw new RuntimeException(e);
-                }
-
-            } catch (UncheckedExecutionException e) {
-                if (e.getCause() != null) {
-                    throw (RuntimeException) e.getCause();
-                } else {
-                    throw new RuntimeException(e);
-                }
-            }
+            Map<String, ?> responseMap = getCached(topologyRetrieveCache, new ImmutablePair<>(topologyId, asUser),
+                    () -> client.getTopology(topologyId, asUser));
 
             LOG.debug("[END] getTopologyInfo - topology id: {}, elapsed: {} ms", topologyId,
                     stopwatch.elapsed(TimeUnit.MILLISECONDS));
@@ -393,35 +364,21 @@ public class StormTopologyMetricsImpl implements TopologyMetrics {
         }
     }
 
-    private Map<String, ?> getComponentInfo(String topologyId, String componentId, String asUser) {
-        LOG.debug("[START] getComponentInfo - topology id: {}, component id: {}, asUser: {}", topologyId, componentId, asUser);
-        Stopwatch stopwatch = Stopwatch.createStarted();
-
+    private <V> V getCached(Cache<Pair<String, String>, V> cache, Pair<String, String> key, Callable<V> loader) {
         try {
-            Map<String, ?> responseMap;
-            try {
-                responseMap = componentRetrieveCache.get(new ImmutablePair<>(new ImmutablePair<>(topologyId, componentId), asUser));
-            } catch (ExecutionException e) {
-                if (e.getCause() != null) {
-                    throw new RuntimeException(e.getCause());
-                } else {
-                    throw new RuntimeException(e);
-                }
-
-            } catch (UncheckedExecutionException e) {
-                if (e.getCause() != null) {
-                    throw (RuntimeException) e.getCause();
-                } else {
-                    throw new RuntimeException(e);
-                }
+            return cache.get(key, loader);
+        } catch (ExecutionException e) {
+            if (e.getCause() != null) {
+                throw new RuntimeException(e.getCause());
+            } else {
+                throw new RuntimeException(e);
+            }
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() != null) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new RuntimeException(e);
             }
-
-            LOG.debug("[END] getComponentInfo - topology id: {}, component id: {}, elapsed: {} ms", topologyId,
-                    componentId, stopwatch.elapsed(TimeUnit.MILLISECONDS));
-
-            return responseMap;
-        } finally {
-            stopwatch.stop();
         }
     }
 
@@ -23,7 +23,7 @@ import com.hortonworks.streamline.streams.layout.component.TopologyLayout;
 import com.hortonworks.streamline.streams.metrics.TimeSeriesQuerier;
 import com.hortonworks.streamline.streams.metrics.topology.TopologyTimeSeriesMetrics;
 import com.hortonworks.streamline.streams.storm.common.StormRestAPIClient;
-import com.hortonworks.streamline.streams.storm.common.StormTopologyUtil;
+import com.hortonworks.streamline.streams.storm.common.StormTopologyRegistry;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,7 +45,7 @@ public class StormTopologyTimeSeriesMetricsImpl implements TopologyTimeSeriesMet
     // shared across the metrics instances
     private static final ForkJoinPool FORK_JOIN_POOL = new ForkJoinPool(FORK_JOIN_POOL_PARALLELISM);
 
-    private final StormRestAPIClient client;
+    private final StormTopologyRegistry topologyRegistry;
     private TimeSeriesQuerier timeSeriesQuerier;
     private final ObjectMapper mapper = new ObjectMapper();
     public static final StormMappedMetric[] STATS_METRICS = new StormMappedMetric[]{
@@ -54,7 +54,11 @@ public class StormTopologyTimeSeriesMetricsImpl implements TopologyTimeSeriesMet
     };
 
     public StormTopologyTimeSeriesMetricsImpl(StormRestAPIClient client) {
-        this.client = client;
+        this(new StormTopologyRegistry(client, null));
+    }
+
+    public StormTopologyTimeSeriesMetricsImpl(StormTopologyRegistry topologyRegistry) {
+        this.topologyRegistry = topologyRegistry;
     }
 
     @Override
@@ -71,7 +75,7 @@ public class StormTopologyTimeSeriesMetricsImpl implements TopologyTimeSeriesMet
     public Map<Long, Double> getCompleteLatency(TopologyLayout topology, Component component, long from, long to, String asUser) {
         assertTimeSeriesQuerierIsSet();
 
-        String stormTopologyName = StormTopologyUtil.findOrGenerateTopologyName(client, topology.getId(), topology.getName(), asUser);
+        String stormTopologyName = topologyRegistry.findOrGenerateTopologyName(topology.getId(), topology.getName(), asUser);
         String stormComponentName = getComponentName(component);
 
         return queryComponentMetrics(stormTopologyName, stormComponentName, StormMappedMetric.completeLatency, from, to);
@@ -81,7 +85,7 @@ public class StormTopologyTimeSeriesMetricsImpl implements TopologyTimeSeriesMet
     public Map<String, Map<Long, Double>> getkafkaTopicOffsets(TopologyLayout topology, Component component, long from, long to, String asUser) {
         assertTimeSeriesQuerierIsSet();
 
-        String stormTopologyName = StormTopologyUtil.findOrGenerateTopologyName(client, topology.getId(), topology.getName(), asUser);
+        String stormTopologyName = topologyRegistry.findOrGenerateTopologyName(topology.getId(), topology.getName(), asUser);
         String stormComponentName = getComponentName(component);
 
         String topicName = findKafkaTopicName(topology, component);
@@ -104,7 +108,7 @@ public class StormTopologyTimeSeriesMetricsImpl implements TopologyTimeSeriesMet
     public TimeSeriesComponentMetric getTopologyStats(TopologyLayout topology, long from, long to, String asUser) {
         assertTimeSeriesQuerierIsSet();
 
-        String stormTopologyName = StormTopologyUtil.findOrGenerateTopologyName(client, topology.getId(), topology.getName(), asUser);
+        String stormTopologyName = topologyRegistry.findOrGenerateTopologyName(topology.getId(), topology.getName(), asUser);
 
         Map<String, Map<Long, Double>> stats = ParallelStreamUtil.execute(() ->
                 Arrays.asList(STATS_METRICS)
@@ -119,7 +123,7 @@ public class StormTopologyTimeSeriesMetricsImpl implements TopologyTimeSeriesMet
     public TimeSeriesComponentMetric getComponentStats(TopologyLayout topology, Component component, long from, long to, String asUser) {
         assertTimeSeriesQuerierIsSet();
 
-        String stormTopologyName = StormTopologyUtil.findOrGenerateTopologyName(client, topology.getId(), topology.getName(), asUser);
+        String stormTopologyName = topologyRegistry.findOrGenerateTopologyName(topology.getId(), topology.getName(), asUser);
         String stormComponentName = getComponentName(component);
 
         Map<String, Map<Long, Double>> componentStats = ParallelStreamUtil.execute(() ->
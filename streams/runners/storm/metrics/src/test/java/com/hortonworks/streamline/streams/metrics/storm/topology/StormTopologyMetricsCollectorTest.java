@@ -0,0 +1,154 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.metrics.storm.topology;
+
+import com.google.common.collect.ImmutableMap;
+import com.hortonworks.streamline.streams.metrics.topology.MetricsSnapshotCollector;
+import com.hortonworks.streamline.streams.storm.common.StormRestAPIClient;
+import com.hortonworks.streamline.streams.storm.common.StormRestAPIConstant;
+import com.hortonworks.streamline.streams.storm.common.StormTopologyRegistry;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JMockit.class)
+public class StormTopologyMetricsCollectorTest {
+    private static final ForkJoinPool FORK_JOIN_POOL = new ForkJoinPool(4);
+
+    @Mocked
+    private StormRestAPIClient client;
+
+    private StormTopologyRegistry topologyRegistry;
+    private StormTopologyMetricsCollector collector;
+
+    @Before
+    public void setUp() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(MetricsSnapshotCollector.POLL_INTERVAL_MS, 60_000L);
+        conf.put(MetricsSnapshotCollector.MAX_STALENESS_MS, 60_000L);
+        conf.put(StormTopologyMetricsCollector.ERROR_COUNT_INTERVAL_MS, 60_000L);
+        topologyRegistry = new StormTopologyRegistry(client, conf);
+        collector = new StormTopologyMetricsCollector(client, topologyRegistry, FORK_JOIN_POOL, conf);
+    }
+
+    @After
+    public void tearDown() {
+        collector.close();
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        expectCluster();
+
+        StormTopologyMetricsCollector.Snapshot snapshot = collector.collect("user", null);
+
+        // the registry is reconciled with the summary
+        assertEquals("streamline-1-a-1-1", topologyRegistry.findStormTopologyId(1L, "user"));
+        assertEquals("streamline-2-b-2-2", topologyRegistry.findStormTopologyId(2L, "user"));
+        assertNull(topologyRegistry.findStormTopologyId(3L, "user"));
+        StormTopologyMetricsCollector.TopologyInfo topologyInfo = snapshot.getTopologyInfo("streamline-1-a-1-1");
+        assertEquals("ACTIVE", topologyInfo.getTopologyInfo().get(StormRestAPIConstant.TOPOLOGY_JSON_STATUS));
+        assertEquals(3L, topologyInfo.getErrorCount());
+        assertEquals(0L, snapshot.getTopologyInfo("streamline-2-b-2-2").getErrorCount());
+    }
+
+    @Test
+    public void testErrorCountsAreCarriedOver() throws Exception {
+        expectCluster();
+
+        StormTopologyMetricsCollector.Snapshot snapshot = collector.collect("user", null);
+        snapshot = collector.collect("user", snapshot);
+
+        assertEquals(3L, snapshot.getTopologyInfo("streamline-1-a-1-1").getErrorCount());
+        new Verifications() {{
+            client.getTopology(anyString, anyString); times = 4;
+            // the components are queried only for the first snapshot
+            client.getComponent(anyString, anyString, anyString); times = 4;
+        }};
+    }
+
+    @Test
+    public void testSnapshotIsRefreshedInBackground() throws Exception {
+        expectCluster();
+        collector.start();
+
+        // nothing collected yet, the caller queries the cluster directly
+        assertNull(collector.getSnapshot("user"));
+        StormTopologyMetricsCollector.Snapshot snapshot = null;
+        for (int i = 0; i < 100 && snapshot == null; i++) {
+            Thread.sleep(50);
+            snapshot = collector.getSnapshot("user");
+        }
+        assertNotNull(snapshot);
+        assertEquals(3L, snapshot.getTopologyInfo("streamline-1-a-1-1").getErrorCount());
+
+        new Verifications() {{
+            client.getTopologySummary("user"); times = 1;
+        }};
+    }
+
+    private void expectCluster() {
+        new Expectations() {{
+            client.getTopologySummary(anyString);
+            result = ImmutableMap.of(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGIES, Arrays.asList(
+                    topologySummary("streamline-1-a", "streamline-1-a-1-1"),
+                    topologySummary("streamline-2-b", "streamline-2-b-2-2")));
+            client.getTopology("streamline-1-a-1-1", anyString);
+            result = topologyInfo("1-source", "2-sink");
+            client.getTopology("streamline-2-b-2-2", anyString);
+            result = topologyInfo("3-source", "4-sink");
+            client.getComponent("streamline-1-a-1-1", "1-source", anyString);
+            result = componentInfo(2);
+            client.getComponent("streamline-1-a-1-1", "2-sink", anyString);
+            result = componentInfo(1);
+            client.getComponent("streamline-2-b-2-2", anyString, anyString);
+            result = componentInfo(0);
+        }};
+    }
+
+    private Map<String, Object> topologySummary(String name, String id) {
+        return ImmutableMap.<String, Object>of(StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_NAME, name,
+                StormRestAPIConstant.TOPOLOGY_SUMMARY_JSON_TOPOLOGY_ID_ENCODED, id);
+    }
+
+    private Map<String, Object> topologyInfo(String spoutId, String boltId) {
+        return ImmutableMap.<String, Object>of(StormRestAPIConstant.TOPOLOGY_JSON_STATUS, "ACTIVE",
+                StormRestAPIConstant.TOPOLOGY_JSON_SPOUTS,
+                Collections.singletonList(ImmutableMap.of(StormRestAPIConstant.TOPOLOGY_JSON_SPOUT_ID, spoutId)),
+                StormRestAPIConstant.TOPOLOGY_JSON_BOLTS,
+                Collections.singletonList(ImmutableMap.of(StormRestAPIConstant.TOPOLOGY_JSON_BOLT_ID, boltId)));
+    }
+
+    private Map<String, Object> componentInfo(int errors) {
+        return ImmutableMap.<String, Object>of(StormRestAPIConstant.TOPOLOGY_JSON_COMPONENT_ERRORS,
+                Collections.nCopies(errors, ImmutableMap.of("error", "failure")));
+    }
+}
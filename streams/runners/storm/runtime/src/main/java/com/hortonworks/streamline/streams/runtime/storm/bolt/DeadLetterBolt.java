@@ -0,0 +1,313 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import org.apache.storm.Config;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Wraps a sink bolt to retry the tuples it fails, and to send them to a dead letter stream once the retries are
+ * exhausted, instead of letting the spout replay them.
+ * <p>
+ * A tuple failed by the sink bolt is given again to the sink bolt after a backoff, which starts at
+ * {@code initialBackoffMs} and doubles with each attempt up to {@code maxBackoffMs}. After {@code maxRetries}
+ * retries, or right away if the error reported by the sink bolt before failing the tuple is not retryable (e.g. a
+ * bad record), the event of the tuple is emitted on the {@link #DEAD_LETTER_STREAM} with the error metadata added
+ * as fields, and the tuple is acked. The total backoff should be kept under the topology message timeout.
+ * <p>
+ * A reported error applies to all the tuples the sink bolt fails afterwards from the same thread, so that a batch
+ * failed after a single error is handled as a whole, until the thread acks a tuple or reports another error. On the
+ * executor thread it is also forgotten when the sink bolt is given the next tuple.
+ * <p>
+ * Sink bolts can ack and fail tuples from other threads, the failures are handled on the executor thread, on the
+ * next tuple or tick tuple received. Tick tuples are configured if the sink bolt does not use them already, and
+ * are then not passed to the sink bolt.
+ */
+public class DeadLetterBolt implements IRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(DeadLetterBolt.class);
+
+    public static final String DEAD_LETTER_STREAM = "deadLetterStream";
+    public static final String ERROR_MESSAGE_FIELD = "errorMessage";
+    public static final String ERROR_CLASS_FIELD = "errorClass";
+    public static final String ERROR_COMPONENT_FIELD = "errorComponent";
+    public static final String ERROR_ATTEMPTS_FIELD = "errorAttempts";
+    public static final String ERROR_TIMESTAMP_FIELD = "errorTimestamp";
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 10000;
+    public static final List<String> DEFAULT_NON_RETRYABLE_ERRORS = Collections.unmodifiableList(Arrays.asList(
+            IllegalArgumentException.class.getName(), ClassCastException.class.getName()));
+    private static final int TICK_TUPLE_FREQ_SECS = 1;
+
+    private final IRichBolt delegate;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long initialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+    private long maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+    private List<String> nonRetryableErrors = DEFAULT_NON_RETRYABLE_ERRORS;
+
+    private transient OutputCollector collector;
+    private transient String componentId;
+    private transient boolean delegateTicks;
+    private transient List<Class<?>> nonRetryableErrorClasses;
+    // failed tuples along with their error, added by the sink bolt from any thread
+    private transient Queue<Failure> failures;
+    // attempts of the tuples being retried, removed when they are acked
+    private transient Map<Tuple, Integer> attempts;
+    private transient PriorityQueue<Retry> retries;
+    // the last error reported by the sink bolt from each thread, given to the tuples it fails from that thread
+    private transient ThreadLocal<Throwable> lastError;
+
+    public DeadLetterBolt(IRichBolt delegate) {
+        this.delegate = delegate;
+    }
+
+    public DeadLetterBolt withMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Max retries should not be negative, given: " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public DeadLetterBolt withInitialBackoffMs(long initialBackoffMs) {
+        if (initialBackoffMs <= 0) {
+            throw new IllegalArgumentException("Initial backoff should be positive, given: " + initialBackoffMs);
+        }
+        this.initialBackoffMs = initialBackoffMs;
+        return this;
+    }
+
+    public DeadLetterBolt withMaxBackoffMs(long maxBackoffMs) {
+        if (maxBackoffMs <= 0) {
+            throw new IllegalArgumentException("Max backoff should be positive, given: " + maxBackoffMs);
+        }
+        this.maxBackoffMs = maxBackoffMs;
+        return this;
+    }
+
+    /**
+     * Sets the class names of the errors which are not retried, their subclasses are not retried either.
+     */
+    public DeadLetterBolt withNonRetryableErrors(List<String> nonRetryableErrors) {
+        this.nonRetryableErrors = new ArrayList<>(nonRetryableErrors);
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = collector;
+        this.componentId = context != null ? context.getThisComponentId() : null;
+        this.delegateTicks = getDelegateTickFreqSecs() != null;
+        this.nonRetryableErrorClasses = new ArrayList<>();
+        for (String className : nonRetryableErrors) {
+            try {
+                nonRetryableErrorClasses.add(Class.forName(className));
+            } catch (ClassNotFoundException e) {
+                LOG.warn("Ignoring unknown non retryable error class {}", className);
+            }
+        }
+        this.failures = new ConcurrentLinkedQueue<>();
+        this.lastError = new ThreadLocal<>();
+        this.attempts = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.retries = new PriorityQueue<>();
+        delegate.prepare(stormConf, context, new DeadLetterOutputCollector(collector));
+    }
+
+    @Override
+    public void execute(Tuple tuple) {
+        handleFailures();
+        retryDueTuples();
+        if (!TupleUtils.isTick(tuple) || delegateTicks) {
+            executeDelegate(tuple);
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        delegate.cleanup();
+        handleFailures();
+        // tuples waiting for a retry are left to the spout
+        Retry retry;
+        while ((retry = retries.poll()) != null) {
+            attempts.remove(retry.tuple);
+            collector.fail(retry.tuple);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        delegate.declareOutputFields(declarer);
+        declarer.declareStream(DEAD_LETTER_STREAM, new Fields(StreamlineEvent.STREAMLINE_EVENT));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        Map<String, Object> delegateConf = delegate.getComponentConfiguration();
+        if (delegateConf != null) {
+            conf.putAll(delegateConf);
+        }
+        // retries are driven by tick tuples when no tuples are received
+        if (getDelegateTickFreqSecs() == null) {
+            conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_TUPLE_FREQ_SECS);
+        }
+        return conf;
+    }
+
+    int getPendingRetries() {
+        return retries.size();
+    }
+
+    private Object getDelegateTickFreqSecs() {
+        Map<String, Object> delegateConf = delegate.getComponentConfiguration();
+        return delegateConf != null ? delegateConf.get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS) : null;
+    }
+
+    private void handleFailures() {
+        long now = System.currentTimeMillis();
+        Failure failure;
+        while ((failure = failures.poll()) != null) {
+            Tuple tuple = failure.tuple;
+            Integer previousAttempts = attempts.get(tuple);
+            int tupleAttempts = previousAttempts == null ? 1 : previousAttempts + 1;
+            if (tupleAttempts > maxRetries || !isRetryable(failure.error)) {
+                deadLetter(tuple, failure.error, tupleAttempts);
+            } else {
+                long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(tupleAttempts - 1, 30));
+                LOG.debug("Retrying tuple {} in {} ms, attempt {}", tuple, backoffMs, tupleAttempts);
+                attempts.put(tuple, tupleAttempts);
+                retries.add(new Retry(tuple, now + backoffMs));
+            }
+        }
+    }
+
+    private void retryDueTuples() {
+        long now = System.currentTimeMillis();
+        while (!retries.isEmpty() && retries.peek().dueAt <= now) {
+            executeDelegate(retries.poll().tuple);
+        }
+    }
+
+    private void executeDelegate(Tuple tuple) {
+        // an error reported while executing a previous tuple does not apply to this one
+        lastError.remove();
+        delegate.execute(tuple);
+    }
+
+    private boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            for (Class<?> errorClass : nonRetryableErrorClasses) {
+                if (errorClass.isInstance(cause)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void deadLetter(Tuple tuple, Throwable error, int tupleAttempts) {
+        attempts.remove(tuple);
+        Object value = tuple.contains(StreamlineEvent.STREAMLINE_EVENT) ? tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT) : null;
+        if (!(value instanceof StreamlineEvent)) {
+            LOG.error("Failing tuple {} without streamline event after {} attempts", tuple, tupleAttempts, error);
+            collector.fail(tuple);
+            return;
+        }
+        Map<String, Object> errorFields = new HashMap<>();
+        errorFields.put(ERROR_MESSAGE_FIELD, error != null ? String.valueOf(error.getMessage()) : "unknown");
+        errorFields.put(ERROR_CLASS_FIELD, error != null ? error.getClass().getName() : "unknown");
+        if (componentId != null) {
+            errorFields.put(ERROR_COMPONENT_FIELD, componentId);
+        }
+        errorFields.put(ERROR_ATTEMPTS_FIELD, tupleAttempts);
+        errorFields.put(ERROR_TIMESTAMP_FIELD, System.currentTimeMillis());
+        LOG.warn("Sending event {} to the dead letter stream after {} attempts", ((StreamlineEvent) value).getId(), tupleAttempts, error);
+        collector.emit(DEAD_LETTER_STREAM, tuple, new Values(((StreamlineEvent) value).addFieldsAndValues(errorFields)));
+        collector.ack(tuple);
+    }
+
+    // given to the sink bolt, to intercept the tuples it fails
+    private final class DeadLetterOutputCollector extends OutputCollector {
+        DeadLetterOutputCollector(OutputCollector collector) {
+            super(collector);
+        }
+
+        @Override
+        public void ack(Tuple input) {
+            attempts.remove(input);
+            lastError.remove();
+            super.ack(input);
+        }
+
+        @Override
+        public void fail(Tuple input) {
+            failures.add(new Failure(input, lastError.get()));
+        }
+
+        @Override
+        public void reportError(Throwable error) {
+            lastError.set(error);
+            super.reportError(error);
+        }
+    }
+
+    private static final class Failure {
+        private final Tuple tuple;
+        private final Throwable error;
+
+        Failure(Tuple tuple, Throwable error) {
+            this.tuple = tuple;
+            this.error = error;
+        }
+    }
+
+    private static final class Retry implements Comparable<Retry> {
+        private final Tuple tuple;
+        private final long dueAt;
+
+        Retry(Tuple tuple, long dueAt) {
+            this.tuple = tuple;
+            this.dueAt = dueAt;
+        }
+
+        @Override
+        public int compareTo(Retry other) {
+            return Long.compare(dueAt, other.dueAt);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.hive;
+
+/**
+ * Sizes the transactions of a hive partition writer from the observed input rate and a target commit latency.
+ * <p>
+ * A transaction is committed once it holds the records expected within the target latency (bounded by
+ * {@code maxRecordsPerTxn}), so commits happen about every target latency whatever the rate, unless the rate is
+ * high enough to reach the bound. Transaction batches, each of which ends up in its own delta files, are sized
+ * so that they last about {@code minTxnsPerBatch} times the target latency: at high rates, when commits are more
+ * frequent, batches get more transactions (up to {@code maxTxnsPerBatch}) and the number of delta files stays
+ * about the same.
+ */
+class AdaptiveBatchSizer {
+    // weight of the latest rate measure in the moving average
+    private static final double SMOOTHING = 0.3;
+    private static final long RATE_WINDOW_MILLIS = 1000;
+
+    private final long targetCommitLatencyMillis;
+    private final int maxRecordsPerTxn;
+    private final int minTxnsPerBatch;
+    private final int maxTxnsPerBatch;
+
+    private double recordsPerSec = -1;
+    private long windowStart;
+    private long windowRecords;
+
+    AdaptiveBatchSizer(long targetCommitLatencyMillis, int maxRecordsPerTxn, int minTxnsPerBatch, int maxTxnsPerBatch, long now) {
+        this.targetCommitLatencyMillis = targetCommitLatencyMillis;
+        this.maxRecordsPerTxn = maxRecordsPerTxn;
+        this.minTxnsPerBatch = minTxnsPerBatch;
+        this.maxTxnsPerBatch = Math.max(minTxnsPerBatch, maxTxnsPerBatch);
+        this.windowStart = now;
+    }
+
+    /**
+     * Records the given number of input records, called with zero records to account for idle periods.
+     */
+    void observe(long now, int records) {
+        windowRecords += records;
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW_MILLIS) {
+            double rate = windowRecords * 1000.0 / elapsed;
+            recordsPerSec = recordsPerSec < 0 ? rate : recordsPerSec + SMOOTHING * (rate - recordsPerSec);
+            windowStart = now;
+            windowRecords = 0;
+        }
+    }
+
+    double getRecordsPerSec() {
+        return Math.max(recordsPerSec, 0);
+    }
+
+    int getRecordsPerTxn() {
+        double records = Math.ceil(getRecordsPerSec() * targetCommitLatencyMillis / 1000.0);
+        return (int) Math.max(1, Math.min(maxRecordsPerTxn, records));
+    }
+
+    int getTxnsPerBatch() {
+        double targetLatencySecs = targetCommitLatencyMillis / 1000.0;
+        double commitsPerSec = Math.max(getRecordsPerSec() / getRecordsPerTxn(), 1 / targetLatencySecs);
+        double txns = Math.ceil(commitsPerSec * targetLatencySecs * minTxnsPerBatch);
+        return (int) Math.max(minTxnsPerBatch, Math.min(maxTxnsPerBatch, txns));
+    }
+
+    boolean shouldCommit(long now, int pendingRecords, long firstPendingAt) {
+        return pendingRecords > 0
+                && (pendingRecords >= getRecordsPerTxn() || now - firstPendingAt >= targetCommitLatencyMillis);
+    }
+}
@@ -0,0 +1,330 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.hive;
+
+import com.hortonworks.streamline.streams.runtime.storm.bolt.BaseTickTupleAwareRichBolt;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hive.hcatalog.streaming.HiveEndPoint;
+import org.apache.hive.hcatalog.streaming.RecordWriter;
+import org.apache.hive.hcatalog.streaming.SerializationError;
+import org.apache.hive.hcatalog.streaming.StreamingConnection;
+import org.apache.hive.hcatalog.streaming.TransactionBatch;
+import org.apache.storm.Config;
+import org.apache.storm.hive.bolt.mapper.HiveMapper;
+import org.apache.storm.hive.common.HiveOptions;
+import org.apache.storm.hive.common.HiveUtils;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hive streaming bolt which adapts its transactions to the input rate of each partition.
+ * <p>
+ * A writer is kept per partition and the transactions of each writer are sized by an {@link AdaptiveBatchSizer}
+ * from the observed rate of the partition and the target commit latency: a transaction is committed once it holds
+ * the records expected within the target latency (at most the batch size of the hive options) or once its oldest
+ * record is older than the target latency. Transaction batches get at least the transactions per batch of the
+ * hive options, and more (up to {@code maxTxnsPerBatch}) when commits get more frequent, so that the number of
+ * delta files written does not grow with the rate.
+ * <p>
+ * The tuples are acked once the transaction they are part of is committed. Writers idle for more than the idle
+ * timeout are closed, as well as the least recently used writer when the maximum number of open connections is
+ * reached.
+ */
+public class StreamlineHiveBolt extends BaseTickTupleAwareRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineHiveBolt.class);
+
+    public static final int DEFAULT_TARGET_COMMIT_LATENCY_SECS = 10;
+    public static final int DEFAULT_MAX_TXNS_PER_BATCH = 1000;
+    private static final int TICK_TUPLE_FREQ_SECS = 1;
+
+    private final HiveOptions options;
+    private int targetCommitLatencySecs = DEFAULT_TARGET_COMMIT_LATENCY_SECS;
+    private int maxTxnsPerBatch = DEFAULT_MAX_TXNS_PER_BATCH;
+
+    private transient OutputCollector collector;
+    private transient UserGroupInformation ugi;
+    // in access order, the first writer is the least recently used one
+    private transient LinkedHashMap<HiveEndPoint, PartitionWriter> writers;
+    private transient long lastHeartBeat;
+
+    public StreamlineHiveBolt(HiveOptions options) {
+        this.options = options;
+    }
+
+    public StreamlineHiveBolt withTargetCommitLatencySecs(int targetCommitLatencySecs) {
+        if (targetCommitLatencySecs <= 0) {
+            throw new IllegalArgumentException("Target commit latency should be positive, given: " + targetCommitLatencySecs);
+        }
+        this.targetCommitLatencySecs = targetCommitLatencySecs;
+        return this;
+    }
+
+    public StreamlineHiveBolt withMaxTxnsPerBatch(int maxTxnsPerBatch) {
+        if (maxTxnsPerBatch <= 0) {
+            throw new IllegalArgumentException("Max transactions per batch should be positive, given: " + maxTxnsPerBatch);
+        }
+        this.maxTxnsPerBatch = maxTxnsPerBatch;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = collector;
+        this.writers = new LinkedHashMap<>(16, 0.75f, true);
+        this.lastHeartBeat = System.currentTimeMillis();
+        String keytab = options.getKerberosKeytab();
+        String principal = options.getKerberosPrincipal();
+        if (keytab != null && principal != null) {
+            try {
+                ugi = HiveUtils.authenticate(keytab, principal);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Kerberos authentication failed for principal " + principal, e);
+            }
+        }
+    }
+
+    @Override
+    protected void process(Tuple tuple) {
+        HiveMapper mapper = options.getMapper();
+        PartitionWriter writer;
+        try {
+            HiveEndPoint endPoint = new HiveEndPoint(options.getMetaStoreURI(), options.getDatabaseName(),
+                    options.getTableName(), mapper.mapPartitions(tuple));
+            writer = getOrCreateWriter(endPoint);
+        } catch (Exception e) {
+            LOG.error("Error getting a hive writer for tuple {}", tuple, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            writer.write(tuple, now);
+        } catch (SerializationError | IllegalArgumentException e) {
+            // the record is rejected but the transaction can go on
+            LOG.error("Error writing tuple {}", tuple, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+            return;
+        } catch (Exception e) {
+            LOG.error("Error writing tuple {} to {}", tuple, writer.endPoint, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+            abortWriter(writer);
+            return;
+        }
+        commitIfNeeded(writer, now);
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        long now = System.currentTimeMillis();
+        boolean heartBeat = now - lastHeartBeat >= options.getHeartBeatInterval() * 1000L;
+        for (PartitionWriter writer : new ArrayList<>(writers.values())) {
+            writer.sizer.observe(now, 0);
+            commitIfNeeded(writer, now);
+            if (heartBeat && writers.containsKey(writer.endPoint)) {
+                try {
+                    writer.heartBeat();
+                } catch (Exception e) {
+                    LOG.warn("Error sending heartbeat for {}", writer.endPoint, e);
+                }
+            }
+        }
+        if (heartBeat) {
+            lastHeartBeat = now;
+        }
+        retireIdleWriters(now);
+    }
+
+    @Override
+    public void cleanup() {
+        for (PartitionWriter writer : new ArrayList<>(writers.values())) {
+            closeWriter(writer);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_TUPLE_FREQ_SECS);
+        return conf;
+    }
+
+    private PartitionWriter getOrCreateWriter(HiveEndPoint endPoint) throws Exception {
+        PartitionWriter writer = writers.get(endPoint);
+        if (writer == null) {
+            if (writers.size() >= options.getMaxOpenConnections()) {
+                PartitionWriter eldest = writers.values().iterator().next();
+                LOG.info("Closing least recently used writer {} as {} writers are open", eldest.endPoint, writers.size());
+                closeWriter(eldest);
+            }
+            writer = new PartitionWriter(endPoint);
+            writers.put(endPoint, writer);
+        }
+        return writer;
+    }
+
+    private void commitIfNeeded(PartitionWriter writer, long now) {
+        if (writer.sizer.shouldCommit(now, writer.pendingTuples.size(), writer.firstPendingAt)) {
+            try {
+                writer.commit();
+            } catch (Exception e) {
+                LOG.error("Error committing {} records to {}", writer.pendingTuples.size(), writer.endPoint, e);
+                collector.reportError(e);
+                abortWriter(writer);
+            }
+        }
+    }
+
+    private void retireIdleWriters(long now) {
+        Iterator<PartitionWriter> iterator = writers.values().iterator();
+        while (iterator.hasNext()) {
+            PartitionWriter writer = iterator.next();
+            if (writer.pendingTuples.isEmpty() && now - writer.lastUsed > options.getIdleTimeout()) {
+                LOG.info("Closing idle writer {}", writer.endPoint);
+                iterator.remove();
+                writer.close();
+            }
+        }
+    }
+
+    // commits the pending records (if any) and closes the writer
+    private void closeWriter(PartitionWriter writer) {
+        writers.remove(writer.endPoint);
+        try {
+            writer.commit();
+        } catch (Exception e) {
+            LOG.error("Error committing {} records to {}", writer.pendingTuples.size(), writer.endPoint, e);
+            collector.reportError(e);
+            writer.abort();
+        }
+        writer.close();
+    }
+
+    // aborts the current transaction, fails its tuples and closes the writer
+    private void abortWriter(PartitionWriter writer) {
+        writers.remove(writer.endPoint);
+        writer.abort();
+        writer.close();
+    }
+
+    private final class PartitionWriter {
+        private final HiveEndPoint endPoint;
+        private final StreamingConnection connection;
+        private final RecordWriter recordWriter;
+        private final AdaptiveBatchSizer sizer;
+        private final List<Tuple> pendingTuples = new ArrayList<>();
+        private TransactionBatch txnBatch;
+        private boolean inTransaction;
+        private long firstPendingAt;
+        private long lastUsed;
+
+        PartitionWriter(HiveEndPoint endPoint) throws Exception {
+            this.endPoint = endPoint;
+            this.connection = endPoint.newConnection(options.getAutoCreatePartitions(), null, ugi);
+            this.recordWriter = options.getMapper().createRecordWriter(endPoint);
+            this.lastUsed = System.currentTimeMillis();
+            this.sizer = new AdaptiveBatchSizer(targetCommitLatencySecs * 1000L, options.getBatchSize(),
+                    options.getTxnsPerBatch(), maxTxnsPerBatch, lastUsed);
+        }
+
+        void write(Tuple tuple, long now) throws Exception {
+            if (!inTransaction) {
+                if (txnBatch == null || txnBatch.remainingTransactions() == 0) {
+                    closeTxnBatch();
+                    int txnsPerBatch = sizer.getTxnsPerBatch();
+                    LOG.debug("Fetching {} transactions for {}", txnsPerBatch, endPoint);
+                    txnBatch = connection.fetchTransactionBatch(txnsPerBatch, recordWriter);
+                }
+                txnBatch.beginNextTransaction();
+                inTransaction = true;
+            }
+            options.getMapper().write(txnBatch, tuple);
+            if (pendingTuples.isEmpty()) {
+                firstPendingAt = now;
+            }
+            pendingTuples.add(tuple);
+            sizer.observe(now, 1);
+            lastUsed = now;
+        }
+
+        void commit() throws Exception {
+            if (!inTransaction) {
+                return;
+            }
+            txnBatch.commit();
+            inTransaction = false;
+            for (Tuple tuple : pendingTuples) {
+                collector.ack(tuple);
+            }
+            pendingTuples.clear();
+        }
+
+        void abort() {
+            if (inTransaction) {
+                try {
+                    txnBatch.abort();
+                } catch (Exception e) {
+                    LOG.warn("Error aborting transaction for {}", endPoint, e);
+                }
+                inTransaction = false;
+            }
+            for (Tuple tuple : pendingTuples) {
+                collector.fail(tuple);
+            }
+            pendingTuples.clear();
+        }
+
+        void heartBeat() throws Exception {
+            if (txnBatch != null) {
+                txnBatch.heartbeat();
+            }
+        }
+
+        void close() {
+            try {
+                closeTxnBatch();
+            } catch (Exception e) {
+                LOG.warn("Error closing transaction batch for {}", endPoint, e);
+            }
+            connection.close();
+        }
+
+        private void closeTxnBatch() throws Exception {
+            if (txnBatch != null) {
+                TransactionBatch batch = txnBatch;
+                txnBatch = null;
+                batch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.jdbc;
+
+import com.hortonworks.streamline.streams.runtime.storm.bolt.BaseTickTupleAwareRichBolt;
+import org.apache.storm.Config;
+import org.apache.storm.jdbc.common.Column;
+import org.apache.storm.jdbc.common.ConnectionProvider;
+import org.apache.storm.jdbc.mapper.JdbcMapper;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jdbc bolt which executes its (insert or upsert) query for batches of tuples, with JDBC batch execution in a
+ * single transaction.
+ * <p>
+ * A batch is executed once it reaches {@code batchSize} tuples, or on the next tick tuple, every
+ * {@code flushIntervalSecs}. The tuples of a batch are acked once the transaction is committed, or all failed if
+ * the batch cannot be executed and the transaction is rolled back.
+ */
+public class StreamlineJdbcBatchBolt extends BaseTickTupleAwareRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineJdbcBatchBolt.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_FLUSH_INTERVAL_SECS = 1;
+
+    private final ConnectionProvider connectionProvider;
+    private final JdbcMapper jdbcMapper;
+    private String query;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int flushIntervalSecs = DEFAULT_FLUSH_INTERVAL_SECS;
+    private int queryTimeoutSecs;
+
+    private transient OutputCollector collector;
+    private transient List<Tuple> batchTuples;
+    private transient List<List<Column>> batchColumns;
+
+    public StreamlineJdbcBatchBolt(ConnectionProvider connectionProvider, JdbcMapper jdbcMapper) {
+        this.connectionProvider = connectionProvider;
+        this.jdbcMapper = jdbcMapper;
+    }
+
+    public StreamlineJdbcBatchBolt withQuery(String query) {
+        this.query = query;
+        return this;
+    }
+
+    public StreamlineJdbcBatchBolt withBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive, given: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public StreamlineJdbcBatchBolt withFlushIntervalSecs(int flushIntervalSecs) {
+        if (flushIntervalSecs <= 0) {
+            throw new IllegalArgumentException("Flush interval should be positive, given: " + flushIntervalSecs);
+        }
+        this.flushIntervalSecs = flushIntervalSecs;
+        return this;
+    }
+
+    public StreamlineJdbcBatchBolt withQueryTimeoutSecs(int queryTimeoutSecs) {
+        this.queryTimeoutSecs = queryTimeoutSecs;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        if (query == null || query.isEmpty()) {
+            throw new IllegalArgumentException("Query must be provided");
+        }
+        avoidDeadlockFromHikariCP();
+        this.collector = collector;
+        this.batchTuples = new ArrayList<>(batchSize);
+        this.batchColumns = new ArrayList<>(batchSize);
+        connectionProvider.prepare();
+    }
+
+    private static synchronized void avoidDeadlockFromHikariCP() {
+        // load DriverManager first to avoid any race condition between
+        // DriverManager static initialization block and specific driver class's static initialization block
+        // e.g. PhoenixDriver
+
+        // we should take this workaround since prepare() method is synchronized but an worker can initialize
+        // multiple HikariCPConnectionProviders and they would make race condition
+
+        // we just need to ensure that DriverManager class is always initialized earlier than HikariConfig
+        // so below line should be called first than initializing HikariConfig
+        DriverManager.getDrivers();
+    }
+
+    @Override
+    protected void process(Tuple tuple) {
+        List<Column> columns;
+        try {
+            columns = jdbcMapper.getColumns(tuple);
+        } catch (Exception e) {
+            LOG.error("Error mapping tuple {} to columns", tuple, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+            return;
+        }
+        batchTuples.add(tuple);
+        batchColumns.add(columns);
+        if (batchTuples.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        if (!batchTuples.isEmpty()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        connectionProvider.cleanup();
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, flushIntervalSecs);
+        return conf;
+    }
+
+    private void flush() {
+        try {
+            executeBatch();
+            for (Tuple tuple : batchTuples) {
+                collector.ack(tuple);
+            }
+        } catch (Exception e) {
+            LOG.error("Error executing batch of {} tuples", batchTuples.size(), e);
+            collector.reportError(e);
+            for (Tuple tuple : batchTuples) {
+                collector.fail(tuple);
+            }
+        } finally {
+            batchTuples.clear();
+            batchColumns.clear();
+        }
+    }
+
+    private void executeBatch() throws SQLException {
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                if (queryTimeoutSecs > 0) {
+                    statement.setQueryTimeout(queryTimeoutSecs);
+                }
+                for (List<Column> columns : batchColumns) {
+                    setParameters(statement, columns);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void setParameters(PreparedStatement statement, List<Column> columns) throws SQLException {
+        for (int i = 0; i < columns.size(); ++i) {
+            Column column = columns.get(i);
+            if (column.getVal() == null) {
+                statement.setNull(i + 1, column.getSqlType());
+            } else {
+                statement.setObject(i + 1, column.getVal(), column.getSqlType());
+            }
+        }
+    }
+}
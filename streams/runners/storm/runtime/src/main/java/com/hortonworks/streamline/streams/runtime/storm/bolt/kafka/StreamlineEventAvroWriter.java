@@ -0,0 +1,270 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a StreamlineEvent (or any field map) as avro binary for a given record schema.
+ * <p>
+ * The schema is walked only once, when the writer is created, and compiled into a tree of {@link ValueWriter}s which
+ * directly issue the {@link BinaryEncoder} calls for each field. This avoids building an intermediate
+ * {@link org.apache.avro.generic.GenericRecord} and resolving the field schemas for every record as
+ * {@link org.apache.avro.generic.GenericDatumWriter} does. The output is identical to what GenericDatumWriter produces.
+ * <p>
+ * Instances are immutable and can be shared across threads.
+ */
+public class StreamlineEventAvroWriter {
+    private final Schema schema;
+    private final ValueWriter recordWriter;
+
+    public StreamlineEventAvroWriter(Schema schema) {
+        if (!Schema.Type.RECORD.equals(schema.getType())) {
+            throw new IllegalArgumentException("Only record schemas are supported, given schema type: " + schema.getType());
+        }
+        this.schema = schema;
+        this.recordWriter = compile(schema);
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Writes the avro binary representation of the given field values to the output stream.
+     */
+    public void write(Map<String, Object> fieldsAndValues, OutputStream outputStream) throws IOException {
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+        recordWriter.write(fieldsAndValues, encoder);
+        encoder.flush();
+    }
+
+    interface ValueWriter {
+        void write(Object value, BinaryEncoder encoder) throws IOException;
+    }
+
+    private static ValueWriter compile(Schema schema) {
+        switch (schema.getType()) {
+            case NULL:
+                return (value, encoder) -> encoder.writeNull();
+            case BOOLEAN:
+                return (value, encoder) -> encoder.writeBoolean((Boolean) value);
+            case INT:
+                return (value, encoder) -> encoder.writeInt(((Number) value).intValue());
+            case LONG:
+                return (value, encoder) -> encoder.writeLong(((Number) value).longValue());
+            case FLOAT:
+                return (value, encoder) -> encoder.writeFloat(((Number) value).floatValue());
+            case DOUBLE:
+                return (value, encoder) -> encoder.writeDouble(((Number) value).doubleValue());
+            case STRING:
+                return StreamlineEventAvroWriter::writeString;
+            case BYTES:
+                return StreamlineEventAvroWriter::writeBytes;
+            case FIXED:
+                return fixedWriter(schema);
+            case ENUM:
+                return enumWriter(schema);
+            case ARRAY:
+                return arrayWriter(schema);
+            case MAP:
+                return mapWriter(schema);
+            case RECORD:
+                return recordWriter(schema);
+            case UNION:
+                return unionWriter(schema);
+            default:
+                throw new IllegalArgumentException("Unsupported avro schema type: " + schema.getType());
+        }
+    }
+
+    private static void writeString(Object value, BinaryEncoder encoder) throws IOException {
+        if (value instanceof Utf8) {
+            encoder.writeString((Utf8) value);
+        } else {
+            encoder.writeString(value.toString());
+        }
+    }
+
+    private static void writeBytes(Object value, BinaryEncoder encoder) throws IOException {
+        if (value instanceof ByteBuffer) {
+            encoder.writeBytes((ByteBuffer) value);
+        } else {
+            encoder.writeBytes((byte[]) value);
+        }
+    }
+
+    private static ValueWriter fixedWriter(Schema schema) {
+        final int size = schema.getFixedSize();
+        final String name = schema.getFullName();
+        return (value, encoder) -> {
+            byte[] bytes = (byte[]) value;
+            if (bytes.length != size) {
+                throw new AvroRuntimeException("Fixed " + name + " expects " + size + " bytes, got " + bytes.length);
+            }
+            encoder.writeFixed(bytes, 0, size);
+        };
+    }
+
+    private static ValueWriter enumWriter(Schema schema) {
+        final Map<String, Integer> ordinals = new HashMap<>();
+        List<String> symbols = schema.getEnumSymbols();
+        for (int i = 0; i < symbols.size(); ++i) {
+            ordinals.put(symbols.get(i), i);
+        }
+        final String name = schema.getFullName();
+        return (value, encoder) -> {
+            Integer ordinal = ordinals.get(value.toString());
+            if (ordinal == null) {
+                throw new AvroRuntimeException("Unknown symbol " + value + " for enum " + name);
+            }
+            encoder.writeEnum(ordinal);
+        };
+    }
+
+    private static ValueWriter arrayWriter(Schema schema) {
+        final ValueWriter elementWriter = compile(schema.getElementType());
+        return (value, encoder) -> {
+            Collection<?> collection = (Collection<?>) value;
+            encoder.writeArrayStart();
+            encoder.setItemCount(collection.size());
+            for (Object element : collection) {
+                encoder.startItem();
+                elementWriter.write(element, encoder);
+            }
+            encoder.writeArrayEnd();
+        };
+    }
+
+    private static ValueWriter mapWriter(Schema schema) {
+        final ValueWriter valueWriter = compile(schema.getValueType());
+        return (value, encoder) -> {
+            Map<?, ?> map = (Map<?, ?>) value;
+            encoder.writeMapStart();
+            encoder.setItemCount(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                encoder.startItem();
+                encoder.writeString(entry.getKey().toString());
+                valueWriter.write(entry.getValue(), encoder);
+            }
+            encoder.writeMapEnd();
+        };
+    }
+
+    private static ValueWriter recordWriter(Schema schema) {
+        List<Schema.Field> fields = schema.getFields();
+        final String[] names = new String[fields.size()];
+        final ValueWriter[] writers = new ValueWriter[fields.size()];
+        for (Schema.Field field : fields) {
+            names[field.pos()] = field.name();
+            writers[field.pos()] = compile(field.schema());
+        }
+        final String recordName = schema.getFullName();
+        return (value, encoder) -> {
+            Map<?, ?> map = (Map<?, ?>) value;
+            for (int i = 0; i < names.length; ++i) {
+                Object fieldValue = map.get(names[i]);
+                try {
+                    writers[i].write(fieldValue, encoder);
+                } catch (NullPointerException | ClassCastException e) {
+                    throw new AvroRuntimeException("Invalid value " + fieldValue + " for field " + names[i] + " of record " + recordName, e);
+                }
+            }
+        };
+    }
+
+    private static ValueWriter unionWriter(Schema schema) {
+        final List<Schema> branches = schema.getTypes();
+        final ValueWriter[] writers = new ValueWriter[branches.size()];
+        int nullBranch = -1;
+        for (int i = 0; i < branches.size(); ++i) {
+            writers[i] = compile(branches.get(i));
+            if (Schema.Type.NULL.equals(branches.get(i).getType())) {
+                nullBranch = i;
+            }
+        }
+        final int nullIndex = nullBranch;
+        return (value, encoder) -> {
+            int index = value == null ? nullIndex : resolveBranch(branches, value);
+            if (index < 0) {
+                throw new AvroRuntimeException("Value " + value + " does not match any type of union " + schema);
+            }
+            encoder.writeIndex(index);
+            writers[index].write(value, encoder);
+        };
+    }
+
+    /*
+     * Mirrors GenericData#resolveUnion for the value types a StreamlineEvent carries (e.g. byte[] for bytes/fixed,
+     * String for enums and Map for records).
+     */
+    private static int resolveBranch(List<Schema> branches, Object value) {
+        for (int i = 0; i < branches.size(); ++i) {
+            Schema branch = branches.get(i);
+            switch (branch.getType()) {
+                case BOOLEAN:
+                    if (value instanceof Boolean) return i;
+                    break;
+                case INT:
+                    if (value instanceof Integer) return i;
+                    break;
+                case LONG:
+                    if (value instanceof Long) return i;
+                    break;
+                case FLOAT:
+                    if (value instanceof Float) return i;
+                    break;
+                case DOUBLE:
+                    if (value instanceof Double) return i;
+                    break;
+                case STRING:
+                    if (value instanceof CharSequence) return i;
+                    break;
+                case ENUM:
+                    if (value instanceof CharSequence && branch.hasEnumSymbol(value.toString())) return i;
+                    break;
+                case BYTES:
+                    if (value instanceof byte[] || value instanceof ByteBuffer) return i;
+                    break;
+                case FIXED:
+                    if (value instanceof byte[] && ((byte[]) value).length == branch.getFixedSize()) return i;
+                    break;
+                case ARRAY:
+                    if (value instanceof Collection) return i;
+                    break;
+                case MAP:
+                case RECORD:
+                    if (value instanceof Map) return i;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return -1;
+    }
+}
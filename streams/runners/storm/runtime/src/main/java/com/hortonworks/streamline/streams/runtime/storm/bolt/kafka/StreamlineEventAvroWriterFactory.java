@@ -0,0 +1,50 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
+
+import com.hortonworks.registries.schemaregistry.SchemaVersionKey;
+import org.apache.avro.Schema;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates and caches a {@link StreamlineEventAvroWriter} per schema version so that the schema text is parsed and
+ * compiled only once for the lifetime of the serializer.
+ */
+public class StreamlineEventAvroWriterFactory {
+    private final ConcurrentMap<SchemaVersionKey, Schema> schemas = new ConcurrentHashMap<>();
+    private final ConcurrentMap<SchemaVersionKey, StreamlineEventAvroWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the parsed avro schema for the given schema version.
+     */
+    public Schema getSchema(SchemaVersionKey schemaVersionKey, String schemaText) {
+        return schemas.computeIfAbsent(schemaVersionKey, key -> new Schema.Parser().parse(schemaText));
+    }
+
+    /**
+     * Returns the writer for the given schema version or null if the schema is not a record schema, in which case
+     * the payload is a primitive and should be serialized as is.
+     */
+    public StreamlineEventAvroWriter getWriter(SchemaVersionKey schemaVersionKey, String schemaText) {
+        Schema schema = getSchema(schemaVersionKey, schemaText);
+        if (!Schema.Type.RECORD.equals(schema.getType())) {
+            return null;
+        }
+        return writers.computeIfAbsent(schemaVersionKey, key -> new StreamlineEventAvroWriter(schema));
+    }
+}
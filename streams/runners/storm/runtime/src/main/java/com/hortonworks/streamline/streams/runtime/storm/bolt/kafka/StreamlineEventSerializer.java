@@ -15,6 +15,8 @@
  **/
 package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
 
+import com.hortonworks.registries.schemaregistry.SchemaIdVersion;
+import com.hortonworks.registries.schemaregistry.SchemaMetadataInfo;
 import com.hortonworks.registries.schemaregistry.SchemaVersionInfo;
 import com.hortonworks.registries.schemaregistry.SchemaVersionKey;
 import com.hortonworks.registries.schemaregistry.avro.AvroSchemaProvider;
@@ -30,19 +32,33 @@ import com.hortonworks.streamline.streams.StreamlineEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Serializes StreamlineEvent to avro using the schema registered for the topic.
+ * <p>
+ * Record payloads are written with a {@link StreamlineEventAvroWriter} compiled once per schema version, primitive
+ * payloads are handed over to the {@link AvroSnapshotSerializer}.
+ */
 public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
     protected static final Logger LOG = LoggerFactory.getLogger(StreamlineEventSerializer.class);
-    private final AvroSnapshotSerializer avroSnapshotSerializer;
+    private final StreamlineAvroSnapshotSerializer avroSnapshotSerializer;
+    private final StreamlineEventAvroWriterFactory writerFactory;
+    private final ConcurrentMap<SchemaVersionKey, byte[]> headers;
     private SchemaRegistryClient schemaRegistryClient;
     private Integer writerSchemaVersion;
 
     public StreamlineEventSerializer () {
-        avroSnapshotSerializer = new AvroSnapshotSerializer();
+        avroSnapshotSerializer = new StreamlineAvroSnapshotSerializer();
+        writerFactory = new StreamlineEventAvroWriterFactory();
+        headers = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -61,9 +77,11 @@ public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
     @Override
     public byte[] serialize(String topic, StreamlineEvent streamlineEvent) {
         SchemaMetadata schemaMetadata = getSchemaKey(topic, false);
+        SchemaMetadataInfo schemaMetadataInfo;
         SchemaVersionInfo schemaVersionInfo;
         try {
-            schemaMetadata = schemaRegistryClient.getSchemaMetadataInfo(schemaMetadata.getName()).getSchemaMetadata();
+            schemaMetadataInfo = schemaRegistryClient.getSchemaMetadataInfo(schemaMetadata.getName());
+            schemaMetadata = schemaMetadataInfo.getSchemaMetadata();
             if (writerSchemaVersion != null) {
                 schemaVersionInfo = schemaRegistryClient.getSchemaVersionInfo(new SchemaVersionKey(schemaMetadata.getName(), writerSchemaVersion));
             } else {
@@ -75,10 +93,24 @@ public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
         }
         if (streamlineEvent == null || streamlineEvent.isEmpty()) {
             return null;
-        } else {
-            return avroSnapshotSerializer.serialize(getAvroRecord(streamlineEvent, new Schema.Parser().parse(schemaVersionInfo.getSchemaText())),
-                    schemaMetadata);
         }
+        SchemaVersionKey schemaVersionKey = new SchemaVersionKey(schemaMetadata.getName(), schemaVersionInfo.getVersion());
+        StreamlineEventAvroWriter writer = writerFactory.getWriter(schemaVersionKey, schemaVersionInfo.getSchemaText());
+        if (writer == null || streamlineEvent.containsKey(StreamlineEvent.PRIMITIVE_PAYLOAD_FIELD)) {
+            Schema schema = writerFactory.getSchema(schemaVersionKey, schemaVersionInfo.getSchemaText());
+            return avroSnapshotSerializer.serialize(getAvroRecord(streamlineEvent, schema), schemaMetadata);
+        }
+        byte[] header = headers.computeIfAbsent(schemaVersionKey,
+                key -> avroSnapshotSerializer.serializeHeader(new SchemaIdVersion(schemaMetadataInfo.getId(), key.getVersion())));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(header.length + 256);
+        try {
+            outputStream.write(header);
+            writer.write(streamlineEvent, outputStream);
+        } catch (IOException e) {
+            LOG.error("Exception occured while serializing " + streamlineEvent + " with schema " + schemaVersionKey, e);
+            throw new RuntimeException(e);
+        }
+        return outputStream.toByteArray();
     }
 
     private SchemaMetadata getSchemaKey(String topic, boolean isKey) {
@@ -135,4 +167,15 @@ public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
             return input;
         }
     }
+
+    /*
+     * Exposes the protocol header (protocol id and schema version identifiers) written by AvroSnapshotSerializer so
+     * that the payload written by StreamlineEventAvroWriter can be read back by AvroSnapshotDeserializer. Byte array
+     * payloads are written as is, hence serializing an empty one yields just the header.
+     */
+    private static class StreamlineAvroSnapshotSerializer extends AvroSnapshotSerializer {
+        byte[] serializeHeader(SchemaIdVersion schemaIdVersion) {
+            return doSerialize(new byte[0], schemaIdVersion);
+        }
+    }
 }
@@ -0,0 +1,200 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
+
+import com.hortonworks.streamline.streams.runtime.storm.bolt.BaseTickTupleAwareRichBolt;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.storm.Config;
+import org.apache.storm.kafka.bolt.mapper.TupleToKafkaMapper;
+import org.apache.storm.kafka.bolt.selector.KafkaTopicSelector;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka bolt which sends records asynchronously and acks (or fails) each tuple only once the broker has
+ * acknowledged (or rejected) the corresponding record.
+ * <p>
+ * The number of sends which are not completed yet is bounded by {@code maxPendingSends}. When the bound is
+ * reached, the executor waits for sends to complete before taking more tuples, so that a slow broker throttles
+ * the upstream components through storm's backpressure instead of letting tuples time out and get replayed.
+ * <p>
+ * Send completions are handed over from the producer's I/O thread and the tuples are acked or failed on the
+ * executor thread, as the output collector is not meant to be used concurrently.
+ */
+public class StreamlineKafkaBolt<K, V> extends BaseTickTupleAwareRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineKafkaBolt.class);
+
+    public static final int DEFAULT_MAX_PENDING_SENDS = 1000;
+    // interval at which completed sends are acked while no tuples are received
+    private static final int TICK_TUPLE_FREQ_SECS = 1;
+
+    private TupleToKafkaMapper<K, V> mapper;
+    private KafkaTopicSelector topicSelector;
+    private Properties producerProperties = new Properties();
+    private int maxPendingSends = DEFAULT_MAX_PENDING_SENDS;
+
+    private transient Producer<K, V> producer;
+    private transient OutputCollector collector;
+    private transient BlockingQueue<SendCompletion> completions;
+    private transient int pendingSends;
+
+    public StreamlineKafkaBolt<K, V> withTupleToKafkaMapper(TupleToKafkaMapper<K, V> mapper) {
+        this.mapper = mapper;
+        return this;
+    }
+
+    public StreamlineKafkaBolt<K, V> withTopicSelector(KafkaTopicSelector topicSelector) {
+        this.topicSelector = topicSelector;
+        return this;
+    }
+
+    public StreamlineKafkaBolt<K, V> withProducerProperties(Properties producerProperties) {
+        this.producerProperties = producerProperties;
+        return this;
+    }
+
+    public StreamlineKafkaBolt<K, V> withMaxPendingSends(int maxPendingSends) {
+        if (maxPendingSends <= 0) {
+            throw new IllegalArgumentException("Max pending sends should be positive, given: " + maxPendingSends);
+        }
+        this.maxPendingSends = maxPendingSends;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("Tuple to kafka mapper must be provided");
+        }
+        if (topicSelector == null) {
+            throw new IllegalArgumentException("Topic selector must be provided");
+        }
+        this.collector = collector;
+        this.completions = new LinkedBlockingQueue<>();
+        this.pendingSends = 0;
+        this.producer = mkProducer(producerProperties);
+    }
+
+    protected Producer<K, V> mkProducer(Properties properties) {
+        return new KafkaProducer<>(properties);
+    }
+
+    @Override
+    protected void process(Tuple tuple) {
+        ackCompletedSends();
+        String topic = null;
+        try {
+            topic = topicSelector.getTopic(tuple);
+            if (topic == null) {
+                LOG.warn("Skipping tuple as no topic is selected for it: {}", tuple);
+                collector.ack(tuple);
+                return;
+            }
+            waitForPendingSends(maxPendingSends - 1);
+            ProducerRecord<K, V> record = new ProducerRecord<>(topic, mapper.getKeyFromTuple(tuple), mapper.getMessageFromTuple(tuple));
+            producer.send(record, (metadata, exception) -> completions.add(new SendCompletion(tuple, exception)));
+            ++pendingSends;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            collector.fail(tuple);
+        } catch (Exception e) {
+            LOG.error("Error while sending tuple to kafka topic {}", topic, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        ackCompletedSends();
+    }
+
+    @Override
+    public void cleanup() {
+        if (producer != null) {
+            // flush and complete the sends in flight so that their tuples are not left pending
+            producer.close();
+            ackCompletedSends();
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_TUPLE_FREQ_SECS);
+        return conf;
+    }
+
+    int getPendingSends() {
+        return pendingSends;
+    }
+
+    private void waitForPendingSends(int maxPending) throws InterruptedException {
+        while (pendingSends > maxPending) {
+            SendCompletion completion = completions.poll(TICK_TUPLE_FREQ_SECS, TimeUnit.SECONDS);
+            if (completion != null) {
+                complete(completion);
+            } else {
+                LOG.debug("Waiting for the completion of {} pending kafka sends", pendingSends);
+            }
+        }
+    }
+
+    private void ackCompletedSends() {
+        SendCompletion completion;
+        while ((completion = completions.poll()) != null) {
+            complete(completion);
+        }
+    }
+
+    private void complete(SendCompletion completion) {
+        --pendingSends;
+        if (completion.exception == null) {
+            collector.ack(completion.tuple);
+        } else {
+            LOG.error("Error while sending tuple to kafka", completion.exception);
+            collector.reportError(completion.exception);
+            collector.fail(completion.tuple);
+        }
+    }
+
+    private static final class SendCompletion {
+        private final Tuple tuple;
+        private final Exception exception;
+
+        SendCompletion(Tuple tuple, Exception exception) {
+            this.tuple = tuple;
+            this.exception = exception;
+        }
+    }
+}
@@ -28,17 +28,24 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Notification context implementation specific to Bolt that tracks and acks or fails
- * the tuple.
+ * the tuple. When the tuples are acked once their notifications are stored, the
+ * tuples are not tracked and the delivery status is only kept in the store.
  */
 public class BoltNotificationContext extends DefaultNotificationContext {
     private final OutputCollector collector;
     private final ConcurrentHashMap<String, Tuple> tupleMap;
+    private final boolean ackOnStore;
     private static final Logger LOG = LoggerFactory.getLogger(BoltNotificationContext.class);
 
     public BoltNotificationContext(OutputCollector collector, NotifierConfig config) {
+        this(collector, config, false);
+    }
+
+    public BoltNotificationContext(OutputCollector collector, NotifierConfig config, boolean ackOnStore) {
         super(config);
         this.collector = collector;
         this.tupleMap = new ConcurrentHashMap<>();
+        this.ackOnStore = ackOnStore;
     }
 
     void track(String notificationId, Tuple tuple) {
@@ -46,12 +53,21 @@ public class BoltNotificationContext extends DefaultNotificationContext {
         tupleMap.putIfAbsent(notificationId, tuple);
     }
 
+    /**
+     * Stops tracking the tuple of a notification which could not be handed to the notifier.
+     */
+    Tuple untrack(String notificationId) {
+        return tupleMap.remove(notificationId);
+    }
+
     @Override
     public void ack(String notificationId) {
         Tuple tuple = tupleMap.remove(notificationId);
         if(tuple != null) {
             LOG.debug("Acking tuple {}, notification id {}", tuple, notificationId);
             collector.ack(tuple);
+        } else if (ackOnStore) {
+            LOG.debug("Notification id {} delivered, its tuple was acked when stored", notificationId);
         } else {
             throw new RuntimeException("Tracked tuple not found for notification id " + notificationId);
         }
@@ -63,6 +79,8 @@ public class BoltNotificationContext extends DefaultNotificationContext {
         if(tuple != null) {
             LOG.debug("Failing tuple {}, notification id {}", tuple, notificationId);
             collector.fail(tuple);
+        } else if (ackOnStore) {
+            LOG.debug("Notification id {} failed, its tuple was acked when stored", notificationId);
         } else {
             throw new RuntimeException("Tracked tuple not found for notification id " + notificationId);
         }
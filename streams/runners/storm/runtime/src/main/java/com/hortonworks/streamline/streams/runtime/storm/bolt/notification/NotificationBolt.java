@@ -17,9 +17,14 @@
 
 package com.hortonworks.streamline.streams.runtime.storm.bolt.notification;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hortonworks.streamline.streams.runtime.storm.bolt.BaseTickTupleAwareRichBolt;
 import org.apache.commons.lang.StringUtils;
+import org.apache.storm.Config;
+import org.apache.storm.metric.api.IMetric;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.OutputFieldsDeclarer;
@@ -30,22 +35,36 @@ import com.hortonworks.streamline.streams.notification.Notification;
 import com.hortonworks.streamline.streams.notification.NotifierConfig;
 import com.hortonworks.streamline.streams.notification.common.NotifierConfigImpl;
 import com.hortonworks.streamline.streams.notification.service.NotificationService;
+import com.hortonworks.streamline.streams.notification.service.NotificationServiceException;
 import com.hortonworks.streamline.streams.notification.service.NotificationServiceImpl;
 import com.hortonworks.streamline.streams.notification.store.NotificationStore;
+import com.hortonworks.streamline.streams.notification.store.hbase.HBaseNotificationStore;
+import com.hortonworks.streamline.streams.notification.store.local.LocalNotificationStore;
 import com.hortonworks.streamline.streams.runtime.notification.StreamlineEventAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This storm bolt receives tuples from rule engine
  * and uses notification service to send out notifications.
+ * <p>
+ * With a batch size greater than 1, the notifications are accumulated until the batch is full
+ * or the flush interval elapses, then stored with a single call to the notification store and
+ * handed to the notifier as a batch. The tuples are acked once their batch is stored.
+ * </p>
+ * <p>
+ * The metrics of the notification service are registered as the {@value #METRICS_NAME} Storm metric.
+ * </p>
  */
 public class NotificationBolt extends BaseTickTupleAwareRichBolt {
     private static final Logger LOG = LoggerFactory.getLogger(NotificationBolt.class);
@@ -55,10 +74,18 @@ public class NotificationBolt extends BaseTickTupleAwareRichBolt {
 
     private static final String NOTIFICATION_STORE_CONFIG_KEY = "notification.store.conf";
     private static final String NOTIFICATION_SERVICE_CONFIG_KEY = "notification.conf";
+    static final String METRICS_NAME = "notification";
+    private static final int METRICS_TIME_BUCKET_SECS = 60;
     private NotificationService notificationService;
     private BoltNotificationContext notificationContext;
     private final NotificationSink notificationSink;
     private String notificationStoreClazz = "";
+    private int batchSize = 1;
+    private int flushIntervalSecs = 1;
+    private OutputCollector collector;
+    private List<Tuple> pendingTuples;
+    private List<Notification> pendingNotifications;
+    private long firstPendingAt;
 
     /**
      * The serialized JSON for the notification sink which is the design time component
@@ -91,6 +118,22 @@ public class NotificationBolt extends BaseTickTupleAwareRichBolt {
         return this;
     }
 
+    public NotificationBolt withBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive, given: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public NotificationBolt withFlushIntervalSecs(int flushIntervalSecs) {
+        if (flushIntervalSecs <= 0) {
+            throw new IllegalArgumentException("Flush interval should be positive, given: " + flushIntervalSecs);
+        }
+        this.flushIntervalSecs = flushIntervalSecs;
+        return this;
+    }
+
     @Override
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
         if (!stormConf.containsKey(CATALOG_ROOT_URL)) {
@@ -109,9 +152,18 @@ public class NotificationBolt extends BaseTickTupleAwareRichBolt {
             if (!StringUtils.isEmpty(notificationStoreClazz)) {
                 Class<?> clazz = Class.forName(notificationStoreClazz);
                 notificationStore = (NotificationStore) clazz.newInstance();
-                Map<String, Object> config = (Map<String, Object>) stormConf.get(NOTIFICATION_STORE_CONFIG_KEY);
-                if (config == null) {
-                    config = Collections.emptyMap();
+                Map<String, Object> config = new HashMap<>();
+                if (stormConf.get(NOTIFICATION_STORE_CONFIG_KEY) != null) {
+                    config.putAll((Map<String, Object>) stormConf.get(NOTIFICATION_STORE_CONFIG_KEY));
+                }
+                // the retention tasks scan and alter the store tables, they are not run from every executor
+                if (Boolean.parseBoolean(String.valueOf(config.get(HBaseNotificationStore.RETENTION_TASKS)))) {
+                    LOG.warn("Ignoring {} in the notification store config of the bolt", HBaseNotificationStore.RETENTION_TASKS);
+                }
+                config.put(HBaseNotificationStore.RETENTION_TASKS, "false");
+                // each task keeps its local store in its own directory
+                if (notificationStore instanceof LocalNotificationStore && context != null) {
+                    config.put(LocalNotificationStore.INSTANCE, context.getThisComponentId() + "-" + context.getThisTaskIndex());
                 }
                 notificationStore.init(config);
             }
@@ -133,16 +185,83 @@ public class NotificationBolt extends BaseTickTupleAwareRichBolt {
                 convertMapValuesToString(notificationSink.getNotifierFieldValues()),
                 notificationSink.getNotifierClassName(), jarPath);
 
-        notificationContext = new BoltNotificationContext(collector, notifierConfig);
+        this.collector = collector;
+        this.pendingTuples = new ArrayList<>();
+        this.pendingNotifications = new ArrayList<>();
+        notificationContext = new BoltNotificationContext(collector, notifierConfig, isBatching());
         notificationService.register(notificationSink.getNotifierName(), notificationContext);
+        if (context != null) {
+            context.registerMetric(METRICS_NAME, new NotificationServiceMetric(notificationService.getMetrics()),
+                    METRICS_TIME_BUCKET_SECS);
+        }
     }
 
     @Override
     protected void process(Tuple tuple) {
         Notification notification = new StreamlineEventAdapter((StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT));
+        if (isBatching()) {
+            if (pendingNotifications.isEmpty()) {
+                firstPendingAt = System.currentTimeMillis();
+            }
+            pendingTuples.add(tuple);
+            pendingNotifications.add(notification);
+            if (pendingNotifications.size() >= batchSize) {
+                flush();
+            }
+            return;
+        }
         notificationContext.track(notification.getId(), tuple);
         // send to notifier
-        notificationService.notify(notificationSink.getNotifierName(), notification);
+        try {
+            notificationService.notify(notificationSink.getNotifierName(), notification);
+        } catch (NotificationServiceException ex) {
+            // the notification queue is full, fail the tuple so that it is replayed later
+            LOG.warn("Notification {} rejected", notification.getId(), ex);
+            notificationContext.untrack(notification.getId());
+            collector.fail(tuple);
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        if (isBatching() && !pendingNotifications.isEmpty()
+                && System.currentTimeMillis() - firstPendingAt >= TimeUnit.SECONDS.toMillis(flushIntervalSecs)) {
+            flush();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        if (!isBatching()) {
+            return null;
+        }
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, flushIntervalSecs);
+        return conf;
+    }
+
+    private boolean isBatching() {
+        return batchSize > 1;
+    }
+
+    // stores the pending notifications and hands them to the notifier, the tuples are acked once stored
+    private void flush() {
+        LOG.debug("Flushing {} notifications", pendingNotifications.size());
+        try {
+            notificationService.notify(notificationSink.getNotifierName(), new ArrayList<>(pendingNotifications));
+            for (Tuple tuple : pendingTuples) {
+                collector.ack(tuple);
+            }
+        } catch (RuntimeException ex) {
+            LOG.error("Error sending {} notifications", pendingNotifications.size(), ex);
+            collector.reportError(ex);
+            for (Tuple tuple : pendingTuples) {
+                collector.fail(tuple);
+            }
+        } finally {
+            pendingTuples.clear();
+            pendingNotifications.clear();
+        }
     }
 
     @Override
@@ -151,6 +270,9 @@ public class NotificationBolt extends BaseTickTupleAwareRichBolt {
 
     @Override
     public void cleanup() {
+        if (isBatching() && !pendingNotifications.isEmpty()) {
+            flush();
+        }
         notificationService.close();
     }
 
@@ -165,4 +287,29 @@ public class NotificationBolt extends BaseTickTupleAwareRichBolt {
         return result;
     }
 
+    /**
+     * Reports the gauges of the notification service, and how much its counters increased since the last report.
+     */
+    static final class NotificationServiceMetric implements IMetric {
+        private final MetricRegistry metrics;
+        private final Map<String, Long> lastCounts = new HashMap<>();
+
+        NotificationServiceMetric(MetricRegistry metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object getValueAndReset() {
+            Map<String, Object> values = new HashMap<>();
+            for (Map.Entry<String, Gauge> gauge : metrics.getGauges().entrySet()) {
+                values.put(gauge.getKey(), gauge.getValue().getValue());
+            }
+            for (Map.Entry<String, Counter> counter : metrics.getCounters().entrySet()) {
+                long count = counter.getValue().getCount();
+                Long lastCount = lastCounts.put(counter.getKey(), count);
+                values.put(counter.getKey(), lastCount != null ? count - lastCount : count);
+            }
+            return values;
+        }
+    }
 }
@@ -0,0 +1,306 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.solr;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.runtime.storm.bolt.BaseTickTupleAwareRichBolt;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.storm.Config;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solr bolt which adds documents by batches, asynchronously, and leaves the commits to solr with commitWithin.
+ * <p>
+ * A batch is sent once it reaches {@code batchSize} documents or about {@code maxBatchBytes} bytes, or on tick
+ * once its oldest document is older than {@code flushIntervalSecs}. Batches are sent by a pool of
+ * {@code maxInFlightRequests} threads; when all of them are busy, the executor waits for a request to complete
+ * before taking more tuples, so that a slow solr throttles the upstream components through backpressure.
+ * <p>
+ * No explicit commit is issued, the documents are added with {@code commitWithinMs} so that solr commits them
+ * within that time. The tuples of a batch are acked (or failed) on the executor thread once the add request
+ * completes (or fails).
+ */
+public class StreamlineSolrBolt extends BaseTickTupleAwareRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineSolrBolt.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_MAX_BATCH_BYTES = 5 * 1024 * 1024;
+    public static final int DEFAULT_FLUSH_INTERVAL_SECS = 1;
+    public static final int DEFAULT_COMMIT_WITHIN_MS = 10000;
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 2;
+    private static final int TICK_TUPLE_FREQ_SECS = 1;
+
+    private final String zkHostString;
+    private final String collection;
+    private final StreamlineSolrDocumentMapper mapper;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private int flushIntervalSecs = DEFAULT_FLUSH_INTERVAL_SECS;
+    private int commitWithinMs = DEFAULT_COMMIT_WITHIN_MS;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+
+    private transient OutputCollector collector;
+    private transient SolrClient solrClient;
+    private transient ExecutorService executorService;
+    private transient BlockingQueue<BatchCompletion> completions;
+    private transient int inFlightRequests;
+    private transient List<Tuple> batchTuples;
+    private transient List<SolrInputDocument> batchDocuments;
+    private transient long batchBytes;
+    private transient long batchStart;
+
+    public StreamlineSolrBolt(String zkHostString, String collection, StreamlineSolrDocumentMapper mapper) {
+        this.zkHostString = zkHostString;
+        this.collection = collection;
+        this.mapper = mapper;
+    }
+
+    public StreamlineSolrBolt withBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive, given: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public StreamlineSolrBolt withMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("Max batch bytes should be positive, given: " + maxBatchBytes);
+        }
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    public StreamlineSolrBolt withFlushIntervalSecs(int flushIntervalSecs) {
+        if (flushIntervalSecs <= 0) {
+            throw new IllegalArgumentException("Flush interval should be positive, given: " + flushIntervalSecs);
+        }
+        this.flushIntervalSecs = flushIntervalSecs;
+        return this;
+    }
+
+    public StreamlineSolrBolt withCommitWithinMs(int commitWithinMs) {
+        if (commitWithinMs <= 0) {
+            throw new IllegalArgumentException("Commit within should be positive, given: " + commitWithinMs);
+        }
+        this.commitWithinMs = commitWithinMs;
+        return this;
+    }
+
+    public StreamlineSolrBolt withMaxInFlightRequests(int maxInFlightRequests) {
+        if (maxInFlightRequests <= 0) {
+            throw new IllegalArgumentException("Max in flight requests should be positive, given: " + maxInFlightRequests);
+        }
+        this.maxInFlightRequests = maxInFlightRequests;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = collector;
+        this.solrClient = mkSolrClient();
+        this.executorService = Executors.newFixedThreadPool(maxInFlightRequests);
+        this.completions = new LinkedBlockingQueue<>();
+        this.inFlightRequests = 0;
+        this.batchTuples = new ArrayList<>(batchSize);
+        this.batchDocuments = new ArrayList<>(batchSize);
+        this.batchBytes = 0;
+    }
+
+    protected SolrClient mkSolrClient() {
+        CloudSolrClient solrClient = new CloudSolrClient(zkHostString);
+        solrClient.setDefaultCollection(collection);
+        return solrClient;
+    }
+
+    @Override
+    protected void process(Tuple tuple) {
+        ackCompletedBatches();
+        SolrInputDocument document;
+        try {
+            document = mapper.toDocument((StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT));
+        } catch (Exception e) {
+            LOG.error("Error mapping tuple {} to a solr document", tuple, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+            return;
+        }
+        if (batchTuples.isEmpty()) {
+            batchStart = System.currentTimeMillis();
+        }
+        batchTuples.add(tuple);
+        batchDocuments.add(document);
+        batchBytes += estimateSize(document);
+        if (batchTuples.size() >= batchSize || batchBytes >= maxBatchBytes) {
+            flush();
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        ackCompletedBatches();
+        if (!batchTuples.isEmpty() && System.currentTimeMillis() - batchStart >= flushIntervalSecs * 1000L) {
+            flush();
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        if (executorService != null) {
+            if (!batchTuples.isEmpty()) {
+                flush();
+            }
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(commitWithinMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ackCompletedBatches();
+        }
+        if (solrClient != null) {
+            try {
+                solrClient.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing solr client", e);
+            }
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_TUPLE_FREQ_SECS);
+        return conf;
+    }
+
+    int getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    private void flush() {
+        List<Tuple> tuples = new ArrayList<>(batchTuples);
+        List<SolrInputDocument> documents = new ArrayList<>(batchDocuments);
+        batchTuples.clear();
+        batchDocuments.clear();
+        batchBytes = 0;
+        try {
+            waitForInFlightRequests(maxInFlightRequests - 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failAll(tuples);
+            return;
+        }
+        ++inFlightRequests;
+        executorService.submit(() -> {
+            Exception exception = null;
+            try {
+                solrClient.add(documents, commitWithinMs);
+            } catch (Exception e) {
+                exception = e;
+            }
+            completions.add(new BatchCompletion(tuples, exception));
+        });
+    }
+
+    private void waitForInFlightRequests(int maxInFlight) throws InterruptedException {
+        while (inFlightRequests > maxInFlight) {
+            BatchCompletion completion = completions.poll(TICK_TUPLE_FREQ_SECS, TimeUnit.SECONDS);
+            if (completion != null) {
+                complete(completion);
+            } else {
+                LOG.debug("Waiting for the completion of {} solr requests", inFlightRequests);
+            }
+        }
+    }
+
+    private void ackCompletedBatches() {
+        BatchCompletion completion;
+        while ((completion = completions.poll()) != null) {
+            complete(completion);
+        }
+    }
+
+    private void complete(BatchCompletion completion) {
+        --inFlightRequests;
+        if (completion.exception == null) {
+            for (Tuple tuple : completion.tuples) {
+                collector.ack(tuple);
+            }
+        } else {
+            LOG.error("Error adding {} documents to solr collection {}", completion.tuples.size(), collection, completion.exception);
+            collector.reportError(completion.exception);
+            failAll(completion.tuples);
+        }
+    }
+
+    private void failAll(List<Tuple> tuples) {
+        for (Tuple tuple : tuples) {
+            collector.fail(tuple);
+        }
+    }
+
+    // approximate size of the document once serialized, only used to bound the size of the batches
+    private static long estimateSize(SolrInputDocument document) {
+        long size = 0;
+        for (SolrInputField field : document) {
+            for (Object value : field.getValues()) {
+                size += field.getName().length();
+                if (value instanceof byte[]) {
+                    size += ((byte[]) value).length;
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    size += 8;
+                } else {
+                    size += String.valueOf(value).length();
+                }
+            }
+        }
+        return size;
+    }
+
+    private static final class BatchCompletion {
+        private final List<Tuple> tuples;
+        private final Exception exception;
+
+        BatchCompletion(List<Tuple> tuples, Exception exception) {
+            this.tuples = tuples;
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.solr;
+
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.common.util.Utils;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import org.apache.solr.common.SolrInputDocument;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps a StreamlineEvent to a solr document.
+ * <p>
+ * By default every field of the event is added to the document. When a schema is set with
+ * {@link #withSchema(String)}, only the fields of the schema are added. Null values are skipped, nested fields
+ * are flattened into fields named after their path (e.g. {@code address.city}) and arrays are added as multi
+ * valued fields.
+ */
+@SuppressWarnings("unchecked")
+public class StreamlineSolrDocumentMapper implements Serializable {
+    private static final String NESTED_FIELD_SEPARATOR = ".";
+
+    private Schema schema;
+
+    /**
+     * Adds only the fields of the given schema (as json).
+     */
+    public StreamlineSolrDocumentMapper withSchema(String schemaJson) {
+        this.schema = Utils.createObjectFromJson(schemaJson, Schema.class);
+        return this;
+    }
+
+    public SolrInputDocument toDocument(StreamlineEvent event) {
+        SolrInputDocument document = new SolrInputDocument();
+        if (schema != null) {
+            addFields(document, null, schema.getFields(), event);
+        } else {
+            addFields(document, null, event);
+        }
+        return document;
+    }
+
+    private void addFields(SolrInputDocument document, String prefix, List<Schema.Field> fields, Map<String, Object> values) {
+        for (Schema.Field field : fields) {
+            Object value = values.get(field.getName());
+            if (value == null) {
+                continue;
+            }
+            String name = fieldName(prefix, field.getName());
+            if (field.getType() == Schema.Type.NESTED && value instanceof Map) {
+                addFields(document, name, ((Schema.NestedField) field).getFields(), (Map<String, Object>) value);
+            } else {
+                addField(document, name, value);
+            }
+        }
+    }
+
+    private void addFields(SolrInputDocument document, String prefix, Map<String, Object> values) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            String name = fieldName(prefix, entry.getKey());
+            if (entry.getValue() instanceof Map) {
+                addFields(document, name, (Map<String, Object>) entry.getValue());
+            } else {
+                addField(document, name, entry.getValue());
+            }
+        }
+    }
+
+    private void addField(SolrInputDocument document, String name, Object value) {
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (element != null) {
+                    document.addField(name, element);
+                }
+            }
+        } else {
+            document.addField(name, value);
+        }
+    }
+
+    private String fieldName(String prefix, String name) {
+        return prefix == null ? name : prefix + NESTED_FIELD_SEPARATOR + name;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.cassandra;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import org.apache.storm.cassandra.query.CQLStatementTupleMapper;
+import org.apache.storm.cassandra.query.selector.FieldSelector;
+import org.apache.storm.tuple.ITuple;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps a tuple to a statement bound from the given CQL template, with the values of the field selectors in the
+ * order of the bind markers.
+ * <p>
+ * The template is prepared once per session and the statement is bound by index, so the driver can compute its
+ * routing key from the bound partition key columns and route it to a replica with a token aware policy.
+ */
+public class StreamlineBoundStatementMapper implements CQLStatementTupleMapper {
+    private final String cql;
+    private List<FieldSelector> fieldSelectors = Collections.emptyList();
+
+    private transient Session preparedSession;
+    private transient PreparedStatement preparedStatement;
+
+    public StreamlineBoundStatementMapper(String cql) {
+        this.cql = cql;
+    }
+
+    public StreamlineBoundStatementMapper bind(FieldSelector... fieldSelectors) {
+        this.fieldSelectors = Arrays.asList(fieldSelectors);
+        return this;
+    }
+
+    @Override
+    public List<Statement> map(Map conf, Session session, ITuple tuple) {
+        Object[] values = new Object[fieldSelectors.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = fieldSelectors.get(i).select(tuple).getVal();
+        }
+        return Collections.<Statement>singletonList(getPreparedStatement(session).bind(values));
+    }
+
+    private PreparedStatement getPreparedStatement(Session session) {
+        if (preparedStatement == null || preparedSession != session) {
+            preparedStatement = session.prepare(cql);
+            preparedSession = session;
+        }
+        return preparedStatement;
+    }
+}
@@ -0,0 +1,293 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.cassandra;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import org.apache.storm.Config;
+import org.apache.storm.cassandra.bolt.BaseCassandraBolt;
+import org.apache.storm.cassandra.executor.AsyncResultHandler;
+import org.apache.storm.cassandra.query.CQLStatementTupleMapper;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cassandra bolt which executes the statements of the tuples asynchronously and acks (or fails) each tuple once
+ * all its statements are executed.
+ * <p>
+ * Statements are sent right away while no request is in flight. Otherwise they are buffered, grouped by partition
+ * (routing key), until the requests in flight complete or {@code maxBatchSize} statements are buffered. Each group
+ * is then sent as a single unlogged batch, which is routed to a replica of its partition by a token aware policy.
+ * The number of requests in flight is bounded by {@code maxInFlightRequests}, the executor waits for requests to
+ * complete once it is reached so that a slow cluster throttles the upstream components.
+ * <p>
+ * Request completions are handed over from the driver's threads and the tuples are acked or failed on the
+ * executor thread.
+ */
+public class StreamlineCassandraAsyncBolt extends BaseCassandraBolt<List<Tuple>> {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineCassandraAsyncBolt.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 128;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    // interval at which completed requests are acked and buffered statements sent while no tuples are received
+    private static final int TICK_TUPLE_FREQ_SECS = 1;
+
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private transient BlockingQueue<RequestCompletion> completions;
+    // buffered statements grouped by routing key, statements without routing key are not grouped
+    private transient Map<Object, List<PendingStatement>> partitionGroups;
+    private transient int bufferedStatements;
+    private transient int inFlightRequests;
+    private transient ProtocolVersion protocolVersion;
+    private transient CodecRegistry codecRegistry;
+
+    public StreamlineCassandraAsyncBolt(CQLStatementTupleMapper tupleMapper) {
+        super(tupleMapper);
+    }
+
+    public StreamlineCassandraAsyncBolt withMaxInFlightRequests(int maxInFlightRequests) {
+        if (maxInFlightRequests <= 0) {
+            throw new IllegalArgumentException("Max in flight requests should be positive, given: " + maxInFlightRequests);
+        }
+        this.maxInFlightRequests = maxInFlightRequests;
+        return this;
+    }
+
+    public StreamlineCassandraAsyncBolt withMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Max batch size should be positive, given: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConfig, TopologyContext topologyContext, OutputCollector outputCollector) {
+        super.prepare(stormConfig, topologyContext, outputCollector);
+        this.completions = new LinkedBlockingQueue<>();
+        this.partitionGroups = new LinkedHashMap<>();
+        this.bufferedStatements = 0;
+        this.inFlightRequests = 0;
+        Configuration configuration = session.getCluster().getConfiguration();
+        this.protocolVersion = configuration.getProtocolOptions().getProtocolVersion();
+        this.codecRegistry = configuration.getCodecRegistry();
+    }
+
+    @Override
+    public void process(Tuple input) {
+        completeRequests();
+        List<Statement> statements;
+        try {
+            statements = getMapper().map(stormConfig, session, input);
+        } catch (Exception e) {
+            LOG.error("Error mapping tuple {} to cassandra statements", input, e);
+            outputCollector.reportError(e);
+            outputCollector.fail(input);
+            return;
+        }
+        if (statements.isEmpty()) {
+            outputCollector.ack(input);
+            return;
+        }
+        PendingTuple pendingTuple = new PendingTuple(input, statements.size());
+        for (Statement statement : statements) {
+            ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+            Object groupKey = routingKey != null ? routingKey : new Object();
+            List<PendingStatement> group = partitionGroups.get(groupKey);
+            if (group == null) {
+                group = new ArrayList<>();
+                partitionGroups.put(groupKey, group);
+            }
+            group.add(new PendingStatement(statement, pendingTuple));
+            ++bufferedStatements;
+        }
+        if (inFlightRequests == 0 || bufferedStatements >= maxBatchSize) {
+            sendBufferedStatements();
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        completeRequests();
+        if (bufferedStatements > 0) {
+            sendBufferedStatements();
+        }
+    }
+
+    @Override
+    protected AsyncResultHandler<List<Tuple>> getAsyncHandler() {
+        // statements are executed and their results handled by this bolt, not by the async executor
+        return null;
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_TUPLE_FREQ_SECS);
+        return conf;
+    }
+
+    @Override
+    public void cleanup() {
+        if (partitionGroups != null) {
+            sendBufferedStatements();
+            waitForInFlightRequests(0);
+        }
+        super.cleanup();
+    }
+
+    int getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    private void sendBufferedStatements() {
+        for (List<PendingStatement> group : partitionGroups.values()) {
+            for (int from = 0; from < group.size(); from += maxBatchSize) {
+                waitForInFlightRequests(maxInFlightRequests - 1);
+                send(new ArrayList<>(group.subList(from, Math.min(group.size(), from + maxBatchSize))));
+            }
+        }
+        partitionGroups.clear();
+        bufferedStatements = 0;
+    }
+
+    private void send(final List<PendingStatement> pendingStatements) {
+        Statement statement;
+        if (pendingStatements.size() == 1) {
+            statement = pendingStatements.get(0).statement;
+        } else {
+            BatchStatement batchStatement = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            for (PendingStatement pendingStatement : pendingStatements) {
+                batchStatement.add(pendingStatement.statement);
+            }
+            statement = batchStatement;
+        }
+        ++inFlightRequests;
+        try {
+            ResultSetFuture future = session.executeAsync(statement);
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    completions.add(new RequestCompletion(pendingStatements, null));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    completions.add(new RequestCompletion(pendingStatements, t));
+                }
+            });
+        } catch (RuntimeException e) {
+            completions.add(new RequestCompletion(pendingStatements, e));
+        }
+    }
+
+    private void waitForInFlightRequests(int maxInFlight) {
+        try {
+            while (inFlightRequests > maxInFlight) {
+                RequestCompletion completion = completions.poll(TICK_TUPLE_FREQ_SECS, TimeUnit.SECONDS);
+                if (completion != null) {
+                    complete(completion);
+                } else {
+                    LOG.debug("Waiting for the completion of {} cassandra requests", inFlightRequests);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void completeRequests() {
+        RequestCompletion completion;
+        while ((completion = completions.poll()) != null) {
+            complete(completion);
+        }
+    }
+
+    private void complete(RequestCompletion completion) {
+        --inFlightRequests;
+        if (completion.error != null) {
+            LOG.error("Error executing {} cassandra statements", completion.pendingStatements.size(), completion.error);
+            outputCollector.reportError(completion.error);
+        }
+        for (PendingStatement pendingStatement : completion.pendingStatements) {
+            pendingStatement.pendingTuple.complete(completion.error == null);
+        }
+    }
+
+    private final class PendingTuple {
+        private final Tuple tuple;
+        private int remainingStatements;
+        private boolean failed;
+
+        PendingTuple(Tuple tuple, int statements) {
+            this.tuple = tuple;
+            this.remainingStatements = statements;
+        }
+
+        void complete(boolean success) {
+            failed |= !success;
+            if (--remainingStatements == 0) {
+                if (failed) {
+                    outputCollector.fail(tuple);
+                } else {
+                    outputCollector.ack(tuple);
+                }
+            }
+        }
+    }
+
+    private static final class PendingStatement {
+        private final Statement statement;
+        private final PendingTuple pendingTuple;
+
+        PendingStatement(Statement statement, PendingTuple pendingTuple) {
+            this.statement = statement;
+            this.pendingTuple = pendingTuple;
+        }
+    }
+
+    private static final class RequestCompletion {
+        private final List<PendingStatement> pendingStatements;
+        private final Throwable error;
+
+        RequestCompletion(List<PendingStatement> pendingStatements, Throwable error) {
+            this.pendingStatements = pendingStatements;
+            this.error = error;
+        }
+    }
+}
@@ -16,20 +16,53 @@
 package com.hortonworks.streamline.streams.runtime.storm.hbase;
 
 import com.google.common.base.Charsets;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.common.util.Utils;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.runtime.storm.StreamlineRuntimeUtil;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.storm.hbase.bolt.mapper.HBaseMapper;
 import org.apache.storm.hbase.common.ColumnList;
 import org.apache.storm.tuple.Tuple;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Map;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.apache.storm.hbase.common.Utils.toBytes;
 
+/**
+ * Maps a StreamlineEvent to an hbase row.
+ * <p>
+ * By default every field of the event is written as a column named after the field. When a schema is set with
+ * {@link #withSchema(String)}, only the fields of the schema are written. The qualifiers are encoded once and each
+ * field is converted with a serializer chosen from its type. In this mode some fields can be packed into a single
+ * column with {@link #withPackedColumn(String, List)}, each value being written as its length (4 bytes, -1 for null)
+ * followed by its bytes, in the given order of the fields.
+ * <p>
+ * The row key is the value of the row key field (or the event id if none is given), or the values of the row key
+ * fields separated by a zero byte. Keys can be salted with {@link #withRowKeySaltBuckets(int)} which prefixes them
+ * with a byte derived from their hash, so that sequential keys are spread over the regions.
+ */
 public class StreamlineEventHBaseMapper implements HBaseMapper {
+    private static final byte ROW_KEY_SEPARATOR = 0;
+
     private final byte[] columnFamily;
     private final String rowKeyField;
+    private List<String> rowKeyFields;
+    private int rowKeySaltBuckets;
+    private List<ColumnMapping> columnMappings;
+    private byte[] packedQualifier;
+    private List<ColumnMapping> packedColumnMappings;
+    private Schema schema;
+    private String packedColumn;
+    private List<String> packedFields = Collections.emptyList();
 
     public StreamlineEventHBaseMapper(String columnFamily) {
         this(columnFamily, null);
@@ -40,10 +73,54 @@ public class StreamlineEventHBaseMapper implements HBaseMapper {
         this.rowKeyField = rowKeyField;
     }
 
+    /**
+     * Writes only the fields of the given schema (as json), with a serializer per field type.
+     */
+    public StreamlineEventHBaseMapper withSchema(String schemaJson) {
+        this.schema = Utils.createObjectFromJson(schemaJson, Schema.class);
+        buildColumnMappings();
+        return this;
+    }
+
+    /**
+     * Packs the values of the given fields into a single column, only used along with a schema.
+     */
+    public StreamlineEventHBaseMapper withPackedColumn(String packedColumn, List<String> packedFields) {
+        this.packedColumn = packedColumn;
+        this.packedFields = new ArrayList<>(packedFields);
+        buildColumnMappings();
+        return this;
+    }
+
+    /**
+     * Composes the row key from the values of the given fields.
+     */
+    public StreamlineEventHBaseMapper withRowKeyFields(List<String> rowKeyFields) {
+        this.rowKeyFields = new ArrayList<>(rowKeyFields);
+        return this;
+    }
+
+    /**
+     * Prefixes row keys with a salt byte, between 0 and the given number of buckets (at most 256) minus 1.
+     */
+    public StreamlineEventHBaseMapper withRowKeySaltBuckets(int rowKeySaltBuckets) {
+        if (rowKeySaltBuckets < 0 || rowKeySaltBuckets > 256) {
+            throw new IllegalArgumentException("Row key salt buckets should be between 0 and 256, given: " + rowKeySaltBuckets);
+        }
+        this.rowKeySaltBuckets = rowKeySaltBuckets;
+        return this;
+    }
+
     @Override
     public byte[] rowKey(Tuple tuple) {
         StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
-        return toBytes((rowKeyField != null && !rowKeyField.isEmpty()) ? StreamlineRuntimeUtil.getFieldValue(event, rowKeyField) : event.getId());
+        byte[] rowKey;
+        if (rowKeyFields != null && !rowKeyFields.isEmpty()) {
+            rowKey = compositeRowKey(event);
+        } else {
+            rowKey = toBytes((rowKeyField != null && !rowKeyField.isEmpty()) ? StreamlineRuntimeUtil.getFieldValue(event, rowKeyField) : event.getId());
+        }
+        return rowKeySaltBuckets > 0 ? salt(rowKey) : rowKey;
     }
 
     @Override
@@ -51,6 +128,19 @@ public class StreamlineEventHBaseMapper implements HBaseMapper {
         StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
 
         ColumnList columnList = new ColumnList();
+        if (columnMappings != null) {
+            for (ColumnMapping columnMapping : columnMappings) {
+                Object value = event.get(columnMapping.field);
+                //Hbase bolt can not handle null values.
+                if (value != null) {
+                    columnList.addColumn(columnFamily, columnMapping.qualifier, columnMapping.serializer.toBytes(value));
+                }
+            }
+            if (packedQualifier != null) {
+                columnList.addColumn(columnFamily, packedQualifier, packedValue(event));
+            }
+            return columnList;
+        }
         for (String key : event.keySet()) {
             //Hbase bolt can not handle null values.
             if (event.get(key) != null) {
@@ -59,4 +149,112 @@ public class StreamlineEventHBaseMapper implements HBaseMapper {
         }
         return columnList;
     }
+
+    private void buildColumnMappings() {
+        // packed fields are mapped once the schema is set
+        if (schema == null) {
+            return;
+        }
+        Set<String> packed = new HashSet<>(packedFields);
+        List<ColumnMapping> columnMappings = new ArrayList<>();
+        List<ColumnMapping> packedColumnMappings = new ArrayList<>(Collections.<ColumnMapping>nCopies(packedFields.size(), null));
+        for (Schema.Field field : schema.getFields()) {
+            ColumnMapping columnMapping = new ColumnMapping(field.getName(), serializer(field.getType()));
+            if (packed.contains(field.getName())) {
+                packedColumnMappings.set(packedFields.indexOf(field.getName()), columnMapping);
+            } else {
+                columnMappings.add(columnMapping);
+            }
+        }
+        if (packedColumnMappings.contains(null)) {
+            throw new IllegalArgumentException("Packed fields " + packedFields + " should be part of the schema " + schema);
+        }
+        this.columnMappings = columnMappings;
+        this.packedColumnMappings = packedColumnMappings;
+        this.packedQualifier = packedColumn != null && !packedColumnMappings.isEmpty() ? packedColumn.getBytes(Charsets.UTF_8) : null;
+    }
+
+    private byte[] packedValue(StreamlineEvent event) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            for (ColumnMapping columnMapping : packedColumnMappings) {
+                Object value = event.get(columnMapping.field);
+                if (value == null) {
+                    outputStream.write(Bytes.toBytes(-1));
+                } else {
+                    byte[] bytes = columnMapping.serializer.toBytes(value);
+                    outputStream.write(Bytes.toBytes(bytes.length));
+                    outputStream.write(bytes);
+                }
+            }
+        } catch (IOException e) {
+            // not thrown by ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private byte[] compositeRowKey(StreamlineEvent event) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < rowKeyFields.size(); ++i) {
+            if (i > 0) {
+                outputStream.write(ROW_KEY_SEPARATOR);
+            }
+            Object value = StreamlineRuntimeUtil.getFieldValue(event, rowKeyFields.get(i));
+            if (value == null) {
+                throw new IllegalArgumentException("Row key field " + rowKeyFields.get(i) + " is missing in event " + event);
+            }
+            byte[] bytes = toBytes(value);
+            outputStream.write(bytes, 0, bytes.length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private byte[] salt(byte[] rowKey) {
+        byte[] saltedRowKey = new byte[rowKey.length + 1];
+        saltedRowKey[0] = (byte) ((Arrays.hashCode(rowKey) & Integer.MAX_VALUE) % rowKeySaltBuckets);
+        System.arraycopy(rowKey, 0, saltedRowKey, 1, rowKey.length);
+        return saltedRowKey;
+    }
+
+    private static Serializer serializer(Schema.Type type) {
+        switch (type) {
+            case BOOLEAN:
+                return value -> Bytes.toBytes((Boolean) value);
+            case BYTE:
+                return value -> new byte[]{((Number) value).byteValue()};
+            case SHORT:
+                return value -> Bytes.toBytes(((Number) value).shortValue());
+            case INTEGER:
+                return value -> Bytes.toBytes(((Number) value).intValue());
+            case LONG:
+                return value -> Bytes.toBytes(((Number) value).longValue());
+            case FLOAT:
+                return value -> Bytes.toBytes(((Number) value).floatValue());
+            case DOUBLE:
+                return value -> Bytes.toBytes(((Number) value).doubleValue());
+            case STRING:
+                return value -> Bytes.toBytes(value.toString());
+            case BINARY:
+                return value -> (byte[]) value;
+            default:
+                return value -> toBytes(value);
+        }
+    }
+
+    private interface Serializer extends Serializable {
+        byte[] toBytes(Object value);
+    }
+
+    private static final class ColumnMapping implements Serializable {
+        private final String field;
+        private final byte[] qualifier;
+        private final Serializer serializer;
+
+        ColumnMapping(String field, Serializer serializer) {
+            this.field = field;
+            this.qualifier = field.getBytes(Charsets.UTF_8);
+            this.serializer = serializer;
+        }
+    }
 }
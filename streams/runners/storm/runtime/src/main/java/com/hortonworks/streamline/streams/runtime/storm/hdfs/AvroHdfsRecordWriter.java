@@ -0,0 +1,92 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.hdfs;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes records to an avro container file. Records are buffered in blocks of about the sync interval before
+ * being compressed and written out, and {@link #sync()} writes the current block and syncs the file.
+ * <p>
+ * Records are encoded here so that the size of the data is known without flushing the block, the data size is
+ * the size of the encoded records before compression.
+ */
+class AvroHdfsRecordWriter implements HdfsRecordWriter {
+    private final FSDataOutputStream out;
+    private final GenericDatumWriter<GenericRecord> datumWriter;
+    private final DataFileWriter<GenericRecord> writer;
+    private final EncodedRecordBuffer buffer = new EncodedRecordBuffer();
+    private BinaryEncoder encoder;
+    private long dataSize;
+
+    AvroHdfsRecordWriter(FileSystem fs, Path path, Schema schema, CodecFactory codec, int syncInterval) throws IOException {
+        this.datumWriter = new GenericDatumWriter<>(schema);
+        this.writer = new DataFileWriter<>(datumWriter).setCodec(codec).setSyncInterval(syncInterval);
+        this.out = fs.create(path);
+        try {
+            writer.create(schema, out);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(GenericRecord record) throws IOException {
+        buffer.reset();
+        encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
+        datumWriter.write(record, encoder);
+        encoder.flush();
+        writer.appendEncoded(buffer.toByteBuffer());
+        dataSize += buffer.size();
+    }
+
+    @Override
+    public boolean sync() throws IOException {
+        writer.flush();
+        out.hsync();
+        return true;
+    }
+
+    @Override
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static final class EncodedRecordBuffer extends ByteArrayOutputStream {
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
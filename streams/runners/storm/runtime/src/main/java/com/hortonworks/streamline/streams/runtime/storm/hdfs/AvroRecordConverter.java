@@ -0,0 +1,163 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.hdfs;
+
+import com.hortonworks.registries.common.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts StreamlineEvents to avro records of a schema derived from the streamline schema of the events.
+ * <p>
+ * All the fields of the derived schema are optional, as events do not always carry all the fields of their
+ * schema. Array elements are of the type of the first member of the array field. Names which are not valid
+ * avro names are changed by replacing the invalid characters with an underscore.
+ */
+class AvroRecordConverter {
+    private static final String ROOT_RECORD_NAME = "StreamlineEvent";
+    private static final String NAMESPACE = "com.hortonworks.streamline";
+
+    private final List<Schema.Field> fields;
+    private final org.apache.avro.Schema avroSchema;
+
+    AvroRecordConverter(Schema schema) {
+        this.fields = schema.getFields();
+        this.avroSchema = createRecordSchema(ROOT_RECORD_NAME, NAMESPACE, fields);
+    }
+
+    org.apache.avro.Schema getAvroSchema() {
+        return avroSchema;
+    }
+
+    GenericRecord toRecord(Map<String, Object> event) {
+        return toRecord(avroSchema, fields, event);
+    }
+
+    private static GenericRecord toRecord(org.apache.avro.Schema recordSchema, List<Schema.Field> fields, Map<String, Object> values) {
+        GenericRecord record = new GenericData.Record(recordSchema);
+        for (int i = 0; i < fields.size(); ++i) {
+            Schema.Field field = fields.get(i);
+            Object value = values.get(field.getName());
+            if (value != null) {
+                record.put(i, toAvroValue(field, nonNull(recordSchema.getFields().get(i).schema()), value));
+            }
+        }
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object toAvroValue(Schema.Field field, org.apache.avro.Schema schema, Object value) {
+        switch (field.getType()) {
+            case BOOLEAN:
+                return (Boolean) value;
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+                return ((Number) value).intValue();
+            case LONG:
+                return ((Number) value).longValue();
+            case FLOAT:
+                return ((Number) value).floatValue();
+            case DOUBLE:
+                return ((Number) value).doubleValue();
+            case STRING:
+                return value.toString();
+            case BINARY:
+                return value instanceof ByteBuffer ? value : ByteBuffer.wrap((byte[]) value);
+            case NESTED:
+                return toRecord(schema, ((Schema.NestedField) field).getFields(), (Map<String, Object>) value);
+            case ARRAY:
+                Schema.Field member = ((Schema.ArrayField) field).getMembers().get(0);
+                List<Object> values = value instanceof List ? (List<Object>) value : Arrays.asList((Object[]) value);
+                List<Object> elements = new ArrayList<>(values.size());
+                for (Object element : values) {
+                    if (element == null) {
+                        throw new IllegalArgumentException("Null element in array field " + field.getName());
+                    }
+                    elements.add(toAvroValue(member, schema.getElementType(), element));
+                }
+                return elements;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + field.getType() + " of field " + field.getName());
+        }
+    }
+
+    private static org.apache.avro.Schema createRecordSchema(String name, String namespace, List<Schema.Field> fields) {
+        List<org.apache.avro.Schema.Field> avroFields = new ArrayList<>();
+        for (Schema.Field field : fields) {
+            org.apache.avro.Schema schema = org.apache.avro.Schema.createUnion(Arrays.asList(
+                    org.apache.avro.Schema.create(org.apache.avro.Schema.Type.NULL),
+                    createSchema(field, field.getName(), namespace + "." + avroName(name))));
+            avroFields.add(new org.apache.avro.Schema.Field(avroName(field.getName()), schema, null, null));
+        }
+        org.apache.avro.Schema recordSchema = org.apache.avro.Schema.createRecord(avroName(name), null, namespace, false);
+        recordSchema.setFields(avroFields);
+        return recordSchema;
+    }
+
+    // nested records are named after their field (or the array field for array elements, whose members have no
+    // name), in a namespace made of the names of the enclosing records
+    private static org.apache.avro.Schema createSchema(Schema.Field field, String name, String namespace) {
+        switch (field.getType()) {
+            case BOOLEAN:
+                return org.apache.avro.Schema.create(org.apache.avro.Schema.Type.BOOLEAN);
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+                return org.apache.avro.Schema.create(org.apache.avro.Schema.Type.INT);
+            case LONG:
+                return org.apache.avro.Schema.create(org.apache.avro.Schema.Type.LONG);
+            case FLOAT:
+                return org.apache.avro.Schema.create(org.apache.avro.Schema.Type.FLOAT);
+            case DOUBLE:
+                return org.apache.avro.Schema.create(org.apache.avro.Schema.Type.DOUBLE);
+            case STRING:
+                return org.apache.avro.Schema.create(org.apache.avro.Schema.Type.STRING);
+            case BINARY:
+                return org.apache.avro.Schema.create(org.apache.avro.Schema.Type.BYTES);
+            case NESTED:
+                return createRecordSchema(name, namespace, ((Schema.NestedField) field).getFields());
+            case ARRAY:
+                List<Schema.Field> members = ((Schema.ArrayField) field).getMembers();
+                if (members == null || members.isEmpty()) {
+                    throw new IllegalArgumentException("Array field " + field.getName() + " has no members");
+                }
+                return org.apache.avro.Schema.createArray(createSchema(members.get(0), name, namespace));
+            default:
+                throw new IllegalArgumentException("Unsupported type " + field.getType() + " of field " + field.getName());
+        }
+    }
+
+    private static org.apache.avro.Schema nonNull(org.apache.avro.Schema schema) {
+        return schema.getTypes().get(1);
+    }
+
+    private static String avroName(String name) {
+        StringBuilder avroName = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (i > 0 && c >= '0' && c <= '9');
+            avroName.append(valid ? c : '_');
+        }
+        return avroName.length() == 0 ? "_" : avroName.toString();
+    }
+}
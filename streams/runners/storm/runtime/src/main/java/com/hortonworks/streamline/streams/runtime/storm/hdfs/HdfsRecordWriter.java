@@ -0,0 +1,39 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.hdfs;
+
+import org.apache.avro.generic.GenericRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes avro records to a file of a given format.
+ */
+interface HdfsRecordWriter extends Closeable {
+
+    void write(GenericRecord record) throws IOException;
+
+    /**
+     * Persists the records written so far. Returns false if the format only persists records when the file is closed.
+     */
+    boolean sync() throws IOException;
+
+    /**
+     * Returns the approximate size of the data written so far, including the data buffered by the writer.
+     */
+    long getDataSize();
+}
@@ -0,0 +1,63 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.hdfs;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+import java.io.IOException;
+
+/**
+ * Writes records to a parquet file. Records are buffered in memory up to the row group size before being written
+ * out column by column, and they are only persisted once the file is closed and its footer written.
+ */
+class ParquetHdfsRecordWriter implements HdfsRecordWriter {
+    private final ParquetWriter<GenericRecord> writer;
+
+    ParquetHdfsRecordWriter(Configuration hdfsConfig, Path path, Schema schema, CompressionCodecName codec, int rowGroupSize) throws IOException {
+        this.writer = AvroParquetWriter.<GenericRecord>builder(path)
+                .withSchema(schema)
+                .withConf(hdfsConfig)
+                .withCompressionCodec(codec)
+                .withRowGroupSize(rowGroupSize)
+                .build();
+    }
+
+    @Override
+    public void write(GenericRecord record) throws IOException {
+        writer.write(record);
+    }
+
+    @Override
+    public boolean sync() {
+        return false;
+    }
+
+    @Override
+    public long getDataSize() {
+        return writer.getDataSize();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,356 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.hdfs;
+
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.common.util.Utils;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.runtime.storm.bolt.BaseTickTupleAwareRichBolt;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.storm.Config;
+import org.apache.storm.hdfs.bolt.format.FileNameFormat;
+import org.apache.storm.hdfs.bolt.rotation.FileRotationPolicy;
+import org.apache.storm.hdfs.bolt.rotation.TimedRotationPolicy;
+import org.apache.storm.hdfs.bolt.sync.CountSyncPolicy;
+import org.apache.storm.hdfs.bolt.sync.SyncPolicy;
+import org.apache.storm.hdfs.common.security.HdfsSecurityUtil;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hdfs bolt writing the events to avro container or parquet files, whose schema is derived from the streamline
+ * schema of the events.
+ * <p>
+ * Tuples are acked once their records are persisted. Avro files are synced according to the sync policy, while
+ * parquet files only persist their records when they are closed. Files are rotated according to the rotation
+ * policy (the size being the approximate size of the data written) and the records written but not persisted yet
+ * are bounded by {@code maxBufferedBytes}: avro files are synced and parquet files rotated when the bound is
+ * reached. Files are also synced (or rotated, for parquet) before the tuples they hold time out.
+ */
+public class StreamlineHdfsBolt extends BaseTickTupleAwareRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineHdfsBolt.class);
+
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+    private static final int TICK_TUPLE_FREQ_SECS = 1;
+
+    public enum OutputFormat {
+        AVRO, PARQUET
+    }
+
+    public enum CompressionCodec {
+        NONE(DataFileConstants.NULL_CODEC, CompressionCodecName.UNCOMPRESSED),
+        SNAPPY(DataFileConstants.SNAPPY_CODEC, CompressionCodecName.SNAPPY),
+        DEFLATE(DataFileConstants.DEFLATE_CODEC, CompressionCodecName.GZIP);
+
+        private final String avroCodec;
+        private final CompressionCodecName parquetCodec;
+
+        CompressionCodec(String avroCodec, CompressionCodecName parquetCodec) {
+            this.avroCodec = avroCodec;
+            this.parquetCodec = parquetCodec;
+        }
+    }
+
+    private String fsUrl;
+    private String configKey;
+    private FileNameFormat fileNameFormat;
+    private SyncPolicy syncPolicy = new CountSyncPolicy(1000);
+    private FileRotationPolicy rotationPolicy;
+    private OutputFormat outputFormat;
+    private String schemaJson;
+    private CompressionCodec compressionCodec = CompressionCodec.NONE;
+    private int blockSize;
+    private long maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+
+    private transient OutputCollector collector;
+    private transient Configuration hdfsConfig;
+    private transient FileSystem fs;
+    private transient AvroRecordConverter converter;
+    private transient HdfsRecordWriter writer;
+    private transient List<Tuple> pendingTuples;
+    private transient long syncedDataSize;
+    private transient long fileOpenedAt;
+    private transient long lastSyncAt;
+    private transient long maxPendingMillis;
+    private transient long rotation;
+
+    public StreamlineHdfsBolt withFsUrl(String fsUrl) {
+        this.fsUrl = fsUrl;
+        return this;
+    }
+
+    public StreamlineHdfsBolt withConfigKey(String configKey) {
+        this.configKey = configKey;
+        return this;
+    }
+
+    public StreamlineHdfsBolt withFileNameFormat(FileNameFormat fileNameFormat) {
+        this.fileNameFormat = fileNameFormat;
+        return this;
+    }
+
+    public StreamlineHdfsBolt withSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+        return this;
+    }
+
+    public StreamlineHdfsBolt withRotationPolicy(FileRotationPolicy rotationPolicy) {
+        this.rotationPolicy = rotationPolicy;
+        return this;
+    }
+
+    public StreamlineHdfsBolt withOutputFormat(String outputFormat) {
+        this.outputFormat = OutputFormat.valueOf(outputFormat.toUpperCase());
+        return this;
+    }
+
+    /**
+     * Sets the streamline schema (as json) of the events, the avro schema of the records is derived from it.
+     */
+    public StreamlineHdfsBolt withSchema(String schemaJson) {
+        this.schemaJson = schemaJson;
+        return this;
+    }
+
+    public StreamlineHdfsBolt withCompressionCodec(String compressionCodec) {
+        this.compressionCodec = CompressionCodec.valueOf(compressionCodec.toUpperCase());
+        return this;
+    }
+
+    /**
+     * Sets the size of the avro blocks (the sync interval) or of the parquet row groups, in bytes.
+     */
+    public StreamlineHdfsBolt withBlockSize(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size should be positive, given: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    public StreamlineHdfsBolt withMaxBufferedBytes(long maxBufferedBytes) {
+        if (maxBufferedBytes <= 0) {
+            throw new IllegalArgumentException("Max buffered bytes should be positive, given: " + maxBufferedBytes);
+        }
+        this.maxBufferedBytes = maxBufferedBytes;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        if (fsUrl == null) {
+            throw new IllegalArgumentException("File system url must be provided");
+        }
+        if (fileNameFormat == null) {
+            throw new IllegalArgumentException("File name format must be provided");
+        }
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("Output format must be provided");
+        }
+        if (schemaJson == null) {
+            throw new IllegalArgumentException("Schema must be provided");
+        }
+        this.collector = collector;
+        this.converter = new AvroRecordConverter(Utils.createObjectFromJson(schemaJson, Schema.class));
+        this.pendingTuples = new ArrayList<>();
+        this.rotation = 0;
+        // leave half of the message timeout for the tuples to be acked once their records are persisted
+        Number messageTimeoutSecs = (Number) stormConf.get(Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS);
+        this.maxPendingMillis = messageTimeoutSecs != null ? messageTimeoutSecs.longValue() * 1000 / 2 : Long.MAX_VALUE;
+        fileNameFormat.prepare(stormConf, context);
+        hdfsConfig = new Configuration();
+        if (configKey != null) {
+            Map<String, Object> map = (Map<String, Object>) stormConf.get(configKey);
+            if (map != null) {
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    hdfsConfig.set(entry.getKey(), String.valueOf(entry.getValue()));
+                }
+            }
+        }
+        try {
+            HdfsSecurityUtil.login(stormConf, hdfsConfig);
+            fs = FileSystem.get(URI.create(fsUrl), hdfsConfig);
+        } catch (IOException e) {
+            throw new RuntimeException("Error preparing hdfs bolt for " + fsUrl, e);
+        }
+    }
+
+    @Override
+    protected void process(Tuple tuple) {
+        GenericRecord record;
+        try {
+            record = converter.toRecord((StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT));
+        } catch (RuntimeException e) {
+            LOG.error("Error converting tuple {} to an avro record", tuple, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+            return;
+        }
+        boolean written = false;
+        try {
+            if (writer == null) {
+                openWriter();
+            }
+            writer.write(record);
+            pendingTuples.add(tuple);
+            written = true;
+            long dataSize = writer.getDataSize();
+            if (rotationPolicy != null && rotationPolicy.mark(tuple, dataSize)) {
+                rotate();
+            } else {
+                boolean overBuffered = dataSize - syncedDataSize >= maxBufferedBytes;
+                if (syncPolicy.mark(tuple, dataSize) || overBuffered) {
+                    syncPolicy.reset();
+                    if (!sync() && overBuffered) {
+                        rotate();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            handleWriteError(e);
+            if (!written) {
+                collector.fail(tuple);
+            }
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        if (writer == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            if (rotationPolicy instanceof TimedRotationPolicy
+                    && now - fileOpenedAt >= ((TimedRotationPolicy) rotationPolicy).getInterval()) {
+                rotate();
+            } else if (!pendingTuples.isEmpty() && now - lastSyncAt >= maxPendingMillis) {
+                if (!sync()) {
+                    rotate();
+                }
+            }
+        } catch (IOException e) {
+            handleWriteError(e);
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        if (writer != null) {
+            try {
+                rotate();
+            } catch (IOException e) {
+                handleWriteError(e);
+            }
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_TUPLE_FREQ_SECS);
+        return conf;
+    }
+
+    private void openWriter() throws IOException {
+        Path path = fs.makeQualified(new Path(fileNameFormat.getPath(), fileNameFormat.getName(rotation, System.currentTimeMillis())));
+        LOG.info("Opening {} file {}", outputFormat, path);
+        switch (outputFormat) {
+            case AVRO:
+                writer = new AvroHdfsRecordWriter(fs, path, converter.getAvroSchema(), CodecFactory.fromString(compressionCodec.avroCodec),
+                        blockSize > 0 ? blockSize : DataFileConstants.DEFAULT_SYNC_INTERVAL);
+                break;
+            case PARQUET:
+                writer = new ParquetHdfsRecordWriter(hdfsConfig, path, converter.getAvroSchema(), compressionCodec.parquetCodec,
+                        blockSize > 0 ? blockSize : ParquetWriter.DEFAULT_BLOCK_SIZE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported output format " + outputFormat);
+        }
+        fileOpenedAt = lastSyncAt = System.currentTimeMillis();
+        syncedDataSize = 0;
+    }
+
+    private boolean sync() throws IOException {
+        if (!writer.sync()) {
+            return false;
+        }
+        syncedDataSize = writer.getDataSize();
+        lastSyncAt = System.currentTimeMillis();
+        ackPendingTuples();
+        return true;
+    }
+
+    private void rotate() throws IOException {
+        HdfsRecordWriter closing = writer;
+        writer = null;
+        ++rotation;
+        if (rotationPolicy != null) {
+            rotationPolicy.reset();
+        }
+        syncPolicy.reset();
+        closing.close();
+        ackPendingTuples();
+    }
+
+    private void ackPendingTuples() {
+        for (Tuple pendingTuple : pendingTuples) {
+            collector.ack(pendingTuple);
+        }
+        pendingTuples.clear();
+    }
+
+    // the records which were not persisted are lost with the file, their tuples are failed to be replayed
+    private void handleWriteError(IOException e) {
+        LOG.error("Error writing to hdfs, failing {} tuples", pendingTuples.size(), e);
+        collector.reportError(e);
+        for (Tuple pendingTuple : pendingTuples) {
+            collector.fail(pendingTuple);
+        }
+        pendingTuples.clear();
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException closeException) {
+                LOG.warn("Error closing hdfs file after write error", closeException);
+            }
+            writer = null;
+            ++rotation;
+        }
+    }
+}
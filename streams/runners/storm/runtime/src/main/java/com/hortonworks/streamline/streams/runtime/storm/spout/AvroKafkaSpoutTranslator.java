@@ -16,9 +16,12 @@
 
 package com.hortonworks.streamline.streams.runtime.storm.spout;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hortonworks.registries.schemaregistry.client.SchemaRegistryClient;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.storm.kafka.spout.KafkaTuple;
 import org.apache.storm.kafka.spout.RecordTranslator;
@@ -32,6 +35,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -42,6 +46,8 @@ public class AvroKafkaSpoutTranslator implements RecordTranslator<Object, ByteBu
     private final String dataSourceId;
     private final String schemaRegistryUrl;
     private final Integer readerSchemaVersion;
+    private List<String> projectedFields;
+    private String filterConditionsJson;
     private transient volatile AvroStreamsSnapshotDeserializer avroStreamsSnapshotDeserializer;
 
     public AvroKafkaSpoutTranslator (String outputStream, String topic, String dataSourceId, String schemaRegistryUrl) {
@@ -56,10 +62,29 @@ public class AvroKafkaSpoutTranslator implements RecordTranslator<Object, ByteBu
         this.readerSchemaVersion = readerSchemaVersion;
     }
 
+    /**
+     * Sets the fields which are used downstream, other fields of the records are skipped while deserializing.
+     */
+    public void setProjectedFields (List<String> projectedFields) {
+        this.projectedFields = projectedFields;
+    }
+
+    /**
+     * Sets the conditions of the rules the events are sent to as json, records which cannot match any of them
+     * are dropped.
+     */
+    public void setFilterConditions (String filterConditionsJson) {
+        this.filterConditionsJson = filterConditionsJson;
+    }
+
     @Override
     public List<Object> apply (ConsumerRecord<Object, ByteBuffer> consumerRecord) {
         Map < String, Object > keyValues = (Map<String, Object>) deserializer().deserialize(new ByteBufferInputStream(consumerRecord.value()),
                 readerSchemaVersion);
+        if (keyValues == null) {
+            // filtered out, the spout acks the record without emitting a tuple
+            return null;
+        }
         StreamlineEvent streamlineEvent = StreamlineEventImpl.builder().putAll(keyValues).dataSourceId(dataSourceId).build();
         KafkaTuple kafkaTuple = new KafkaTuple(streamlineEvent);
         kafkaTuple.routedTo(outputStream);
@@ -79,7 +104,8 @@ public class AvroKafkaSpoutTranslator implements RecordTranslator<Object, ByteBu
     private AvroStreamsSnapshotDeserializer deserializer () {
         //initializing deserializer here should be synchronized (using DCL pattern?) when single threaded nature of kafka spout does not hold true anymore
         if (avroStreamsSnapshotDeserializer == null) {
-            AvroStreamsSnapshotDeserializer deserializer = new AvroStreamsSnapshotDeserializer();
+            AvroStreamsSnapshotDeserializer deserializer = new AvroStreamsSnapshotDeserializer(projectedFields != null ? new HashSet<>(projectedFields) : null,
+                    filterConditionsJson != null ? new RuleConditionFilter(parseConditions(filterConditionsJson)) : null);
             Map<String, Object> config = new HashMap<>();
             config.put(SchemaRegistryClient.Configuration.SCHEMA_REGISTRY_URL.name(), schemaRegistryUrl);
             deserializer.init(config);
@@ -88,6 +114,14 @@ public class AvroKafkaSpoutTranslator implements RecordTranslator<Object, ByteBu
         return avroStreamsSnapshotDeserializer;
     }
 
+    private static List<Condition> parseConditions (String conditionsJson) {
+        try {
+            return new ObjectMapper().readValue(conditionsJson, new TypeReference<List<Condition>>() {});
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid filter conditions: " + conditionsJson, e);
+        }
+    }
+
     public static class ByteBufferInputStream extends InputStream {
 
         private final ByteBuffer buf;
@@ -119,5 +153,32 @@ public class AvroKafkaSpoutTranslator implements RecordTranslator<Object, ByteBu
             buf.get(bytes, off, end);
             return end;
         }
+
+        @Override
+        public int available () throws IOException {
+            return buf.remaining();
+        }
+
+        @Override
+        public long skip (long n) throws IOException {
+            int skipped = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported () {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark (int readlimit) {
+            buf.mark();
+        }
+
+        @Override
+        public synchronized void reset () throws IOException {
+            buf.reset();
+        }
     }
 }
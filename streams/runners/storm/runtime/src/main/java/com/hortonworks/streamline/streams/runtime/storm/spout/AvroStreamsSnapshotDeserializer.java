@@ -19,6 +19,7 @@ package com.hortonworks.streamline.streams.runtime.storm.spout;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.hortonworks.registries.schemaregistry.SchemaMetadata;
+import com.hortonworks.registries.schemaregistry.SchemaVersionKey;
 import com.hortonworks.registries.schemaregistry.serde.SerDesException;
 import com.hortonworks.registries.schemaregistry.serdes.avro.AvroSnapshotDeserializer;
 import com.hortonworks.streamline.streams.StreamlineEvent;
@@ -27,22 +28,81 @@ import org.apache.avro.generic.GenericEnumSymbol;
 import org.apache.avro.generic.GenericFixed;
 import org.apache.avro.generic.IndexedRecord;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- *
+ * Deserializes avro payloads into the field map of a StreamlineEvent.
+ * <p>
+ * Record payloads are decoded with a {@link StreamlineEventAvroReader} which is cached per writer and reader schema
+ * version, primitive payloads are deserialized by {@link AvroSnapshotDeserializer} and wrapped with
+ * {@link StreamlineEvent#PRIMITIVE_PAYLOAD_FIELD}.
+ * <p>
+ * When projected fields are given, record payloads are read with a reader schema restricted to those fields so that
+ * the values of the other fields are skipped while decoding instead of being materialized.
+ * <p>
+ * When a {@link RuleConditionFilter} is given, only the fields it refers to are decoded first and payloads which
+ * cannot match its conditions are deserialized to null without decoding the rest of the record.
+ * <p>
+ * This class is not thread safe, as the readers reuse their decoders.
  */
 public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
+    private final Map<ReaderKey, StreamlineEventAvroReader> readers = new HashMap<>();
+    private final Map<ReaderKey, StreamlineEventAvroReader> filterReaders = new HashMap<>();
+    private final Set<String> projectedFields;
+    private final RuleConditionFilter filter;
+
+    public AvroStreamsSnapshotDeserializer() {
+        this(null);
+    }
+
+    /**
+     * @param projectedFields top level fields to be read from record payloads, all the fields are read if it is null.
+     */
+    public AvroStreamsSnapshotDeserializer(Set<String> projectedFields) {
+        this(projectedFields, null);
+    }
+
+    /**
+     * @param projectedFields top level fields to be read from record payloads, all the fields are read if it is null.
+     * @param filter filter for the record payloads, payloads are not filtered if it is null.
+     */
+    public AvroStreamsSnapshotDeserializer(Set<String> projectedFields, RuleConditionFilter filter) {
+        this.projectedFields = projectedFields != null ? Collections.unmodifiableSet(new HashSet<>(projectedFields)) : null;
+        this.filter = filter;
+    }
 
     protected Object doDeserialize(InputStream payloadInputStream,
                                    byte protocolId,
                                    SchemaMetadata schemaMetadata,
                                    Integer writerSchemaVersion,
                                    Integer readerSchemaVersion) throws SerDesException {
+        StreamlineEventAvroReader reader = getReader(schemaMetadata.getName(), writerSchemaVersion, readerSchemaVersion);
+        if (reader != null) {
+            try {
+                if (filter != null && payloadInputStream.markSupported()) {
+                    StreamlineEventAvroReader filterReader = getFilterReader(schemaMetadata.getName(), writerSchemaVersion, readerSchemaVersion);
+                    payloadInputStream.mark(Integer.MAX_VALUE);
+                    if (!filter.mayMatch(filterReader.read(payloadInputStream))) {
+                        return null;
+                    }
+                    payloadInputStream.reset();
+                }
+                return reader.read(payloadInputStream);
+            } catch (IOException e) {
+                throw new SerDesException(e);
+            }
+        }
+
         Object deserializedObj = super.doDeserialize(payloadInputStream, protocolId, schemaMetadata, writerSchemaVersion, readerSchemaVersion);
 
         ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
@@ -56,6 +116,55 @@ public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
         return builder.build();
     }
 
+    private StreamlineEventAvroReader getReader(String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+        return getReader(readers, projectedFields, schemaName, writerSchemaVersion, readerSchemaVersion);
+    }
+
+    // reads only the fields the filter refers to
+    private StreamlineEventAvroReader getFilterReader(String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+        return getReader(filterReaders, filter.getFields(), schemaName, writerSchemaVersion, readerSchemaVersion);
+    }
+
+    private StreamlineEventAvroReader getReader(Map<ReaderKey, StreamlineEventAvroReader> readers, Set<String> fields,
+                                                String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+        ReaderKey readerKey = new ReaderKey(schemaName, writerSchemaVersion, readerSchemaVersion);
+        if (readers.containsKey(readerKey)) {
+            return readers.get(readerKey);
+        }
+        Schema writerSchema = getSchema(new SchemaVersionKey(schemaName, writerSchemaVersion));
+        Schema readerSchema = readerSchemaVersion != null ? getSchema(new SchemaVersionKey(schemaName, readerSchemaVersion)) : writerSchema;
+        StreamlineEventAvroReader reader = null;
+        // primitive payloads are not avro encoded by the serializer, those are left to AvroSnapshotDeserializer
+        if (Schema.Type.RECORD.equals(writerSchema.getType()) && Schema.Type.RECORD.equals(readerSchema.getType())) {
+            try {
+                reader = new StreamlineEventAvroReader(writerSchema, project(readerSchema, fields));
+            } catch (IOException e) {
+                throw new SerDesException(e);
+            }
+        }
+        readers.put(readerKey, reader);
+        return reader;
+    }
+
+    private Schema project(Schema recordSchema, Set<String> projectedFields) {
+        if (projectedFields == null) {
+            return recordSchema;
+        }
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : recordSchema.getFields()) {
+            if (projectedFields.contains(field.name())) {
+                fields.add(new Schema.Field(field.name(), field.schema(), field.doc(), field.defaultValue(), field.order()));
+            }
+        }
+        if (fields.size() == recordSchema.getFields().size()) {
+            return recordSchema;
+        }
+        // same full name as the writer schema, so that the schemas still resolve
+        Schema projectedSchema = Schema.createRecord(recordSchema.getName(), recordSchema.getDoc(), recordSchema.getNamespace(), recordSchema.isError());
+        projectedSchema.setFields(fields);
+        return projectedSchema;
+    }
+
     private Object convertValue(Object deserializedObj) {
         Object value;
 
@@ -109,4 +218,37 @@ public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
         return value;
     }
 
+    private static final class ReaderKey {
+        private final String schemaName;
+        private final Integer writerSchemaVersion;
+        private final Integer readerSchemaVersion;
+
+        ReaderKey(String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+            this.schemaName = schemaName;
+            this.writerSchemaVersion = writerSchemaVersion;
+            this.readerSchemaVersion = readerSchemaVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ReaderKey readerKey = (ReaderKey) o;
+
+            if (!schemaName.equals(readerKey.schemaName)) return false;
+            if (writerSchemaVersion != null ? !writerSchemaVersion.equals(readerKey.writerSchemaVersion) : readerKey.writerSchemaVersion != null)
+                return false;
+            return readerSchemaVersion != null ? readerSchemaVersion.equals(readerKey.readerSchemaVersion) : readerKey.readerSchemaVersion == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = schemaName.hashCode();
+            result = 31 * result + (writerSchemaVersion != null ? writerSchemaVersion.hashCode() : 0);
+            result = 31 * result + (readerSchemaVersion != null ? readerSchemaVersion.hashCode() : 0);
+            return result;
+        }
+    }
+
 }
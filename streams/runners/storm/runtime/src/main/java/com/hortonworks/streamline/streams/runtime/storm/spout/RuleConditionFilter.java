@@ -0,0 +1,219 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates rule conditions made of comparisons between top level fields and literals, combined with AND and OR,
+ * to tell whether an event may match any of them.
+ * <p>
+ * The evaluation is conservative: comparisons which cannot be decided here (missing or null fields, unsupported
+ * types or literals) are considered as possibly matching. Hence an event is rejected only when it cannot match
+ * any condition, and the rules themselves are still evaluated downstream on the accepted events.
+ */
+public class RuleConditionFilter {
+    private enum Result {
+        TRUE, FALSE, UNKNOWN
+    }
+
+    private final List<Condition> conditions;
+    private final Set<String> fields;
+
+    public RuleConditionFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+        Set<String> fields = new HashSet<>();
+        for (Condition condition : conditions) {
+            collectFields(condition.getExpression(), fields);
+        }
+        this.fields = Collections.unmodifiableSet(fields);
+    }
+
+    /**
+     * Returns the fields the conditions refer to.
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns false if the given fields and values cannot match any of the conditions.
+     */
+    public boolean mayMatch(Map<String, Object> fieldsAndValues) {
+        for (Condition condition : conditions) {
+            if (evaluate(condition.getExpression(), fieldsAndValues) != Result.FALSE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void collectFields(Expression expression, Set<String> fields) {
+        if (expression instanceof FieldExpression) {
+            fields.add(((FieldExpression) expression).getValue().getName());
+        } else if (expression instanceof BinaryExpression) {
+            collectFields(((BinaryExpression) expression).getFirst(), fields);
+            collectFields(((BinaryExpression) expression).getSecond(), fields);
+        }
+    }
+
+    private static Result evaluate(Expression expression, Map<String, Object> fieldsAndValues) {
+        if (!(expression instanceof BinaryExpression)) {
+            return Result.UNKNOWN;
+        }
+        BinaryExpression binaryExpression = (BinaryExpression) expression;
+        Operator operator = binaryExpression.getOperator();
+        Expression first = binaryExpression.getFirst();
+        Expression second = binaryExpression.getSecond();
+        switch (operator) {
+            case AND:
+                return and(evaluate(first, fieldsAndValues), evaluate(second, fieldsAndValues));
+            case OR:
+                return or(evaluate(first, fieldsAndValues), evaluate(second, fieldsAndValues));
+            default:
+                if (first instanceof FieldExpression && second instanceof Literal) {
+                    return compare(operator, fieldValue((FieldExpression) first, fieldsAndValues), (Literal) second);
+                } else if (first instanceof Literal && second instanceof FieldExpression) {
+                    return compare(flip(operator), fieldValue((FieldExpression) second, fieldsAndValues), (Literal) first);
+                }
+                return Result.UNKNOWN;
+        }
+    }
+
+    private static Result and(Result first, Result second) {
+        if (first == Result.FALSE || second == Result.FALSE) {
+            return Result.FALSE;
+        }
+        return first == Result.TRUE && second == Result.TRUE ? Result.TRUE : Result.UNKNOWN;
+    }
+
+    private static Result or(Result first, Result second) {
+        if (first == Result.TRUE || second == Result.TRUE) {
+            return Result.TRUE;
+        }
+        return first == Result.FALSE && second == Result.FALSE ? Result.FALSE : Result.UNKNOWN;
+    }
+
+    private static Object fieldValue(FieldExpression fieldExpression, Map<String, Object> fieldsAndValues) {
+        return fieldsAndValues.get(fieldExpression.getValue().getName());
+    }
+
+    // the operator to use when the operands are swapped
+    private static Operator flip(Operator operator) {
+        switch (operator) {
+            case GREATER_THAN:
+                return Operator.LESS_THAN;
+            case LESS_THAN:
+                return Operator.GREATER_THAN;
+            case GREATER_THAN_EQUALS_TO:
+                return Operator.LESS_THAN_EQUALS_TO;
+            case LESS_THAN_EQUALS_TO:
+                return Operator.GREATER_THAN_EQUALS_TO;
+            default:
+                return operator;
+        }
+    }
+
+    private static Result compare(Operator operator, Object value, Literal literal) {
+        String literalValue = literal.getValue();
+        if (value == null || literalValue == null) {
+            return Result.UNKNOWN;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            BigDecimal number = parseNumber(literalValue);
+            return number == null ? Result.UNKNOWN
+                    : compareResult(operator, BigDecimal.valueOf(((Number) value).longValue()).compareTo(number));
+        } else if (value instanceof Double) {
+            BigDecimal number = parseNumber(literalValue);
+            double doubleValue = (Double) value;
+            if (number == null || Double.isNaN(doubleValue)) {
+                return Result.UNKNOWN;
+            }
+            return compareResult(operator, Double.compare(doubleValue, number.doubleValue()));
+        } else if (value instanceof String) {
+            // only equality, ordering of strings depends on the collation used by the rules
+            String string = parseString(literalValue);
+            return string == null ? Result.UNKNOWN : equalityResult(operator, value.equals(string));
+        } else if (value instanceof Boolean) {
+            if ("true".equalsIgnoreCase(literalValue) || "false".equalsIgnoreCase(literalValue)) {
+                return equalityResult(operator, value.equals(Boolean.valueOf(literalValue)));
+            }
+        }
+        return Result.UNKNOWN;
+    }
+
+    private static Result compareResult(Operator operator, int comparison) {
+        switch (operator) {
+            case EQUALS:
+                return toResult(comparison == 0);
+            case NOT_EQUAL:
+                return toResult(comparison != 0);
+            case GREATER_THAN:
+                return toResult(comparison > 0);
+            case LESS_THAN:
+                return toResult(comparison < 0);
+            case GREATER_THAN_EQUALS_TO:
+                return toResult(comparison >= 0);
+            case LESS_THAN_EQUALS_TO:
+                return toResult(comparison <= 0);
+            default:
+                return Result.UNKNOWN;
+        }
+    }
+
+    private static Result equalityResult(Operator operator, boolean equal) {
+        switch (operator) {
+            case EQUALS:
+                return toResult(equal);
+            case NOT_EQUAL:
+                return toResult(!equal);
+            default:
+                return Result.UNKNOWN;
+        }
+    }
+
+    private static Result toResult(boolean value) {
+        return value ? Result.TRUE : Result.FALSE;
+    }
+
+    private static BigDecimal parseNumber(String literalValue) {
+        try {
+            return new BigDecimal(literalValue.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // string literals are single quoted, with quotes escaped by doubling them
+    private static String parseString(String literalValue) {
+        if (literalValue.length() < 2 || !literalValue.startsWith("'") || !literalValue.endsWith("'")) {
+            return null;
+        }
+        return literalValue.substring(1, literalValue.length() - 1).replace("''", "'");
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.ResolvingDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads avro binary records directly into the immutable field map backing a StreamlineEvent.
+ * <p>
+ * The reader schema is compiled once into a tree of {@link ValueReader}s, so decoding a record does not build an
+ * intermediate {@link org.apache.avro.generic.IndexedRecord} which would have to be converted afterwards. Values are
+ * converted to the types StreamlineEvent carries: strings and enum symbols to String, bytes and fixed to byte[],
+ * records and maps to ImmutableMap and arrays to List. Fields with null values are left out of the map.
+ * <p>
+ * When the writer schema differs from the reader schema, a {@link ResolvingDecoder} built once for the pair of schemas
+ * takes care of schema resolution (skipping writer only fields, type promotion and defaults).
+ * <p>
+ * Instances are not thread safe since the underlying decoders are reused across records.
+ */
+public class StreamlineEventAvroReader {
+    private final Schema writerSchema;
+    private final Schema readerSchema;
+    private final ValueReader recordReader;
+    private final ResolvingDecoder resolvingDecoder;
+    private BinaryDecoder binaryDecoder;
+
+    public StreamlineEventAvroReader(Schema writerSchema, Schema readerSchema) throws IOException {
+        if (!Schema.Type.RECORD.equals(readerSchema.getType())) {
+            throw new IllegalArgumentException("Only record schemas are supported, given schema type: " + readerSchema.getType());
+        }
+        this.writerSchema = writerSchema;
+        this.readerSchema = readerSchema;
+        this.recordReader = compile(readerSchema);
+        this.resolvingDecoder = writerSchema.equals(readerSchema) ? null : DecoderFactory.get().resolvingDecoder(writerSchema, readerSchema, null);
+    }
+
+    public Schema getWriterSchema() {
+        return writerSchema;
+    }
+
+    public Schema getReaderSchema() {
+        return readerSchema;
+    }
+
+    /**
+     * Reads a record from the given input stream and returns its fields and values.
+     */
+    public ImmutableMap<String, Object> read(InputStream inputStream) throws IOException {
+        binaryDecoder = DecoderFactory.get().binaryDecoder(inputStream, binaryDecoder);
+        return read(binaryDecoder);
+    }
+
+    /**
+     * Reads a record from the given bytes and returns its fields and values.
+     */
+    public ImmutableMap<String, Object> read(byte[] bytes, int offset, int length) throws IOException {
+        binaryDecoder = DecoderFactory.get().binaryDecoder(bytes, offset, length, binaryDecoder);
+        return read(binaryDecoder);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ImmutableMap<String, Object> read(BinaryDecoder decoder) throws IOException {
+        if (resolvingDecoder == null) {
+            return (ImmutableMap<String, Object>) recordReader.read(decoder);
+        }
+        resolvingDecoder.configure(decoder);
+        ImmutableMap<String, Object> result = (ImmutableMap<String, Object>) recordReader.read(resolvingDecoder);
+        resolvingDecoder.drain();
+        return result;
+    }
+
+    interface ValueReader {
+        Object read(Decoder decoder) throws IOException;
+    }
+
+    private static ValueReader compile(Schema schema) {
+        switch (schema.getType()) {
+            case NULL:
+                return decoder -> {
+                    decoder.readNull();
+                    return null;
+                };
+            case BOOLEAN:
+                return Decoder::readBoolean;
+            case INT:
+                return Decoder::readInt;
+            case LONG:
+                return Decoder::readLong;
+            case FLOAT:
+                return Decoder::readFloat;
+            case DOUBLE:
+                return Decoder::readDouble;
+            case STRING:
+                return Decoder::readString;
+            case BYTES:
+                return StreamlineEventAvroReader::readBytes;
+            case FIXED:
+                return fixedReader(schema);
+            case ENUM:
+                return enumReader(schema);
+            case ARRAY:
+                return arrayReader(schema);
+            case MAP:
+                return mapReader(schema);
+            case RECORD:
+                return recordReader(schema);
+            case UNION:
+                return unionReader(schema);
+            default:
+                throw new IllegalArgumentException("Unsupported avro schema type: " + schema.getType());
+        }
+    }
+
+    private static Object readBytes(Decoder decoder) throws IOException {
+        ByteBuffer byteBuffer = decoder.readBytes(null);
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+
+    private static ValueReader fixedReader(Schema schema) {
+        final int size = schema.getFixedSize();
+        return decoder -> {
+            byte[] bytes = new byte[size];
+            decoder.readFixed(bytes);
+            return bytes;
+        };
+    }
+
+    private static ValueReader enumReader(Schema schema) {
+        final String[] symbols = schema.getEnumSymbols().toArray(new String[0]);
+        return decoder -> symbols[decoder.readEnum()];
+    }
+
+    private static ValueReader arrayReader(Schema schema) {
+        final ValueReader elementReader = compile(schema.getElementType());
+        return decoder -> {
+            long count = decoder.readArrayStart();
+            List<Object> values = new ArrayList<>((int) count);
+            for (; count != 0; count = decoder.arrayNext()) {
+                for (long i = 0; i < count; ++i) {
+                    values.add(elementReader.read(decoder));
+                }
+            }
+            return Collections.unmodifiableList(values);
+        };
+    }
+
+    private static ValueReader mapReader(Schema schema) {
+        final ValueReader valueReader = compile(schema.getValueType());
+        return decoder -> {
+            ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+            for (long count = decoder.readMapStart(); count != 0; count = decoder.mapNext()) {
+                for (long i = 0; i < count; ++i) {
+                    String key = decoder.readString();
+                    Object value = valueReader.read(decoder);
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                }
+            }
+            return values.build();
+        };
+    }
+
+    private static ValueReader recordReader(Schema schema) {
+        List<Schema.Field> fields = schema.getFields();
+        final String[] names = new String[fields.size()];
+        final ValueReader[] readers = new ValueReader[fields.size()];
+        for (Schema.Field field : fields) {
+            names[field.pos()] = field.name();
+            readers[field.pos()] = compile(field.schema());
+        }
+        return decoder -> {
+            ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+            if (decoder instanceof ResolvingDecoder) {
+                // fields are returned in the order they were written, writer only fields are skipped by the decoder
+                for (Schema.Field field : ((ResolvingDecoder) decoder).readFieldOrder()) {
+                    putIfNotNull(values, names[field.pos()], readers[field.pos()].read(decoder));
+                }
+            } else {
+                for (int i = 0; i < names.length; ++i) {
+                    putIfNotNull(values, names[i], readers[i].read(decoder));
+                }
+            }
+            return values.build();
+        };
+    }
+
+    private static ValueReader unionReader(Schema schema) {
+        List<Schema> branches = schema.getTypes();
+        final ValueReader[] readers = new ValueReader[branches.size()];
+        for (int i = 0; i < branches.size(); ++i) {
+            readers[i] = compile(branches.get(i));
+        }
+        return decoder -> readers[decoder.readIndex()].read(decoder);
+    }
+
+    private static void putIfNotNull(ImmutableMap.Builder<String, Object> values, String name, Object value) {
+        if (value != null) {
+            values.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt;
+
+import com.google.common.collect.ImmutableMap;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.storm.Constants;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(JMockit.class)
+public class DeadLetterBoltTest {
+
+    @Mocked
+    private OutputCollector collector;
+
+    @Mocked
+    private Tuple tuple;
+
+    @Mocked
+    private Tuple tick;
+
+    @Test
+    public void testDeadLetterAfterRetries() throws Exception {
+        recordTuples();
+        FailingBolt delegate = new FailingBolt(new RuntimeException("write failed"));
+        DeadLetterBolt bolt = new DeadLetterBolt(delegate).withMaxRetries(2).withInitialBackoffMs(1).withMaxBackoffMs(1);
+        bolt.prepare(new HashMap(), null, collector);
+
+        bolt.execute(tuple);
+        // each failure is scheduled on a tick and retried on the next one
+        for (int i = 0; i < 5; ++i) {
+            Thread.sleep(5);
+            bolt.execute(tick);
+        }
+
+        Assert.assertEquals(3, delegate.executions);
+        Assert.assertEquals(0, bolt.getPendingRetries());
+        List<List<Object>> values = new ArrayList<>();
+        new Verifications() {{
+            collector.emit(DeadLetterBolt.DEAD_LETTER_STREAM, tuple, withCapture(values)); times = 1;
+            collector.ack(tuple); times = 1;
+            collector.fail(tuple); times = 0;
+        }};
+        StreamlineEvent deadLetter = (StreamlineEvent) values.get(0).get(0);
+        Assert.assertEquals(1, deadLetter.get("id"));
+        Assert.assertEquals("write failed", deadLetter.get(DeadLetterBolt.ERROR_MESSAGE_FIELD));
+        Assert.assertEquals(RuntimeException.class.getName(), deadLetter.get(DeadLetterBolt.ERROR_CLASS_FIELD));
+        Assert.assertEquals(3, deadLetter.get(DeadLetterBolt.ERROR_ATTEMPTS_FIELD));
+    }
+
+    @Test
+    public void testNonRetryableError() throws Exception {
+        recordTuples();
+        FailingBolt delegate = new FailingBolt(new IllegalArgumentException("bad record"));
+        DeadLetterBolt bolt = new DeadLetterBolt(delegate);
+        bolt.prepare(new HashMap(), null, collector);
+
+        bolt.execute(tuple);
+        bolt.execute(tick);
+
+        Assert.assertEquals(1, delegate.executions);
+        new Verifications() {{
+            collector.emit(DeadLetterBolt.DEAD_LETTER_STREAM, tuple, (List<Object>) any); times = 1;
+            collector.ack(tuple); times = 1;
+        }};
+    }
+
+    @Test
+    public void testAckedTuplesAreNotRetried() throws Exception {
+        FailingBolt delegate = new FailingBolt(null);
+        DeadLetterBolt bolt = new DeadLetterBolt(delegate);
+        bolt.prepare(new HashMap(), null, collector);
+
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+
+        Assert.assertEquals(2, delegate.executions);
+        Assert.assertEquals(0, bolt.getPendingRetries());
+        new Verifications() {{
+            collector.ack(tuple); times = 2;
+            collector.emit(DeadLetterBolt.DEAD_LETTER_STREAM, (Tuple) any, (List<Object>) any); times = 0;
+        }};
+    }
+
+    @Test
+    public void testErrorIsNotReusedForLaterFailures() throws Exception {
+        recordTuples();
+        FailingBolt delegate = new FailingBolt(new IllegalArgumentException("bad record"), 1);
+        DeadLetterBolt bolt = new DeadLetterBolt(delegate);
+        bolt.prepare(new HashMap(), null, collector);
+
+        bolt.execute(tuple);
+        bolt.execute(tick);
+        // failed without reporting any error, so it is retried
+        bolt.execute(tuple);
+        bolt.execute(tick);
+
+        Assert.assertEquals(2, delegate.executions);
+        Assert.assertEquals(1, bolt.getPendingRetries());
+        new Verifications() {{
+            collector.emit(DeadLetterBolt.DEAD_LETTER_STREAM, tuple, (List<Object>) any); times = 1;
+            collector.ack(tuple); times = 1;
+        }};
+    }
+
+    @Test
+    public void testErrorAppliesToWholeBatch(@Mocked Tuple other) throws Exception {
+        recordTuples();
+        new Expectations() {{
+            other.contains(StreamlineEvent.STREAMLINE_EVENT);
+            result = true;
+            other.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+            result = new StreamlineEventImpl(ImmutableMap.<String, Object>of("id", 2), "dsrcid1");
+        }};
+        BatchFailingBolt delegate = new BatchFailingBolt(new IllegalArgumentException("bad record"), 3);
+        DeadLetterBolt bolt = new DeadLetterBolt(delegate);
+        bolt.prepare(new HashMap(), null, collector);
+
+        bolt.execute(tuple);
+        bolt.execute(other);
+        // the batch is failed after a single error, none of its tuples is retried
+        bolt.execute(tuple);
+        bolt.execute(tick);
+
+        Assert.assertEquals(0, bolt.getPendingRetries());
+        new Verifications() {{
+            collector.emit(DeadLetterBolt.DEAD_LETTER_STREAM, tuple, (List<Object>) any); times = 2;
+            collector.emit(DeadLetterBolt.DEAD_LETTER_STREAM, other, (List<Object>) any); times = 1;
+            collector.fail((Tuple) any); times = 0;
+        }};
+    }
+
+    private void recordTuples() {
+        new Expectations() {{
+            tuple.contains(StreamlineEvent.STREAMLINE_EVENT);
+            result = true;
+            tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+            result = new StreamlineEventImpl(ImmutableMap.<String, Object>of("id", 1), "dsrcid1");
+            tick.getSourceComponent();
+            result = Constants.SYSTEM_COMPONENT_ID;
+            tick.getSourceStreamId();
+            result = Constants.SYSTEM_TICK_STREAM_ID;
+        }};
+    }
+
+    // reports the given error and fails every tuple, or acks them if no error is given; the error is only reported
+    // for the given number of executions, the later tuples are failed without any error
+    private static class FailingBolt extends BaseRichBolt {
+        private final RuntimeException error;
+        private final int reportedErrors;
+        private OutputCollector collector;
+        private int executions;
+
+        FailingBolt(RuntimeException error) {
+            this(error, Integer.MAX_VALUE);
+        }
+
+        FailingBolt(RuntimeException error, int reportedErrors) {
+            this.error = error;
+            this.reportedErrors = reportedErrors;
+        }
+
+        @Override
+        public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+            this.collector = collector;
+        }
+
+        @Override
+        public void execute(Tuple input) {
+            ++executions;
+            if (error == null) {
+                collector.ack(input);
+            } else {
+                if (executions <= reportedErrors) {
+                    collector.reportError(error);
+                }
+                collector.fail(input);
+            }
+        }
+
+        @Override
+        public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        }
+    }
+
+    // buffers the tuples, then reports the given error once and fails the whole batch when it is full
+    private static class BatchFailingBolt extends BaseRichBolt {
+        private final RuntimeException error;
+        private final int batchSize;
+        private final List<Tuple> batch = new ArrayList<>();
+        private OutputCollector collector;
+
+        BatchFailingBolt(RuntimeException error, int batchSize) {
+            this.error = error;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+            this.collector = collector;
+        }
+
+        @Override
+        public void execute(Tuple input) {
+            batch.add(input);
+            if (batch.size() >= batchSize) {
+                collector.reportError(error);
+                for (Tuple tuple : batch) {
+                    collector.fail(tuple);
+                }
+                batch.clear();
+            }
+        }
+
+        @Override
+        public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        }
+    }
+}
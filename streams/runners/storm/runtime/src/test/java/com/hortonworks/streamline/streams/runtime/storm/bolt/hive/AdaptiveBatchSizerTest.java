@@ -0,0 +1,70 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.hive;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+    private static final long LATENCY_MILLIS = 10000;
+
+    @Test
+    public void testLowRate() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(LATENCY_MILLIS, 1000, 10, 100, 0);
+        Assert.assertEquals(1, sizer.getRecordsPerTxn());
+        Assert.assertEquals(10, sizer.getTxnsPerBatch());
+
+        // 5 records per sec, commits every 50 records or on latency
+        observe(sizer, 0, 10, 5);
+        Assert.assertEquals(5.0, sizer.getRecordsPerSec(), 0.01);
+        Assert.assertEquals(50, sizer.getRecordsPerTxn());
+        Assert.assertEquals(10, sizer.getTxnsPerBatch());
+        Assert.assertFalse(sizer.shouldCommit(10000, 49, 5000));
+        Assert.assertTrue(sizer.shouldCommit(10000, 50, 5000));
+        Assert.assertTrue(sizer.shouldCommit(15000, 1, 5000));
+        Assert.assertFalse(sizer.shouldCommit(15000, 0, 5000));
+    }
+
+    @Test
+    public void testHighRate() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(LATENCY_MILLIS, 1000, 10, 100, 0);
+        // 500 records per sec, transactions are bounded to 1000 records, so 0.5 commit per sec
+        observe(sizer, 0, 10, 500);
+        Assert.assertEquals(1000, sizer.getRecordsPerTxn());
+        Assert.assertEquals(50, sizer.getTxnsPerBatch());
+
+        observe(sizer, 10, 20, 5000);
+        Assert.assertEquals(100, sizer.getTxnsPerBatch());
+    }
+
+    @Test
+    public void testRateDecaysWhenIdle() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(LATENCY_MILLIS, 1000, 10, 100, 0);
+        observe(sizer, 0, 10, 100);
+        Assert.assertEquals(1000, sizer.getRecordsPerTxn());
+        for (long now = 11000; now < 30000; now += 1000) {
+            sizer.observe(now, 0);
+        }
+        Assert.assertTrue(sizer.getRecordsPerTxn() < 10);
+    }
+
+    // observes the given number of records for each second, from start (excluded) to end (included)
+    private void observe(AdaptiveBatchSizer sizer, int startSecs, int endSecs, int recordsPerSec) {
+        for (int secs = startSecs + 1; secs <= endSecs; ++secs) {
+            sizer.observe(secs * 1000L, recordsPerSec);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.hive;
+
+import mockit.Expectations;
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hive.hcatalog.streaming.HiveEndPoint;
+import org.apache.hive.hcatalog.streaming.RecordWriter;
+import org.apache.hive.hcatalog.streaming.StreamingConnection;
+import org.apache.hive.hcatalog.streaming.TransactionBatch;
+import org.apache.storm.hive.bolt.mapper.HiveMapper;
+import org.apache.storm.hive.common.HiveOptions;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+@RunWith(JMockit.class)
+public class StreamlineHiveBoltTest {
+    private static final int BATCH_SIZE = 10;
+    private static final int TXNS_PER_BATCH = 2;
+
+    @Mocked
+    private HiveOptions options;
+
+    @Mocked
+    private HiveMapper mapper;
+
+    @Mocked
+    private StreamingConnection connection;
+
+    @Mocked
+    private TransactionBatch txnBatch;
+
+    @Mocked
+    private OutputCollector collector;
+
+    @Mocked
+    private TopologyContext context;
+
+    @Mocked
+    private Tuple tuple;
+
+    @Before
+    public void setUp() throws Exception {
+        // connects the writers to the mocked connection instead of the metastore
+        new MockUp<HiveEndPoint>() {
+            @Mock
+            StreamingConnection newConnection(boolean createPartIfNotExists, HiveConf conf,
+                                              UserGroupInformation authenticatedUser) {
+                return connection;
+            }
+        };
+        new Expectations() {{
+            options.getMapper(); result = mapper;
+            options.getDatabaseName(); result = "db";
+            options.getTableName(); result = "events";
+            options.getBatchSize(); result = BATCH_SIZE;
+            options.getTxnsPerBatch(); result = TXNS_PER_BATCH;
+            options.getMaxOpenConnections(); result = 10;
+            options.getIdleTimeout(); result = 60000;
+            options.getHeartBeatInterval(); result = 240;
+            connection.fetchTransactionBatch(anyInt, (RecordWriter) any); result = txnBatch;
+        }};
+    }
+
+    @Test
+    public void testTupleIsAckedOnCommit() throws Exception {
+        StreamlineHiveBolt bolt = createBolt();
+
+        // the rate is not known yet, the record is committed right away
+        bolt.process(tuple);
+
+        new Verifications() {{
+            connection.fetchTransactionBatch(TXNS_PER_BATCH, (RecordWriter) any); times = 1;
+            mapper.write(txnBatch, tuple); times = 1;
+            txnBatch.commit(); times = 1;
+            collector.ack(tuple); times = 1;
+        }};
+    }
+
+    @Test
+    public void testTransactionsGrowWithRate() throws Exception {
+        StreamlineHiveBolt bolt = createBolt();
+        for (int i = 0; i < 100; ++i) {
+            bolt.process(tuple);
+        }
+        new Verifications() {{
+            txnBatch.commit(); times = 100;
+        }};
+
+        // about 100 records per sec once measured, transactions are bounded by the batch size
+        Thread.sleep(1100);
+        bolt.onTickTuple(tuple);
+        for (int i = 0; i < BATCH_SIZE - 1; ++i) {
+            bolt.process(tuple);
+        }
+        new Verifications() {{
+            txnBatch.commit(); times = 100;
+            collector.ack(tuple); times = 100;
+        }};
+
+        bolt.process(tuple);
+        new Verifications() {{
+            txnBatch.commit(); times = 101;
+            collector.ack(tuple); times = 110;
+
+            // commits are more frequent, so the transaction batches get more transactions
+            List<Integer> txnsPerBatch = new ArrayList<>();
+            connection.fetchTransactionBatch(withCapture(txnsPerBatch), (RecordWriter) any);
+            Assert.assertEquals(TXNS_PER_BATCH, txnsPerBatch.get(0).intValue());
+            Assert.assertTrue(txnsPerBatch.get(txnsPerBatch.size() - 1) > TXNS_PER_BATCH);
+        }};
+    }
+
+    private StreamlineHiveBolt createBolt() {
+        StreamlineHiveBolt bolt = new StreamlineHiveBolt(options).withMaxTxnsPerBatch(1000);
+        bolt.prepare(new HashMap<>(), context, collector);
+        return bolt;
+    }
+}
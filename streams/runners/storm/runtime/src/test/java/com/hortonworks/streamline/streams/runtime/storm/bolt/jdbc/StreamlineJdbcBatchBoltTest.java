@@ -0,0 +1,175 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.jdbc;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.runtime.storm.bolt.StreamlineJdbcMapper;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.storm.Constants;
+import org.apache.storm.jdbc.common.ConnectionProvider;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(JMockit.class)
+public class StreamlineJdbcBatchBoltTest {
+    private static final String JDBC_URL = "jdbc:h2:mem:jdbc_batch_bolt_test;DB_CLOSE_DELAY=-1";
+    private static final String INSERT_QUERY = "INSERT INTO EVENTS (ID, NAME) VALUES (?, ?)";
+
+    @Mocked
+    private OutputCollector collector;
+
+    @Mocked
+    private TopologyContext context;
+
+    @Mocked
+    private Tuple tuple;
+
+    private ConnectionProvider connectionProvider = new TestConnectionProvider();
+
+    @Before
+    public void setUp() throws Exception {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE EVENTS (ID BIGINT PRIMARY KEY, NAME VARCHAR(64))");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE EVENTS");
+        }
+    }
+
+    @Test
+    public void testAckAfterBatchCommit() throws Exception {
+        StreamlineJdbcBatchBolt bolt = createBolt(2);
+        expectEvents(event(1L, "a"), event(2L, "b"), event(3L, "c"));
+
+        bolt.execute(tuple);
+        Assert.assertEquals(0, countRows());
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 0;
+        }};
+
+        bolt.execute(tuple);
+        Assert.assertEquals(2, countRows());
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 2;
+        }};
+
+        bolt.execute(tuple);
+        expectTick();
+        bolt.execute(tuple);
+        Assert.assertEquals(3, countRows());
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 3;
+        }};
+    }
+
+    @Test
+    public void testFailedBatchIsRolledBack() throws Exception {
+        StreamlineJdbcBatchBolt bolt = createBolt(3);
+        expectEvents(event(1L, "a"), event(2L, "b"), event(1L, "c"));
+
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+
+        Assert.assertEquals(0, countRows());
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 0;
+            collector.fail(withInstanceOf(Tuple.class)); times = 3;
+        }};
+    }
+
+    private StreamlineJdbcBatchBolt createBolt(int batchSize) {
+        StreamlineJdbcMapper mapper = new StreamlineJdbcMapper("EVENTS", connectionProvider, Arrays.asList("id", "name"));
+        StreamlineJdbcBatchBolt bolt = new StreamlineJdbcBatchBolt(connectionProvider, mapper)
+                .withQuery(INSERT_QUERY)
+                .withBatchSize(batchSize);
+        bolt.prepare(new HashMap(), context, collector);
+        return bolt;
+    }
+
+    private void expectEvents(final StreamlineEvent... events) {
+        new Expectations() {{
+            tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT); returns(events[0], Arrays.copyOfRange(events, 1, events.length));
+        }};
+    }
+
+    private void expectTick() {
+        new Expectations() {{
+            tuple.getSourceComponent(); result = Constants.SYSTEM_COMPONENT_ID;
+            tuple.getSourceStreamId(); result = Constants.SYSTEM_TICK_STREAM_ID;
+        }};
+    }
+
+    private StreamlineEvent event(long id, String name) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", id);
+        fields.put("name", name);
+        return new StreamlineEventImpl(fields, "dsrcid1");
+    }
+
+    private int countRows() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM EVENTS")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static class TestConnectionProvider implements ConnectionProvider {
+        @Override
+        public void prepare() {
+        }
+
+        @Override
+        public Connection getConnection() {
+            try {
+                return DriverManager.getConnection(JDBC_URL);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
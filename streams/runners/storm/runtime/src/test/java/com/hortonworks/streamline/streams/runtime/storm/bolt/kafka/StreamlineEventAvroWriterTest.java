@@ -0,0 +1,134 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StreamlineEventAvroWriterTest {
+
+    private static final String SCHEMA_WITH_COLLECTIONS = "{\"type\":\"record\",\"name\":\"collections\",\"fields\":[" +
+            "{\"name\":\"ints\",\"type\":{\"type\":\"array\",\"items\":\"int\"}}," +
+            "{\"name\":\"attributes\",\"type\":{\"type\":\"map\",\"values\":\"double\"}}," +
+            "{\"name\":\"payload\",\"type\":[\"null\",\"bytes\"]}," +
+            "{\"name\":\"flag\",\"type\":\"boolean\"}]}";
+
+    @Test
+    public void testNestedRecordEnumAndUnion() throws Exception {
+        Schema schema;
+        try (InputStream schemaStream = StreamlineEventAvroWriterTest.class.getResourceAsStream("/avro/complex.avsc")) {
+            schema = new Schema.Parser().parse(schemaStream);
+        }
+        Map<String, Object> address = new HashMap<>();
+        address.put("streetaddress", "streetaddress");
+        address.put("city", "city");
+        address.put("state", "state");
+        address.put("zip", "zip");
+        Map<String, Object> data = new HashMap<>();
+        data.put("xid", 1L);
+        data.put("name", "name");
+        data.put("version", 1);
+        data.put("timestamp", 1000L);
+        data.put("suit", "HEARTS");
+        data.put("address", address);
+
+        GenericRecord addressRecord = new GenericData.Record(schema.getField("address").schema());
+        for (Map.Entry<String, Object> entry : address.entrySet()) {
+            addressRecord.put(entry.getKey(), entry.getValue());
+        }
+        GenericRecord expected = new GenericData.Record(schema);
+        expected.put("xid", 1L);
+        expected.put("name", "name");
+        expected.put("version", 1);
+        expected.put("timestamp", 1000L);
+        expected.put("suit", new GenericData.EnumSymbol(schema.getField("suit").schema(), "HEARTS"));
+        expected.put("address", addressRecord);
+
+        StreamlineEvent streamlineEvent = new StreamlineEventImpl(data, "dataSourceId");
+        Assert.assertArrayEquals(genericWrite(expected), write(streamlineEvent, schema));
+
+        // null branch of the union
+        data.remove("name");
+        expected.put("name", null);
+        streamlineEvent = new StreamlineEventImpl(data, "dataSourceId");
+        Assert.assertArrayEquals(genericWrite(expected), write(streamlineEvent, schema));
+    }
+
+    @Test
+    public void testCollections() throws Exception {
+        Schema schema = new Schema.Parser().parse(SCHEMA_WITH_COLLECTIONS);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("a", 1.0);
+        attributes.put("b", 2.0);
+        Map<String, Object> data = new HashMap<>();
+        data.put("ints", Arrays.asList(1, 2, 3));
+        data.put("attributes", attributes);
+        data.put("payload", "bytes".getBytes());
+        data.put("flag", true);
+
+        GenericRecord expected = new GenericData.Record(schema);
+        expected.put("ints", new GenericData.Array<>(schema.getField("ints").schema(), Arrays.asList(1, 2, 3)));
+        expected.put("attributes", attributes);
+        expected.put("payload", ByteBuffer.wrap("bytes".getBytes()));
+        expected.put("flag", true);
+
+        StreamlineEvent streamlineEvent = new StreamlineEventImpl(data, "dataSourceId");
+        Assert.assertArrayEquals(genericWrite(expected), write(streamlineEvent, schema));
+    }
+
+    @Test(expected = AvroRuntimeException.class)
+    public void testMissingRequiredField() throws Exception {
+        Schema schema = new Schema.Parser().parse(SCHEMA_WITH_COLLECTIONS);
+        Map<String, Object> data = new HashMap<>();
+        data.put("flag", true);
+        write(new StreamlineEventImpl(data, "dataSourceId"), schema);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrimitiveSchemaNotSupported() {
+        new StreamlineEventAvroWriter(Schema.create(Schema.Type.STRING));
+    }
+
+    private byte[] write(StreamlineEvent streamlineEvent, Schema schema) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StreamlineEventAvroWriter(schema).write(streamlineEvent, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private byte[] genericWrite(GenericRecord record) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+        new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+}
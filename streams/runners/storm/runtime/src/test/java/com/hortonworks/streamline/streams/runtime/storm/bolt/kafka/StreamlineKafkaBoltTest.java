@@ -0,0 +1,121 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
+
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.storm.Constants;
+import org.apache.storm.kafka.bolt.mapper.TupleToKafkaMapper;
+import org.apache.storm.kafka.bolt.selector.DefaultTopicSelector;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Properties;
+
+@RunWith(JMockit.class)
+public class StreamlineKafkaBoltTest {
+
+    @Mocked
+    private OutputCollector collector;
+
+    @Mocked
+    private Tuple tuple;
+
+    private MockProducer<byte[], byte[]> producer;
+
+    @Before
+    public void setUp() {
+        producer = new MockProducer<>(false, new ByteArraySerializer(), new ByteArraySerializer());
+    }
+
+    @Test
+    public void testAckOnSendCompletion() {
+        StreamlineKafkaBolt<byte[], byte[]> bolt = createBolt(10);
+
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        Assert.assertEquals(2, bolt.getPendingSends());
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 0;
+        }};
+
+        producer.completeNext();
+        producer.errorNext(new RuntimeException("send failed"));
+        new Expectations() {{
+            tuple.getSourceComponent(); result = Constants.SYSTEM_COMPONENT_ID;
+            tuple.getSourceStreamId(); result = Constants.SYSTEM_TICK_STREAM_ID;
+        }};
+        bolt.execute(tuple);
+
+        Assert.assertEquals(0, bolt.getPendingSends());
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 1;
+            collector.fail(withInstanceOf(Tuple.class)); times = 1;
+        }};
+    }
+
+    @Test
+    public void testPendingSendsAreBounded() {
+        producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+        StreamlineKafkaBolt<byte[], byte[]> bolt = createBolt(1);
+
+        for (int i = 0; i < 5; ++i) {
+            bolt.execute(tuple);
+            Assert.assertEquals(1, bolt.getPendingSends());
+        }
+        Assert.assertEquals(5, producer.history().size());
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 4;
+        }};
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxPendingSends() {
+        new StreamlineKafkaBolt<byte[], byte[]>().withMaxPendingSends(0);
+    }
+
+    private StreamlineKafkaBolt<byte[], byte[]> createBolt(int maxPendingSends) {
+        StreamlineKafkaBolt<byte[], byte[]> bolt = new StreamlineKafkaBolt<byte[], byte[]>() {
+            @Override
+            protected Producer<byte[], byte[]> mkProducer(Properties properties) {
+                return producer;
+            }
+        };
+        bolt.withTupleToKafkaMapper(new TupleToKafkaMapper<byte[], byte[]>() {
+            @Override
+            public byte[] getKeyFromTuple(Tuple tuple) {
+                return null;
+            }
+
+            @Override
+            public byte[] getMessageFromTuple(Tuple tuple) {
+                return "message".getBytes();
+            }
+        }).withTopicSelector(new DefaultTopicSelector("topic")).withMaxPendingSends(maxPendingSends);
+        bolt.prepare(new HashMap(), null, collector);
+        return bolt;
+    }
+}
@@ -34,7 +34,9 @@ import mockit.MockUp;
 import mockit.Mocked;
 import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
+import org.apache.storm.metric.api.IMetric;
 import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
 import org.apache.storm.tuple.Tuple;
 import org.junit.Assert;
 import org.junit.Before;
@@ -46,6 +48,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -309,4 +313,118 @@ public class NotificationBoltTest {
         };
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        fieldsAndValues.put("temperature", "100");
+        final StreamlineEvent event = new StreamlineEventImpl(fieldsAndValues, "srcid");
+        new MockUp<NotificationQueueHandler>() {
+            @Mock
+            public void enqueue(Notifier notifier, List<Notification> notifications) {
+                notifier.notify(notifications);
+            }
+        };
+        new Expectations() {{
+            mockProxyUtil.loadClassFromJar(anyString, "TestClass");
+            result = notifier;
+            tuple.getValueByField(anyString);
+            result = event;
+        }};
+
+        Map<String, String> stormConf = new HashMap<>();
+        stormConf.put("catalog.root.url", "http://localhost:8080/api/v1/catalog");
+        stormConf.put("local.notifier.jar.path", "/tmp");
+        bolt.withBatchSize(2);
+        bolt.prepare(stormConf, null, collector);
+
+        bolt.execute(tuple);
+        new Verifications() {
+            {
+                hBaseNotificationStore.store((List<Notification>) any);
+                times = 0;
+                collector.ack(tuple);
+                times = 0;
+            }
+        };
+
+        bolt.execute(tuple);
+        new Verifications() {
+            {
+                List<Notification> notifications;
+                hBaseNotificationStore.store(notifications = withCapture());
+                times = 1;
+                Assert.assertEquals(2, notifications.size());
+                hBaseNotificationStore.updateNotificationStatus(anyString, Notification.Status.DELIVERED);
+                times = 2;
+                collector.ack(tuple);
+                times = 2;
+                collector.fail(tuple);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void testQueueFull(@Mocked TopologyContext context) throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Notifier blockingNotifier = new MockUp<Notifier>() {
+            @Mock
+            public void notify(Notification notification) throws InterruptedException {
+                started.countDown();
+                done.await();
+            }
+        }.getMockInstance();
+        new Expectations() {{
+            mockProxyUtil.loadClassFromJar(anyString, "TestClass");
+            result = blockingNotifier;
+            tuple.getValueByField(anyString);
+            returns(event("1"), event("2"), event("3"));
+        }};
+
+        Map<String, Object> stormConf = new HashMap<>();
+        stormConf.put("catalog.root.url", "http://localhost:8080/api/v1/catalog");
+        stormConf.put("local.notifier.jar.path", "/tmp");
+        Map<String, Object> notificationConf = new HashMap<>();
+        notificationConf.put(NotificationQueueHandler.QUEUE_SIZE, 1);
+        notificationConf.put(NotificationQueueHandler.MAX_CONCURRENCY, 1);
+        stormConf.put("notification.conf", notificationConf);
+        bolt.prepare(stormConf, context, collector);
+
+        try {
+            // the first notification is being sent and the second one fills the queue
+            bolt.execute(tuple);
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            bolt.execute(tuple);
+            bolt.execute(tuple);
+
+            new Verifications() {
+                {
+                    hBaseNotificationStore.store((Notification) any);
+                    times = 2;
+                    collector.fail(tuple);
+                    times = 1;
+                    collector.reportError((Throwable) any);
+                    times = 0;
+                }
+            };
+            List<IMetric> metrics = new ArrayList<>();
+            new Verifications() {
+                {
+                    context.registerMetric(NotificationBolt.METRICS_NAME, withCapture(metrics), anyInt);
+                }
+            };
+            Assert.assertEquals(1L, ((Map<String, Object>) metrics.get(0).getValueAndReset()).get("queue.rejected"));
+            Assert.assertEquals(0L, ((Map<String, Object>) metrics.get(0).getValueAndReset()).get("queue.rejected"));
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private StreamlineEvent event(String temperature) {
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        fieldsAndValues.put("temperature", temperature);
+        return new StreamlineEventImpl(fieldsAndValues, "srcid");
+    }
+
 }
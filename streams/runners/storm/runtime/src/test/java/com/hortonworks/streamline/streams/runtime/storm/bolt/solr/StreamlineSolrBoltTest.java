@@ -0,0 +1,157 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.solr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+@RunWith(JMockit.class)
+public class StreamlineSolrBoltTest {
+
+    @Mocked
+    private OutputCollector collector;
+
+    @Mocked
+    private Tuple tuple;
+
+    @Mocked
+    private SolrClient solrClient;
+
+    @Test
+    public void testFlushOnBatchSize() throws Exception {
+        new Expectations() {{
+            tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+            returns(event(1), event(2), event(3));
+        }};
+        StreamlineSolrBolt bolt = prepare(createBolt().withBatchSize(2).withCommitWithinMs(5000));
+
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        // the last document is flushed on cleanup
+        bolt.cleanup();
+
+        List<Collection<SolrInputDocument>> batches = new ArrayList<>();
+        new Verifications() {{
+            solrClient.add(withCapture(batches), 5000); times = 2;
+            collector.ack(withInstanceOf(Tuple.class)); times = 3;
+            collector.fail(withInstanceOf(Tuple.class)); times = 0;
+        }};
+        Assert.assertEquals(2, batches.get(0).size());
+        Assert.assertEquals(1, batches.get(1).size());
+        Assert.assertEquals(3, batches.get(1).iterator().next().getFieldValue("id"));
+        Assert.assertEquals(0, bolt.getInFlightRequests());
+    }
+
+    @Test
+    public void testFlushOnBatchBytes() throws Exception {
+        new Expectations() {{
+            tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+            result = event(1);
+        }};
+        StreamlineSolrBolt bolt = prepare(createBolt().withMaxBatchBytes(30));
+
+        // about 20 bytes per document
+        for (int i = 0; i < 4; ++i) {
+            bolt.execute(tuple);
+        }
+        bolt.cleanup();
+
+        new Verifications() {{
+            solrClient.add((Collection<SolrInputDocument>) any, anyInt); times = 2;
+            collector.ack(withInstanceOf(Tuple.class)); times = 4;
+        }};
+    }
+
+    @Test
+    public void testFailOnError() throws Exception {
+        new Expectations() {{
+            tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+            result = event(1);
+            solrClient.add((Collection<SolrInputDocument>) any, anyInt);
+            result = new SolrServerException("add failed");
+        }};
+        StreamlineSolrBolt bolt = prepare(createBolt().withBatchSize(2));
+
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        bolt.cleanup();
+
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 0;
+            collector.fail(withInstanceOf(Tuple.class)); times = 2;
+        }};
+    }
+
+    @Test
+    public void testSchemaMapping() throws Exception {
+        Schema schema = Schema.of(Schema.Field.of("id", Schema.Type.INTEGER),
+                Schema.NestedField.of("address", Arrays.asList(Schema.Field.of("city", Schema.Type.STRING),
+                        Schema.Field.of("zip", Schema.Type.STRING))),
+                Schema.ArrayField.of("tags", Arrays.asList(Schema.Field.of("tag", Schema.Type.STRING))));
+        StreamlineSolrDocumentMapper mapper = new StreamlineSolrDocumentMapper().withSchema(new ObjectMapper().writeValueAsString(schema));
+
+        StreamlineEvent event = new StreamlineEventImpl(ImmutableMap.<String, Object>of("id", 1,
+                "address", ImmutableMap.of("city", "Santa Clara"),
+                "tags", Arrays.asList("a", "b"),
+                "other", "not in schema"), "dsrcid1");
+        SolrInputDocument document = mapper.toDocument(event);
+
+        Assert.assertEquals(3, document.size());
+        Assert.assertEquals(1, document.getFieldValue("id"));
+        Assert.assertEquals("Santa Clara", document.getFieldValue("address.city"));
+        Assert.assertEquals(Arrays.asList("a", "b"), new ArrayList<>(document.getFieldValues("tags")));
+    }
+
+    private StreamlineSolrBolt createBolt() {
+        return new StreamlineSolrBolt("localhost:9983", "collection", new StreamlineSolrDocumentMapper()) {
+            @Override
+            protected SolrClient mkSolrClient() {
+                return solrClient;
+            }
+        };
+    }
+
+    private StreamlineSolrBolt prepare(StreamlineSolrBolt bolt) {
+        bolt.prepare(new HashMap(), null, collector);
+        return bolt;
+    }
+
+    private StreamlineEvent event(int id) {
+        return new StreamlineEventImpl(ImmutableMap.<String, Object>of("id", id, "name", "name" + id), "dsrcid1");
+    }
+}
@@ -0,0 +1,206 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.cassandra;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Invocation;
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.VerificationsInOrder;
+import mockit.integration.junit4.JMockit;
+import org.apache.storm.cassandra.bolt.BaseCassandraBolt;
+import org.apache.storm.cassandra.query.CQLStatementTupleMapper;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.ITuple;
+import org.apache.storm.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+@RunWith(JMockit.class)
+public class StreamlineCassandraAsyncBoltTest {
+
+    @Mocked
+    private CQLStatementTupleMapper mapper;
+
+    @Mocked
+    private Session session;
+
+    @Mocked
+    private Statement statement;
+
+    @Mocked
+    private ResultSetFuture future;
+
+    @Mocked
+    private ResultSet resultSet;
+
+    @Mocked
+    private OutputCollector collector;
+
+    @Mocked
+    private TopologyContext context;
+
+    @Mocked
+    private Tuple tuple1;
+
+    @Mocked
+    private Tuple tuple2;
+
+    // the listeners the driver would run on the completion of the requests
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        // connects the bolt to the mocked session instead of a cluster
+        new MockUp<BaseCassandraBolt>() {
+            @Mock
+            void prepare(Invocation invocation, Map stormConfig, TopologyContext topologyContext,
+                         OutputCollector outputCollector) {
+                Object bolt = invocation.getInvokedInstance();
+                Deencapsulation.setField(bolt, "stormConfig", stormConfig);
+                Deencapsulation.setField(bolt, "outputCollector", outputCollector);
+                Deencapsulation.setField(bolt, "session", session);
+            }
+        };
+        new Expectations() {{
+            mapper.map((Map) any, (Session) any, (ITuple) any);
+            result = Collections.singletonList(statement);
+            statement.getRoutingKey((ProtocolVersion) any, (CodecRegistry) any);
+            result = null;
+            session.executeAsync((Statement) any);
+            result = future;
+            future.addListener((Runnable) any, (Executor) any);
+            result = new Delegate() {
+                void addListener(Runnable listener, Executor executor) {
+                    synchronized (listeners) {
+                        listeners.add(listener);
+                    }
+                }
+            };
+            future.isDone();
+            result = true;
+        }};
+    }
+
+    @Test
+    public void testAckOnSuccess() throws Exception {
+        new Expectations() {{
+            future.get();
+            result = resultSet;
+        }};
+        StreamlineCassandraAsyncBolt bolt = createBolt(StreamlineCassandraAsyncBolt.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+
+        bolt.process(tuple1);
+        Assert.assertEquals(1, bolt.getInFlightRequests());
+        new Verifications() {{
+            collector.ack((Tuple) any); times = 0;
+        }};
+
+        listeners.get(0).run();
+        bolt.onTickTuple(tuple2);
+        Assert.assertEquals(0, bolt.getInFlightRequests());
+        new Verifications() {{
+            collector.ack(tuple1); times = 1;
+            collector.fail((Tuple) any); times = 0;
+        }};
+    }
+
+    @Test
+    public void testFailOnError() throws Exception {
+        final RuntimeException error = new RuntimeException("write timeout");
+        new Expectations() {{
+            future.get();
+            result = new ExecutionException(error);
+        }};
+        StreamlineCassandraAsyncBolt bolt = createBolt(StreamlineCassandraAsyncBolt.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+
+        bolt.process(tuple1);
+        listeners.get(0).run();
+        bolt.onTickTuple(tuple2);
+        Assert.assertEquals(0, bolt.getInFlightRequests());
+        new Verifications() {{
+            collector.reportError(error); times = 1;
+            collector.fail(tuple1); times = 1;
+            collector.ack((Tuple) any); times = 0;
+        }};
+    }
+
+    @Test
+    public void testMaxInFlightRequests() throws Exception {
+        new Expectations() {{
+            future.get();
+            result = resultSet;
+        }};
+        StreamlineCassandraAsyncBolt bolt = createBolt(1).withMaxBatchSize(1);
+
+        bolt.process(tuple1);
+        Assert.assertEquals(1, bolt.getInFlightRequests());
+
+        // the second request is only sent once the first one completes
+        Thread completer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                listeners.get(0).run();
+            }
+        });
+        completer.start();
+        bolt.process(tuple2);
+        completer.join();
+
+        Assert.assertEquals(1, bolt.getInFlightRequests());
+        new VerificationsInOrder() {{
+            session.executeAsync(statement);
+            collector.ack(tuple1);
+            session.executeAsync(statement);
+        }};
+        new Verifications() {{
+            collector.ack(tuple2); times = 0;
+        }};
+    }
+
+    private StreamlineCassandraAsyncBolt createBolt(int maxInFlightRequests) {
+        StreamlineCassandraAsyncBolt bolt = new StreamlineCassandraAsyncBolt(mapper)
+                .withMaxInFlightRequests(maxInFlightRequests);
+        bolt.prepare(new HashMap<>(), context, collector);
+        return bolt;
+    }
+}
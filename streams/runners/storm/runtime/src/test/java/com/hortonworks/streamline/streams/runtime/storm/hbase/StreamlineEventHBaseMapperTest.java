@@ -15,12 +15,15 @@
  **/
 package com.hortonworks.streamline.streams.runtime.storm.hbase;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Charsets;
+import com.hortonworks.registries.common.Schema;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
 import mockit.Expectations;
 import mockit.Mocked;
 import mockit.integration.junit4.JMockit;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.storm.hbase.common.ColumnList;
 import org.apache.storm.tuple.Tuple;
 import org.junit.Assert;
@@ -30,6 +33,7 @@ import org.junit.runner.RunWith;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Charsets.UTF_8;
@@ -69,4 +73,39 @@ public class StreamlineEventHBaseMapperTest {
         Assert.assertTrue(Arrays.equals(COLUMN_FIELD.getBytes(Charsets.UTF_8), column.getValue()));
     }
 
+    @Test
+    public void testSchemaMapping() throws Exception {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", 10L);
+        fields.put("count", 3);
+        fields.put("name", "name");
+        fields.put("extra", "extra");
+        final StreamlineEvent event = new StreamlineEventImpl(fields, "dsrcid1");
+        new Expectations() {{
+            mockTuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT); returns(event);
+        }};
+        Schema schema = Schema.of(Schema.Field.of("id", Schema.Type.LONG), Schema.Field.of("count", Schema.Type.LONG),
+                Schema.Field.of("name", Schema.Type.STRING), Schema.Field.optional("missing", Schema.Type.STRING));
+        StreamlineEventHBaseMapper schemaMapper = new StreamlineEventHBaseMapper(COLUMN_FAMILY)
+                .withSchema(new ObjectMapper().writeValueAsString(schema))
+                .withPackedColumn("packed", Arrays.asList("name", "missing"))
+                .withRowKeyFields(Arrays.asList("name", "id"))
+                .withRowKeySaltBuckets(16);
+
+        byte[] rowKey = schemaMapper.rowKey(mockTuple);
+        byte[] unsaltedRowKey = Bytes.add(Bytes.toBytes("name"), new byte[]{0}, Bytes.toBytes(10L));
+        Assert.assertTrue(Arrays.equals(unsaltedRowKey, Arrays.copyOfRange(rowKey, 1, rowKey.length)));
+        Assert.assertTrue(rowKey[0] >= 0 && rowKey[0] < 16);
+
+        List<ColumnList.Column> columns = schemaMapper.columns(mockTuple).getColumns();
+        Assert.assertEquals(3, columns.size());
+        Assert.assertTrue(Arrays.equals(Bytes.toBytes("id"), columns.get(0).getQualifier()));
+        Assert.assertTrue(Arrays.equals(Bytes.toBytes(10L), columns.get(0).getValue()));
+        // widened to the type of the schema
+        Assert.assertTrue(Arrays.equals(Bytes.toBytes("count"), columns.get(1).getQualifier()));
+        Assert.assertTrue(Arrays.equals(Bytes.toBytes(3L), columns.get(1).getValue()));
+        Assert.assertTrue(Arrays.equals(Bytes.toBytes("packed"), columns.get(2).getQualifier()));
+        Assert.assertTrue(Arrays.equals(Bytes.add(Bytes.toBytes(4), Bytes.toBytes("name"), Bytes.toBytes(-1)), columns.get(2).getValue()));
+    }
+
 }
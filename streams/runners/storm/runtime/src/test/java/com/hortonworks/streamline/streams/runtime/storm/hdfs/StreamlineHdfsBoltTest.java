@@ -0,0 +1,185 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.hdfs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.storm.hdfs.bolt.format.DefaultFileNameFormat;
+import org.apache.storm.hdfs.bolt.rotation.FileSizeRotationPolicy;
+import org.apache.storm.hdfs.bolt.sync.CountSyncPolicy;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(JMockit.class)
+public class StreamlineHdfsBoltTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Mocked
+    private OutputCollector collector;
+
+    @Mocked
+    private TopologyContext context;
+
+    @Mocked
+    private Tuple tuple;
+
+    @Test
+    public void testAvroAcksOnSync() throws Exception {
+        StreamlineHdfsBolt bolt = createBolt("avro").withSyncPolicy(new CountSyncPolicy(2));
+        expectEvents(event(1L, "a"), event(2L, null), event(3L, "c"));
+
+        bolt.execute(tuple);
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 0;
+        }};
+        bolt.execute(tuple);
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 2;
+        }};
+        bolt.execute(tuple);
+        bolt.cleanup();
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 3;
+        }};
+
+        List<GenericRecord> records = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(singleFile(), new GenericDatumReader<GenericRecord>())) {
+            for (GenericRecord record : reader) {
+                records.add(record);
+            }
+        }
+        assertRecords(records);
+    }
+
+    @Test
+    public void testParquetAcksOnClose() throws Exception {
+        StreamlineHdfsBolt bolt = createBolt("parquet").withSyncPolicy(new CountSyncPolicy(1));
+        expectEvents(event(1L, "a"), event(2L, null), event(3L, "c"));
+
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 0;
+        }};
+        bolt.cleanup();
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 3;
+        }};
+
+        List<GenericRecord> records = new ArrayList<>();
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(new Path(singleFile().toURI())).build()) {
+            GenericRecord record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+        }
+        assertRecords(records);
+    }
+
+    @Test
+    public void testParquetRotatesOnMaxBufferedBytes() throws Exception {
+        StreamlineHdfsBolt bolt = createBolt("parquet").withMaxBufferedBytes(1);
+        expectEvents(event(1L, "a"), event(2L, "b"));
+
+        bolt.execute(tuple);
+        bolt.execute(tuple);
+        new Verifications() {{
+            collector.ack(withInstanceOf(Tuple.class)); times = 2;
+        }};
+        Assert.assertEquals(2, dataFiles().size());
+    }
+
+    private StreamlineHdfsBolt createBolt(String outputFormat) throws Exception {
+        Schema schema = Schema.of(Schema.Field.of("id", Schema.Type.LONG), Schema.Field.optional("name", Schema.Type.STRING));
+        StreamlineHdfsBolt bolt = new StreamlineHdfsBolt()
+                .withFsUrl("file:///")
+                .withFileNameFormat(new DefaultFileNameFormat().withPath(tmp.getRoot().getAbsolutePath()))
+                .withRotationPolicy(new FileSizeRotationPolicy(1.0f, FileSizeRotationPolicy.Units.MB))
+                .withOutputFormat(outputFormat)
+                .withCompressionCodec("deflate")
+                .withSchema(new ObjectMapper().writeValueAsString(schema));
+        bolt.prepare(new HashMap(), context, collector);
+        return bolt;
+    }
+
+    private void expectEvents(final StreamlineEvent... events) {
+        new Expectations() {{
+            tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT); returns(events[0], Arrays.copyOfRange(events, 1, events.length));
+        }};
+    }
+
+    private StreamlineEvent event(long id, String name) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", id);
+        if (name != null) {
+            fields.put("name", name);
+        }
+        return new StreamlineEventImpl(fields, "dsrcid1");
+    }
+
+    private void assertRecords(List<GenericRecord> records) {
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals(1L, records.get(0).get("id"));
+        Assert.assertEquals("a", records.get(0).get("name").toString());
+        Assert.assertNull(records.get(1).get("name"));
+        Assert.assertEquals(3L, records.get(2).get("id"));
+    }
+
+    private File singleFile() {
+        List<File> files = dataFiles();
+        Assert.assertEquals(1, files.size());
+        return files.get(0);
+    }
+
+    // the local file system writes a hidden checksum file along with each file
+    private List<File> dataFiles() {
+        List<File> files = new ArrayList<>();
+        for (File file : tmp.getRoot().listFiles()) {
+            if (!file.getName().startsWith(".")) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RuleConditionFilterTest {
+
+    @Test
+    public void testComparisons() {
+        RuleConditionFilter filter = filter(new BinaryExpression(Operator.AND,
+                new BinaryExpression(Operator.GREATER_THAN, field("temperature"), new Literal("100")),
+                new BinaryExpression(Operator.EQUALS, new Literal("'north'"), field("region"))));
+
+        Assert.assertEquals(Sets.newHashSet("temperature", "region"), filter.getFields());
+        Assert.assertTrue(filter.mayMatch(ImmutableMap.<String, Object>of("temperature", 101, "region", "north")));
+        Assert.assertFalse(filter.mayMatch(ImmutableMap.<String, Object>of("temperature", 100L, "region", "north")));
+        Assert.assertFalse(filter.mayMatch(ImmutableMap.<String, Object>of("temperature", 101.5, "region", "south")));
+    }
+
+    @Test
+    public void testUndecidableComparisonsMayMatch() {
+        RuleConditionFilter filter = filter(new BinaryExpression(Operator.LESS_THAN, field("region"), new Literal("'north'")));
+
+        // missing field, string ordering and type mismatch
+        Assert.assertTrue(filter.mayMatch(Collections.<String, Object>emptyMap()));
+        Assert.assertTrue(filter.mayMatch(ImmutableMap.<String, Object>of("region", "south")));
+        Assert.assertTrue(filter.mayMatch(ImmutableMap.<String, Object>of("region", 10)));
+    }
+
+    @Test
+    public void testAnyConditionMayMatch() {
+        RuleConditionFilter filter = new RuleConditionFilter(Arrays.asList(
+                new Condition(new BinaryExpression(Operator.LESS_THAN_EQUALS_TO, field("speed"), new Literal("10"))),
+                new Condition(new BinaryExpression(Operator.OR,
+                        new BinaryExpression(Operator.NOT_EQUAL, field("alert"), new Literal("false")),
+                        new BinaryExpression(Operator.GREATER_THAN_EQUALS_TO, new Literal("5"), field("speed"))))));
+
+        Assert.assertTrue(filter.mayMatch(ImmutableMap.<String, Object>of("speed", 10, "alert", false)));
+        Assert.assertTrue(filter.mayMatch(ImmutableMap.<String, Object>of("speed", 20, "alert", true)));
+        Assert.assertFalse(filter.mayMatch(ImmutableMap.<String, Object>of("speed", 20, "alert", false)));
+    }
+
+    private RuleConditionFilter filter(Expression expression) {
+        return new RuleConditionFilter(Collections.singletonList(new Condition(expression)));
+    }
+
+    private FieldExpression field(String name) {
+        return new FieldExpression(Schema.Field.of(name, Schema.Type.STRING));
+    }
+}
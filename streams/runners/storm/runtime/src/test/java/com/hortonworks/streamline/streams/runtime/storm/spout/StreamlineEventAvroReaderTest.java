@@ -0,0 +1,116 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class StreamlineEventAvroReaderTest {
+
+    private static final String WRITER_SCHEMA = "{\"type\":\"record\",\"name\":\"sample\",\"fields\":[" +
+            "{\"name\":\"id\",\"type\":\"int\"}," +
+            "{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"string\"}}," +
+            "{\"name\":\"attributes\",\"type\":{\"type\":\"map\",\"values\":\"long\"}}," +
+            "{\"name\":\"payload\",\"type\":\"bytes\"}," +
+            "{\"name\":\"comment\",\"type\":[\"null\",\"string\"]}]}";
+
+    // drops tags, promotes id to long and adds a field with a default value
+    private static final String READER_SCHEMA = "{\"type\":\"record\",\"name\":\"sample\",\"fields\":[" +
+            "{\"name\":\"id\",\"type\":\"long\"}," +
+            "{\"name\":\"attributes\",\"type\":{\"type\":\"map\",\"values\":\"long\"}}," +
+            "{\"name\":\"payload\",\"type\":\"bytes\"}," +
+            "{\"name\":\"comment\",\"type\":[\"null\",\"string\"]}," +
+            "{\"name\":\"source\",\"type\":\"string\",\"default\":\"unknown\"}]}";
+
+    @Test
+    public void testReadWithWriterSchema() throws Exception {
+        Schema schema;
+        try (InputStream schemaStream = StreamlineEventAvroReaderTest.class.getResourceAsStream("/avro/complex.avsc")) {
+            schema = new Schema.Parser().parse(schemaStream);
+        }
+        GenericRecord addressRecord = new GenericData.Record(schema.getField("address").schema());
+        addressRecord.put("streetaddress", "streetaddress");
+        addressRecord.put("city", "city");
+        addressRecord.put("state", "state");
+        addressRecord.put("zip", "zip");
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("xid", 1L);
+        record.put("name", "name");
+        record.put("version", 1);
+        record.put("timestamp", 1000L);
+        record.put("suit", new GenericData.EnumSymbol(schema.getField("suit").schema(), "CLUBS"));
+        record.put("address", addressRecord);
+
+        byte[] bytes = serialize(record);
+        Map<String, Object> fieldsAndValues = new StreamlineEventAvroReader(schema, schema).read(bytes, 0, bytes.length);
+
+        Assert.assertEquals(1L, fieldsAndValues.get("xid"));
+        Assert.assertEquals("name", fieldsAndValues.get("name"));
+        Assert.assertEquals(1, fieldsAndValues.get("version"));
+        Assert.assertEquals(1000L, fieldsAndValues.get("timestamp"));
+        Assert.assertEquals("CLUBS", fieldsAndValues.get("suit"));
+        Map<String, Object> address = (Map<String, Object>) fieldsAndValues.get("address");
+        Assert.assertEquals("streetaddress", address.get("streetaddress"));
+        Assert.assertEquals("zip", address.get("zip"));
+    }
+
+    @Test
+    public void testReadWithReaderSchema() throws Exception {
+        Schema writerSchema = new Schema.Parser().parse(WRITER_SCHEMA);
+        Schema readerSchema = new Schema.Parser().parse(READER_SCHEMA);
+        GenericRecord record = new GenericData.Record(writerSchema);
+        record.put("id", 10);
+        record.put("tags", Arrays.asList("a", "b"));
+        record.put("attributes", Collections.singletonMap("count", 5L));
+        record.put("payload", ByteBuffer.wrap("bytes".getBytes()));
+        record.put("comment", null);
+
+        StreamlineEventAvroReader reader = new StreamlineEventAvroReader(writerSchema, readerSchema);
+        // read twice to make sure decoders are reused correctly
+        for (int i = 0; i < 2; ++i) {
+            byte[] bytes = serialize(record);
+            Map<String, Object> fieldsAndValues = reader.read(new AvroKafkaSpoutTranslator.ByteBufferInputStream(ByteBuffer.wrap(bytes)));
+
+            Assert.assertEquals(10L, fieldsAndValues.get("id"));
+            Assert.assertFalse(fieldsAndValues.containsKey("tags"));
+            Assert.assertEquals(Collections.singletonMap("count", 5L), fieldsAndValues.get("attributes"));
+            Assert.assertArrayEquals("bytes".getBytes(), (byte[]) fieldsAndValues.get("payload"));
+            Assert.assertFalse(fieldsAndValues.containsKey("comment"));
+            Assert.assertEquals("unknown", fieldsAndValues.get("source"));
+        }
+    }
+
+    private byte[] serialize(GenericRecord record) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+        new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+}
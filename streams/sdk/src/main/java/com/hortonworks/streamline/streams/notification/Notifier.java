@@ -51,6 +51,27 @@ public interface Notifier {
      */
     void notify(Notification notification);
 
+    /**
+     * <p>
+     * The framework would invoke this method with a batch of notifications. Notifiers
+     * which can deliver several notifications at once may override it, each notification
+     * should still be acked or failed via the {@link NotificationContext}. By default the
+     * notifications are delivered one at a time.
+     * </p>
+     *
+     * @param notifications the Notification objects
+     */
+    default void notify(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            try {
+                notify(notification);
+            } catch (RuntimeException ex) {
+                // fail so that the framework can retry
+                getContext().fail(notification.getId());
+            }
+        }
+    }
+
     /**
      * <p>
      * Invoked when a notifier is de-registered from the framework.
@@ -30,6 +30,7 @@ import com.hortonworks.streamline.streams.catalog.service.StreamCatalogService;
 import com.hortonworks.streamline.streams.catalog.topology.TopologyComponentBundle;
 import com.hortonworks.streamline.streams.notification.Notification;
 import com.hortonworks.streamline.streams.notification.service.NotificationService;
+import com.hortonworks.streamline.streams.notification.store.Page;
 import com.hortonworks.streamline.common.exception.service.exception.request.EntityNotFoundException;
 import com.hortonworks.streamline.streams.security.Roles;
 import com.hortonworks.streamline.streams.security.SecurityUtil;
@@ -62,6 +63,7 @@ import static javax.ws.rs.core.Response.Status.OK;
 @Produces(MediaType.APPLICATION_JSON)
 public class NotificationsResource {
     private static final Logger LOG = LoggerFactory.getLogger(NotificationsResource.class);
+    private static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
 
     private final StreamlineAuthorizer authorizer;
     private final NotificationService notificationService;
@@ -94,15 +96,20 @@ public class NotificationsResource {
         SecurityUtil.checkRole(authorizer, securityContext, Roles.ROLE_NOTIFICATION_USER);
         List<QueryParam> queryParams = new ArrayList<>();
         MultivaluedMap<String, String> uriInfoParams = uriInfo.getQueryParameters();
-        Collection<Notification> notifications = null;
         if (!uriInfoParams.isEmpty()) {
             queryParams = WSUtils.buildQueryParameters(uriInfoParams);
         } else {
             LOG.info("Query params empty, will use default criteria to return notifications.");
         }
-        notifications = notificationService.findNotifications(queryParams);
+        Page<Notification> page = notificationService.findNotificationsPage(queryParams);
+        Collection<Notification> notifications = page.getEntities();
         if (notifications != null && !notifications.isEmpty()) {
-            return WSUtils.respondEntities(notifications, OK);
+            Response response = WSUtils.respondEntities(notifications, OK);
+            if (page.getNextPageToken() != null) {
+                // pass it as the pageToken query param to get the next page
+                response = Response.fromResponse(response).header(NEXT_PAGE_TOKEN_HEADER, page.getNextPageToken()).build();
+            }
+            return response;
         }
 
         throw EntityNotFoundException.byFilter(queryParams.toString());
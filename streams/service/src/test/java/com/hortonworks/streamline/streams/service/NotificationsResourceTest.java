@@ -90,7 +90,7 @@ public class NotificationsResourceTest {
             new Verifications() {
                 {
                     List<QueryParam> qps;
-                    mockNotificationService.findNotifications(qps = withCapture());
+                    mockNotificationService.findNotificationsPage(qps = withCapture());
                     //System.out.println(qps);
                     assertEquals(4, qps.size());
                 }